@@ -415,6 +415,7 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		addToEnableGroup("cg", getcgtrim_clinit_widget(), "trim-clinit");
 		addToEnableGroup("cg", getcgtypes_for_invoke_widget(), "types-for-invoke");
 		addToEnableGroup("cg", getcgresolve_all_abstract_invokes_widget(), "resolve-all-abstract-invokes");
+		addToEnableGroup("cg", getcgcompact_widget(), "compact");
 		getcgenabled_widget().getButton().addSelectionListener(this);
 		getcgsafe_forname_widget().getButton().addSelectionListener(this);
 		getcgsafe_newinstance_widget().getButton().addSelectionListener(this);
@@ -424,6 +425,7 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		getcgtrim_clinit_widget().getButton().addSelectionListener(this);
 		getcgtypes_for_invoke_widget().getButton().addSelectionListener(this);
 		getcgresolve_all_abstract_invokes_widget().getButton().addSelectionListener(this);
+		getcgcompact_widget().getButton().addSelectionListener(this);
 
 		makeNewEnableGroup("cg", "cg.cha");
 		addToEnableGroup("cg", "cg.cha", getcgcg_chaenabled_widget(), "enabled");
@@ -455,9 +457,11 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparksimplify_sccs_widget(), "simplify-sccs");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkignore_types_for_sccs_widget(), "ignore-types-for-sccs");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkpropagator_widget(), "propagator");
+		addToEnableGroup("cg", "cg.spark", getcgcg_sparkincremental_widget(), "incremental");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkset_impl_widget(), "set-impl");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkdouble_set_old_widget(), "double-set-old");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkdouble_set_new_widget(), "double-set-new");
+		addToEnableGroup("cg", "cg.spark", getcgcg_sparkheap_budget_widget(), "heap-budget");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkdump_html_widget(), "dump-html");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkdump_pag_widget(), "dump-pag");
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkdump_solution_widget(), "dump-solution");
@@ -1084,6 +1088,24 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
 			getConfig().put(getGeneral_Optionsphase_help_widget().getAlias(), stringRes);
 		}
+		stringRes = getGeneral_Optionsnum_threads_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getGeneral_Optionsnum_threads_widget().getAlias(), stringRes);
+		}
+		stringRes = getGeneral_Optionsbody_analysis_cache_size_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getGeneral_Optionsbody_analysis_cache_size_widget().getAlias(), stringRes);
+		}
+		stringRes = getGeneral_Optionsbody_pack_scheduler_widget().getSelectedAlias();
+		defStringRes = "class";
+
+		if (!stringRes.equals(defStringRes)) {
+			getConfig().put(getGeneral_Optionsbody_pack_scheduler_widget().getAlias(), stringRes);
+		}
 		boolRes = getInput_Optionsprepend_classpath_widget().getButton().getSelection();
 		defBoolRes = false;
 
@@ -1126,6 +1148,12 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getInput_Optionsfull_resolver_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getInput_Optionsparallel_resolver_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getInput_Optionsparallel_resolver_widget().getAlias(), new Boolean(boolRes));
+		}
 		boolRes = getInput_Optionsallow_phantom_refs_widget().getButton().getSelection();
 		defBoolRes = false;
 
@@ -1168,6 +1196,18 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getInput_Optionsdrop_bodies_after_load_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getInput_Optionsasm_streaming_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getInput_Optionsasm_streaming_widget().getAlias(), new Boolean(boolRes));
+		}
+		boolRes = getInput_Optionsindex_classpath_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getInput_Optionsindex_classpath_widget().getAlias(), new Boolean(boolRes));
+		}
 		stringRes = getInput_Optionssoot_classpath_widget().getText().getText();
 		defStringRes = "";
 
@@ -1210,6 +1250,24 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
 			getConfig().put(getInput_Optionsmain_class_widget().getAlias(), stringRes);
 		}
+		stringRes = getInput_Optionsbody_cache_dir_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getInput_Optionsbody_cache_dir_widget().getAlias(), stringRes);
+		}
+		stringRes = getInput_Optionsbody_residency_budget_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getInput_Optionsbody_residency_budget_widget().getAlias(), stringRes);
+		}
+		stringRes = getInput_Optionsclasspath_index_dir_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getInput_Optionsclasspath_index_dir_widget().getAlias(), stringRes);
+		}
 		stringRes = getInput_Optionssrc_prec_widget().getSelectedAlias();
 		defStringRes = "c class";
 
@@ -1222,6 +1280,18 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getOutput_Optionsoutput_jar_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getOutput_Optionsstreaming_output_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getOutput_Optionsstreaming_output_widget().getAlias(), new Boolean(boolRes));
+		}
+		boolRes = getOutput_Optionsparallel_dex_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getOutput_Optionsparallel_dex_widget().getAlias(), new Boolean(boolRes));
+		}
 		boolRes = getOutput_Optionshierarchy_dirs_widget().getButton().getSelection();
 		defBoolRes = false;
 
@@ -1276,6 +1346,12 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
 			getConfig().put(getOutput_Optionsoutput_dir_widget().getAlias(), stringRes);
 		}
+		stringRes = getOutput_Optionsstreaming_output_depth_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getOutput_Optionsstreaming_output_depth_widget().getAlias(), stringRes);
+		}
 		stringRes = getOutput_Optionsdump_body_widget().getText().getText();
 		defStringRes = "";
 
@@ -1329,6 +1405,12 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getProcessing_Optionsomit_excepting_unit_edges_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getProcessing_Optionscompact_unit_graphs_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getProcessing_Optionscompact_unit_graphs_widget().getAlias(), new Boolean(boolRes));
+		}
 		boolRes = getProcessing_Optionstrim_cfgs_widget().getButton().getSelection();
 		defBoolRes = false;
 
@@ -1767,6 +1849,12 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getcgresolve_all_abstract_invokes_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getcgcompact_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getcgcompact_widget().getAlias(), new Boolean(boolRes));
+		}
 		stringRes = getcgjdkver_widget().getText().getText();
 		defStringRes = "3";
 
@@ -1923,6 +2011,24 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getcgcg_sparkignore_types_for_sccs_widget().getAlias(), new Boolean(boolRes));
 		}
+		boolRes = getcgcg_sparkincremental_widget().getButton().getSelection();
+		defBoolRes = false;
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getcgcg_sparkincremental_widget().getAlias(), new Boolean(boolRes));
+		}
+		stringRes = getcgcg_sparkoffheap_dir_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getcgcg_sparkoffheap_dir_widget().getAlias(), stringRes);
+		}
+		stringRes = getcgcg_sparkheap_budget_widget().getText().getText();
+		defStringRes = "0";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getcgcg_sparkheap_budget_widget().getAlias(), stringRes);
+		}
 		stringRes = getcgcg_sparkpropagator_widget().getSelectedAlias();
 		defStringRes = "worklist";
 
@@ -3249,6 +3355,18 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		if (boolRes != defBoolRes) {
 			getConfig().put(getMiscellaneous_Optionsno_writeout_body_releasing_widget().getAlias(), new Boolean(boolRes));
 		}
+		stringRes = getMiscellaneous_Optionsphase_metrics_widget().getText().getText();
+		defStringRes = "";
+
+		if ((!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getMiscellaneous_Optionsphase_metrics_widget().getAlias(), stringRes);
+		}
+		stringRes = getMiscellaneous_Optionsphase_metrics_format_widget().getSelectedAlias();
+		defStringRes = "json";
+
+		if (!stringRes.equals(defStringRes)) {
+			getConfig().put(getMiscellaneous_Optionsphase_metrics_format_widget().getAlias(), stringRes);
+		}
 
 		setSootMainClass(getSootMainClassWidget().getText().getText());			
 		return setSootMainProject(getSootMainProjectWidget().getText().getText());
@@ -4603,6 +4721,42 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 	}	
 	
 	
+	
+	private StringOptionWidget General_Optionsnum_threads_widget;
+	
+	private void setGeneral_Optionsnum_threads_widget(StringOptionWidget widget) {
+		General_Optionsnum_threads_widget = widget;
+	}
+	
+	public StringOptionWidget getGeneral_Optionsnum_threads_widget() {
+		return General_Optionsnum_threads_widget;
+	}
+	
+	
+	
+	private StringOptionWidget General_Optionsbody_analysis_cache_size_widget;
+	
+	private void setGeneral_Optionsbody_analysis_cache_size_widget(StringOptionWidget widget) {
+		General_Optionsbody_analysis_cache_size_widget = widget;
+	}
+	
+	public StringOptionWidget getGeneral_Optionsbody_analysis_cache_size_widget() {
+		return General_Optionsbody_analysis_cache_size_widget;
+	}
+	
+	
+	
+	private MultiOptionWidget General_Optionsbody_pack_scheduler_widget;
+	
+	private void setGeneral_Optionsbody_pack_scheduler_widget(MultiOptionWidget widget) {
+		General_Optionsbody_pack_scheduler_widget = widget;
+	}
+	
+	public MultiOptionWidget getGeneral_Optionsbody_pack_scheduler_widget() {
+		return General_Optionsbody_pack_scheduler_widget;
+	}	
+	
+	
 	private BooleanOptionWidget Input_Optionsprepend_classpath_widget;
 	
 	private void setInput_Optionsprepend_classpath_widget(BooleanOptionWidget widget) {
@@ -4673,6 +4827,16 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return Input_Optionsfull_resolver_widget;
 	}	
 	
+	private BooleanOptionWidget Input_Optionsparallel_resolver_widget;
+	
+	private void setInput_Optionsparallel_resolver_widget(BooleanOptionWidget widget) {
+		Input_Optionsparallel_resolver_widget = widget;
+	}
+	
+	public BooleanOptionWidget getInput_Optionsparallel_resolver_widget() {
+		return Input_Optionsparallel_resolver_widget;
+	}	
+	
 	private BooleanOptionWidget Input_Optionsallow_phantom_refs_widget;
 	
 	private void setInput_Optionsallow_phantom_refs_widget(BooleanOptionWidget widget) {
@@ -4743,6 +4907,26 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return Input_Optionsdrop_bodies_after_load_widget;
 	}	
 	
+	private BooleanOptionWidget Input_Optionsasm_streaming_widget;
+	
+	private void setInput_Optionsasm_streaming_widget(BooleanOptionWidget widget) {
+		Input_Optionsasm_streaming_widget = widget;
+	}
+	
+	public BooleanOptionWidget getInput_Optionsasm_streaming_widget() {
+		return Input_Optionsasm_streaming_widget;
+	}	
+	
+	private BooleanOptionWidget Input_Optionsindex_classpath_widget;
+	
+	private void setInput_Optionsindex_classpath_widget(BooleanOptionWidget widget) {
+		Input_Optionsindex_classpath_widget = widget;
+	}
+	
+	public BooleanOptionWidget getInput_Optionsindex_classpath_widget() {
+		return Input_Optionsindex_classpath_widget;
+	}	
+	
 
 	private ListOptionWidget Input_Optionsprocess_dir_widget;
 	
@@ -4828,6 +5012,42 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 	
 	
 	
+	private StringOptionWidget Input_Optionsbody_cache_dir_widget;
+	
+	private void setInput_Optionsbody_cache_dir_widget(StringOptionWidget widget) {
+		Input_Optionsbody_cache_dir_widget = widget;
+	}
+	
+	public StringOptionWidget getInput_Optionsbody_cache_dir_widget() {
+		return Input_Optionsbody_cache_dir_widget;
+	}
+	
+	
+	
+	private StringOptionWidget Input_Optionsbody_residency_budget_widget;
+	
+	private void setInput_Optionsbody_residency_budget_widget(StringOptionWidget widget) {
+		Input_Optionsbody_residency_budget_widget = widget;
+	}
+	
+	public StringOptionWidget getInput_Optionsbody_residency_budget_widget() {
+		return Input_Optionsbody_residency_budget_widget;
+	}
+	
+	
+	
+	private StringOptionWidget Input_Optionsclasspath_index_dir_widget;
+	
+	private void setInput_Optionsclasspath_index_dir_widget(StringOptionWidget widget) {
+		Input_Optionsclasspath_index_dir_widget = widget;
+	}
+	
+	public StringOptionWidget getInput_Optionsclasspath_index_dir_widget() {
+		return Input_Optionsclasspath_index_dir_widget;
+	}
+	
+	
+	
 	private MultiOptionWidget Input_Optionssrc_prec_widget;
 	
 	private void setInput_Optionssrc_prec_widget(MultiOptionWidget widget) {
@@ -4849,6 +5069,26 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return Output_Optionsoutput_jar_widget;
 	}	
 	
+	private BooleanOptionWidget Output_Optionsstreaming_output_widget;
+	
+	private void setOutput_Optionsstreaming_output_widget(BooleanOptionWidget widget) {
+		Output_Optionsstreaming_output_widget = widget;
+	}
+	
+	public BooleanOptionWidget getOutput_Optionsstreaming_output_widget() {
+		return Output_Optionsstreaming_output_widget;
+	}	
+	
+	private BooleanOptionWidget Output_Optionsparallel_dex_widget;
+	
+	private void setOutput_Optionsparallel_dex_widget(BooleanOptionWidget widget) {
+		Output_Optionsparallel_dex_widget = widget;
+	}
+	
+	public BooleanOptionWidget getOutput_Optionsparallel_dex_widget() {
+		return Output_Optionsparallel_dex_widget;
+	}	
+	
 	private BooleanOptionWidget Output_Optionshierarchy_dirs_widget;
 	
 	private void setOutput_Optionshierarchy_dirs_widget(BooleanOptionWidget widget) {
@@ -4966,6 +5206,18 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 	
 	
 	
+	private StringOptionWidget Output_Optionsstreaming_output_depth_widget;
+	
+	private void setOutput_Optionsstreaming_output_depth_widget(StringOptionWidget widget) {
+		Output_Optionsstreaming_output_depth_widget = widget;
+	}
+	
+	public StringOptionWidget getOutput_Optionsstreaming_output_depth_widget() {
+		return Output_Optionsstreaming_output_depth_widget;
+	}
+	
+	
+	
 	private MultiOptionWidget Output_Optionsoutput_format_widget;
 	
 	private void setOutput_Optionsoutput_format_widget(MultiOptionWidget widget) {
@@ -5039,6 +5291,16 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return Processing_Optionsomit_excepting_unit_edges_widget;
 	}	
 	
+	private BooleanOptionWidget Processing_Optionscompact_unit_graphs_widget;
+	
+	private void setProcessing_Optionscompact_unit_graphs_widget(BooleanOptionWidget widget) {
+		Processing_Optionscompact_unit_graphs_widget = widget;
+	}
+	
+	public BooleanOptionWidget getProcessing_Optionscompact_unit_graphs_widget() {
+		return Processing_Optionscompact_unit_graphs_widget;
+	}	
+	
 	private BooleanOptionWidget Processing_Optionstrim_cfgs_widget;
 	
 	private void setProcessing_Optionstrim_cfgs_widget(BooleanOptionWidget widget) {
@@ -5779,6 +6041,16 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return cgresolve_all_abstract_invokes_widget;
 	}	
 	
+	private BooleanOptionWidget cgcompact_widget;
+	
+	private void setcgcompact_widget(BooleanOptionWidget widget) {
+		cgcompact_widget = widget;
+	}
+	
+	public BooleanOptionWidget getcgcompact_widget() {
+		return cgcompact_widget;
+	}	
+	
 	
 	private StringOptionWidget cgjdkver_widget;
 	
@@ -6047,6 +6319,40 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return cgcg_sparkignore_types_for_sccs_widget;
 	}	
 	
+	private BooleanOptionWidget cgcg_sparkincremental_widget;
+	
+	private void setcgcg_sparkincremental_widget(BooleanOptionWidget widget) {
+		cgcg_sparkincremental_widget = widget;
+	}
+	
+	public BooleanOptionWidget getcgcg_sparkincremental_widget() {
+		return cgcg_sparkincremental_widget;
+	}	
+	
+	
+	private StringOptionWidget cgcg_sparkoffheap_dir_widget;
+	
+	private void setcgcg_sparkoffheap_dir_widget(StringOptionWidget widget) {
+		cgcg_sparkoffheap_dir_widget = widget;
+	}
+	
+	public StringOptionWidget getcgcg_sparkoffheap_dir_widget() {
+		return cgcg_sparkoffheap_dir_widget;
+	}
+	
+	
+	
+	private StringOptionWidget cgcg_sparkheap_budget_widget;
+	
+	private void setcgcg_sparkheap_budget_widget(StringOptionWidget widget) {
+		cgcg_sparkheap_budget_widget = widget;
+	}
+	
+	public StringOptionWidget getcgcg_sparkheap_budget_widget() {
+		return cgcg_sparkheap_budget_widget;
+	}
+	
+	
 	
 	private MultiOptionWidget cgcg_sparkpropagator_widget;
 	
@@ -8335,6 +8641,30 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		return Miscellaneous_Optionsno_writeout_body_releasing_widget;
 	}	
 	
+	
+	private StringOptionWidget Miscellaneous_Optionsphase_metrics_widget;
+	
+	private void setMiscellaneous_Optionsphase_metrics_widget(StringOptionWidget widget) {
+		Miscellaneous_Optionsphase_metrics_widget = widget;
+	}
+	
+	public StringOptionWidget getMiscellaneous_Optionsphase_metrics_widget() {
+		return Miscellaneous_Optionsphase_metrics_widget;
+	}
+	
+	
+	
+	private MultiOptionWidget Miscellaneous_Optionsphase_metrics_format_widget;
+	
+	private void setMiscellaneous_Optionsphase_metrics_format_widget(MultiOptionWidget widget) {
+		Miscellaneous_Optionsphase_metrics_format_widget = widget;
+	}
+	
+	public MultiOptionWidget getMiscellaneous_Optionsphase_metrics_format_widget() {
+		return Miscellaneous_Optionsphase_metrics_format_widget;
+	}	
+	
+	
 
 	private Composite General_OptionsCreate(Composite parent) {
 		String defKey;
@@ -8547,6 +8877,30 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setGeneral_Optionsweak_map_structures_widget(new BooleanOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Weak Map Structures", "", "","weak-map-structures", "\nIf this option is set, Soot will use Maps with weak references \nto lower memory usage when performing many additions and \ndeletions of classes/methods/locals. Without this option, all \ncreated objects are kept in memory. This has a bit larger memory \nfootprint if only a small amount of deletions are conducted.", defaultBool)));
 
+		data = new OptionData [] {
+		
+				new OptionData("Class",
+						"class",
+						"\nRun the body packs on all methods of a class in one task. A \nlarge class that is processed last may keep one thread busy \nwhile the others are idle.",
+						true),
+				new OptionData("Method",
+						"method",
+						"\nRun the body packs on every method separately. The worker \nthreads take the methods from a shared queue, starting with the \nmethods that have the largest bodies. The methods of one class \nare transformed concurrently, so this is only done if the body \npacks cannot change the classes: the Dava output format, the jap \npack and transformations that have been added to the packs \nwithout declaring that they only change bodies always use the \nclass scheduler.",
+						false),
+		};
+
+
+		setGeneral_Optionsbody_pack_scheduler_widget(new MultiOptionWidget(editGroupGeneral_Options, SWT.NONE, data, new OptionData("Body pack scheduler", "", "","body-pack-scheduler", "\nSelects how the work of the body packs is distributed over the \n-num-threads worker threads.")));
+
+		defKey = ""+" "+""+" "+"body-pack-scheduler";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);
+
+			getGeneral_Optionsbody_pack_scheduler_widget().setDef(defaultString);
+		}
+
 		defKey = ""+" "+""+" "+"ph phase-help";
 		defKey = defKey.trim();
 
@@ -8559,6 +8913,30 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		setGeneral_Optionsphase_help_widget(new ListOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Phase Help",  "", "","ph phase-help", "\nPrint a help message about the phase or sub-phase named PHASE, \nthen exit. To see the help message of more than one phase, \nspecify multiple phase-help options.", defaultString)));
 		
 
+		defKey = ""+" "+""+" "+"num-threads";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setGeneral_Optionsnum_threads_widget(new StringOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Number of threads",  "", "","num-threads", "\nUse NUM worker threads in the stages of Soot that can run in \nparallel, such as loading method bodies, running the body packs \nand the parallel class resolver. If this option is not given or \nset to a value smaller than one, Soot uses as many threads as \nthere are processors available to the JVM.", defaultString)));
+		
+
+		defKey = ""+" "+""+" "+"body-analysis-cache-size";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setGeneral_Optionsbody_analysis_cache_size_widget(new StringOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Body analysis cache size",  "", "","body-analysis-cache-size", "\nTransformers such as the copy propagator, the constant \npropagator and the dead assignment eliminator share the unit \ngraphs, local definitions and uses of a body as long as the body \nhas not been modified in between. At most NUM bodies are kept in \nthis cache; the least recently used body is evicted first. A \nvalue of 0 disables the cache. If this option is not given, four \nbodies per worker thread are cached.", defaultString)));
+		
+
 
 		return editGroupGeneral_Options;
 	}
@@ -8666,6 +9044,17 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setInput_Optionsfull_resolver_widget(new BooleanOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Force complete resolver", "", "","full-resolver", "\nNormally, Soot resolves only that application classes and any \nclasses that they refer to, along with any classes it needs for \nthe Jimple typing, but it does not transitively resolve \nreferences in these additional classes that were resolved only \nbecause they were referenced. This switch forces full transitive \nresolution of all references found in all classes that are \nresolved, regardless of why they were resolved. In whole-program \nmode, class resolution is always fully transitive. Therefore, in \nwhole-program mode, this switch has no effect, and class \nresolution is always performed as if it were turned on.", defaultBool)));
 
+		defKey = ""+" "+""+" "+"parallel-resolver";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setInput_Optionsparallel_resolver_widget(new BooleanOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Parallel resolver", "", "","parallel-resolver", "\nWhen this option is set, the resolver processes its worklist in \nwaves. Before a wave of classes is resolved, the class sources \nfor all classes in that wave are located on the classpath and \nread into memory on a pool of worker threads (see -num-threads). \nThe classes themselves are then built on the calling thread in \nthe same order as without this option, so the resulting Scene is \nidentical. This option only has an effect for class file, Jimple \nand Java inputs outside of module mode.", defaultBool)));
+
 		defKey = ""+" "+""+" "+"allow-phantom-refs";
 		defKey = defKey.trim();
 
@@ -8743,6 +9132,28 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setInput_Optionsdrop_bodies_after_load_widget(new BooleanOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Drop method source after loading bodies", "", "","drop-bodies-after-load", "\nEach method is associated with a method source for loading its \nbody. When this option is disabled, a reference to this source \nis kept around even after the body has already been loaded. This \nis a waste of memory for most use cases. When this option is \nenabled, the reference is dropped, allowing for garbage \ncollection of the method source. On the other hand, if the body \nis ever released, it cannot easily be recovered (i.e., loaded \nagain) easily.", defaultBool)));
 
+		defKey = ""+" "+""+" "+"asm-streaming";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setInput_Optionsasm_streaming_widget(new BooleanOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Stream method code", "", "","asm-streaming", "\nWhen this option is set, the code of each method in a class file \nis recorded while the class is read in a compact encoding, in \nwhich every instruction takes two integers and labels, stack \nframes and units are addressed by their position instead of \nthrough maps. The method body is then built from this encoding \non demand. The resulting bodies are the same as without this \noption, but reading classes and creating bodies allocates far \nfewer objects. Methods with subroutines are still converted from \na tree of instruction nodes, in which the subroutines are \ninlined.", defaultBool)));
+
+		defKey = ""+" "+""+" "+"index-classpath";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setInput_Optionsindex_classpath_widget(new BooleanOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Index class path archives", "", "","index-classpath", "\nWhen this option is set, the central directories of all jar and \nzip files on the class path are read once through memory-mapped \nbuffers to build a single table that maps each file name to the \nfirst archive containing it, together with the position of the \nfile in that archive. Looking up a class then requires a single \ntable access instead of a probe of every archive on the class \npath, and uncompressed entries are read directly from the mapped \narchive without copying. Directories on the class path are still \nsearched in order, so the class path precedence is unchanged. \nArchives that cannot be indexed, such as ZIP64 files, are \nsearched as usual.", defaultBool)));
+
 		data = new OptionData [] {
 		
 				new OptionData("Class File",
@@ -8867,6 +9278,42 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		setInput_Optionsmain_class_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Main Class",  "", "","main-class", "\nBy default, the first class encountered with a main method is \ntreated as the main class (entry point) in whole-program \nanalysis. This option overrides this default.", defaultString)));
 		
 
+		defKey = ""+" "+""+" "+"body-cache-dir";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setInput_Optionsbody_cache_dir_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Body cache directory",  "", "","body-cache-dir", "\nStore the Jimple bodies that are created from class files and \ntransformed by the jb pack in DIR and load them from there in \nlater runs instead of jimplifying the respective methods again. \nCache entries are keyed by a hash of the class file contents, of \nall options that influence the jb pack and of the class path, so \nchanged classes, options or dependencies never hit stale \nentries. The class path is described by the name, size and \nmodification time of its archives and of the files in its \ndirectories, so any change to it invalidates the whole cache. \nBodies that carry tags other than line numbers and bytecode \noffsets are not cached, and bodies that cannot be cached or read \nback are created as usual. Cached bodies are stored in a compact \nbinary form that is read back directly into Jimple, which is \nmuch cheaper than jimplifying the method again, while filling \nthe cache slows down the first run. If this option is not given, \nno cache is used.", defaultString)));
+		
+
+		defKey = ""+" "+""+" "+"body-residency-budget";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setInput_Optionsbody_residency_budget_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Body residency budget",  "", "","body-residency-budget", "\nEvict the least recently used method bodies once the estimated \nsize of all loaded bodies exceeds MB megabytes, and load them \nagain when they are accessed. Bodies that have not been modified \nsince they were loaded are dropped and later created again from \ntheir method source, which is kept even if \n-drop-bodies-after-load is enabled. Modified bodies are kept in \nmemory as serialized Jimple instead. Units, locals and traps of \na body that is loaded again are new objects, so analyses that \nhold on to them, such as the call graph, have to pin the methods \nthey refer to. Bodies that were set explicitly rather than \nloaded from a method source are never evicted. If this option is \nnot given or 0, all bodies stay in memory.", defaultString)));
+		
+
+		defKey = ""+" "+""+" "+"classpath-index-dir";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setInput_Optionsclasspath_index_dir_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Class path index directory",  "", "","classpath-index-dir", "\nStore the indices built by -index-classpath in DIR and reuse \nthem in later runs as long as the size and modification time of \nthe respective archive are unchanged. If this option is not \ngiven, the indices are rebuilt in every run.", defaultString)));
+		
+
 
 		return editGroupInput_Options;
 	}
@@ -8908,6 +9355,28 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setOutput_Optionsoutput_jar_widget(new BooleanOptionWidget(editGroupOutput_Options, SWT.NONE, new OptionData("Output Jar File", "", "","outjar output-jar", "\nSaves output files into a Jar file instead of a directory. The \noutput Jar file name should be specified using the Output \nDirectory (output-dir) option. Note that if the output Jar file \nexists before Soot runs, any files inside it will first be \nremoved.", defaultBool)));
 
+		defKey = ""+" "+""+" "+"streaming-output";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setOutput_Optionsstreaming_output_widget(new BooleanOptionWidget(editGroupOutput_Options, SWT.NONE, new OptionData("Streaming Output", "", "","streaming-output", "\nWrites every class, and releases its method bodies, as soon as \nthe body packs have been run on it, instead of writing all \nclasses after all body packs are done. Method bodies are then \nonly loaded when the body packs need them, so that the memory \nneeded for the bodies is bounded by the classes in flight rather \nthan by the whole program. When writing into a Jar file \n(-output-jar), classes are printed in parallel and a single \nwriter thread stores them in the Jar file. This option has no \neffect with the Dava and dex output formats, which need all \nclasses at once, and with -oaat.", defaultBool)));
+
+		defKey = ""+" "+""+" "+"parallel-dex";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setOutput_Optionsparallel_dex_widget(new BooleanOptionWidget(editGroupOutput_Options, SWT.NONE, new OptionData("Parallel dex output", "", "","parallel-dex", "\nWith the dex output formats, converts the classes to dex on all \nworker threads instead of one after the other. The classes are \nthen partitioned into dex files up front, in the order in which \nthey are written, by an estimate of the type, field and method \nreferences they add, and the dex files are built and written \nconcurrently. The output is the same for every run, but when \nmore than one dex file is needed the classes may be spread over \nthe dex files differently than without this option.", defaultBool)));
+
 		defKey = ""+" "+""+" "+"hierarchy-dirs";
 		defKey = defKey.trim();
 
@@ -9172,6 +9641,18 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		setOutput_Optionsoutput_dir_widget(new StringOptionWidget(editGroupOutput_Options, SWT.NONE, new OptionData("Output Directory",  "", "","d output-dir", "\nStore output files inDIR. DIR may be relative to the working \ndirectory.", defaultString)));
 		
 
+		defKey = ""+" "+""+" "+"streaming-output-depth";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setOutput_Optionsstreaming_output_depth_widget(new StringOptionWidget(editGroupOutput_Options, SWT.NONE, new OptionData("Streaming Output Depth",  "", "","streaming-output-depth", "\nWith -streaming-output and -output-jar, at most NUM printed \nclasses wait for the Jar writer thread; the threads running the \nbody packs block when this limit is reached. If this option is \nnot given or set to a value smaller than one, twice the number \nof worker threads is used.", defaultString)));
+		
+
 
 		return editGroupOutput_Options;
 	}
@@ -9257,6 +9738,17 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setProcessing_Optionsomit_excepting_unit_edges_widget(new BooleanOptionWidget(editGroupProcessing_Options, SWT.NONE, new OptionData("Omit Excepting Unit Edges", "", "","omit-excepting-unit-edges", "\nWhen constructing an ExceptionalUnitGraph or \nExceptionalBlockGraph, include edges to an exception handler \nonly from the predecessors of an instruction which may throw an \nexception to the handler, and not from the excepting instruction \nitself, unless the excepting instruction has potential side \neffects. Omitting edges from excepting units allows more \naccurate flow analyses (since if an instruction without side \neffects throws an exception, it has not changed the state of the \ncomputation). This accuracy, though, could lead optimizations to \ngenerate unverifiable code, since the dataflow analyses \nperformed by bytecode verifiers might include paths to exception \nhandlers from all protected instructions, regardless of whether \nthe instructions have side effects. (In practice, the pedantic \nthrow analysis suffices to pass verification in all VMs tested \nwith Soot to date, but the JVM specification does allow for less \ndiscriminating verifiers which would reject some code that might \nbe generated using the pedantic throw analysis without also \nadding edges from all excepting units.)", defaultBool)));
 
+		defKey = ""+" "+""+" "+"compact-unit-graphs";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setProcessing_Optionscompact_unit_graphs_widget(new BooleanOptionWidget(editGroupProcessing_Options, SWT.NONE, new OptionData("Compact Unit Graphs", "", "","compact-unit-graphs", "\nWhen set, the ExceptionalUnitGraphs handed out by \nExceptionalUnitGraphFactory and by the standard analysis \nfactories are CompactExceptionalUnitGraphs. These number the \nunits by their position in the chain and keep the edges in \nprimitive arrays instead of one list per unit, which saves \nmemory and allocation on large bodies. The graphs have exactly \nthe same nodes and edges, in the same order.", defaultBool)));
+
 		defKey = ""+" "+""+" "+"trim-cfgs";
 		defKey = defKey.trim();
 
@@ -11127,6 +11619,17 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setcgresolve_all_abstract_invokes_widget(new BooleanOptionWidget(editGroupcg, SWT.NONE, new OptionData("Resolve Abstract Classes with No Children", "p phase-option", "cg","resolve-all-abstract-invokes", "\nNormally, if a method is invoked on a class that is abstract and \nsaid class does not have any children in the Scene, the method \ninvoke will not be resolved to any concrete methods even if the \nabstract class or its parent classes contain a concrete \ndeclaration of the method. This is because without any \nnon-abstract children it is impossible to tell if the resolution \nis correct (since any child may override any non-private method \nin any of its parent classes). However, sometimes it is \nnecessary to resolve methods in such situations (e.g. when \nanalyzing libraries or incomplete code). This forces all methods \ninvoked on abstract classes to be resolved if there exists a \nparent class with a concrete definition of the method even if \nthere are no non-abstract children of the abstract class.", defaultBool)));
 
+		defKey = "p phase-option"+" "+"cg"+" "+"compact";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setcgcompact_widget(new BooleanOptionWidget(editGroupcg, SWT.NONE, new OptionData("Compact Call Graph", "p phase-option", "cg","compact", "\nWhen this option is set, the call graph is frozen after it has \nbeen built and trimmed. The frozen call graph stores its edges \nin compressed sparse row arrays indexed by the numbers of the \nsource methods, source statements and target methods, instead of \nin hash maps and linked lists. Queries return equal edges in the \nsame order as before, creating the edge objects on demand. If \nthe call graph is modified later on, it is converted back to the \nregular representation. Call graphs with context-sensitive edges \nare not frozen.", defaultBool)));
+
 		data = new OptionData [] {
 		
 				new OptionData("Disabled",
@@ -11613,6 +12116,17 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 		
 		
 
+		defKey = "p phase-option"+" "+"cg.spark"+" "+"incremental";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		} else {
+			defaultBool = false;
+		}
+
+		setcgcg_sparkincremental_widget(new BooleanOptionWidget(editGroupcgSpark_Points_To_Set_Flowing_Options, SWT.NONE, new OptionData("Incremental", "p phase-option", "cg.spark","incremental", "\nWhen this option is set to true and Spark runs again on a Scene \nit has already analysed, only the methods whose bodies changed \nsince the previous run are processed again. Their part of the \npointer assignment graph and their call edges are replaced, and \npoints-to sets are recomputed only for the nodes that depended \non them. A full run is done instead whenever the class hierarchy \nchanged, or when the options are not supported by the \nincremental update: it requires the context insensitive \non-the-fly call graph, without VTA, RTA, bidirectional simple \nedges, reflection support through new instance nodes or the \ngeometric analysis. Methods that become unreachable through a \nchange are kept reachable.", defaultBool)));
+
 		data = new OptionData [] {
 		
 				new OptionData("Iter",
@@ -11623,6 +12137,10 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 						"worklist",
 						"\nWorklist is a worklist-based algorithm that tries to do as \nlittle work as possible. This is currently the fastest \nalgorithm.",
 						true),
+				new OptionData("Parallel",
+						"parallel",
+						"\nParallel propagates points-to sets along simple assignment edges \nin waves on a pool of threads (see -num-threads). Field stores \nand loads as well as the on-the-fly call graph are handled on a \nsingle thread between the waves. If no allocation nodes of any \nsubtype of a type exist when the type masks are built, Parallel \ncomputes the same result as Worklist. Such nodes are created for \nsimulated native methods (simulate-natives, on by default), for \nthe default class loader and in library mode. With Worklist, \nwhether they end up in the points-to set of a variable whose \ntype has subtypes depends on the order of propagation. Parallel \nadds them to the type masks of all types instead, so its result \ndoes not depend on the order, and it contains the result of \nWorklist plus these nodes wherever a variable may point to them.",
+						false),
 				new OptionData("Cycle",
 						"cycle",
 						"\nThis algorithm finds cycles in the PAG on-the-fly. It is not yet \nfinished.",
@@ -11679,6 +12197,10 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 						"sharedlist",
 						"\nShared List stores its elements in a linked list, and might \nshare its tail with other similar points-to sets.",
 						false),
+				new OptionData("Off-heap",
+						"offheap",
+						"\nOff-heap is like Hybrid, but keeps the bit vectors of large sets \nin memory outside of the Java heap, either in direct buffers or, \nif an Off-heap Directory is given, in memory-mapped files. Each \nbit vector only spans the range of allocation sites it contains.",
+						false),
 				new OptionData("Double",
 						"double",
 						"\nDouble is an implementation that itself uses a pair of sets for \neach points-to set. The first set in the pair stores new \npointed-to objects that have not yet been propagated, while the \nsecond set stores old pointed-to objects that have been \npropagated and need not be reconsidered. This allows the \npropagation algorithms to be incremental, often speeding them up \nsignificantly.",
@@ -11723,6 +12245,10 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 						"sharedlist",
 						"\nShared List stores its elements in a linked list, and might \nshare its tail with other similar points-to sets.",
 						false),
+				new OptionData("Off-heap",
+						"offheap",
+						"\nOff-heap is like Hybrid, but keeps the bit vectors of large sets \nin memory outside of the Java heap, either in direct buffers or, \nif an Off-heap Directory is given, in memory-mapped files. Each \nbit vector only spans the range of allocation sites it contains.",
+						false),
 		};
 
 
@@ -11763,6 +12289,10 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 						"sharedlist",
 						"\nShared List stores its elements in a linked list, and might \nshare its tail with other similar points-to sets.",
 						false),
+				new OptionData("Off-heap",
+						"offheap",
+						"\nOff-heap is like Hybrid, but keeps the bit vectors of large sets \nin memory outside of the Java heap, either in direct buffers or, \nif an Off-heap Directory is given, in memory-mapped files. Each \nbit vector only spans the range of allocation sites it contains.",
+						false),
 		};
 
 
@@ -11777,6 +12307,30 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 			getcgcg_sparkdouble_set_new_widget().setDef(defaultString);
 		}
 
+		defKey = "p phase-option"+" "+"cg.spark"+" "+"offheap-dir";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setcgcg_sparkoffheap_dir_widget(new StringOptionWidget(editGroupcgSpark_Points_To_Set_Flowing_Options, SWT.NONE, new OptionData("Off-heap Directory",  "p phase-option", "cg.spark","offheap-dir", "\nWhen the off-heap set implementation is used, keep the bit \nvectors in memory-mapped temporary files created in the given \ndirectory, so that the operating system can page them out to \ndisk. If no directory is given, direct buffers are used instead.", defaultString)));
+		
+
+		defKey = "p phase-option"+" "+"cg.spark"+" "+"heap-budget";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "0";
+		}
+
+		setcgcg_sparkheap_budget_widget(new StringOptionWidget(editGroupcgSpark_Points_To_Set_Flowing_Options, SWT.NONE, new OptionData("Heap Budget",  "p phase-option", "cg.spark","heap-budget", "\nWhen this option is set to a positive number of megabytes, Spark \nwatches the heap while it builds the pointer assignment graph \nand propagates points-to sets. If more heap than this is still \nin use after a garbage collection, the analysis is restarted \nwith less precise settings, one step at a time: large points-to \nsets are kept off the heap, string constants are merged into a \nsingle node, instance fields are collapsed as with Field Based, \nand objects are represented by their types as with Types For \nSites. Each step that is taken is reported as a warning. If the \nbudget is still exceeded with all steps taken, the analysis runs \nto completion without a budget. The budget should be set \nsomewhat below the maximum heap size. The default, 0, disables \nthe budget.", defaultString)));
+		
+
 
 		return editGroupcgSpark_Points_To_Set_Flowing_Options;
 	}
@@ -17205,6 +17759,42 @@ public class PhaseOptionsDialog extends AbstractOptionsDialog implements Selecti
 
 		setMiscellaneous_Optionsno_writeout_body_releasing_widget(new BooleanOptionWidget(editGroupMiscellaneous_Options, SWT.NONE, new OptionData("No body releasing after writeout", "", "","no-writeout-body-releasing", "\nBy default soot releases the method bodies of all reachable \nclasses after the final writeout. This option deactivates this \nbehaviour. This flag should not affect end users at all.", defaultBool)));
 
+		data = new OptionData [] {
+		
+				new OptionData("JSON",
+						"json",
+						"\nWrite the phase metrics as a JSON array with one object per \nphase.",
+						true),
+				new OptionData("CSV",
+						"csv",
+						"\nWrite the phase metrics as comma-separated values with a header \nline and one line per phase.",
+						false),
+		};
+
+
+		setMiscellaneous_Optionsphase_metrics_format_widget(new MultiOptionWidget(editGroupMiscellaneous_Options, SWT.NONE, data, new OptionData("Phase metrics format", "", "","phase-metrics-format", "\nSets the format in which the metrics recorded with \n-phase-metrics are written.")));
+
+		defKey = ""+" "+""+" "+"phase-metrics-format";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);
+
+			getMiscellaneous_Optionsphase_metrics_format_widget().setDef(defaultString);
+		}
+
+		defKey = ""+" "+""+" "+"phase-metrics";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		} else {
+			defaultString = "";
+		}
+
+		setMiscellaneous_Optionsphase_metrics_widget(new StringOptionWidget(editGroupMiscellaneous_Options, SWT.NONE, new OptionData("Phase metrics file",  "", "","phase-metrics", "\nRecord the wall time, the CPU time and the allocated bytes of \nevery transformation that the pack manager executes, together \nwith the number of bodies it was applied to and their units \nbefore and after the transformation, and write a summary per \nphase to FILE when Soot finishes. CPU time and allocated bytes \nonly cover the thread that applies the phase.", defaultString)));
+		
+
 
 		return editGroupMiscellaneous_Options;
 	}
@@ -0,0 +1,114 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+
+import soot.Body;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Sets up the {@link Scene} for the benchmarks. By default, the benchmarks analyze the ASM library that is bundled with
+ * Soot, so they run without any further input. A different jar file can be given with the system property
+ * <code>soot.benchmark.jar</code>, e.g. with <code>-Djmh.args="-jvmArgsAppend -Dsoot.benchmark.jar=app.jar"</code>.
+ */
+final class BenchmarkScene {
+
+  static final String JAR_PROPERTY = "soot.benchmark.jar";
+
+  private BenchmarkScene() {
+  }
+
+  /**
+   * Returns the jar file the benchmarks analyze.
+   */
+  static String sampleJar() {
+    String jar = System.getProperty(JAR_PROPERTY);
+    if (jar != null) {
+      return jar;
+    }
+    try {
+      return new File(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    } catch (URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Resets Soot and configures it to process the sample jar, without loading any classes yet.
+   */
+  static void configure(boolean wholeProgram) {
+    G.reset();
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_process_dir(Collections.singletonList(sampleJar()));
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_whole_program(wholeProgram);
+    Options.v().set_no_bodies_for_excluded(wholeProgram);
+  }
+
+  /**
+   * Resets Soot and loads the classes of the sample jar.
+   */
+  static void load(boolean wholeProgram) {
+    configure(wholeProgram);
+    Scene.v().loadNecessaryClasses();
+  }
+
+  /**
+   * Returns all concrete methods of the application classes.
+   */
+  static List<SootMethod> concreteMethods() {
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (m.isConcrete()) {
+          methods.add(m);
+        }
+      }
+    }
+    return methods;
+  }
+
+  /**
+   * Returns the Jimple bodies of all concrete methods of the application classes.
+   */
+  static List<Body> bodies() {
+    List<Body> bodies = new ArrayList<Body>();
+    for (SootMethod m : concreteMethods()) {
+      bodies.add(m.retrieveActiveBody());
+    }
+    return bodies;
+  }
+}
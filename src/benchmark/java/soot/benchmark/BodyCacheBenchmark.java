@@ -0,0 +1,106 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.Scene;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Measures the construction of Jimple bodies with and without the body cache. With the cache, all bodies are read from
+ * cache entries that were written in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BodyCacheBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean cache;
+
+  private File cacheDir;
+
+  private List<SootMethod> methods;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkScene.configure(false);
+    if (cache) {
+      cacheDir = Files.createTempDirectory("soot-body-cache").toFile();
+      Options.v().set_body_cache_dir(cacheDir.getAbsolutePath());
+    }
+    Scene.v().loadNecessaryClasses();
+    methods = BenchmarkScene.concreteMethods();
+    for (SootMethod m : methods) {
+      m.getSource().getBody(m, "jb");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (cacheDir != null) {
+      delete(cacheDir);
+    }
+  }
+
+  @Benchmark
+  public void jb(Blackhole bh) {
+    for (SootMethod m : methods) {
+      bh.consume(m.getSource().getBody(m, "jb"));
+    }
+  }
+
+  private static void delete(File f) {
+    File[] children = f.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    f.delete();
+  }
+}
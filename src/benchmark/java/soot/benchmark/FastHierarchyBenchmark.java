@@ -0,0 +1,92 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.ArrayType;
+import soot.FastHierarchy;
+import soot.Scene;
+import soot.SootClass;
+import soot.Type;
+
+/**
+ * Measures {@link FastHierarchy#canStoreType(Type, Type)} on all pairs of class types of the sample jar, their direct
+ * supertypes, and one-dimensional arrays of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FastHierarchyBenchmark {
+
+  private FastHierarchy hierarchy;
+  private Type[] types;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(false);
+    List<Type> types = new ArrayList<Type>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      types.add(sc.getType());
+      if (sc.hasSuperclass()) {
+        types.add(sc.getSuperclass().getType());
+      }
+      for (SootClass i : sc.getInterfaces()) {
+        types.add(i.getType());
+      }
+      types.add(ArrayType.v(sc.getType(), 1));
+    }
+    this.types = types.toArray(new Type[types.size()]);
+    this.hierarchy = Scene.v().getOrMakeFastHierarchy();
+  }
+
+  @Benchmark
+  public int canStoreType() {
+    int count = 0;
+    for (Type child : types) {
+      for (Type parent : types) {
+        if (hierarchy.canStoreType(child, parent)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
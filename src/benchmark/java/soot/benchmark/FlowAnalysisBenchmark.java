@@ -0,0 +1,353 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Body;
+import soot.Local;
+import soot.SideEffectTester;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.Expr;
+import soot.jimple.FieldRef;
+import soot.jimple.InvokeExpr;
+import soot.jimple.NaiveSideEffectTester;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.toolkits.scalar.FastAvailableExpressionsAnalysis;
+import soot.jimple.toolkits.scalar.ToppedSet;
+import soot.options.Options;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.MHGDominatorsFinder;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.ArraySparseSet;
+import soot.toolkits.scalar.BitVectorLiveLocals;
+import soot.toolkits.scalar.FlowSet;
+import soot.toolkits.scalar.ForwardFlowAnalysis;
+import soot.toolkits.scalar.GuaranteedDefs;
+import soot.toolkits.scalar.InitAnalysis;
+import soot.toolkits.scalar.LiveLocals;
+import soot.toolkits.scalar.SimpleLiveLocals;
+
+/**
+ * Compares the analyses that run on {@link soot.toolkits.scalar.BitVectorFlowAnalysis} with their {@link ForwardFlowAnalysis}
+ * and {@link SimpleLiveLocals} counterparts. Every benchmark computes the analysis and reads the values before and after
+ * each unit. The <code>flowSet*</code> benchmarks run the previous implementations, which are kept here as references.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FlowAnalysisBenchmark {
+
+  private List<ExceptionalUnitGraph> graphs;
+  private SideEffectTester sideEffects;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(false);
+    // the dominators of GuaranteedDefs would otherwise be reused across iterations
+    Options.v().set_body_analysis_cache_size(0);
+    graphs = new ArrayList<ExceptionalUnitGraph>();
+    for (Body b : BenchmarkScene.bodies()) {
+      graphs.add(new ExceptionalUnitGraph(b));
+    }
+    sideEffects = new NaiveSideEffectTester();
+  }
+
+  @Benchmark
+  public int flowSetLiveLocals() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      size += readLiveLocals(g, new SimpleLiveLocals(g));
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int bitVectorLiveLocals() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      size += readLiveLocals(g, new BitVectorLiveLocals(g));
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int flowSetInitAnalysis() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      ReferenceInitAnalysis a = new ReferenceInitAnalysis(g);
+      for (Unit u : g) {
+        size += a.getFlowBefore(u).size() + a.getFlowAfter(u).size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int bitVectorInitAnalysis() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      InitAnalysis a = new InitAnalysis(g);
+      for (Unit u : g) {
+        size += a.getFlowBefore(u).size() + a.getFlowAfter(u).size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int flowSetGuaranteedDefs() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      ReferenceGuaranteedDefsAnalysis a = new ReferenceGuaranteedDefsAnalysis(g);
+      for (Unit u : g) {
+        size += a.getFlowBefore(u).toList().size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int bitVectorGuaranteedDefs() {
+    int size = 0;
+    for (UnitGraph g : graphs) {
+      GuaranteedDefs a = new GuaranteedDefs(g);
+      for (Unit u : g) {
+        size += a.getGuaranteedDefs(u).size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int flowSetAvailableExpressions() {
+    int size = 0;
+    for (ExceptionalUnitGraph g : graphs) {
+      ReferenceAvailableExpressionsAnalysis a = new ReferenceAvailableExpressionsAnalysis(g, sideEffects);
+      for (Unit u : g) {
+        size += a.getFlowBefore(u).size() + a.getFlowAfter(u).size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int bitVectorAvailableExpressions() {
+    int size = 0;
+    for (ExceptionalUnitGraph g : graphs) {
+      FastAvailableExpressionsAnalysis a = new FastAvailableExpressionsAnalysis(g, g.getBody().getMethod(), sideEffects);
+      for (Unit u : g) {
+        size += a.getFlowBefore(u).size() + a.getFlowAfter(u).size();
+      }
+    }
+    return size;
+  }
+
+  private static int readLiveLocals(UnitGraph g, LiveLocals live) {
+    int size = 0;
+    for (Unit u : g) {
+      size += live.getLiveLocalsBefore(u).size() + live.getLiveLocalsAfter(u).size();
+    }
+    return size;
+  }
+
+  /**
+   * The previous implementation of {@link InitAnalysis}.
+   */
+  private static class ReferenceInitAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    private final FlowSet<Local> allLocals = new ArraySparseSet<Local>();
+
+    ReferenceInitAnalysis(UnitGraph g) {
+      super(g);
+      for (Local l : g.getBody().getLocals()) {
+        allLocals.add(l);
+      }
+      doAnalysis();
+    }
+
+    @Override
+    protected FlowSet<Local> entryInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      FlowSet<Local> ret = new ArraySparseSet<Local>();
+      allLocals.copy(ret);
+      return ret;
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+      in.copy(out);
+      for (ValueBox box : unit.getDefBoxes()) {
+        if (box.getValue() instanceof Local) {
+          out.add((Local) box.getValue());
+        }
+      }
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.intersection(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+
+  /**
+   * The previous implementation of {@link GuaranteedDefs}.
+   */
+  private static class ReferenceGuaranteedDefsAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    private final Map<Unit, FlowSet<Local>> unitToGenerateSet = new HashMap<Unit, FlowSet<Local>>();
+
+    ReferenceGuaranteedDefsAnalysis(UnitGraph g) {
+      super(g);
+      MHGDominatorsFinder<Unit> df = new MHGDominatorsFinder<Unit>(g);
+      for (Unit s : g) {
+        FlowSet<Local> genSet = new ArraySparseSet<Local>();
+        for (Unit dom : df.getDominators(s)) {
+          for (ValueBox box : dom.getDefBoxes()) {
+            if (box.getValue() instanceof Local) {
+              genSet.add((Local) box.getValue());
+            }
+          }
+        }
+        unitToGenerateSet.put(s, genSet);
+      }
+      doAnalysis();
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+      in.union(unitToGenerateSet.get(unit), out);
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.intersection(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+
+  /**
+   * The previous implementation of {@link FastAvailableExpressionsAnalysis}.
+   */
+  private static class ReferenceAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Value>> {
+    private final SideEffectTester st;
+
+    ReferenceAvailableExpressionsAnalysis(UnitGraph g, SideEffectTester st) {
+      super(g);
+      this.st = st;
+      doAnalysis();
+    }
+
+    @Override
+    protected FlowSet<Value> newInitialFlow() {
+      ToppedSet<Value> top = new ToppedSet<Value>(new ArraySparseSet<Value>());
+      top.setTop(true);
+      return top;
+    }
+
+    @Override
+    protected FlowSet<Value> entryInitialFlow() {
+      return new ToppedSet<Value>(new ArraySparseSet<Value>());
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Value> in, Unit u, FlowSet<Value> out) {
+      in.copy(out);
+      if (((ToppedSet<Value>) in).isTop()) {
+        return;
+      }
+      if (u instanceof AssignStmt) {
+        Value gen = ((AssignStmt) u).getRightOp();
+        if ((gen instanceof Expr || gen instanceof FieldRef) && !(gen instanceof NewExpr || gen instanceof NewArrayExpr
+            || gen instanceof NewMultiArrayExpr || gen instanceof InvokeExpr)) {
+          out.add(gen);
+        }
+      }
+      for (Value avail : new LinkedList<Value>(out.toList())) {
+        if (avail instanceof FieldRef) {
+          if (st.unitCanWriteTo(u, avail)) {
+            out.remove(avail);
+          }
+        } else {
+          for (ValueBox vb : avail.getUseBoxes()) {
+            if (st.unitCanWriteTo(u, vb.getValue())) {
+              out.remove(avail);
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    protected void merge(FlowSet<Value> in1, FlowSet<Value> in2, FlowSet<Value> out) {
+      in1.intersection(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Value> source, FlowSet<Value> dest) {
+      source.copy(dest);
+    }
+  }
+}
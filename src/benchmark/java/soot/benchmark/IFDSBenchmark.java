@@ -0,0 +1,143 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.DefaultSeeds;
+import heros.IFDSTabulationProblem;
+import heros.InterproceduralCFG;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.toolkits.callgraph.CHATransformer;
+import soot.jimple.toolkits.ide.JimpleIFDSSolver;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSPossibleTypes;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSUninitializedVariables;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import soot.jimple.toolkits.ide.icfg.CompiledInterproceduralCFG;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Measures solving the example IFDS problems with a given number of solver threads and ICFG implementation, on a CHA call
+ * graph in which all concrete methods of the sample jar are entry points. The ICFG is built once per trial. Every entry
+ * point is also seeded, because the sample jar need not have a main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IFDSBenchmark {
+
+  @Param({ "reaching-definitions", "possible-types", "uninitialized-variables" })
+  public String problem;
+
+  @Param({ "1", "2", "4", "8", "16" })
+  public int threads;
+
+  @Param({ "jimple", "compiled" })
+  public String icfgImpl;
+
+  private BiDiInterproceduralCFG<Unit, SootMethod> icfg;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(true);
+    Scene.v().setEntryPoints(BenchmarkScene.concreteMethods());
+    CHATransformer.v().transform();
+    icfg = "compiled".equals(icfgImpl) ? new CompiledInterproceduralCFG() : new JimpleBasedInterproceduralCFG();
+  }
+
+  @Benchmark
+  public Object solve() {
+    JimpleIFDSSolver<?, InterproceduralCFG<Unit, SootMethod>> solver = newSolver(newProblem());
+    solver.solve();
+    return solver;
+  }
+
+  private <D> JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>> newSolver(
+      IFDSTabulationProblem<Unit, D, SootMethod, InterproceduralCFG<Unit, SootMethod>> problem) {
+    return new JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>>(problem, false, threads);
+  }
+
+  private IFDSTabulationProblem<Unit, ?, SootMethod, InterproceduralCFG<Unit, SootMethod>> newProblem() {
+    if ("reaching-definitions".equals(problem)) {
+      return new IFDSReachingDefinitions(icfg) {
+        @Override
+        public Map<Unit, Set<Pair<Value, Set<DefinitionStmt>>>> initialSeeds() {
+          return DefaultSeeds.make(startPoints(), zeroValue());
+        }
+      };
+    } else if ("possible-types".equals(problem)) {
+      return new IFDSPossibleTypes(icfg) {
+        @Override
+        public Map<Unit, Set<Pair<Value, Type>>> initialSeeds() {
+          return DefaultSeeds.make(startPoints(), zeroValue());
+        }
+      };
+    } else if ("uninitialized-variables".equals(problem)) {
+      return new IFDSUninitializedVariables(icfg) {
+        @Override
+        public Map<Unit, Set<Local>> initialSeeds() {
+          return DefaultSeeds.make(startPoints(), zeroValue());
+        }
+      };
+    }
+    throw new IllegalArgumentException("Unknown problem " + problem);
+  }
+
+  private List<Unit> startPoints() {
+    List<Unit> startPoints = new ArrayList<Unit>();
+    for (SootMethod m : Scene.v().getEntryPoints()) {
+      if (m.hasActiveBody()) {
+        startPoints.addAll(icfg.getStartPointsOf(m));
+      }
+    }
+    return startPoints;
+  }
+}
@@ -0,0 +1,78 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.PhaseOptions;
+import soot.PointsToAnalysis;
+import soot.Scene;
+import soot.jimple.spark.SparkTransformer;
+
+/**
+ * Measures building the pointer assignment graph and propagating points-to sets with Spark, for each points-to set
+ * implementation. All concrete methods of the sample jar are entry points, library classes are not analyzed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SparkBenchmark {
+
+  @Param({ "hash", "bit", "hybrid", "array", "heintze", "sharedlist", "double" })
+  public String setImpl;
+
+  private Map<String, String> options;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(true);
+    Scene.v().setEntryPoints(BenchmarkScene.concreteMethods());
+    options = new HashMap<String, String>(PhaseOptions.v().getPhaseOptions("cg.spark"));
+    options.put("enabled", "true");
+    options.put("set-impl", setImpl);
+  }
+
+  @Benchmark
+  public PointsToAnalysis spark() {
+    SparkTransformer.v().transform("cg.spark", options);
+    return Scene.v().getPointsToAnalysis();
+  }
+}
@@ -0,0 +1,112 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.AnySubType;
+import soot.FastHierarchy;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.toolkits.exceptions.ThrowableSet;
+
+/**
+ * Measures the {@link ThrowableSet} operations that the exceptional unit graph relies on, with all throwable types
+ * known to the {@link Scene} after loading the sample jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThrowableSetBenchmark {
+
+  private List<RefType> throwables;
+  private ThrowableSet.Manager mgr;
+  private ThrowableSet all;
+  private ThrowableSet allSubtypes;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(false);
+    FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+    RefType throwable = RefType.v("java.lang.Throwable");
+    throwables = new ArrayList<RefType>();
+    for (SootClass sc : Scene.v().getClasses()) {
+      if (sc.resolvingLevel() >= SootClass.HIERARCHY && !sc.isPhantom() && fh.canStoreType(sc.getType(), throwable)) {
+        throwables.add(sc.getType());
+      }
+    }
+    mgr = ThrowableSet.Manager.v();
+    all = add();
+    allSubtypes = mgr.EMPTY.add(AnySubType.v(throwable));
+  }
+
+  @Benchmark
+  public ThrowableSet add() {
+    ThrowableSet s = mgr.EMPTY;
+    for (RefType t : throwables) {
+      s = s.add(t);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public void whichCatchableAs(Blackhole bh) {
+    for (RefType t : throwables) {
+      bh.consume(allSubtypes.whichCatchableAs(t));
+      bh.consume(all.whichCatchableAs(t));
+    }
+  }
+
+  @Benchmark
+  public int catchableAs() {
+    int count = 0;
+    for (RefType t : throwables) {
+      if (all.catchableAs(t)) {
+        count++;
+      }
+      if (allSubtypes.catchableAs(t)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
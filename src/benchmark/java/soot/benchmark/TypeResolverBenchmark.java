@@ -0,0 +1,82 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Body;
+import soot.jimple.JimpleBody;
+import soot.jimple.toolkits.typing.fast.TypeResolver;
+
+/**
+ * Measures type inference with the fast {@link TypeResolver}. Every invocation types fresh copies of the bodies, since
+ * the type resolver modifies the body it works on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeResolverBenchmark {
+
+  private List<Body> bodies;
+  private List<JimpleBody> copies;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(false);
+    bodies = BenchmarkScene.bodies();
+  }
+
+  @Setup(Level.Invocation)
+  public void copyBodies() {
+    copies = new ArrayList<JimpleBody>(bodies.size());
+    for (Body b : bodies) {
+      copies.add((JimpleBody) b.clone());
+    }
+  }
+
+  @Benchmark
+  public List<JimpleBody> inferTypes() {
+    for (JimpleBody b : copies) {
+      new TypeResolver(b).inferTypes();
+    }
+    return copies;
+  }
+}
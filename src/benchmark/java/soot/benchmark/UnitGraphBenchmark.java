@@ -0,0 +1,96 @@
+package soot.benchmark;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.Body;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.SimpleLocalDefs;
+import soot.toolkits.scalar.SimpleLocalUses;
+
+/**
+ * Measures building {@link ExceptionalUnitGraph}s and computing {@link SimpleLocalDefs} and {@link SimpleLocalUses} on
+ * them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnitGraphBenchmark {
+
+  private List<Body> bodies;
+  private List<ExceptionalUnitGraph> graphs;
+  private List<SimpleLocalDefs> localDefs;
+
+  @Setup
+  public void setUp() {
+    BenchmarkScene.load(false);
+    bodies = BenchmarkScene.bodies();
+    graphs = new ArrayList<ExceptionalUnitGraph>(bodies.size());
+    localDefs = new ArrayList<SimpleLocalDefs>(bodies.size());
+    for (Body b : bodies) {
+      ExceptionalUnitGraph g = new ExceptionalUnitGraph(b);
+      graphs.add(g);
+      localDefs.add(new SimpleLocalDefs(g));
+    }
+  }
+
+  @Benchmark
+  public void exceptionalUnitGraph(Blackhole bh) {
+    for (Body b : bodies) {
+      bh.consume(new ExceptionalUnitGraph(b));
+    }
+  }
+
+  @Benchmark
+  public void simpleLocalDefs(Blackhole bh) {
+    for (ExceptionalUnitGraph g : graphs) {
+      bh.consume(new SimpleLocalDefs(g));
+    }
+  }
+
+  @Benchmark
+  public void simpleLocalUses(Blackhole bh) {
+    for (int i = 0; i < graphs.size(); i++) {
+      bh.consume(new SimpleLocalUses(graphs.get(i), localDefs.get(i)));
+    }
+  }
+}
@@ -190,6 +190,19 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-weak-map-structures");
         }
   
+        public void setbody_pack_scheduler(String arg) {
+            if(false
+    
+                || arg.equals( "class" )
+                || arg.equals( "method" )
+                ) {
+                addArg("-body-pack-scheduler");
+                addArg(arg);
+            } else {
+                throw new BuildException("Bad value "+arg+" for option body_pack_scheduler");
+            }
+        }
+  
         public void setsoot_classpath(String arg) {
             addArg("-soot-classpath");
             addArg(arg);
@@ -270,6 +283,10 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-full-resolver");
         }
   
+        public void setparallel_resolver(boolean arg) {
+            if(arg) addArg("-parallel-resolver");
+        }
+  
         public void setallow_phantom_refs(boolean arg) {
             if(arg) addArg("-allow-phantom-refs");
         }
@@ -303,6 +320,24 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-drop-bodies-after-load");
         }
   
+        public void setasm_streaming(boolean arg) {
+            if(arg) addArg("-asm-streaming");
+        }
+  
+        public void setbody_cache_dir(String arg) {
+            addArg("-body-cache-dir");
+            addArg(arg);
+        }
+  
+        public void setindex_classpath(boolean arg) {
+            if(arg) addArg("-index-classpath");
+        }
+  
+        public void setclasspath_index_dir(String arg) {
+            addArg("-classpath-index-dir");
+            addArg(arg);
+        }
+  
         public void setoutput_dir(String arg) {
             addArg("-output-dir");
             addArg(arg);
@@ -383,6 +418,14 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-output-jar");
         }
   
+        public void setstreaming_output(boolean arg) {
+            if(arg) addArg("-streaming-output");
+        }
+  
+        public void setparallel_dex(boolean arg) {
+            if(arg) addArg("-parallel-dex");
+        }
+  
         public void sethierarchy_dirs(boolean arg) {
             if(arg) addArg("-hierarchy-dirs");
         }
@@ -529,6 +572,10 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-omit-excepting-unit-edges");
         }
   
+        public void setcompact_unit_graphs(boolean arg) {
+            if(arg) addArg("-compact-unit-graphs");
+        }
+  
         public void settrim_cfgs(boolean arg) {
             if(arg) addArg("-trim-cfgs");
         }
@@ -641,6 +688,24 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-subtract-gc");
         }
   
+        public void setphase_metrics(String arg) {
+            addArg("-phase-metrics");
+            addArg(arg);
+        }
+  
+        public void setphase_metrics_format(String arg) {
+            if(false
+    
+                || arg.equals( "json" )
+                || arg.equals( "csv" )
+                ) {
+                addArg("-phase-metrics-format");
+                addArg(arg);
+            } else {
+                throw new BuildException("Bad value "+arg+" for option phase_metrics_format");
+            }
+        }
+  
         public void setno_writeout_body_releasing(boolean arg) {
             if(arg) addArg("-no-writeout-body-releasing");
         }
@@ -1336,6 +1401,12 @@ public class AntTask extends MatchingTask {
             addArg("resolve-all-abstract-invokes:"+(arg?"true":"false"));
           }
       
+          public void setcompact(boolean arg) {
+            addArg("-p");
+            addArg("cg");
+            addArg("compact:"+(arg?"true":"false"));
+          }
+      
           public void setlibrary(String arg) {
             addArg("-p");
             addArg("cg");
@@ -1510,6 +1581,12 @@ public class AntTask extends MatchingTask {
             addArg("ignore-types-for-sccs:"+(arg?"true":"false"));
           }
       
+          public void setincremental(boolean arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("incremental:"+(arg?"true":"false"));
+          }
+      
           public void setdump_html(boolean arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1624,6 +1701,18 @@ public class AntTask extends MatchingTask {
             addArg("double-set-new:"+arg);
           }
       
+          public void setoffheap_dir(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("offheap-dir:"+arg);
+          }
+      
+          public void setheap_budget(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("heap-budget:"+arg);
+          }
+      
           public void settraversal(String arg) {
             addArg("-p");
             addArg("cg.spark");
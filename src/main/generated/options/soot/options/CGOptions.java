@@ -183,6 +183,24 @@ public class CGOptions {
         return soot.PhaseOptions.getBoolean(options, "resolve-all-abstract-invokes");
     }
 
+    /**
+     * Compact Call Graph --
+     * Stores the call graph in compact arrays once it is built.
+     *
+     * When this option is set, the call graph is frozen after it has 
+     * been built and trimmed. The frozen call graph stores its edges 
+     * in compressed sparse row arrays indexed by the numbers of the 
+     * source methods, source statements and target methods, instead of 
+     * in hash maps and linked lists. Queries return equal edges in the 
+     * same order as before, creating the edge objects on demand. If 
+     * the call graph is modified later on, it is converted back to the 
+     * regular representation. Call graphs with context-sensitive edges 
+     * are not frozen.
+     */
+    public boolean compact() {
+        return soot.PhaseOptions.getBoolean(options, "compact");
+    }
+
     /**
      * JDK version --
      * JDK version for native methods.
@@ -42,6 +42,8 @@ public class Options extends OptionsBase {
         return G.v().soot_options_Options();
     }
 
+    public static final int body_pack_scheduler_class = 1;
+    public static final int body_pack_scheduler_method = 2;
     public static final int src_prec_c = 1;
     public static final int src_prec_class = 1;
     public static final int src_prec_only_class = 2;
@@ -114,6 +116,8 @@ public class Options extends OptionsBase {
     public static final int check_init_throw_analysis_pedantic = 2;
     public static final int check_init_throw_analysis_unit = 3;
     public static final int check_init_throw_analysis_dalvik = 4;
+    public static final int phase_metrics_format_json = 1;
+    public static final int phase_metrics_format_csv = 2;
 
     @SuppressWarnings("unused")
     public boolean parse(String[] argv) {
@@ -224,6 +228,72 @@ public class Options extends OptionsBase {
                     || option.equals("weak-map-structures")
             )
                 weak_map_structures = true;
+            else if (false
+                || option.equals("num-threads")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(num_threads == -1)
+                    num_threads = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + num_threads + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                    || option.equals("body-pack-scheduler")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+        
+                if (false);
+                else if (false
+                        || value.equals("class")
+                ) {
+                    if (body_pack_scheduler != 0 && body_pack_scheduler != body_pack_scheduler_class) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    body_pack_scheduler = body_pack_scheduler_class;
+                }
+                else if (false
+                        || value.equals("method")
+                ) {
+                    if (body_pack_scheduler != 0 && body_pack_scheduler != body_pack_scheduler_method) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    body_pack_scheduler = body_pack_scheduler_method;
+                }
+                else {
+                    G.v().out.println(String.format("Invalid value %s given for option -%s", option, value));
+                    return false;
+                }
+            }
+            else if (false
+                || option.equals("body-analysis-cache-size")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(body_analysis_cache_size == -1)
+                    body_analysis_cache_size = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + body_analysis_cache_size + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("cp")
                     || option.equals("soot-class-path")
@@ -423,6 +493,10 @@ public class Options extends OptionsBase {
                     || option.equals("full-resolver")
             )
                 full_resolver = true;
+            else if (false
+                    || option.equals("parallel-resolver")
+            )
+                parallel_resolver = true;
             else if (false
                     || option.equals("allow-phantom-refs")
             )
@@ -467,6 +541,62 @@ public class Options extends OptionsBase {
                     || option.equals("no-drop-bodies-after-load")
             )
                 drop_bodies_after_load = false;
+            else if (false
+                    || option.equals("asm-streaming")
+            )
+                asm_streaming = true;
+            else if (false
+                    || option.equals("body-cache-dir")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (body_cache_dir.isEmpty())
+                    body_cache_dir = value;
+                else {
+                    G.v().out.println("Duplicate values " + body_cache_dir + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                || option.equals("body-residency-budget")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(body_residency_budget == -1)
+                    body_residency_budget = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + body_residency_budget + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                    || option.equals("index-classpath")
+            )
+                index_classpath = true;
+            else if (false
+                    || option.equals("classpath-index-dir")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (classpath_index_dir.isEmpty())
+                    classpath_index_dir = value;
+                else {
+                    G.v().out.println("Duplicate values " + classpath_index_dir + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("d")
                     || option.equals("output-dir")
@@ -787,6 +917,30 @@ public class Options extends OptionsBase {
                     || option.equals("output-jar")
             )
                 output_jar = true;
+            else if (false
+                    || option.equals("streaming-output")
+            )
+                streaming_output = true;
+            else if (false
+                || option.equals("streaming-output-depth")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(streaming_output_depth == -1)
+                    streaming_output_depth = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + streaming_output_depth + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                    || option.equals("parallel-dex")
+            )
+                parallel_dex = true;
             else if (false
                     || option.equals("hierarchy-dirs")
             )
@@ -1121,6 +1275,10 @@ public class Options extends OptionsBase {
                     || option.equals("omit-excepting-unit-edges")
             )
                 omit_excepting_unit_edges = true;
+            else if (false
+                    || option.equals("compact-unit-graphs")
+            )
+                compact_unit_graphs = true;
             else if (false
                 || option.equals("trim-cfgs")
             ) {
@@ -1284,6 +1442,56 @@ public class Options extends OptionsBase {
                     || option.equals("subtract-gc")
             )
                 subtract_gc = true;
+            else if (false
+                    || option.equals("phase-metrics")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (phase_metrics.isEmpty())
+                    phase_metrics = value;
+                else {
+                    G.v().out.println("Duplicate values " + phase_metrics + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                    || option.equals("phase-metrics-format")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+        
+                if (false);
+                else if (false
+                        || value.equals("json")
+                ) {
+                    if (phase_metrics_format != 0 && phase_metrics_format != phase_metrics_format_json) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    phase_metrics_format = phase_metrics_format_json;
+                }
+                else if (false
+                        || value.equals("csv")
+                ) {
+                    if (phase_metrics_format != 0 && phase_metrics_format != phase_metrics_format_csv) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    phase_metrics_format = phase_metrics_format_csv;
+                }
+                else {
+                    G.v().out.println(String.format("Invalid value %s given for option -%s", option, value));
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("no-writeout-body-releasing")
             )
@@ -1387,6 +1595,21 @@ public class Options extends OptionsBase {
     private boolean weak_map_structures = false;
     public void set_weak_map_structures(boolean setting) { weak_map_structures = setting; }
 
+    public int num_threads() { return num_threads; }
+    public void set_num_threads(int setting) { num_threads = setting; }
+    private int num_threads = -1;
+
+    public int body_pack_scheduler() {
+        if (body_pack_scheduler == 0) return body_pack_scheduler_class;
+        return body_pack_scheduler; 
+    }
+    public void set_body_pack_scheduler(int setting) { body_pack_scheduler = setting; }
+    private int body_pack_scheduler = 0;
+
+    public int body_analysis_cache_size() { return body_analysis_cache_size; }
+    public void set_body_analysis_cache_size(int setting) { body_analysis_cache_size = setting; }
+    private int body_analysis_cache_size = -1;
+
     public String soot_classpath() { return soot_classpath; }
     public void set_soot_classpath(String setting) { soot_classpath = setting; }
     private String soot_classpath = "";
@@ -1448,6 +1671,10 @@ public class Options extends OptionsBase {
     private boolean full_resolver = false;
     public void set_full_resolver(boolean setting) { full_resolver = setting; }
 
+    public boolean parallel_resolver() { return parallel_resolver; }
+    private boolean parallel_resolver = false;
+    public void set_parallel_resolver(boolean setting) { parallel_resolver = setting; }
+
     public boolean allow_phantom_refs() { return allow_phantom_refs; }
     private boolean allow_phantom_refs = false;
     public void set_allow_phantom_refs(boolean setting) { allow_phantom_refs = setting; }
@@ -1480,6 +1707,26 @@ public class Options extends OptionsBase {
     private boolean drop_bodies_after_load = true;
     public void set_drop_bodies_after_load(boolean setting) { drop_bodies_after_load = setting; }
 
+    public boolean asm_streaming() { return asm_streaming; }
+    private boolean asm_streaming = false;
+    public void set_asm_streaming(boolean setting) { asm_streaming = setting; }
+
+    public String body_cache_dir() { return body_cache_dir; }
+    public void set_body_cache_dir(String setting) { body_cache_dir = setting; }
+    private String body_cache_dir = "";
+
+    public int body_residency_budget() { return body_residency_budget; }
+    public void set_body_residency_budget(int setting) { body_residency_budget = setting; }
+    private int body_residency_budget = -1;
+
+    public boolean index_classpath() { return index_classpath; }
+    private boolean index_classpath = false;
+    public void set_index_classpath(boolean setting) { index_classpath = setting; }
+
+    public String classpath_index_dir() { return classpath_index_dir; }
+    public void set_classpath_index_dir(String setting) { classpath_index_dir = setting; }
+    private String classpath_index_dir = "";
+
     public String output_dir() { return output_dir; }
     public void set_output_dir(String setting) { output_dir = setting; }
     private String output_dir = "";
@@ -1501,6 +1748,18 @@ public class Options extends OptionsBase {
     private boolean output_jar = false;
     public void set_output_jar(boolean setting) { output_jar = setting; }
 
+    public boolean streaming_output() { return streaming_output; }
+    private boolean streaming_output = false;
+    public void set_streaming_output(boolean setting) { streaming_output = setting; }
+
+    public int streaming_output_depth() { return streaming_output_depth; }
+    public void set_streaming_output_depth(int setting) { streaming_output_depth = setting; }
+    private int streaming_output_depth = -1;
+
+    public boolean parallel_dex() { return parallel_dex; }
+    private boolean parallel_dex = false;
+    public void set_parallel_dex(boolean setting) { parallel_dex = setting; }
+
     public boolean hierarchy_dirs() { return hierarchy_dirs; }
     private boolean hierarchy_dirs = false;
     public void set_hierarchy_dirs(boolean setting) { hierarchy_dirs = setting; }
@@ -1591,6 +1850,10 @@ public class Options extends OptionsBase {
     private boolean omit_excepting_unit_edges = false;
     public void set_omit_excepting_unit_edges(boolean setting) { omit_excepting_unit_edges = setting; }
 
+    public boolean compact_unit_graphs() { return compact_unit_graphs; }
+    private boolean compact_unit_graphs = false;
+    public void set_compact_unit_graphs(boolean setting) { compact_unit_graphs = setting; }
+
     public boolean ignore_resolution_errors() { return ignore_resolution_errors; }
     private boolean ignore_resolution_errors = false;
     public void set_ignore_resolution_errors(boolean setting) { ignore_resolution_errors = setting; }
@@ -1649,6 +1912,17 @@ public class Options extends OptionsBase {
     private boolean subtract_gc = false;
     public void set_subtract_gc(boolean setting) { subtract_gc = setting; }
 
+    public String phase_metrics() { return phase_metrics; }
+    public void set_phase_metrics(String setting) { phase_metrics = setting; }
+    private String phase_metrics = "";
+
+    public int phase_metrics_format() {
+        if (phase_metrics_format == 0) return phase_metrics_format_json;
+        return phase_metrics_format; 
+    }
+    public void set_phase_metrics_format(int setting) { phase_metrics_format = setting; }
+    private int phase_metrics_format = 0;
+
     public boolean no_writeout_body_releasing() { return no_writeout_body_releasing; }
     private boolean no_writeout_body_releasing = false;
     public void set_no_writeout_body_releasing(boolean setting) { no_writeout_body_releasing = setting; }
@@ -1674,6 +1948,9 @@ public class Options extends OptionsBase {
                 + padOpt("-debug-resolver", "Print debugging info from SootResolver")
                 + padOpt("-ignore-resolving-levels", "Ignore mismatching resolving levels")
                 + padOpt("-weak-map-structures", "Use weak references in Scene to prevent memory leakage when removing many classes/methods/locals")
+                + padOpt("-body-pack-scheduler ARG", "Run the body packs in parallel per ARG")
+                    + padVal("class (default)", "Run the body packs of each class in one task")
+                    + padVal("method", "Run the body packs of each method in one task, largest bodies first")
                 + "\nInput Options:\n"
                 + padOpt("-cp ARG -soot-class-path ARG -soot-classpath ARG", "Use ARG as the classpath for finding classes.")
                 + padOpt("-soot-modulepath ARG", "Use ARG as the modulepath for finding classes.")
@@ -1694,6 +1971,7 @@ public class Options extends OptionsBase {
                     + padVal("apk", "Favour APK files as Soot source")
                     + padVal("apk-class-jimple apk-c-j", "Favour APK files as Soot source, disregard Java files")
                 + padOpt("-full-resolver", "Force transitive resolving of referenced classes")
+                + padOpt("-parallel-resolver", "Locate and read class sources on a pool of worker threads")
                 + padOpt("-allow-phantom-refs", "Allow unresolved classes; may cause errors")
                 + padOpt("-allow-phantom-elms", "Allow phantom methods and fields in non-phantom classes")
                 + padOpt("-no-bodies-for-excluded", "Do not load bodies for excluded classes")
@@ -1702,6 +1980,10 @@ public class Options extends OptionsBase {
                 + padOpt("-polyglot", "Use Java 1.4 Polyglot frontend instead of JastAdd")
                 + padOpt("-permissive-resolving", "Use alternative sources when classes cannot be found using the normal resolving strategy")
                 + padOpt("-drop-bodies-after-load", "Drop the method source after it has served its purpose of loading the method body")
+                + padOpt("-asm-streaming", "Record the code of methods in class files in a compact stream instead of a tree")
+                + padOpt("-body-cache-dir ARG", "Cache method bodies created by the jb pack in ARG")
+                + padOpt("-index-classpath", "Look up classes in archives through a memory-mapped index")
+                + padOpt("-classpath-index-dir ARG", "Persist the indices of class path archives in ARG")
                 + "\nOutput Options:\n"
                 + padOpt("-d ARG -output-dir ARG", "Store output files in ARG")
                 + padOpt("-f ARG -output-format ARG", "Set output format for Soot")
@@ -1734,6 +2016,8 @@ public class Options extends OptionsBase {
                     + padVal("1.8 8", "Force Java 1.8 as output version.")
                     + padVal("1.9 9", "Force Java 1.9 as output version (Experimental).")
                 + padOpt("-outjar, -output-jar", "Make output dir a Jar file instead of dir")
+                + padOpt("-streaming-output", "Write each class as soon as its body packs are done")
+                + padOpt("-parallel-dex", "Build and write dex files in parallel")
                 + padOpt("-hierarchy-dirs", "Generate class hierarchy directories for Jimple/Shimple")
                 + padOpt("-xml-attributes", "Save tags to XML attributes for Eclipse")
                 + padOpt("-print-tags, -print-tags-in-output", "Print tags in output files after stmt")
@@ -1770,6 +2054,7 @@ public class Options extends OptionsBase {
                     + padVal("unit", "Unit Throw Analysis")
                     + padVal("dalvik", "Dalvik Throw Analysis")
                 + padOpt("-omit-excepting-unit-edges", "Omit CFG edges to handlers from excepting units which lack side effects")
+                + padOpt("-compact-unit-graphs", "Store exceptional unit graphs in compact array form")
                 + padOpt("-trim-cfgs", "Trim unrealizable exceptional edges from CFGs")
                 + padOpt("-ire, -ignore-resolution-errors", "Does not throw an exception when a program references an undeclared field or method.")
                 + "\nApplication Mode Options:\n"
@@ -1793,6 +2078,10 @@ public class Options extends OptionsBase {
                 + "\nMiscellaneous Options:\n"
                 + padOpt("-time", "Report time required for transformations")
                 + padOpt("-subtract-gc", "Subtract gc from time")
+                + padOpt("-phase-metrics ARG", "Write metrics of every executed phase to ARG")
+                + padOpt("-phase-metrics-format ARG", "Set the format of the phase metrics file")
+                    + padVal("json (default)", "Write the phase metrics as JSON")
+                    + padVal("csv", "Write the phase metrics as CSV")
                 + padOpt("-no-writeout-body-releasing", "Disables the release of method bodies after writeout. This flag is used internally.");
     }
 
@@ -2149,7 +2438,8 @@ public class Options extends OptionsBase {
                     + padOpt("reflection-log", "Uses a reflection log to resolve reflective calls.")
                     + padOpt("guards (ignore)", "Describes how to guard the program from unsound assumptions.")
                     + padOpt("types-for-invoke (false)", "Uses reaching types inferred by the pointer analysis to resolve reflective calls.")
-                    + padOpt("resolve-all-abstract-invokes (false)", "Causes methods invoked on abstract classes to be resolved even if there are no non-abstract children of the classes in the Scene.");
+                    + padOpt("resolve-all-abstract-invokes (false)", "Causes methods invoked on abstract classes to be resolved even if there are no non-abstract children of the classes in the Scene.")
+                    + padOpt("compact (false)", "Stores the call graph in compact arrays once it is built");
 
         if (phaseName.equals("cg.cha"))
             return "Phase " + phaseName + ":\n"
@@ -2185,10 +2475,12 @@ public class Options extends OptionsBase {
                     + padOpt("propagator", "Select propagation algorithm")
                         + padVal("iter", "Simple iterative algorithm")
                         + padVal("worklist (default)", "Fast, worklist-based algorithm")
+                        + padVal("parallel", "Worklist-based algorithm that uses multiple threads")
                         + padVal("cycle", "Unfinished on-the-fly cycle detection algorithm")
                         + padVal("merge", "Unfinished field reference merging algorithms")
                         + padVal("alias", "Alias-edge based algorithm")
                         + padVal("none", "Disable propagation")
+                    + padOpt("incremental (false)", "Update the previous solution when only method bodies changed")
                     + padOpt("set-impl", "Select points-to set implementation")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2196,6 +2488,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("offheap", "Hybrid representation with bit vectors outside of the Java heap")
                         + padVal("double (default)", "Double set representation for incremental propagation")
                     + padOpt("double-set-old", "Select implementation of points-to set for old part of double set")
                         + padVal("hash", "Use Java HashSet")
@@ -2204,6 +2497,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("offheap", "Hybrid representation with bit vectors outside of the Java heap")
                     + padOpt("double-set-new", "Select implementation of points-to set for new part of double set")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2211,6 +2505,9 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("offheap", "Hybrid representation with bit vectors outside of the Java heap")
+                    + padOpt("offheap-dir", "Map off-heap points-to sets from files in this directory")
+                    + padOpt("heap-budget (0)", "Trade precision for memory to stay within this many MB of heap")
                     + padOpt("dump-html (false)", "Dump pointer assignment graph to HTML for debugging")
                     + padOpt("dump-pag (false)", "Dump pointer assignment graph for other solvers")
                     + padOpt("dump-solution (false)", "Dump final solution for comparison with other solvers")
@@ -3064,7 +3361,8 @@ public class Options extends OptionsBase {
                     "reflection-log",
                     "guards",
                     "types-for-invoke",
-                    "resolve-all-abstract-invokes"
+                    "resolve-all-abstract-invokes",
+                    "compact"
             );
 
         if (phaseName.equals("cg.cha"))
@@ -3096,9 +3394,12 @@ public class Options extends OptionsBase {
                     "simplify-sccs",
                     "ignore-types-for-sccs",
                     "propagator",
+                    "incremental",
                     "set-impl",
                     "double-set-old",
                     "double-set-new",
+                    "offheap-dir",
+                    "heap-budget",
                     "dump-html",
                     "dump-pag",
                     "dump-solution",
@@ -3776,7 +4077,8 @@ public class Options extends OptionsBase {
                     + "trim-clinit:true "
                     + "guards:ignore "
                     + "types-for-invoke:false "
-                    + "resolve-all-abstract-invokes:false ";
+                    + "resolve-all-abstract-invokes:false "
+                    + "compact:false ";
 
         if (phaseName.equals("cg.cha"))
             return ""
@@ -3806,9 +4108,11 @@ public class Options extends OptionsBase {
                     + "simplify-sccs:false "
                     + "ignore-types-for-sccs:false "
                     + "propagator:worklist "
+                    + "incremental:false "
                     + "set-impl:double "
                     + "double-set-old:hybrid "
                     + "double-set-new:hybrid "
+                    + "heap-budget:0 "
                     + "dump-html:false "
                     + "dump-pag:false "
                     + "dump-solution:false "
@@ -276,6 +276,27 @@ public class SparkOptions {
         return soot.PhaseOptions.getBoolean(options, "ignore-types-for-sccs");
     }
 
+    /**
+     * Incremental --
+     * Update the previous solution when only method bodies changed.
+     *
+     * When this option is set to true and Spark runs again on a Scene 
+     * it has already analysed, only the methods whose bodies changed 
+     * since the previous run are processed again. Their part of the 
+     * pointer assignment graph and their call edges are replaced, and 
+     * points-to sets are recomputed only for the nodes that depended 
+     * on them. A full run is done instead whenever the class hierarchy 
+     * changed, or when the options are not supported by the 
+     * incremental update: it requires the context insensitive 
+     * on-the-fly call graph, without VTA, RTA, bidirectional simple 
+     * edges, reflection support through new instance nodes or the 
+     * geometric analysis. Methods that become unreachable through a 
+     * change are kept reachable.
+     */
+    public boolean incremental() {
+        return soot.PhaseOptions.getBoolean(options, "incremental");
+    }
+
     /**
      * Dump HTML --
      * Dump pointer assignment graph to HTML for debugging.
@@ -470,6 +491,28 @@ public class SparkOptions {
         return soot.PhaseOptions.getBoolean(options, "geom-app-only");
     }
 
+    /**
+     * Heap Budget --
+     * Trade precision for memory to stay within this many MB of heap.
+     *
+     * When this option is set to a positive number of megabytes, Spark 
+     * watches the heap while it builds the pointer assignment graph 
+     * and propagates points-to sets. If more heap than this is still 
+     * in use after a garbage collection, the analysis is restarted 
+     * with less precise settings, one step at a time: large points-to 
+     * sets are kept off the heap, string constants are merged into a 
+     * single node, instance fields are collapsed as with Field Based, 
+     * and objects are represented by their types as with Types For 
+     * Sites. Each step that is taken is reported as a warning. If the 
+     * budget is still exceeded with all steps taken, the analysis runs 
+     * to completion without a budget. The budget should be set 
+     * somewhat below the maximum heap size. The default, 0, disables 
+     * the budget.
+     */
+    public int heap_budget() {
+        return soot.PhaseOptions.getInt(options, "heap-budget");
+    }
+
     /**
      * Maximal traversal --
      * Make the analysis traverse at most this number of nodes per 
@@ -532,6 +575,19 @@ public class SparkOptions {
         return soot.PhaseOptions.getInt(options, "geom-runs");
     }
 
+    /**
+     * Off-heap Directory --
+     * Map off-heap points-to sets from files in this directory.
+     *
+     * When the off-heap set implementation is used, keep the bit 
+     * vectors in memory-mapped temporary files created in the given 
+     * directory, so that the operating system can page them out to 
+     * disk. If no directory is given, direct buffers are used instead.
+     */
+    public String offheap_dir() {
+        return soot.PhaseOptions.getString(options, "offheap-dir");
+    }
+
     /**
      * Verbose dump file --
      * Filename for detailed execution log.
@@ -560,10 +616,11 @@ public class SparkOptions {
 
     public static final int propagator_iter = 1;
     public static final int propagator_worklist = 2;
-    public static final int propagator_cycle = 3;
-    public static final int propagator_merge = 4;
-    public static final int propagator_alias = 5;
-    public static final int propagator_none = 6;
+    public static final int propagator_parallel = 3;
+    public static final int propagator_cycle = 4;
+    public static final int propagator_merge = 5;
+    public static final int propagator_alias = 6;
+    public static final int propagator_none = 7;
 
     /**
      * Propagator --
@@ -580,6 +637,8 @@ public class SparkOptions {
             return propagator_iter;
         if (s.equalsIgnoreCase("worklist"))
             return propagator_worklist;
+        if (s.equalsIgnoreCase("parallel"))
+            return propagator_parallel;
         if (s.equalsIgnoreCase("cycle"))
             return propagator_cycle;
         if (s.equalsIgnoreCase("merge"))
@@ -598,7 +657,8 @@ public class SparkOptions {
     public static final int set_impl_array = 4;
     public static final int set_impl_heintze = 5;
     public static final int set_impl_sharedlist = 6;
-    public static final int set_impl_double = 7;
+    public static final int set_impl_offheap = 7;
+    public static final int set_impl_double = 8;
 
     /**
      * Set Implementation --
@@ -623,6 +683,8 @@ public class SparkOptions {
             return set_impl_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return set_impl_sharedlist;
+        if (s.equalsIgnoreCase("offheap"))
+            return set_impl_offheap;
         if (s.equalsIgnoreCase("double"))
             return set_impl_double;
 
@@ -635,6 +697,7 @@ public class SparkOptions {
     public static final int double_set_old_array = 4;
     public static final int double_set_old_heintze = 5;
     public static final int double_set_old_sharedlist = 6;
+    public static final int double_set_old_offheap = 7;
 
     /**
      * Double Set Old --
@@ -662,6 +725,8 @@ public class SparkOptions {
             return double_set_old_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return double_set_old_sharedlist;
+        if (s.equalsIgnoreCase("offheap"))
+            return double_set_old_offheap;
 
         throw new RuntimeException(String.format("Invalid value %s of phase option double-set-old", s));
     }
@@ -672,6 +737,7 @@ public class SparkOptions {
     public static final int double_set_new_array = 4;
     public static final int double_set_new_heintze = 5;
     public static final int double_set_new_sharedlist = 6;
+    public static final int double_set_new_offheap = 7;
 
     /**
      * Double Set New --
@@ -699,6 +765,8 @@ public class SparkOptions {
             return double_set_new_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return double_set_new_sharedlist;
+        if (s.equalsIgnoreCase("offheap"))
+            return double_set_new_offheap;
 
         throw new RuntimeException(String.format("Invalid value %s of phase option double-set-new", s));
     }
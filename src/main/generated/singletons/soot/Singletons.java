@@ -1420,6 +1420,20 @@ public class Singletons {
     	instance_soot_Timers = null;
     }
 
+    private soot.PhaseMetrics instance_soot_PhaseMetrics;
+    public soot.PhaseMetrics soot_PhaseMetrics() {
+        if (instance_soot_PhaseMetrics == null) {
+	       	synchronized (this) {
+		        if (instance_soot_PhaseMetrics == null)
+	        		instance_soot_PhaseMetrics = new soot.PhaseMetrics(g);
+	       	}
+       	}
+        return instance_soot_PhaseMetrics;
+    }
+    protected void release_soot_PhaseMetrics() {
+    	instance_soot_PhaseMetrics = null;
+    }
+
     private soot.dava.toolkits.base.AST.TryContentsFinder instance_soot_dava_toolkits_base_AST_TryContentsFinder;
     public soot.dava.toolkits.base.AST.TryContentsFinder soot_dava_toolkits_base_AST_TryContentsFinder() {
         if (instance_soot_dava_toolkits_base_AST_TryContentsFinder == null) {
@@ -2400,6 +2414,20 @@ public class Singletons {
     	instance_soot_toolkits_scalar_SmartLocalDefsPool = null;
     }
 
+    private soot.toolkits.scalar.BodyAnalysisCache instance_soot_toolkits_scalar_BodyAnalysisCache;
+    public soot.toolkits.scalar.BodyAnalysisCache soot_toolkits_scalar_BodyAnalysisCache() {
+        if (instance_soot_toolkits_scalar_BodyAnalysisCache == null) {
+	       	synchronized (this) {
+		        if (instance_soot_toolkits_scalar_BodyAnalysisCache == null)
+	        		instance_soot_toolkits_scalar_BodyAnalysisCache = new soot.toolkits.scalar.BodyAnalysisCache(g);
+	       	}
+       	}
+        return instance_soot_toolkits_scalar_BodyAnalysisCache;
+    }
+    protected void release_soot_toolkits_scalar_BodyAnalysisCache() {
+    	instance_soot_toolkits_scalar_BodyAnalysisCache = null;
+    }
+
     private soot.jimple.spark.internal.PublicAndProtectedAccessibility instance_soot_jimple_spark_internal_PublicAndProtectedAccessibility;
     public soot.jimple.spark.internal.PublicAndProtectedAccessibility soot_jimple_spark_internal_PublicAndProtectedAccessibility() {
         if (instance_soot_jimple_spark_internal_PublicAndProtectedAccessibility == null) {
@@ -2497,4 +2525,32 @@ public class Singletons {
     protected void release_soot_jbco_jimpleTransformations_FieldRenamer() {
     	instance_soot_jbco_jimpleTransformations_FieldRenamer = null;
     }
+
+    private soot.BodyCache instance_soot_BodyCache;
+    public soot.BodyCache soot_BodyCache() {
+        if (instance_soot_BodyCache == null) {
+	       	synchronized (this) {
+		        if (instance_soot_BodyCache == null)
+	        		instance_soot_BodyCache = new soot.BodyCache(g);
+	       	}
+       	}
+        return instance_soot_BodyCache;
+    }
+    protected void release_soot_BodyCache() {
+    	instance_soot_BodyCache = null;
+    }
+
+    private soot.BodyResidencyManager instance_soot_BodyResidencyManager;
+    public soot.BodyResidencyManager soot_BodyResidencyManager() {
+        if (instance_soot_BodyResidencyManager == null) {
+	       	synchronized (this) {
+		        if (instance_soot_BodyResidencyManager == null)
+	        		instance_soot_BodyResidencyManager = new soot.BodyResidencyManager(g);
+	       	}
+       	}
+        return instance_soot_BodyResidencyManager;
+    }
+    protected void release_soot_BodyResidencyManager() {
+    	instance_soot_BodyResidencyManager = null;
+    }
 }
\ No newline at end of file
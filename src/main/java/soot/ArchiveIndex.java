@@ -0,0 +1,407 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An index over the entries of a jar or zip file. The index is built from the central directory of the archive, which
+ * is read through a memory-mapped buffer. Entries are read from the same buffer, without copying for uncompressed
+ * entries.
+ *
+ * <p>
+ * ZIP64 archives and archives larger than 2GB are not supported; {@link #build(File)} throws an {@link IOException} for
+ * them so that callers can fall back to {@link java.util.zip.ZipFile}.
+ * </p>
+ */
+public class ArchiveIndex {
+
+  /** Changes whenever the format of persisted indices changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int MAGIC = 0x53434958;
+
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+  private static final int LOCAL_FILE_HEADER = 0x04034b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final File archive;
+  private final long archiveLength;
+  private final long archiveLastModified;
+
+  private final List<String> names;
+  private final Map<String, Integer> slots;
+  private final int[] headerOffsets;
+  private final int[] compressedSizes;
+  private final int[] sizes;
+  private final short[] methods;
+
+  private volatile ByteBuffer buffer;
+
+  private ArchiveIndex(File archive, long archiveLength, long archiveLastModified, int entryCount) {
+    this.archive = archive;
+    this.archiveLength = archiveLength;
+    this.archiveLastModified = archiveLastModified;
+    this.names = new ArrayList<String>(entryCount);
+    this.slots = new HashMap<String, Integer>(entryCount * 4 / 3 + 1);
+    this.headerOffsets = new int[entryCount];
+    this.compressedSizes = new int[entryCount];
+    this.sizes = new int[entryCount];
+    this.methods = new short[entryCount];
+  }
+
+  /**
+   * Builds the index for the given archive by reading its central directory.
+   *
+   * @param archive
+   *          the jar or zip file to index
+   * @return the index
+   * @throws IOException
+   *           if the archive cannot be read or has a format that is not supported
+   */
+  public static ArchiveIndex build(File archive) throws IOException {
+    long lastModified = archive.lastModified();
+    ByteBuffer buf = map(archive);
+    int eocd = findEndOfCentralDirectory(buf);
+    if (eocd < 0) {
+      throw new IOException("No end of central directory record found in " + archive);
+    }
+    // The counts and offsets of the end record are only placeholders if a ZIP64 end record precedes it
+    if (eocd >= ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE
+        && buf.getInt(eocd - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+      throw new IOException("ZIP64 archives are not supported: " + archive);
+    }
+    int entryCount = buf.getShort(eocd + 10) & 0xffff;
+    long directoryOffset = buf.getInt(eocd + 16) & 0xffffffffL;
+    if (directoryOffset > eocd) {
+      throw new IOException("Malformed end of central directory record in " + archive);
+    }
+
+    ArchiveIndex index = new ArchiveIndex(archive, buf.capacity(), lastModified, entryCount);
+    int pos = (int) directoryOffset;
+    for (int i = 0; i < entryCount; i++) {
+      if (pos + CENTRAL_DIRECTORY_HEADER_SIZE > buf.limit() || buf.getInt(pos) != CENTRAL_DIRECTORY_HEADER) {
+        throw new IOException("Malformed central directory in " + archive);
+      }
+      int method = buf.getShort(pos + 10) & 0xffff;
+      long compressedSize = buf.getInt(pos + 20) & 0xffffffffL;
+      long size = buf.getInt(pos + 24) & 0xffffffffL;
+      int nameLength = buf.getShort(pos + 28) & 0xffff;
+      int extraLength = buf.getShort(pos + 30) & 0xffff;
+      int commentLength = buf.getShort(pos + 32) & 0xffff;
+      long headerOffset = buf.getInt(pos + 42) & 0xffffffffL;
+      if (compressedSize == 0xffffffffL || size == 0xffffffffL || headerOffset == 0xffffffffL) {
+        throw new IOException("ZIP64 archives are not supported: " + archive);
+      }
+      if (pos + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength > buf.limit()) {
+        throw new IOException("Malformed central directory in " + archive);
+      }
+      byte[] name = new byte[nameLength];
+      ByteBuffer nameBuf = buf.duplicate();
+      nameBuf.position(pos + CENTRAL_DIRECTORY_HEADER_SIZE);
+      nameBuf.get(name);
+      index.add(new String(name, StandardCharsets.UTF_8), (int) headerOffset, (int) compressedSize, (int) size,
+          (short) method);
+      pos += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    index.buffer = buf;
+    return index;
+  }
+
+  /**
+   * Reads an index that has previously been written with {@link #write(File)}.
+   *
+   * @param archive
+   *          the archive the index belongs to
+   * @param indexFile
+   *          the file to read the index from
+   * @return the index, or <code>null</code> if the index file does not exist or does not match the current state of the
+   *         archive
+   * @throws IOException
+   *           if the index file cannot be read
+   */
+  public static ArchiveIndex read(File archive, File indexFile) throws IOException {
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile.toPath()))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      if (!in.readUTF().equals(archive.getPath()) || in.readLong() != archive.length()
+          || in.readLong() != archive.lastModified()) {
+        return null;
+      }
+      int entryCount = in.readInt();
+      ArchiveIndex index = new ArchiveIndex(archive, archive.length(), archive.lastModified(), entryCount);
+      for (int i = 0; i < entryCount; i++) {
+        index.add(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readShort());
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Writes this index to the given file, such that it can be reused by {@link #read(File, File)} in later runs.
+   *
+   * @param indexFile
+   *          the file to write the index to
+   * @throws IOException
+   *           if the index file cannot be written
+   */
+  public void write(File indexFile) throws IOException {
+    File dir = indexFile.getAbsoluteFile().getParentFile();
+    dir.mkdirs();
+    Path tmp = Files.createTempFile(dir.toPath(), indexFile.getName(), ".tmp");
+    try (OutputStream os = Files.newOutputStream(tmp); DataOutputStream out = new DataOutputStream(os)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(archive.getPath());
+      out.writeLong(archiveLength);
+      out.writeLong(archiveLastModified);
+      out.writeInt(names.size());
+      for (int i = 0; i < names.size(); i++) {
+        out.writeUTF(names.get(i));
+        out.writeInt(headerOffsets[i]);
+        out.writeInt(compressedSizes[i]);
+        out.writeInt(sizes[i]);
+        out.writeShort(methods[i]);
+      }
+    }
+    try {
+      Files.move(tmp, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  public File getArchive() {
+    return archive;
+  }
+
+  /**
+   * Returns the names of all entries in the archive in the order of the central directory.
+   */
+  public List<String> getEntryNames() {
+    return Collections.unmodifiableList(names);
+  }
+
+  public boolean contains(String entryName) {
+    return slots.containsKey(entryName);
+  }
+
+  /**
+   * Opens a stream on the contents of the given entry.
+   *
+   * @param entryName
+   *          the name of the entry
+   * @return a stream on the uncompressed contents of the entry
+   * @throws IOException
+   *           if the entry does not exist or cannot be read
+   */
+  public InputStream getInputStream(String entryName) throws IOException {
+    Integer slot = slots.get(entryName);
+    if (slot == null) {
+      throw new IOException("Entry '" + entryName + "' not found in " + archive);
+    }
+    ByteBuffer buf = getBuffer();
+    int header = headerOffsets[slot];
+    if (header < 0 || header > buf.limit() - LOCAL_FILE_HEADER_SIZE || buf.getInt(header) != LOCAL_FILE_HEADER) {
+      throw new IOException("Malformed local file header for entry '" + entryName + "' in " + archive);
+    }
+    long start = (long) header + LOCAL_FILE_HEADER_SIZE + (buf.getShort(header + 26) & 0xffff)
+        + (buf.getShort(header + 28) & 0xffff);
+    if (compressedSizes[slot] < 0 || start + compressedSizes[slot] > buf.limit()) {
+      throw new IOException("Entry '" + entryName + "' extends beyond the end of " + archive);
+    }
+    ByteBuffer data = buf.duplicate();
+    data.position((int) start);
+    data.limit((int) start + compressedSizes[slot]);
+
+    switch (methods[slot]) {
+      case STORED:
+        return new ByteBufferInputStream(data.slice());
+      case DEFLATED:
+        return new ByteArrayInputStream(inflate(data, sizes[slot], entryName));
+      default:
+        throw new IOException(
+            "Unsupported compression method " + methods[slot] + " for entry '" + entryName + "' in " + archive);
+    }
+  }
+
+  private byte[] inflate(ByteBuffer data, int size, String entryName) throws IOException {
+    // The inflater needs an additional dummy byte at the end of the input when the zlib header is omitted
+    byte[] input = new byte[data.remaining() + 1];
+    data.get(input, 0, input.length - 1);
+    byte[] output = new byte[size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input);
+      int count = 0;
+      while (count < size) {
+        int n = inflater.inflate(output, count, size - count);
+        if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        count += n;
+      }
+      if (count != size) {
+        throw new IOException("Unexpected end of data for entry '" + entryName + "' in " + archive);
+      }
+      return output;
+    } catch (DataFormatException e) {
+      throw new IOException("Malformed data for entry '" + entryName + "' in " + archive, e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private ByteBuffer getBuffer() throws IOException {
+    ByteBuffer buf = buffer;
+    if (buf == null) {
+      synchronized (this) {
+        buf = buffer;
+        if (buf == null) {
+          if (archive.length() != archiveLength || archive.lastModified() != archiveLastModified) {
+            throw new IOException("The archive " + archive + " has changed since it was indexed");
+          }
+          buffer = buf = map(archive);
+        }
+      }
+    }
+    return buf;
+  }
+
+  private void add(String name, int headerOffset, int compressedSize, int size, short method) {
+    // The first occurrence of a name wins, just like in ZipFile
+    if (slots.containsKey(name)) {
+      return;
+    }
+    int slot = names.size();
+    names.add(name);
+    slots.put(name, slot);
+    headerOffsets[slot] = headerOffset;
+    compressedSizes[slot] = compressedSize;
+    sizes[slot] = size;
+    methods[slot] = method;
+  }
+
+  private static ByteBuffer map(File archive) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(archive, "r"); FileChannel channel = raf.getChannel()) {
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Archives larger than 2GB are not supported: " + archive);
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      return buf;
+    }
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer buf) {
+    int last = buf.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int pos = last; pos >= first; pos--) {
+      if (buf.getInt(pos) == END_OF_CENTRAL_DIRECTORY
+          && pos + END_OF_CENTRAL_DIRECTORY_SIZE + (buf.getShort(pos + 20) & 0xffff) == buf.limit()) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Input stream that reads from a byte buffer.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buf;
+
+    ByteBufferInputStream(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + k);
+      return k;
+    }
+
+    @Override
+    public int available() {
+      return buf.remaining();
+    }
+  }
+}
@@ -0,0 +1,374 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+import soot.tagkit.BytecodeOffsetTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.Tag;
+
+/**
+ * Persistent on-disk cache for the method bodies produced by the <code>jb</code> pack. Entries are stored in the directory
+ * given by the <code>-body-cache-dir</code> option and are keyed by a hash of the class file a method was read from, of
+ * all options that influence the <code>jb</code> pack and of the class path.
+ *
+ * <p>
+ * The typing of a body depends on the other classes on the class path, and so does whether referenced classes are phantom.
+ * The class path is therefore described by the name, size and modification time of every archive and of every file in
+ * every directory on it. Any change to the class path invalidates all entries, including those of classes whose bodies
+ * would not change.
+ * </p>
+ *
+ * <p>
+ * A cache entry holds a single method body in the binary encoding of {@link JimpleBodyCodec}, which is read back directly
+ * into Jimple without going through bytecode again. Besides the body itself, only the line numbers and bytecode offsets of
+ * its units and the line numbers of their value boxes are stored. Bodies that carry any other tags are not cached, since
+ * these tags would be lost.
+ * </p>
+ */
+public class BodyCache {
+  private static final Logger logger = LoggerFactory.getLogger(BodyCache.class);
+
+  /** Changes whenever the format of the cache entries changes. */
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int MAGIC = 0x534a4243;
+
+  private volatile String optionsFingerprint = null;
+
+  private String classPath = null;
+
+  private String classPathFingerprint = null;
+
+  public BodyCache(Singletons.Global g) {
+  }
+
+  public static BodyCache v() {
+    return G.v().soot_BodyCache();
+  }
+
+  /** Returns true if a cache directory has been configured. */
+  public boolean isEnabled() {
+    return !Options.v().body_cache_dir().isEmpty();
+  }
+
+  /**
+   * Computes the cache key for a class with the given class file contents under the current options and class path.
+   *
+   * @param classBytes
+   *          the contents of the class file
+   * @return the cache key as a hex string
+   */
+  public String computeClassKey(byte[] classBytes) {
+    MessageDigest digest = newDigest();
+    digest.update(getOptionsFingerprint().getBytes(StandardCharsets.UTF_8));
+    digest.update(getClassPathFingerprint().getBytes(StandardCharsets.UTF_8));
+    digest.update(classBytes);
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Routes the body creation of all methods of the given class through this cache.
+   *
+   * @param sc
+   *          the class whose methods to wrap
+   * @param classKey
+   *          the key computed by {@link #computeClassKey(byte[])} for the class file of <code>sc</code>
+   */
+  public void attach(SootClass sc, String classKey) {
+    for (SootMethod m : sc.getMethods()) {
+      MethodSource ms = m.getSource();
+      if (ms != null && !(ms instanceof CachingMethodSource)) {
+        m.setSource(new CachingMethodSource(classKey, ms));
+      }
+    }
+  }
+
+  /**
+   * Returns the cached body for the given method or <code>null</code> if there is no usable cache entry.
+   */
+  protected Body load(String classKey, SootMethod m) {
+    File entry = getEntryFile(classKey, m);
+    if (!entry.isFile()) {
+      return null;
+    }
+    try {
+      return fromBytes(m, Files.readAllBytes(entry.toPath()));
+    } catch (IOException e) {
+      logger.debug("Could not read cached body of " + m.getSignature() + " from " + entry, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the given body to the cache. Failures are logged and otherwise ignored.
+   */
+  protected void store(String classKey, Body b) {
+    byte[] data = toBytes(b);
+    if (data == null) {
+      return;
+    }
+
+    SootMethod m = b.getMethod();
+    File entry = getEntryFile(classKey, m);
+    try {
+      File dir = entry.getParentFile();
+      dir.mkdirs();
+      Path tmp = Files.createTempFile(dir.toPath(), entry.getName(), ".tmp");
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        out.write(data);
+      }
+      try {
+        Files.move(tmp, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Could not write cached body of " + m.getSignature() + " to " + entry, e);
+    }
+  }
+
+  /**
+   * Serializes the given body into the format of the cache entries.
+   *
+   * @return the serialized body, or <code>null</code> if the body cannot be serialized in a form that can be read back
+   */
+  byte[] toBytes(Body b) {
+    if (!(b instanceof JimpleBody) || hasUnserializedTags(b)) {
+      return null;
+    }
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * b.getUnits().size());
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      JimpleBodyCodec.write((JimpleBody) b, out);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Could not serialize body of " + b.getMethod().getSignature(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads back a body serialized by {@link #toBytes(Body)} for the given method.
+   *
+   * @return the body, or <code>null</code> if the data cannot be read
+   */
+  Body fromBytes(SootMethod m, byte[] data) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      return JimpleBodyCodec.read(m, in);
+    } catch (Exception e) {
+      logger.debug("Could not read serialized body of " + m.getSignature(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether the given body carries tags other than the line numbers and bytecode offsets of its units and the line
+   * numbers of their value boxes, which {@link #toBytes(Body)} would lose.
+   */
+  static boolean hasUnserializedTags(Body b) {
+    if (!b.getTags().isEmpty()) {
+      return true;
+    }
+    for (Unit u : b.getUnits()) {
+      for (Tag t : u.getTags()) {
+        if (!(t instanceof LineNumberTag) && !(t instanceof BytecodeOffsetTag)) {
+          return true;
+        }
+      }
+      for (ValueBox vb : u.getUseAndDefBoxes()) {
+        for (Tag t : vb.getTags()) {
+          if (!(t instanceof LineNumberTag)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private File getEntryFile(String classKey, SootMethod m) {
+    MessageDigest digest = newDigest();
+    digest.update(classKey.getBytes(StandardCharsets.UTF_8));
+    digest.update(m.getSubSignature().getBytes(StandardCharsets.UTF_8));
+    String name = toHex(digest.digest());
+    return new File(new File(Options.v().body_cache_dir(), name.substring(0, 2)), name + ".jb");
+  }
+
+  /**
+   * Returns a string that describes all options that may influence the bodies produced by the <code>jb</code> pack.
+   */
+  private String getOptionsFingerprint() {
+    String fingerprint = optionsFingerprint;
+    if (fingerprint == null) {
+      Options opts = Options.v();
+      StringBuilder sb = new StringBuilder();
+      sb.append(FORMAT_VERSION).append(';');
+      sb.append(opts.keep_line_number()).append(';');
+      sb.append(opts.keep_offset()).append(';');
+      sb.append(opts.throw_analysis()).append(';');
+      sb.append(opts.check_init_throw_analysis()).append(';');
+      sb.append(opts.omit_excepting_unit_edges()).append(';');
+      sb.append(opts.wrong_staticness()).append(';');
+      sb.append(opts.field_type_mismatches()).append(';');
+      sb.append(opts.ignore_resolution_errors()).append(';');
+      sb.append(opts.allow_phantom_refs()).append(';');
+      Pack jb = PackManager.v().getPack("jb");
+      sb.append(new TreeMap<String, String>(PhaseOptions.v().getPhaseOptions(jb)));
+      for (Transform t : jb) {
+        Map<String, String> phaseOptions = PhaseOptions.v().getPhaseOptions(t);
+        sb.append(t.getPhaseName()).append(new TreeMap<String, String>(phaseOptions));
+      }
+      optionsFingerprint = fingerprint = sb.toString();
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Returns a string that describes the current class path by the name, size and modification time of the archives and of
+   * the files in the directories on it. The string is computed again whenever the class path changes.
+   */
+  private synchronized String getClassPathFingerprint() {
+    String cp = Scene.v().getSootClassPath();
+    if (!cp.equals(classPath)) {
+      StringBuilder sb = new StringBuilder();
+      for (String entry : cp.split(File.pathSeparator)) {
+        if (entry.isEmpty()) {
+          continue;
+        }
+        sb.append(entry).append(';');
+        if (ModulePathSourceLocator.DUMMY_CLASSPATH_JDK9_FS.equals(entry)) {
+          // The classes of the running JDK
+          sb.append(System.getProperty("java.home")).append(';').append(System.getProperty("java.version")).append(';');
+        } else {
+          appendFiles(sb, new File(entry).toPath());
+        }
+      }
+      classPathFingerprint = sb.toString();
+      classPath = cp;
+    }
+    return classPathFingerprint;
+  }
+
+  /**
+   * Appends the size and modification time of the given file, or of all files below the given directory, to the given
+   * builder.
+   */
+  private static void appendFiles(StringBuilder sb, Path path) {
+    File file = path.toFile();
+    if (file.isFile()) {
+      sb.append(file.length()).append(';').append(file.lastModified()).append(';');
+    } else if (file.isDirectory()) {
+      List<Path> files = new ArrayList<Path>();
+      try (Stream<Path> stream = Files.walk(path)) {
+        stream.filter(Files::isRegularFile).forEach(files::add);
+      } catch (IOException | RuntimeException e) {
+        // An unreadable directory never matches, so nothing is loaded from the cache
+        logger.debug("Could not list the files in " + path, e);
+        sb.append(System.nanoTime()).append(';');
+        return;
+      }
+      Collections.sort(files);
+      for (Path p : files) {
+        File f = p.toFile();
+        sb.append(path.relativize(p)).append(';').append(f.length()).append(';').append(f.lastModified()).append(';');
+      }
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Method source that first consults the body cache and only falls back to the original method source if the cache does
+   * not contain a usable body. Bodies that had to be created by the original source are written to the cache.
+   */
+  private class CachingMethodSource implements MethodSource {
+    private final String classKey;
+    private final MethodSource delegate;
+
+    CachingMethodSource(String classKey, MethodSource delegate) {
+      this.classKey = classKey;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Body getBody(SootMethod m, String phaseName) {
+      Body b = load(classKey, m);
+      if (b == null) {
+        b = delegate.getBody(m, phaseName);
+        if (b != null) {
+          store(classKey, b);
+        }
+      }
+      return b;
+    }
+  }
+}
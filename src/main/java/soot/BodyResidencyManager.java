@@ -0,0 +1,407 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.options.Options;
+import soot.toolkits.scalar.BodyAnalysisCache;
+
+/**
+ * <p>
+ * Keeps the method bodies loaded through {@link SootMethod#retrieveActiveBody()} within a memory budget, which is set with
+ * the <code>-body-residency-budget</code> option or {@link #setBudget(long)}. When the estimated size of all loaded bodies
+ * exceeds the budget, bodies that have not been used recently are evicted. An evicted method still reports an active body,
+ * and its body is loaded again as soon as it is accessed.
+ * </p>
+ *
+ * <p>
+ * Bodies that have not been modified since they were loaded are simply dropped and later created again by the method
+ * source. A body counts as modified if a {@link BodyTransformer} has been applied to it, if its modification count has
+ * changed, or if {@link #markModified(SootMethod)} has been called. Modified bodies are kept as serialized Jimple, in the
+ * format of the {@link BodyCache}, and read back from there. Bodies that cannot be serialized are never evicted, and
+ * neither are bodies that carry tags other than the line numbers and bytecode offsets of their units.
+ * </p>
+ *
+ * <p>
+ * Bodies are chosen for eviction with the clock algorithm, an approximation of least recently used: every access to a
+ * body sets a flag, and a body is only evicted once the clock has passed it without the flag being set. Since a body that
+ * is loaded again consists of new units, clients that keep references to units across accesses must {@link #pin(SootMethod)
+ * pin} the respective methods, preferably before retrieving the body with {@link #pinWhileInUse(SootMethod)}. This is
+ * done automatically while a {@link Transform} or {@link Pack} is applied to a body and while the {@link PackManager} runs
+ * the body packs on a method, and bodies that the call graph or the pointer assignment graph of Spark refer to are never evicted.
+ * </p>
+ */
+public class BodyResidencyManager {
+  private static final Logger logger = LoggerFactory.getLogger(BodyResidencyManager.class);
+
+  /** Rough number of bytes taken by a unit together with its boxes and values. */
+  private static final int UNIT_SIZE = 200;
+  /** Rough number of bytes taken by a local or a trap. */
+  private static final int LOCAL_SIZE = 48;
+
+  private volatile long budget = -1;
+
+  /** The entries whose bodies are resident, in clock order. */
+  private final ArrayDeque<Entry> clock = new ArrayDeque<Entry>();
+  private final Map<SootMethod, Integer> pinned = new HashMap<SootMethod, Integer>();
+  private long residentSize = 0;
+  private long evictionCount = 0;
+  private boolean evicting = false;
+
+  public BodyResidencyManager(Singletons.Global g) {
+  }
+
+  public static BodyResidencyManager v() {
+    return G.v().soot_BodyResidencyManager();
+  }
+
+  /**
+   * Returns the budget in bytes, 0 if bodies are never evicted.
+   */
+  public long getBudget() {
+    long budget = this.budget;
+    if (budget < 0) {
+      this.budget = budget = Math.max(Options.v().body_residency_budget(), 0) * 1024L * 1024L;
+    }
+    return budget;
+  }
+
+  /**
+   * Sets the budget in bytes, overriding the <code>-body-residency-budget</code> option. A budget of 0 stops tracking newly
+   * loaded bodies, but does not load evicted bodies again.
+   */
+  public void setBudget(long budget) {
+    this.budget = Math.max(budget, 0);
+    evictIfNeeded();
+  }
+
+  /** Returns true if bodies that are loaded from now on are tracked and possibly evicted. */
+  public boolean isEnabled() {
+    return getBudget() > 0;
+  }
+
+  /** Returns the estimated size in bytes of the tracked bodies that are currently in memory. */
+  public synchronized long getResidentSize() {
+    return residentSize;
+  }
+
+  /** Returns the number of bodies evicted so far. */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Prevents the body of the given method from being evicted until {@link #unpin(SootMethod)} has been called as often as
+   * this method.
+   */
+  public synchronized void pin(SootMethod m) {
+    Integer count = pinned.get(m);
+    pinned.put(m, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Undoes one call to {@link #pin(SootMethod)}.
+   */
+  public synchronized void unpin(SootMethod m) {
+    Integer count = pinned.get(m);
+    if (count == null) {
+      return;
+    }
+    if (count == 1) {
+      pinned.remove(m);
+    } else {
+      pinned.put(m, count - 1);
+    }
+  }
+
+  /**
+   * Pins the given method while its body is in use, if bodies are evicted at all. Pinning happens before the body is
+   * retrieved, so the body that {@link SootMethod#retrieveActiveBody()} returns afterwards stays resident until the method
+   * is unpinned. Returns the method to pass to {@link #unpin(SootMethod)} afterwards, or <code>null</code> if nothing has
+   * been pinned.
+   */
+  public SootMethod pinWhileInUse(SootMethod m) {
+    if (!isEnabled()) {
+      return null;
+    }
+    pin(m);
+    return m;
+  }
+
+  /**
+   * Pins the method of the given body while the body is in use, if bodies are evicted at all. Returns the method to pass to
+   * {@link #unpin(SootMethod)} afterwards, or <code>null</code> if nothing has been pinned.
+   *
+   * <p>
+   * The body may have been evicted after it was retrieved and before this method has been called. Since the caller is
+   * about to change that body, it then becomes the active body of its method again.
+   * </p>
+   */
+  SootMethod pinWhileInUse(Body b) {
+    SootMethod m = b.getMethod();
+    if (m == null || !isEnabled()) {
+      return null;
+    }
+    synchronized (m) {
+      pin(m);
+      Entry e = m.residency;
+      if (e != null && e.evicted && m.activeBody == null && e.evictedBody != null
+          && e.evictedBody.get() == b) {
+        m.activeBody = b;
+        loaded(m, b);
+        // The body may have been changed since it was serialized
+        e.dirty = true;
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Records that the active body of the given method has been changed in place, so that the changes are kept when the body
+   * is evicted. Changes through the unit, local and trap chains and by body transformers are detected automatically.
+   */
+  public void markModified(SootMethod m) {
+    Entry e = m.residency;
+    if (e != null) {
+      e.dirty = true;
+    }
+  }
+
+  /**
+   * Called after a body transformer has been applied to the given body.
+   */
+  void bodyTransformed(Body b) {
+    SootMethod m = b.getMethod();
+    if (m != null && m.activeBody == b) {
+      markModified(m);
+    }
+  }
+
+  /**
+   * Returns the body of an evicted method from its serialized form, or <code>null</code> if it has to be created by the
+   * method source. Must be called while holding the lock of the method.
+   */
+  Body restore(SootMethod m) {
+    Entry e = m.residency;
+    if (e == null || !e.evicted) {
+      return null;
+    }
+    byte[] serialized = e.serialized;
+    if (serialized == null) {
+      return null;
+    }
+    Body b = BodyCache.v().fromBytes(m, serialized);
+    if (b == null) {
+      logger.warn("Could not restore the evicted body of " + m.getSignature() + ", loading it from its source");
+    }
+    return b;
+  }
+
+  /**
+   * Starts tracking the body that has just been loaded for the given method. Must be called while holding the lock of the
+   * method, followed by {@link #evictIfNeeded()} once that lock has been released.
+   */
+  synchronized void loaded(SootMethod m, Body b) {
+    Entry e = m.residency;
+    if (e == null) {
+      if (!isEnabled()) {
+        return;
+      }
+      m.residency = e = new Entry(m);
+    } else if (!e.evicted) {
+      return;
+    }
+    e.evicted = false;
+    e.evictedBody = null;
+    e.modificationCount = b.getModificationCount();
+    e.size = estimateSize(b);
+    e.dirty = false;
+    e.referenced = true;
+    if (!e.inClock) {
+      // An entry that was evicted may not have been removed from the clock yet
+      e.inClock = true;
+      clock.addLast(e);
+    }
+    residentSize += e.size;
+  }
+
+  /**
+   * Stops tracking the given method, whose body has been released or replaced. Must be called while holding the lock of
+   * the method.
+   */
+  synchronized void forget(SootMethod m) {
+    Entry e = m.residency;
+    if (e == null) {
+      return;
+    }
+    m.residency = null;
+    if (!e.evicted) {
+      residentSize -= e.size;
+    }
+    e.evicted = false;
+    e.evictedBody = null;
+    e.serialized = null;
+  }
+
+  /**
+   * Evicts bodies until their estimated size is within the budget again. Must not be called while holding the lock of any
+   * method.
+   */
+  void evictIfNeeded() {
+    List<Entry> victims;
+    synchronized (this) {
+      long budget = getBudget();
+      if (evicting || residentSize <= budget || budget == 0) {
+        return;
+      }
+      evicting = true;
+      victims = selectVictims(residentSize - budget);
+    }
+    try {
+      for (Entry e : victims) {
+        evict(e);
+      }
+    } finally {
+      synchronized (this) {
+        evicting = false;
+      }
+    }
+  }
+
+  /**
+   * Runs the clock until enough entries to free the given number of bytes have been found or every entry has been visited
+   * once. Entries that have been used since the last visit are not evicted in this round, in particular the body that has
+   * just been loaded.
+   */
+  private List<Entry> selectVictims(long excess) {
+    List<Entry> victims = new ArrayList<Entry>();
+    for (int steps = clock.size(); steps > 0 && excess > 0; steps--) {
+      Entry e = clock.pollFirst();
+      if (e.evicted || e.method.residency != e) {
+        // Already evicted or forgotten
+        e.inClock = false;
+        continue;
+      }
+      clock.addLast(e);
+      if (e.referenced) {
+        e.referenced = false;
+      } else if (!e.unserializable && !pinned.containsKey(e.method)) {
+        victims.add(e);
+        excess -= e.size;
+      }
+    }
+    return victims;
+  }
+
+  private void evict(Entry e) {
+    final SootMethod m = e.method;
+    synchronized (m) {
+      Body b = m.activeBody;
+      synchronized (this) {
+        if (m.residency != e || e.evicted || e.referenced || b == null || pinned.containsKey(m)) {
+          return;
+        }
+      }
+      if (isReferencedByWholeProgramAnalyses(m)) {
+        // Edges and PAG nodes refer to the units and locals of the body, so loading it again would break them
+        e.referenced = true;
+        return;
+      }
+      if (BodyCache.hasUnserializedTags(b)) {
+        // Neither the method source nor the serialized form would bring these tags back
+        e.referenced = true;
+        return;
+      }
+      boolean modified = e.dirty || b.getModificationCount() != e.modificationCount;
+      if (modified || (e.serialized == null && m.ms == null)) {
+        byte[] serialized = BodyCache.v().toBytes(b);
+        if (serialized == null) {
+          e.unserializable = true;
+          return;
+        }
+        e.serialized = serialized;
+      }
+      BodyAnalysisCache.v().invalidate(b);
+      m.activeBody = null;
+      synchronized (this) {
+        e.evicted = true;
+        e.evictedBody = new WeakReference<Body>(b);
+        residentSize -= e.size;
+        evictionCount++;
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug("Evicted body of " + m.getSignature() + (e.serialized == null ? "" : " in serialized form"));
+      }
+    }
+  }
+
+  private static boolean isReferencedByWholeProgramAnalyses(SootMethod m) {
+    if (G.v().MethodPAG_methodToPag.containsKey(m)) {
+      return true;
+    }
+    Scene scene = Scene.v();
+    if (!scene.hasCallGraph()) {
+      return false;
+    }
+    CallGraph cg = scene.getCallGraph();
+    return cg.edgesOutOf(m).hasNext() || cg.edgesInto(m).hasNext();
+  }
+
+  private static long estimateSize(Body b) {
+    return (long) UNIT_SIZE * b.getUnits().size() + (long) LOCAL_SIZE * (b.getLocalCount() + b.getTraps().size());
+  }
+
+  /**
+   * The residency state of one method.
+   */
+  static final class Entry {
+    final SootMethod method;
+    /** Set on every access to the body, cleared by the clock. */
+    volatile boolean referenced;
+    /** Set if the body has been changed in a way that the modification count does not reflect. */
+    volatile boolean dirty;
+    volatile boolean evicted;
+    /** The serialized body, if it differs from what the method source creates. */
+    volatile byte[] serialized;
+    /** The body that has been evicted, as long as someone still refers to it. */
+    WeakReference<Body> evictedBody;
+    long modificationCount;
+    long size;
+    boolean unserializable;
+    boolean inClock;
+
+    Entry(SootMethod method) {
+      this.method = method;
+    }
+  }
+}
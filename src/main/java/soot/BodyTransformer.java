@@ -25,6 +25,8 @@ package soot;
 import java.util.Collections;
 import java.util.Map;
 
+import soot.toolkits.scalar.BodyAnalysisCache;
+
 /**
  * An abstract class which acts on a Body. This class provides a harness and acts as an interface for classes that wish to
  * transform a Body. Subclasses provide the actual Body transformation implementation.
@@ -49,10 +51,18 @@ public abstract class BodyTransformer extends Transformer {
     }
 
     internalTransform(b, phaseName, options);
+    if (!maintainsAnalysisCache()) {
+      BodyAnalysisCache.v().invalidate(b);
+    }
+    BodyResidencyManager.v().bodyTransformed(b);
   }
 
   public final void transform(Body b, String phaseName) {
     internalTransform(b, phaseName, enabledOnlyMap);
+    if (!maintainsAnalysisCache()) {
+      BodyAnalysisCache.v().invalidate(b);
+    }
+    BodyResidencyManager.v().bodyTransformed(b);
   }
 
   public final void transform(Body b) {
@@ -72,4 +82,26 @@ public abstract class BodyTransformer extends Transformer {
    */
   protected abstract void internalTransform(Body b, String phaseName, Map<String, String> options);
 
+  /**
+   * Returns whether this transformer keeps the {@link BodyAnalysisCache} consistent on its own, i.e. it either changes
+   * bodies only through their unit, local and trap chains or invalidates the cache after changing a body in place. Otherwise
+   * the cache entry of every body this transformer has been applied to is dropped.
+   *
+   * @return {@code false} unless overridden
+   */
+  protected boolean maintainsAnalysisCache() {
+    return false;
+  }
+
+  /**
+   * Returns whether this transformer changes nothing but the body it is applied to, i.e. neither the declaring class nor any
+   * other class or body, so that it can be applied to several methods of one class concurrently. The body packs are only
+   * run per method if every enabled transformation that has been added to them declares this.
+   *
+   * @return {@code false} unless overridden
+   */
+  protected boolean transformsOnlyBody() {
+    return false;
+  }
+
 }
@@ -40,6 +40,16 @@ public abstract class ClassSource {
    */
   public abstract Dependencies resolve(SootClass sc);
 
+  /**
+   * Performs the part of resolving this class that does not depend on the Scene, e.g. reading the class file from its
+   * archive, so that a later call to {@link #resolve(SootClass)} only needs to build the Soot objects. This method may be
+   * called from a thread other than the one that later calls {@link #resolve(SootClass)} and must therefore never access
+   * the Scene. The default implementation does nothing.
+   */
+  public void prefetch() {
+
+  }
+
   protected String className;
 
   public void close() {
@@ -23,14 +23,21 @@ package soot;
  */
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import soot.jimple.SpecialInvokeExpr;
 import soot.util.ConcurrentHashMultiMap;
@@ -41,6 +48,12 @@ import soot.util.MultiMap;
  *
  * This version supercedes the old soot.Hierarchy class.
  *
+ * All queries can be used concurrently without locking. The relations between classes are computed when the hierarchy is
+ * created and do not change afterwards; the intervals of the classes are kept in arrays indexed by class number. Derived
+ * results, namely the transitive subinterfaces and implementers of interfaces and the results of concrete and abstract
+ * dispatch, are computed on first use and published in concurrent maps. A memoized dispatch result is discarded when
+ * methods are added to or removed from one of the classes it was resolved from, see {@link SootClass#getMethodState()}.
+ *
  * @author Ondrej Lhotak
  */
 public class FastHierarchy {
@@ -65,15 +78,24 @@ public class FastHierarchy {
   protected MultiMap<SootClass, SootClass> interfaceToImplementers = new ConcurrentHashMultiMap<SootClass, SootClass>();
 
   /**
-   * This map is a transitive closure of interfaceToSubinterfaces, and each set contains its superinterface itself.
+   * This map is a transitive closure of interfaceToSubinterfaces, and each set contains its superinterface itself. Sets are
+   * only put into the map once they are complete and are never modified afterwards.
    */
-  protected MultiMap<SootClass, SootClass> interfaceToAllSubinterfaces = new ConcurrentHashMultiMap<SootClass, SootClass>();
+  protected ConcurrentMap<SootClass, Set<SootClass>> interfaceToAllSubinterfaces
+      = new ConcurrentHashMap<SootClass, Set<SootClass>>();
 
   /**
    * This map gives, for an interface, all concrete classes that implement that interface and all its subinterfaces, but NOT
-   * their subclasses.
+   * their subclasses. Sets are only put into the map once they are complete and are never modified afterwards.
+   */
+  protected ConcurrentMap<SootClass, Set<SootClass>> interfaceToAllImplementers
+      = new ConcurrentHashMap<SootClass, Set<SootClass>>();
+
+  /**
+   * For each interface, the intervals of all classes in {@link #interfaceToAllImplementers}, see
+   * {@link #getImplementerIntervals(SootClass)}.
    */
-  protected MultiMap<SootClass, SootClass> interfaceToAllImplementers = new ConcurrentHashMultiMap<SootClass, SootClass>();
+  private final ConcurrentMap<SootClass, int[]> interfaceToImplementerIntervals = new ConcurrentHashMap<SootClass, int[]>();
 
   /**
    * For each class (NOT interface), this map contains a Interval, which is a pair of numbers giving a preorder and postorder
@@ -81,6 +103,17 @@ public class FastHierarchy {
    */
   protected Map<SootClass, Interval> classToInterval = new HashMap<SootClass, Interval>();
 
+  /**
+   * The classes of the scene by number at the time the hierarchy was built, and their intervals. Classes numbered later
+   * are looked up in {@link #classToInterval}.
+   */
+  private SootClass[] numberToClass;
+  private Interval[] numberToInterval;
+
+  /** Memoized results of concrete and abstract dispatch, per receiver class number and method. */
+  private AtomicReferenceArray<ConcurrentMap<SootMethod, DispatchResult>> concreteDispatch;
+  private AtomicReferenceArray<ConcurrentMap<SootMethod, DispatchResult>> abstractDispatch;
+
   protected Scene sc;
 
   protected final RefType rtObject;
@@ -113,6 +146,40 @@ public class FastHierarchy {
     }
   }
 
+  /**
+   * A memoized dispatch result, valid as long as none of the classes whose methods were looked up to compute it has changed
+   * its methods or its superclass since.
+   */
+  private static final class DispatchResult {
+    final Object target;
+    final SootClass[] consulted;
+    final int methodState;
+    /**
+     * The last {@link Scene#getMethodState() method state} at which this result was known to be valid.
+     */
+    volatile int validatedAt;
+
+    DispatchResult(Object target, Collection<SootClass> consulted, int methodState) {
+      this.target = target;
+      this.consulted = consulted.toArray(new SootClass[consulted.size()]);
+      this.methodState = methodState;
+      this.validatedAt = methodState;
+    }
+
+    boolean isValid(int currentState) {
+      if (validatedAt == currentState) {
+        return true;
+      }
+      for (SootClass c : consulted) {
+        if (c.getMethodState() > methodState) {
+          return false;
+        }
+      }
+      validatedAt = currentState;
+      return true;
+    }
+  }
+
   protected int dfsVisit(int start, SootClass c) {
     Interval r = new Interval();
     r.lower = start++;
@@ -159,6 +226,62 @@ public class FastHierarchy {
         r = dfsVisit(r, phantomClass);
       }
     }
+
+    buildNumberedTables();
+  }
+
+  private void buildNumberedTables() {
+    int maxNumber = 0;
+    for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+      maxNumber = Math.max(maxNumber, cl.getNumber());
+    }
+    numberToClass = new SootClass[maxNumber + 1];
+    numberToInterval = new Interval[maxNumber + 1];
+    for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+      int n = cl.getNumber();
+      if (n > 0) {
+        numberToClass[n] = cl;
+        numberToInterval[n] = classToInterval.get(cl);
+      }
+    }
+    concreteDispatch = new AtomicReferenceArray<ConcurrentMap<SootMethod, DispatchResult>>(maxNumber + 1);
+    abstractDispatch = new AtomicReferenceArray<ConcurrentMap<SootMethod, DispatchResult>>(maxNumber + 1);
+  }
+
+  /**
+   * Returns the number of the given class in the tables built by {@link #buildNumberedTables()}, or -1 if the class is not
+   * in them.
+   */
+  private int tableIndex(SootClass c) {
+    int n = c.getNumber();
+    return n > 0 && n < numberToClass.length && numberToClass[n] == c ? n : -1;
+  }
+
+  /**
+   * Returns the memoized dispatch results for receivers of the given class, or <code>null</code> if the class is not in the
+   * numbered tables and results are not memoized.
+   */
+  private ConcurrentMap<SootMethod, DispatchResult> dispatchMemo(
+      AtomicReferenceArray<ConcurrentMap<SootMethod, DispatchResult>> memos, SootClass c) {
+    int n = tableIndex(c);
+    if (n < 0) {
+      return null;
+    }
+    ConcurrentMap<SootMethod, DispatchResult> memo = memos.get(n);
+    if (memo == null) {
+      memos.compareAndSet(n, null, new ConcurrentHashMap<SootMethod, DispatchResult>());
+      memo = memos.get(n);
+    }
+    return memo;
+  }
+
+  /**
+   * Returns the interval of the given class, or <code>null</code> for interfaces and classes that are unknown to this
+   * hierarchy.
+   */
+  private Interval intervalOf(SootClass c) {
+    int n = tableIndex(c);
+    return n >= 0 ? numberToInterval[n] : classToInterval.get(c);
   }
 
   protected void buildInverseMaps() {
@@ -189,8 +312,8 @@ public class FastHierarchy {
   public boolean isSubclass(SootClass child, SootClass parent) {
     child.checkLevel(SootClass.HIERARCHY);
     parent.checkLevel(SootClass.HIERARCHY);
-    Interval parentInterval = classToInterval.get(parent);
-    Interval childInterval = classToInterval.get(child);
+    Interval parentInterval = intervalOf(parent);
+    Interval childInterval = intervalOf(child);
     return parentInterval != null && childInterval != null && parentInterval.isSubrange(childInterval);
   }
 
@@ -206,7 +329,7 @@ public class FastHierarchy {
   public Set<SootClass> getAllImplementersOfInterface(SootClass parent) {
     parent.checkLevel(SootClass.HIERARCHY);
     Set<SootClass> result = interfaceToAllImplementers.get(parent);
-    if (result.size() > 0) {
+    if (result != null) {
       return result;
     }
     result = new HashSet<>();
@@ -217,8 +340,67 @@ public class FastHierarchy {
       result.addAll(getAllImplementersOfInterface(subinterface));
     }
     result.addAll(interfaceToImplementers.get(parent));
-    interfaceToAllImplementers.putAll(parent, result);
-    return result;
+    result = Collections.unmodifiableSet(result);
+    Set<SootClass> old = interfaceToAllImplementers.putIfAbsent(parent, result);
+    return old == null ? result : old;
+  }
+
+  /**
+   * Returns the intervals of all implementers of the given interface as a sorted array
+   * <code>{lower0, upper0, lower1, upper1, ...}</code> of disjoint intervals. Since intervals of the class tree are either
+   * nested or disjoint, dropping those nested in others loses nothing, and a class is a subclass of an implementer if and
+   * only if its interval lies within the last of these intervals that starts at or before it.
+   */
+  private int[] getImplementerIntervals(SootClass parent) {
+    int[] result = interfaceToImplementerIntervals.get(parent);
+    if (result != null) {
+      return result;
+    }
+    List<Interval> intervals = new ArrayList<Interval>();
+    for (SootClass c : getAllImplementersOfInterface(parent)) {
+      Interval interval = intervalOf(c);
+      if (interval != null) {
+        intervals.add(interval);
+      }
+    }
+    Collections.sort(intervals, new Comparator<Interval>() {
+      @Override
+      public int compare(Interval a, Interval b) {
+        return Integer.compare(a.lower, b.lower);
+      }
+    });
+    int[] bounds = new int[intervals.size() * 2];
+    int size = 0;
+    for (Interval interval : intervals) {
+      if (size > 0 && interval.upper <= bounds[size - 1]) {
+        // Nested in the previous interval
+        continue;
+      }
+      bounds[size++] = interval.lower;
+      bounds[size++] = interval.upper;
+    }
+    result = size == bounds.length ? bounds : Arrays.copyOf(bounds, size);
+    int[] old = interfaceToImplementerIntervals.putIfAbsent(parent, result);
+    return old == null ? result : old;
+  }
+
+  /**
+   * Returns true if the given interval lies within one of the disjoint, sorted intervals.
+   */
+  private static boolean isInIntervals(int[] bounds, Interval interval) {
+    int low = 0;
+    int high = bounds.length / 2 - 1;
+    int candidate = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (bounds[2 * mid] <= interval.lower) {
+        candidate = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return candidate >= 0 && interval.upper <= bounds[2 * candidate + 1];
   }
 
   /**
@@ -236,7 +418,7 @@ public class FastHierarchy {
       return Collections.emptySet();
     }
     Set<SootClass> result = interfaceToAllSubinterfaces.get(parent);
-    if (result.size() > 0) {
+    if (result != null) {
       return result;
     }
     result = new HashSet<>();
@@ -244,8 +426,9 @@ public class FastHierarchy {
     for (SootClass si : interfaceToSubinterfaces.get(parent)) {
       result.addAll(getAllSubinterfaces(si));
     }
-    interfaceToAllSubinterfaces.putAll(parent, result);
-    return result;
+    result = Collections.unmodifiableSet(result);
+    Set<SootClass> old = interfaceToAllSubinterfaces.putIfAbsent(parent, result);
+    return old == null ? result : old;
   }
 
   /**
@@ -344,8 +527,8 @@ public class FastHierarchy {
   public boolean canStoreClass(SootClass child, SootClass parent) {
     parent.checkLevel(SootClass.HIERARCHY);
     child.checkLevel(SootClass.HIERARCHY);
-    Interval parentInterval = classToInterval.get(parent);
-    Interval childInterval = classToInterval.get(child);
+    Interval parentInterval = intervalOf(parent);
+    Interval childInterval = intervalOf(child);
     if (parentInterval != null && childInterval != null) {
       return parentInterval.isSubrange(childInterval);
     } else if (childInterval == null) { // child is interface
@@ -355,24 +538,8 @@ public class FastHierarchy {
         return getAllSubinterfaces(parent).contains(child);
       }
     } else {
-      final Set<SootClass> impl = getAllImplementersOfInterface(parent);
-      if (impl.size() > 1000) {
-        // If we have more than 1000 entries it is quite time consuming to check each and every implementing class
-        // if it is the "child" class. Therefore we use an alternative implementation which just checks the client
-        // class it's super classes and all the interfaces it implements.
-
-        return canStoreClassClassic(child, parent);
-      } else {
-        // If we only have a few entries, you can't beat the performance of a plain old loop
-        // in combination with the interval approach.
-        for (SootClass c : impl) {
-          Interval interval = classToInterval.get(c);
-          if (interval != null && interval.isSubrange(childInterval)) {
-            return true;
-          }
-        }
-        return false;
-      }
+      // A binary search in the merged intervals of all implementers, however many there are
+      return isInIntervals(getImplementerIntervals(parent), childInterval);
     }
   }
 
@@ -573,11 +740,32 @@ public class FastHierarchy {
   }
 
   /**
-   * Given an object of declared type C, returns the methods which could be called on an o.f() invocation.
+   * Given an object of declared type C, returns the methods which could be called on an o.f() invocation. The returned set
+   * is unmodifiable.
    */
+  @SuppressWarnings("unchecked")
   public Set<SootMethod> resolveAbstractDispatch(SootClass abstractType, SootMethod m) {
-    String methodSig = m.getSubSignature();
+    ConcurrentMap<SootMethod, DispatchResult> memo = dispatchMemo(abstractDispatch, abstractType);
+    int methodState = sc.getMethodState();
+    if (memo != null) {
+      DispatchResult memoized = memo.get(m);
+      if (memoized != null && memoized.isValid(methodState)) {
+        return (Set<SootMethod>) memoized.target;
+      }
+    }
     HashSet<SootClass> resolved = new HashSet<SootClass>();
+    Set<SootMethod> ret = Collections.unmodifiableSet(computeAbstractDispatch(abstractType, m, resolved));
+    if (memo != null) {
+      memo.put(m, new DispatchResult(ret, resolved, methodState));
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the abstract dispatch and collects the classes whose methods were looked up in <code>resolved</code>.
+   */
+  private Set<SootMethod> computeAbstractDispatch(SootClass abstractType, SootMethod m, Set<SootClass> resolved) {
+    String methodSig = m.getSubSignature();
     HashSet<SootMethod> ret = new HashSet<SootMethod>();
     ArrayDeque<SootClass> worklist = new ArrayDeque<SootClass>();
     worklist.add(abstractType);
@@ -638,8 +826,29 @@ public class FastHierarchy {
       throw new RuntimeException("A concrete type cannot be an interface: " + concreteType);
     }
 
+    ConcurrentMap<SootMethod, DispatchResult> memo = dispatchMemo(concreteDispatch, concreteType);
+    int methodState = sc.getMethodState();
+    if (memo != null) {
+      DispatchResult memoized = memo.get(m);
+      if (memoized != null && memoized.isValid(methodState)) {
+        return (SootMethod) memoized.target;
+      }
+    }
+    List<SootClass> consulted = new ArrayList<SootClass>();
+    SootMethod ret = computeConcreteDispatch(concreteType, m, consulted);
+    if (memo != null) {
+      memo.put(m, new DispatchResult(ret, consulted, methodState));
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the concrete dispatch and collects the classes whose methods were looked up in <code>consulted</code>.
+   */
+  private SootMethod computeConcreteDispatch(SootClass concreteType, SootMethod m, List<SootClass> consulted) {
     String methodSig = m.getSubSignature();
     while (true) {
+      consulted.add(concreteType);
       SootMethod method = concreteType.getMethodUnsafe(methodSig);
       if (method != null) {
         if (isVisible(concreteType, m)) {
@@ -47,6 +47,7 @@ public class FoundFile {
   protected String entryName;
   protected ZipFile zipFile;
   protected ZipEntry zipEntry;
+  protected ArchiveIndex archiveIndex;
   protected List<InputStream> openedInputStreams;
 
   public FoundFile(ZipFile file, ZipEntry entry) {
@@ -67,6 +68,11 @@ public class FoundFile {
     this.entryName = entryName;
   }
 
+  public FoundFile(ArchiveIndex archiveIndex, String entryName) {
+    this(archiveIndex.getArchive().getPath(), entryName);
+    this.archiveIndex = archiveIndex;
+  }
+
   public FoundFile(File file) {
     this();
     if (file == null) {
@@ -110,6 +116,13 @@ public class FoundFile {
         throw new RuntimeException(
             "Error: Failed to open a InputStream for the file at path '" + path.toAbsolutePath().toString() + "'.", e);
       }
+    } else if (archiveIndex != null) {
+      try {
+        ret = archiveIndex.getInputStream(entryName);
+      } catch (IOException e) {
+        throw new RuntimeException("Error: Failed to open a InputStream for the entry '" + entryName
+            + "' of the archive at path '" + file.getPath() + "'.", e);
+      }
     } else if (!isZipFile()) {
       try {
         ret = new FileInputStream(file);
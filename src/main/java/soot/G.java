@@ -38,6 +38,7 @@ import soot.dava.internal.SET.SETNode;
 import soot.dexpler.DalvikThrowAnalysis;
 import soot.jimple.spark.pag.MethodPAG;
 import soot.jimple.spark.pag.Parm;
+import soot.jimple.spark.sets.OffHeapSetStore;
 import soot.jimple.spark.sets.P2SetFactory;
 import soot.jimple.toolkits.annotation.arraycheck.Array2ndDimensionSymbol;
 import soot.jimple.toolkits.pointer.UnionFactory;
@@ -60,6 +61,7 @@ public class G extends Singletons {
   }
 
   public static void reset() {
+    objectGetter.getG().closeOffHeapSetStores();
     objectGetter.reset();
   }
 
@@ -117,6 +119,10 @@ public class G extends Singletons {
   public int Timer_count;
   public final Map<Scene, ClassHierarchy> ClassHierarchy_classHierarchyMap = new HashMap<Scene, ClassHierarchy>();
   public final Map<MethodContext, MethodContext> MethodContext_map = new HashMap<MethodContext, MethodContext>();
+  public final List<OffHeapSetStore> OffHeapSetStore_stores = new ArrayList<OffHeapSetStore>();
+
+  /** The snapshot this instance was forked from, or <code>null</code>, see {@link SceneSnapshot#fork()}. */
+  public SceneSnapshot SceneSnapshot_parent = null;
 
   public DalvikThrowAnalysis interproceduralDalvikThrowAnalysis = null;
 
@@ -156,9 +162,19 @@ public class G extends Singletons {
   public ArrayList<ClassData> ASTMetricsData = new ArrayList<ClassData>();
 
   public void resetSpark() {
+    resetSparkState();
+    release_soot_jimple_spark_SparkTransformer();
+  }
+
+  /**
+   * Drops everything that Spark has built, like {@link #resetSpark()}, but keeps the Spark transformer itself, so that a
+   * run of the transformer can start over.
+   */
+  public void resetSparkState() {
     // We reset SPARK the hard way.
     for (Method m : getClass().getSuperclass().getDeclaredMethods()) {
-      if (m.getName().startsWith("release_soot_jimple_spark_")) {
+      if (m.getName().startsWith("release_soot_jimple_spark_")
+          && !m.getName().equals("release_soot_jimple_spark_SparkTransformer")) {
         try {
           m.invoke(this);
         } catch (IllegalAccessException e) {
@@ -172,6 +188,7 @@ public class G extends Singletons {
     }
 
     // Reset some other stuff directly in this class
+    closeOffHeapSetStores();
     MethodPAG_methodToPag.clear();
     MethodRWSet_allFields.clear();
     MethodRWSet_allGlobals.clear();
@@ -183,4 +200,14 @@ public class G extends Singletons {
     release_soot_jimple_toolkits_callgraph_VirtualCalls();
   }
 
+  /**
+   * Releases the memory of the off-heap points-to sets that Spark has created. Their points-to sets cannot be used anymore.
+   */
+  private void closeOffHeapSetStores() {
+    for (OffHeapSetStore store : OffHeapSetStore_stores) {
+      store.close();
+    }
+    OffHeapSetStore_stores.clear();
+  }
+
 }
@@ -0,0 +1,1004 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.jimple.AddExpr;
+import soot.jimple.AndExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.BreakpointStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.CmpExpr;
+import soot.jimple.CmpgExpr;
+import soot.jimple.CmplExpr;
+import soot.jimple.DivExpr;
+import soot.jimple.DoubleConstant;
+import soot.jimple.DynamicInvokeExpr;
+import soot.jimple.EnterMonitorStmt;
+import soot.jimple.EqExpr;
+import soot.jimple.ExitMonitorStmt;
+import soot.jimple.FloatConstant;
+import soot.jimple.GeExpr;
+import soot.jimple.GotoStmt;
+import soot.jimple.GtExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LeExpr;
+import soot.jimple.LengthExpr;
+import soot.jimple.LongConstant;
+import soot.jimple.LookupSwitchStmt;
+import soot.jimple.LtExpr;
+import soot.jimple.MethodHandle;
+import soot.jimple.MethodType;
+import soot.jimple.MulExpr;
+import soot.jimple.NeExpr;
+import soot.jimple.NegExpr;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.OrExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.RemExpr;
+import soot.jimple.RetStmt;
+import soot.jimple.ReturnStmt;
+import soot.jimple.ReturnVoidStmt;
+import soot.jimple.ShlExpr;
+import soot.jimple.ShrExpr;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.StringConstant;
+import soot.jimple.SubExpr;
+import soot.jimple.SwitchStmt;
+import soot.jimple.TableSwitchStmt;
+import soot.jimple.ThisRef;
+import soot.jimple.ThrowStmt;
+import soot.jimple.UshrExpr;
+import soot.jimple.VirtualInvokeExpr;
+import soot.jimple.XorExpr;
+import soot.tagkit.BytecodeOffsetTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.Tag;
+
+/**
+ * Binary encoding of Jimple bodies that is used by the {@link BodyCache}. The encoding mirrors the structure of the body:
+ * the locals with their types, the statements with their values, and the traps, with statements referring to locals and
+ * branch targets by their index. Names are written once per body and referred to by index afterwards. The only tags that
+ * are kept are the line numbers and bytecode offsets of the statements and the line numbers of their value boxes.
+ *
+ * <p>
+ * Bodies containing values that are not part of Jimple, such as the expressions of other intermediate representations,
+ * cannot be encoded and cause an {@link IllegalArgumentException}.
+ * </p>
+ */
+final class JimpleBodyCodec {
+
+  // Statements
+  private static final int IDENTITY = 0;
+  private static final int ASSIGN = 1;
+  private static final int INVOKE = 2;
+  private static final int RETURN = 3;
+  private static final int RETURN_VOID = 4;
+  private static final int THROW = 5;
+  private static final int ENTER_MONITOR = 6;
+  private static final int EXIT_MONITOR = 7;
+  private static final int NOP = 8;
+  private static final int BREAKPOINT = 9;
+  private static final int RET = 10;
+  private static final int GOTO = 11;
+  private static final int IF = 12;
+  private static final int TABLE_SWITCH = 13;
+  private static final int LOOKUP_SWITCH = 14;
+
+  // Values
+  private static final int LOCAL = 0;
+  private static final int INT_CONSTANT = 1;
+  private static final int LONG_CONSTANT = 2;
+  private static final int FLOAT_CONSTANT = 3;
+  private static final int DOUBLE_CONSTANT = 4;
+  private static final int STRING_CONSTANT = 5;
+  private static final int CLASS_CONSTANT = 6;
+  private static final int NULL_CONSTANT = 7;
+  private static final int METHOD_HANDLE = 8;
+  private static final int METHOD_TYPE = 9;
+  private static final int THIS_REF = 10;
+  private static final int PARAMETER_REF = 11;
+  private static final int CAUGHT_EXCEPTION_REF = 12;
+  private static final int STATIC_FIELD_REF = 13;
+  private static final int INSTANCE_FIELD_REF = 14;
+  private static final int ARRAY_REF = 15;
+  private static final int NEG = 16;
+  private static final int LENGTH = 17;
+  private static final int CAST = 18;
+  private static final int INSTANCE_OF = 19;
+  private static final int NEW = 20;
+  private static final int NEW_ARRAY = 21;
+  private static final int NEW_MULTI_ARRAY = 22;
+  private static final int STATIC_INVOKE = 23;
+  private static final int VIRTUAL_INVOKE = 24;
+  private static final int INTERFACE_INVOKE = 25;
+  private static final int SPECIAL_INVOKE = 26;
+  private static final int DYNAMIC_INVOKE = 27;
+  // Binary expressions, in the order of newBinop
+  private static final int BINOP = 32;
+
+  // Types
+  private static final int VOID_TYPE = 0;
+  private static final int BOOLEAN_TYPE = 1;
+  private static final int BYTE_TYPE = 2;
+  private static final int CHAR_TYPE = 3;
+  private static final int SHORT_TYPE = 4;
+  private static final int INT_TYPE = 5;
+  private static final int LONG_TYPE = 6;
+  private static final int FLOAT_TYPE = 7;
+  private static final int DOUBLE_TYPE = 8;
+  private static final int NULL_TYPE = 9;
+  private static final int UNKNOWN_TYPE = 10;
+  private static final int REF_TYPE = 11;
+  private static final int ARRAY_TYPE = 12;
+
+  private JimpleBodyCodec() {
+  }
+
+  /**
+   * Writes the given body.
+   *
+   * @throws IllegalArgumentException
+   *           if the body contains something that cannot be encoded
+   */
+  static void write(JimpleBody b, DataOutput out) throws IOException {
+    new Writer(out).write(b);
+  }
+
+  /**
+   * Reads a body written by {@link #write(JimpleBody, DataOutput)} for the given method.
+   */
+  static JimpleBody read(SootMethod m, DataInput in) throws IOException {
+    return new Reader(in).read(m);
+  }
+
+  private static final class Writer {
+    private final DataOutput out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Local, Integer> locals = new IdentityHashMap<Local, Integer>();
+    private final Map<Unit, Integer> units = new IdentityHashMap<Unit, Integer>();
+
+    Writer(DataOutput out) {
+      this.out = out;
+    }
+
+    void write(JimpleBody b) throws IOException {
+      writeInt(b.getLocalCount());
+      for (Local l : b.getLocals()) {
+        locals.put(l, locals.size());
+        writeString(l.getName());
+        writeType(l.getType());
+      }
+
+      for (Unit u : b.getUnits()) {
+        units.put(u, units.size());
+      }
+      writeInt(units.size());
+      for (Unit u : b.getUnits()) {
+        writeUnit(u);
+        LineNumberTag line = (LineNumberTag) u.getTag(LineNumberTag.IDENTIFIER);
+        BytecodeOffsetTag offset = (BytecodeOffsetTag) u.getTag("BytecodeOffsetTag");
+        writeInt(line == null ? 0 : line.getLineNumber() + 1);
+        writeInt(offset == null ? 0 : offset.getBytecodeOffset() + 1);
+        writeBoxLines(u);
+      }
+
+      writeInt(b.getTraps().size());
+      for (Trap t : b.getTraps()) {
+        writeString(t.getException().getName());
+        writeUnitIndex(t.getBeginUnit());
+        writeUnitIndex(t.getEndUnit());
+        writeUnitIndex(t.getHandlerUnit());
+      }
+    }
+
+    /** Writes the line numbers that copy propagation attaches to the value boxes of a unit, as (box, line) pairs. */
+    private void writeBoxLines(Unit u) throws IOException {
+      List<ValueBox> boxes = u.getUseAndDefBoxes();
+      int count = 0;
+      for (ValueBox vb : boxes) {
+        count += vb.getTags().size();
+      }
+      writeInt(count);
+      for (int i = 0; i < boxes.size(); i++) {
+        for (Tag t : boxes.get(i).getTags()) {
+          if (!(t instanceof LineNumberTag)) {
+            throw new IllegalArgumentException("Cannot encode " + t.getClass().getName());
+          }
+          writeInt(i);
+          writeInt(((LineNumberTag) t).getLineNumber());
+        }
+      }
+    }
+
+    private void writeUnit(Unit u) throws IOException {
+      if (u instanceof IdentityStmt) {
+        IdentityStmt s = (IdentityStmt) u;
+        out.writeByte(IDENTITY);
+        writeValue(s.getLeftOp());
+        writeValue(s.getRightOp());
+      } else if (u instanceof AssignStmt) {
+        AssignStmt s = (AssignStmt) u;
+        out.writeByte(ASSIGN);
+        writeValue(s.getLeftOp());
+        writeValue(s.getRightOp());
+      } else if (u instanceof InvokeStmt) {
+        out.writeByte(INVOKE);
+        writeValue(((InvokeStmt) u).getInvokeExpr());
+      } else if (u instanceof ReturnStmt) {
+        out.writeByte(RETURN);
+        writeValue(((ReturnStmt) u).getOp());
+      } else if (u instanceof ReturnVoidStmt) {
+        out.writeByte(RETURN_VOID);
+      } else if (u instanceof ThrowStmt) {
+        out.writeByte(THROW);
+        writeValue(((ThrowStmt) u).getOp());
+      } else if (u instanceof EnterMonitorStmt) {
+        out.writeByte(ENTER_MONITOR);
+        writeValue(((EnterMonitorStmt) u).getOp());
+      } else if (u instanceof ExitMonitorStmt) {
+        out.writeByte(EXIT_MONITOR);
+        writeValue(((ExitMonitorStmt) u).getOp());
+      } else if (u instanceof NopStmt) {
+        out.writeByte(NOP);
+      } else if (u instanceof BreakpointStmt) {
+        out.writeByte(BREAKPOINT);
+      } else if (u instanceof RetStmt) {
+        out.writeByte(RET);
+        writeValue(((RetStmt) u).getStmtAddress());
+      } else if (u instanceof GotoStmt) {
+        out.writeByte(GOTO);
+        writeUnitIndex(((GotoStmt) u).getTarget());
+      } else if (u instanceof IfStmt) {
+        IfStmt s = (IfStmt) u;
+        out.writeByte(IF);
+        writeValue(s.getCondition());
+        writeUnitIndex(s.getTarget());
+      } else if (u instanceof TableSwitchStmt) {
+        TableSwitchStmt s = (TableSwitchStmt) u;
+        out.writeByte(TABLE_SWITCH);
+        writeValue(s.getKey());
+        out.writeInt(s.getLowIndex());
+        out.writeInt(s.getHighIndex());
+        writeTargets(s);
+      } else if (u instanceof LookupSwitchStmt) {
+        LookupSwitchStmt s = (LookupSwitchStmt) u;
+        out.writeByte(LOOKUP_SWITCH);
+        writeValue(s.getKey());
+        writeInt(s.getLookupValues().size());
+        for (IntConstant c : s.getLookupValues()) {
+          out.writeInt(c.value);
+        }
+        writeTargets(s);
+      } else {
+        throw new IllegalArgumentException("Cannot encode " + u.getClass().getName());
+      }
+    }
+
+    private void writeTargets(SwitchStmt s) throws IOException {
+      List<Unit> targets = s.getTargets();
+      writeInt(targets.size());
+      for (Unit target : targets) {
+        writeUnitIndex(target);
+      }
+      writeUnitIndex(s.getDefaultTarget());
+    }
+
+    private void writeUnitIndex(Unit u) throws IOException {
+      Integer index = units.get(u);
+      if (index == null) {
+        throw new IllegalArgumentException("Unit is not part of the body: " + u);
+      }
+      writeInt(index);
+    }
+
+    private void writeValue(Value v) throws IOException {
+      if (v instanceof Local) {
+        Integer index = locals.get(v);
+        if (index == null) {
+          throw new IllegalArgumentException("Local is not part of the body: " + v);
+        }
+        out.writeByte(LOCAL);
+        writeInt(index);
+      } else if (v instanceof IntConstant) {
+        out.writeByte(INT_CONSTANT);
+        out.writeInt(((IntConstant) v).value);
+      } else if (v instanceof LongConstant) {
+        out.writeByte(LONG_CONSTANT);
+        out.writeLong(((LongConstant) v).value);
+      } else if (v instanceof FloatConstant) {
+        out.writeByte(FLOAT_CONSTANT);
+        out.writeFloat(((FloatConstant) v).value);
+      } else if (v instanceof DoubleConstant) {
+        out.writeByte(DOUBLE_CONSTANT);
+        out.writeDouble(((DoubleConstant) v).value);
+      } else if (v instanceof StringConstant) {
+        out.writeByte(STRING_CONSTANT);
+        writeString(((StringConstant) v).value);
+      } else if (v instanceof ClassConstant) {
+        out.writeByte(CLASS_CONSTANT);
+        writeString(((ClassConstant) v).getValue());
+      } else if (v instanceof NullConstant) {
+        out.writeByte(NULL_CONSTANT);
+      } else if (v instanceof MethodHandle) {
+        MethodHandle h = (MethodHandle) v;
+        out.writeByte(METHOD_HANDLE);
+        writeInt(h.getKind());
+        if (h.isFieldRef()) {
+          writeFieldRef(h.getFieldRef());
+        } else {
+          writeMethodRef(h.getMethodRef());
+        }
+      } else if (v instanceof MethodType) {
+        MethodType t = (MethodType) v;
+        out.writeByte(METHOD_TYPE);
+        writeTypes(t.getParameterTypes());
+        writeType(t.getReturnType());
+      } else if (v instanceof ThisRef) {
+        out.writeByte(THIS_REF);
+        writeType(v.getType());
+      } else if (v instanceof ParameterRef) {
+        out.writeByte(PARAMETER_REF);
+        writeType(v.getType());
+        writeInt(((ParameterRef) v).getIndex());
+      } else if (v instanceof CaughtExceptionRef) {
+        out.writeByte(CAUGHT_EXCEPTION_REF);
+      } else if (v instanceof StaticFieldRef) {
+        out.writeByte(STATIC_FIELD_REF);
+        writeFieldRef(((StaticFieldRef) v).getFieldRef());
+      } else if (v instanceof InstanceFieldRef) {
+        InstanceFieldRef r = (InstanceFieldRef) v;
+        out.writeByte(INSTANCE_FIELD_REF);
+        writeValue(r.getBase());
+        writeFieldRef(r.getFieldRef());
+      } else if (v instanceof ArrayRef) {
+        ArrayRef r = (ArrayRef) v;
+        out.writeByte(ARRAY_REF);
+        writeValue(r.getBase());
+        writeValue(r.getIndex());
+      } else if (v instanceof BinopExpr) {
+        BinopExpr e = (BinopExpr) v;
+        out.writeByte(BINOP + binopIndex(e));
+        writeValue(e.getOp1());
+        writeValue(e.getOp2());
+      } else if (v instanceof NegExpr) {
+        out.writeByte(NEG);
+        writeValue(((NegExpr) v).getOp());
+      } else if (v instanceof LengthExpr) {
+        out.writeByte(LENGTH);
+        writeValue(((LengthExpr) v).getOp());
+      } else if (v instanceof CastExpr) {
+        CastExpr e = (CastExpr) v;
+        out.writeByte(CAST);
+        writeValue(e.getOp());
+        writeType(e.getCastType());
+      } else if (v instanceof InstanceOfExpr) {
+        InstanceOfExpr e = (InstanceOfExpr) v;
+        out.writeByte(INSTANCE_OF);
+        writeValue(e.getOp());
+        writeType(e.getCheckType());
+      } else if (v instanceof NewExpr) {
+        out.writeByte(NEW);
+        writeType(((NewExpr) v).getBaseType());
+      } else if (v instanceof NewArrayExpr) {
+        NewArrayExpr e = (NewArrayExpr) v;
+        out.writeByte(NEW_ARRAY);
+        writeType(e.getBaseType());
+        writeValue(e.getSize());
+      } else if (v instanceof NewMultiArrayExpr) {
+        NewMultiArrayExpr e = (NewMultiArrayExpr) v;
+        out.writeByte(NEW_MULTI_ARRAY);
+        writeType(e.getBaseType());
+        writeValues(e.getSizes());
+      } else if (v instanceof InvokeExpr) {
+        writeInvoke((InvokeExpr) v);
+      } else {
+        throw new IllegalArgumentException("Cannot encode " + v.getClass().getName());
+      }
+    }
+
+    private void writeInvoke(InvokeExpr e) throws IOException {
+      if (e instanceof StaticInvokeExpr) {
+        out.writeByte(STATIC_INVOKE);
+      } else if (e instanceof VirtualInvokeExpr) {
+        out.writeByte(VIRTUAL_INVOKE);
+        writeValue(((VirtualInvokeExpr) e).getBase());
+      } else if (e instanceof InterfaceInvokeExpr) {
+        out.writeByte(INTERFACE_INVOKE);
+        writeValue(((InterfaceInvokeExpr) e).getBase());
+      } else if (e instanceof SpecialInvokeExpr) {
+        out.writeByte(SPECIAL_INVOKE);
+        writeValue(((SpecialInvokeExpr) e).getBase());
+      } else if (e instanceof DynamicInvokeExpr) {
+        DynamicInvokeExpr d = (DynamicInvokeExpr) e;
+        out.writeByte(DYNAMIC_INVOKE);
+        writeMethodRef(d.getBootstrapMethodRef());
+        writeValues(d.getBootstrapArgs());
+        writeInt(d.getHandleTag());
+      } else {
+        throw new IllegalArgumentException("Cannot encode " + e.getClass().getName());
+      }
+      writeMethodRef(e.getMethodRef());
+      writeValues(e.getArgs());
+    }
+
+    private void writeValues(List<? extends Value> values) throws IOException {
+      writeInt(values.size());
+      for (Value v : values) {
+        writeValue(v);
+      }
+    }
+
+    private void writeMethodRef(SootMethodRef ref) throws IOException {
+      writeString(ref.getDeclaringClass().getName());
+      writeString(ref.getName());
+      writeTypes(ref.getParameterTypes());
+      writeType(ref.getReturnType());
+      out.writeBoolean(ref.isStatic());
+    }
+
+    private void writeFieldRef(SootFieldRef ref) throws IOException {
+      writeString(ref.declaringClass().getName());
+      writeString(ref.name());
+      writeType(ref.type());
+      out.writeBoolean(ref.isStatic());
+    }
+
+    private void writeTypes(List<Type> types) throws IOException {
+      writeInt(types.size());
+      for (Type t : types) {
+        writeType(t);
+      }
+    }
+
+    private void writeType(Type t) throws IOException {
+      if (t instanceof VoidType) {
+        out.writeByte(VOID_TYPE);
+      } else if (t instanceof BooleanType) {
+        out.writeByte(BOOLEAN_TYPE);
+      } else if (t instanceof ByteType) {
+        out.writeByte(BYTE_TYPE);
+      } else if (t instanceof CharType) {
+        out.writeByte(CHAR_TYPE);
+      } else if (t instanceof ShortType) {
+        out.writeByte(SHORT_TYPE);
+      } else if (t instanceof IntType) {
+        out.writeByte(INT_TYPE);
+      } else if (t instanceof LongType) {
+        out.writeByte(LONG_TYPE);
+      } else if (t instanceof FloatType) {
+        out.writeByte(FLOAT_TYPE);
+      } else if (t instanceof DoubleType) {
+        out.writeByte(DOUBLE_TYPE);
+      } else if (t instanceof NullType) {
+        out.writeByte(NULL_TYPE);
+      } else if (t instanceof UnknownType) {
+        out.writeByte(UNKNOWN_TYPE);
+      } else if (t instanceof RefType && !(t instanceof ModuleRefType)) {
+        out.writeByte(REF_TYPE);
+        writeString(((RefType) t).getClassName());
+      } else if (t instanceof ArrayType) {
+        ArrayType a = (ArrayType) t;
+        out.writeByte(ARRAY_TYPE);
+        writeType(a.baseType);
+        writeInt(a.numDimensions);
+      } else {
+        throw new IllegalArgumentException("Cannot encode " + t.getClass().getName());
+      }
+    }
+
+    /** Writes the index of a string written before, or -1 followed by the string itself. */
+    private void writeString(String s) throws IOException {
+      Integer index = strings.get(s);
+      if (index != null) {
+        writeInt(index);
+      } else {
+        strings.put(s, strings.size());
+        writeInt(-1);
+        out.writeUTF(s);
+      }
+    }
+
+    /** Writes a non-negative int in as few bytes as possible, and negative ones in five bytes. */
+    private void writeInt(int v) throws IOException {
+      while ((v & ~0x7f) != 0) {
+        out.writeByte((v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      out.writeByte(v);
+    }
+  }
+
+  private static final class Reader {
+    private final DataInput in;
+    private final Jimple jimple = Jimple.v();
+    private final List<String> strings = new ArrayList<String>();
+    private Local[] locals;
+    private Unit[] units;
+
+    Reader(DataInput in) {
+      this.in = in;
+    }
+
+    JimpleBody read(SootMethod m) throws IOException {
+      JimpleBody b = jimple.newBody(m);
+
+      locals = new Local[readInt()];
+      for (int i = 0; i < locals.length; i++) {
+        String name = readString();
+        locals[i] = jimple.newLocal(name, readType());
+        b.getLocals().add(locals[i]);
+      }
+
+      // Branch targets may refer to later units, so they are set once all units exist
+      units = new Unit[readInt()];
+      int[][] targets = new int[units.length][];
+      for (int i = 0; i < units.length; i++) {
+        units[i] = readUnit(targets, i);
+        int line = readInt();
+        if (line != 0) {
+          units[i].addTag(new LineNumberTag(line - 1));
+        }
+        int offset = readInt();
+        if (offset != 0) {
+          units[i].addTag(new BytecodeOffsetTag(offset - 1));
+        }
+        int boxLines = readInt();
+        if (boxLines != 0) {
+          List<ValueBox> boxes = units[i].getUseAndDefBoxes();
+          for (int j = 0; j < boxLines; j++) {
+            ValueBox box = boxes.get(readInt());
+            box.addTag(new LineNumberTag(readInt()));
+          }
+        }
+        b.getUnits().add(units[i]);
+      }
+      for (int i = 0; i < units.length; i++) {
+        int[] t = targets[i];
+        if (t == null) {
+          continue;
+        }
+        Unit u = units[i];
+        if (u instanceof GotoStmt) {
+          ((GotoStmt) u).setTarget(units[t[0]]);
+        } else if (u instanceof IfStmt) {
+          ((IfStmt) u).setTarget(units[t[0]]);
+        } else {
+          SwitchStmt s = (SwitchStmt) u;
+          for (int j = 0; j < t.length - 1; j++) {
+            s.setTarget(j, units[t[j]]);
+          }
+          s.setDefaultTarget(units[t[t.length - 1]]);
+        }
+      }
+
+      int trapCount = readInt();
+      for (int i = 0; i < trapCount; i++) {
+        SootClass exception = SootResolver.v().makeClassRef(readString());
+        Unit begin = units[readInt()];
+        Unit end = units[readInt()];
+        Unit handler = units[readInt()];
+        b.getTraps().add(jimple.newTrap(exception, begin, end, handler));
+      }
+      return b;
+    }
+
+    private Unit readUnit(int[][] targets, int index) throws IOException {
+      int kind = in.readUnsignedByte();
+      switch (kind) {
+        case IDENTITY: {
+          Value left = readValue();
+          return jimple.newIdentityStmt(left, readValue());
+        }
+        case ASSIGN: {
+          Value left = readValue();
+          return jimple.newAssignStmt(left, readValue());
+        }
+        case INVOKE:
+          return jimple.newInvokeStmt(readValue());
+        case RETURN:
+          return jimple.newReturnStmt(readValue());
+        case RETURN_VOID:
+          return jimple.newReturnVoidStmt();
+        case THROW:
+          return jimple.newThrowStmt(readValue());
+        case ENTER_MONITOR:
+          return jimple.newEnterMonitorStmt(readValue());
+        case EXIT_MONITOR:
+          return jimple.newExitMonitorStmt(readValue());
+        case NOP:
+          return jimple.newNopStmt();
+        case BREAKPOINT:
+          return jimple.newBreakpointStmt();
+        case RET:
+          return jimple.newRetStmt(readValue());
+        case GOTO:
+          targets[index] = new int[] { readUnitIndex() };
+          return jimple.newGotoStmt((Unit) null);
+        case IF: {
+          Value condition = readValue();
+          targets[index] = new int[] { readUnitIndex() };
+          return jimple.newIfStmt(condition, (Unit) null);
+        }
+        case TABLE_SWITCH: {
+          Value key = readValue();
+          int low = in.readInt();
+          int high = in.readInt();
+          targets[index] = readTargets();
+          return jimple.newTableSwitchStmt(key, low, high, placeholders(targets[index]), null);
+        }
+        case LOOKUP_SWITCH: {
+          Value key = readValue();
+          List<IntConstant> values = new ArrayList<IntConstant>();
+          for (int i = readInt(); i > 0; i--) {
+            values.add(IntConstant.v(in.readInt()));
+          }
+          targets[index] = readTargets();
+          return jimple.newLookupSwitchStmt(key, values, placeholders(targets[index]), null);
+        }
+        default:
+          throw new IOException("Unknown statement kind " + kind);
+      }
+    }
+
+    /** Reads the targets of a switch, followed by its default target. */
+    private int[] readTargets() throws IOException {
+      int[] targets = new int[readInt() + 1];
+      for (int i = 0; i < targets.length; i++) {
+        targets[i] = readUnitIndex();
+      }
+      return targets;
+    }
+
+    private static List<Unit> placeholders(int[] targets) {
+      List<Unit> units = new ArrayList<Unit>(targets.length - 1);
+      for (int i = 0; i < targets.length - 1; i++) {
+        units.add(null);
+      }
+      return units;
+    }
+
+    private int readUnitIndex() throws IOException {
+      int index = readInt();
+      if (index < 0 || index >= units.length) {
+        throw new IOException("Invalid unit index " + index);
+      }
+      return index;
+    }
+
+    private Value readValue() throws IOException {
+      int kind = in.readUnsignedByte();
+      if (kind >= BINOP) {
+        Value op1 = readValue();
+        return newBinop(kind - BINOP, op1, readValue());
+      }
+      switch (kind) {
+        case LOCAL:
+          return locals[readInt()];
+        case INT_CONSTANT:
+          return IntConstant.v(in.readInt());
+        case LONG_CONSTANT:
+          return LongConstant.v(in.readLong());
+        case FLOAT_CONSTANT:
+          return FloatConstant.v(in.readFloat());
+        case DOUBLE_CONSTANT:
+          return DoubleConstant.v(in.readDouble());
+        case STRING_CONSTANT:
+          return StringConstant.v(readString());
+        case CLASS_CONSTANT:
+          return ClassConstant.v(readString());
+        case NULL_CONSTANT:
+          return NullConstant.v();
+        case METHOD_HANDLE: {
+          int handleKind = readInt();
+          if (MethodHandle.isFieldRef(handleKind)) {
+            return MethodHandle.v(readFieldRef(), handleKind);
+          }
+          return MethodHandle.v(readMethodRef(), handleKind);
+        }
+        case METHOD_TYPE: {
+          List<Type> parameterTypes = readTypes();
+          return MethodType.v(parameterTypes, readType());
+        }
+        case THIS_REF:
+          return jimple.newThisRef((RefType) readType());
+        case PARAMETER_REF: {
+          Type t = readType();
+          return jimple.newParameterRef(t, readInt());
+        }
+        case CAUGHT_EXCEPTION_REF:
+          return jimple.newCaughtExceptionRef();
+        case STATIC_FIELD_REF:
+          return jimple.newStaticFieldRef(readFieldRef());
+        case INSTANCE_FIELD_REF: {
+          Value base = readValue();
+          return jimple.newInstanceFieldRef(base, readFieldRef());
+        }
+        case ARRAY_REF: {
+          Value base = readValue();
+          return jimple.newArrayRef(base, readValue());
+        }
+        case NEG:
+          return jimple.newNegExpr(readValue());
+        case LENGTH:
+          return jimple.newLengthExpr(readValue());
+        case CAST: {
+          Value op = readValue();
+          return jimple.newCastExpr(op, readType());
+        }
+        case INSTANCE_OF: {
+          Value op = readValue();
+          return jimple.newInstanceOfExpr(op, readType());
+        }
+        case NEW:
+          return jimple.newNewExpr((RefType) readType());
+        case NEW_ARRAY: {
+          Type t = readType();
+          return jimple.newNewArrayExpr(t, readValue());
+        }
+        case NEW_MULTI_ARRAY: {
+          ArrayType t = (ArrayType) readType();
+          return jimple.newNewMultiArrayExpr(t, readValues());
+        }
+        case STATIC_INVOKE: {
+          SootMethodRef ref = readMethodRef();
+          return jimple.newStaticInvokeExpr(ref, readValues());
+        }
+        case VIRTUAL_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = readMethodRef();
+          return jimple.newVirtualInvokeExpr(base, ref, readValues());
+        }
+        case INTERFACE_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = readMethodRef();
+          return jimple.newInterfaceInvokeExpr(base, ref, readValues());
+        }
+        case SPECIAL_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = readMethodRef();
+          return jimple.newSpecialInvokeExpr(base, ref, readValues());
+        }
+        case DYNAMIC_INVOKE: {
+          SootMethodRef bootstrapRef = readMethodRef();
+          List<Value> bootstrapArgs = readValues();
+          int tag = readInt();
+          SootMethodRef ref = readMethodRef();
+          return jimple.newDynamicInvokeExpr(bootstrapRef, bootstrapArgs, ref, tag, readValues());
+        }
+        default:
+          throw new IOException("Unknown value kind " + kind);
+      }
+    }
+
+    private List<Value> readValues() throws IOException {
+      int count = readInt();
+      List<Value> values = new ArrayList<Value>(count);
+      for (int i = 0; i < count; i++) {
+        values.add(readValue());
+      }
+      return values;
+    }
+
+    private SootMethodRef readMethodRef() throws IOException {
+      SootClass declaringClass = SootResolver.v().makeClassRef(readString());
+      String name = readString();
+      List<Type> parameterTypes = readTypes();
+      Type returnType = readType();
+      return Scene.v().makeMethodRef(declaringClass, name, parameterTypes, returnType, in.readBoolean());
+    }
+
+    private SootFieldRef readFieldRef() throws IOException {
+      SootClass declaringClass = SootResolver.v().makeClassRef(readString());
+      String name = readString();
+      Type type = readType();
+      return Scene.v().makeFieldRef(declaringClass, name, type, in.readBoolean());
+    }
+
+    private List<Type> readTypes() throws IOException {
+      int count = readInt();
+      List<Type> types = new ArrayList<Type>(count);
+      for (int i = 0; i < count; i++) {
+        types.add(readType());
+      }
+      return types;
+    }
+
+    private Type readType() throws IOException {
+      int kind = in.readUnsignedByte();
+      switch (kind) {
+        case VOID_TYPE:
+          return VoidType.v();
+        case BOOLEAN_TYPE:
+          return BooleanType.v();
+        case BYTE_TYPE:
+          return ByteType.v();
+        case CHAR_TYPE:
+          return CharType.v();
+        case SHORT_TYPE:
+          return ShortType.v();
+        case INT_TYPE:
+          return IntType.v();
+        case LONG_TYPE:
+          return LongType.v();
+        case FLOAT_TYPE:
+          return FloatType.v();
+        case DOUBLE_TYPE:
+          return DoubleType.v();
+        case NULL_TYPE:
+          return NullType.v();
+        case UNKNOWN_TYPE:
+          return UnknownType.v();
+        case REF_TYPE:
+          return RefType.v(readString());
+        case ARRAY_TYPE: {
+          Type baseType = readType();
+          return ArrayType.v(baseType, readInt());
+        }
+        default:
+          throw new IOException("Unknown type kind " + kind);
+      }
+    }
+
+    private String readString() throws IOException {
+      int index = readInt();
+      if (index != -1) {
+        return strings.get(index);
+      }
+      String s = in.readUTF();
+      strings.add(s);
+      return s;
+    }
+
+    private int readInt() throws IOException {
+      int v = 0;
+      for (int shift = 0;; shift += 7) {
+        byte b = in.readByte();
+        v |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          return v;
+        }
+      }
+    }
+
+    private Value newBinop(int index, Value op1, Value op2) throws IOException {
+      switch (index) {
+        case 0:
+          return jimple.newAddExpr(op1, op2);
+        case 1:
+          return jimple.newSubExpr(op1, op2);
+        case 2:
+          return jimple.newMulExpr(op1, op2);
+        case 3:
+          return jimple.newDivExpr(op1, op2);
+        case 4:
+          return jimple.newRemExpr(op1, op2);
+        case 5:
+          return jimple.newAndExpr(op1, op2);
+        case 6:
+          return jimple.newOrExpr(op1, op2);
+        case 7:
+          return jimple.newXorExpr(op1, op2);
+        case 8:
+          return jimple.newShlExpr(op1, op2);
+        case 9:
+          return jimple.newShrExpr(op1, op2);
+        case 10:
+          return jimple.newUshrExpr(op1, op2);
+        case 11:
+          return jimple.newCmpExpr(op1, op2);
+        case 12:
+          return jimple.newCmpgExpr(op1, op2);
+        case 13:
+          return jimple.newCmplExpr(op1, op2);
+        case 14:
+          return jimple.newEqExpr(op1, op2);
+        case 15:
+          return jimple.newNeExpr(op1, op2);
+        case 16:
+          return jimple.newLtExpr(op1, op2);
+        case 17:
+          return jimple.newLeExpr(op1, op2);
+        case 18:
+          return jimple.newGtExpr(op1, op2);
+        case 19:
+          return jimple.newGeExpr(op1, op2);
+        default:
+          throw new IOException("Unknown binary expression " + index);
+      }
+    }
+  }
+
+  /** Returns the index of the given expression for {@link Reader#newBinop(int, Value, Value)}. */
+  private static int binopIndex(BinopExpr e) {
+    if (e instanceof AddExpr) {
+      return 0;
+    } else if (e instanceof SubExpr) {
+      return 1;
+    } else if (e instanceof MulExpr) {
+      return 2;
+    } else if (e instanceof DivExpr) {
+      return 3;
+    } else if (e instanceof RemExpr) {
+      return 4;
+    } else if (e instanceof AndExpr) {
+      return 5;
+    } else if (e instanceof OrExpr) {
+      return 6;
+    } else if (e instanceof XorExpr) {
+      return 7;
+    } else if (e instanceof ShlExpr) {
+      return 8;
+    } else if (e instanceof ShrExpr) {
+      return 9;
+    } else if (e instanceof UshrExpr) {
+      return 10;
+    } else if (e instanceof CmpExpr) {
+      return 11;
+    } else if (e instanceof CmpgExpr) {
+      return 12;
+    } else if (e instanceof CmplExpr) {
+      return 13;
+    } else if (e instanceof EqExpr) {
+      return 14;
+    } else if (e instanceof NeExpr) {
+      return 15;
+    } else if (e instanceof LtExpr) {
+      return 16;
+    } else if (e instanceof LeExpr) {
+      return 17;
+    } else if (e instanceof GtExpr) {
+      return 18;
+    } else if (e instanceof GeExpr) {
+      return 19;
+    }
+    throw new IllegalArgumentException("Cannot encode " + e.getClass().getName());
+  }
+}
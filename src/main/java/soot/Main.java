@@ -26,6 +26,7 @@ import static java.net.URLEncoder.encode;
 
 import com.google.common.base.Joiner;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -34,6 +35,8 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import soot.options.CGOptions;
@@ -236,46 +239,62 @@ public class Main {
 
       autoSetOptions();
 
-      System.out.println("Soot started on " + start);
-
-      Scene.v().loadNecessaryClasses();
-
-      /*
-       * By this all the java to jimple has occured so we just check ast-metrics flag
-       *
-       * If it is set......print the astMetrics.xml file and stop executing soot
-       */
-      if (Options.v().ast_metrics()) {
-        try {
-          OutputStream streamOut = new FileOutputStream("../astMetrics.xml");
-          PrintWriter writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
-          writerOut.println("<?xml version='1.0'?>");
-          writerOut.println("<ASTMetrics>");
-
-          for (ClassData cData : G.v().ASTMetricsData) {
-            // each is a classData object
-            writerOut.println(cData);
+      PhaseMetricsSummary phaseMetrics = null;
+      if (!Options.v().phase_metrics().isEmpty()) {
+        phaseMetrics = new PhaseMetricsSummary();
+        PhaseMetrics.v().setSink(phaseMetrics);
+      }
+
+      try {
+        System.out.println("Soot started on " + start);
+
+        Scene.v().loadNecessaryClasses();
+
+        /*
+         * By this all the java to jimple has occured so we just check ast-metrics flag
+         *
+         * If it is set......print the astMetrics.xml file and stop executing soot
+         */
+        if (Options.v().ast_metrics()) {
+          try {
+            OutputStream streamOut = new FileOutputStream("../astMetrics.xml");
+            PrintWriter writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
+            writerOut.println("<?xml version='1.0'?>");
+            writerOut.println("<ASTMetrics>");
+
+            for (ClassData cData : G.v().ASTMetricsData) {
+              // each is a classData object
+              writerOut.println(cData);
+            }
+
+            writerOut.println("</ASTMetrics>");
+            writerOut.flush();
+            streamOut.close();
+          } catch (IOException e) {
+            throw new CompilationDeathException("Cannot output file astMetrics", e);
           }
+          return;
+        }
 
-          writerOut.println("</ASTMetrics>");
-          writerOut.flush();
-          streamOut.close();
-        } catch (IOException e) {
-          throw new CompilationDeathException("Cannot output file astMetrics", e);
+        PackManager.v().runPacks();
+        if (!Options.v().oaat()) {
+          PackManager.v().writeOutput();
         }
-        return;
-      }
 
-      PackManager.v().runPacks();
-      if (!Options.v().oaat()) {
-        PackManager.v().writeOutput();
-      }
+        Timers.v().totalTimer.end();
 
-      Timers.v().totalTimer.end();
+        // Print out time stats.
+        if (Options.v().time()) {
+          Timers.v().printProfilingInformation();
+        }
+      } finally {
+        if (phaseMetrics != null) {
+          PhaseMetrics.v().setSink(null);
+        }
+      }
 
-      // Print out time stats.
-      if (Options.v().time()) {
-        Timers.v().printProfilingInformation();
+      if (phaseMetrics != null) {
+        writePhaseMetrics(phaseMetrics);
       }
 
     } catch (CompilationDeathException e) {
@@ -295,6 +314,19 @@ public class Main {
 
   }
 
+  private void writePhaseMetrics(PhaseMetricsSummary phaseMetrics) {
+    try (Writer w = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(Options.v().phase_metrics()), StandardCharsets.UTF_8))) {
+      if (Options.v().phase_metrics_format() == Options.phase_metrics_format_csv) {
+        phaseMetrics.writeCsv(w);
+      } else {
+        phaseMetrics.writeJson(w);
+      }
+    } catch (IOException e) {
+      throw new CompilationDeathException("Cannot write phase metrics to " + Options.v().phase_metrics(), e);
+    }
+  }
+
   public void autoSetOptions() {
     // when no-bodies-for-excluded is enabled, also enable phantom refs
     if (Options.v().no_bodies_for_excluded()) {
@@ -122,7 +122,14 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform> {
     if (!PhaseOptions.getBoolean(options, "enabled")) {
       return;
     }
-    internalApply(b);
+    final SootMethod pinned = BodyResidencyManager.v().pinWhileInUse(b);
+    try {
+      internalApply(b);
+    } finally {
+      if (pinned != null) {
+        BodyResidencyManager.v().unpin(pinned);
+      }
+    }
   }
 
   public String getDeclaredOptions() {
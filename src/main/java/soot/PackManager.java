@@ -24,6 +24,7 @@ package soot;
 
 import heros.solver.CountingThreadPoolExecutor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -33,13 +34,20 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.zip.GZIPOutputStream;
@@ -149,7 +157,10 @@ public class PackManager {
   private final Map<String, Pack> packNameToPack = new HashMap<String, Pack>();
   private final List<Pack> packList = new LinkedList<Pack>();
   private boolean onlyStandardPacks = false;
+  private final Set<Transform> standardTransforms = Collections.newSetFromMap(new IdentityHashMap<Transform, Boolean>());
   private JarOutputStream jarFile = null;
+  private StreamingOutput streamingOutput = null;
+  private boolean outputStreamed = false;
   protected DexPrinter dexPrinter = null;
 
   public PackManager(Singletons.Global g) {
@@ -368,6 +379,11 @@ public class PackManager {
       p.add(new Transform("db.force-recompile", null));
     }
 
+    for (Pack pack : packList) {
+      for (Iterator<Transform> it = pack.iterator(); it.hasNext();) {
+        standardTransforms.add(it.next());
+      }
+    }
     onlyStandardPacks = true;
   }
 
@@ -494,18 +510,15 @@ public class PackManager {
     if (Options.v().whole_program() || Options.v().whole_shimple()) {
       runWholeProgramPacks();
     }
-    retrieveAllBodies();
-
-    // Create tags from all values we only have in code assignments now
-    for (SootClass sc : Scene.v().getApplicationClasses()) {
-      if (Options.v().validate()) {
-        sc.validate();
-      }
-      if (!sc.isPhantom) {
-        ConstantInitializerToTagTransformer.v().transformClass(sc, true);
-      }
+    // with streaming output, the body packs load the bodies when they need them, so that bodies are only kept in memory
+    // while their class is in flight; the old coffi front-end is not thread-safe though
+    final boolean streaming = isStreamingOutput();
+    if (!streaming || Options.v().coffi()) {
+      retrieveAllBodies();
     }
 
+    prepareClasses(Scene.v().getApplicationClasses());
+
     // if running coffi cfg metrics, print out results and exit
     if (soot.jbco.Main.metrics) {
       coffiMetrics();
@@ -521,8 +534,80 @@ public class PackManager {
         logger.debug("Running in interactive mode.");
       }
     }
-    runBodyPacks();
-    handleInnerClasses();
+    if (streaming) {
+      runBodyPacksAndWriteOutput();
+    } else {
+      runBodyPacks();
+      handleInnerClasses();
+    }
+  }
+
+  private void prepareClasses(Iterable<SootClass> classes) {
+    // Create tags from all values we only have in code assignments now
+    for (SootClass sc : classes) {
+      if (Options.v().validate()) {
+        sc.validate();
+      }
+      if (!sc.isPhantom) {
+        ConstantInitializerToTagTransformer.v().transformClass(sc, true);
+      }
+    }
+  }
+
+  /**
+   * Returns whether classes are written as soon as their body packs are done, see {@link #runBodyPacksAndWriteOutput()}.
+   */
+  private boolean isStreamingOutput() {
+    if (!Options.v().streaming_output() || Options.v().oaat()) {
+      return false;
+    }
+    final int format = Options.v().output_format();
+    return format != Options.output_format_dava && format != Options.output_format_dex
+        && format != Options.output_format_force_dex;
+  }
+
+  /**
+   * Runs the body packs and writes every class as soon as they are done with it, so that writing the output overlaps with
+   * the transformation of the remaining classes. {@link #writeOutput()} does not write the classes again.
+   *
+   * Loading the bodies may add application classes, e.g. for lambdas, so the application classes are scanned again after
+   * each batch until no new class shows up.
+   */
+  private void runBodyPacksAndWriteOutput() {
+    int threadNum = Options.v().getNumThreads();
+    int depth = Options.v().streaming_output_depth() > 0 ? Options.v().streaming_output_depth() : 2 * threadNum;
+
+    setupJAR();
+    streamingOutput = new StreamingOutput(depth);
+    try {
+      Set<SootClass> done = new HashSet<SootClass>();
+      List<SootClass> batch = newReachableClasses(done);
+      while (!batch.isEmpty()) {
+        runBodyPacks(batch.iterator());
+        batch = newReachableClasses(done);
+        // classes added while loading the bodies have not been prepared by runPacksNormally()
+        prepareClasses(batch);
+      }
+      streamingOutput.close();
+    } finally {
+      streamingOutput = null;
+      tearDownJAR();
+    }
+    outputStreamed = true;
+  }
+
+  /**
+   * Returns the application classes that are not in the given set yet, and adds them to it.
+   */
+  private List<SootClass> newReachableClasses(Set<SootClass> done) {
+    List<SootClass> ret = new ArrayList<SootClass>();
+    for (Iterator<SootClass> it = reachableClasses(); it.hasNext();) {
+      SootClass c = it.next();
+      if (done.add(c)) {
+        ret.add(c);
+      }
+    }
+    return ret;
   }
 
   public void coffiMetrics() {
@@ -555,21 +640,26 @@ public class PackManager {
   }
 
   public void writeOutput() {
-    setupJAR();
     if (Options.v().verbose()) {
       PhaseDumper.v().dumpBefore("output");
     }
-    if (Options.v().output_format() == Options.output_format_dava) {
-      postProcessDAVA();
-      outputDava();
-    } else if (Options.v().output_format() == Options.output_format_dex
-        || Options.v().output_format() == Options.output_format_force_dex) {
-      writeDexOutput();
+    if (outputStreamed) {
+      // the classes and their XML attributes have already been written while the body packs were running
+      outputStreamed = false;
     } else {
-      writeOutput(reachableClasses());
-      tearDownJAR();
+      setupJAR();
+      if (Options.v().output_format() == Options.output_format_dava) {
+        postProcessDAVA();
+        outputDava();
+      } else if (Options.v().output_format() == Options.output_format_dex
+          || Options.v().output_format() == Options.output_format_force_dex) {
+        writeDexOutput();
+      } else {
+        writeOutput(reachableClasses());
+        tearDownJAR();
+      }
+      postProcessXML(reachableClasses());
     }
-    postProcessXML(reachableClasses());
 
     if (!Options.v().no_writeout_body_releasing()) {
       releaseBodies(reachableClasses());
@@ -651,7 +741,16 @@ public class PackManager {
   }
 
   private void runBodyPacks(final Iterator<SootClass> classes) {
-    int threadNum = Runtime.getRuntime().availableProcessors();
+    int threadNum = Options.v().getNumThreads();
+    if (Options.v().body_pack_scheduler() == Options.body_pack_scheduler_method) {
+      BodyPackConfig config = new BodyPackConfig();
+      if (canRunBodyPacksPerMethod(config)) {
+        runBodyPacksPerMethod(classes, config, threadNum);
+        return;
+      }
+      logger.debug("The body packs may change classes, running them per class");
+    }
+
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
@@ -679,6 +778,274 @@ public class PackManager {
     }
   }
 
+  /**
+   * Returns whether the body packs only change the bodies they run on, so that the methods of one class can be transformed
+   * concurrently. Dava decompiles whole classes and the annotations of the jap pack add tags to the declaring classes and
+   * may load classes, so they need the class scheduler. The other standard transformations only change bodies, and a
+   * transformation that has been added to the packs must declare that it does, see
+   * {@link BodyTransformer#transformsOnlyBody()}.
+   */
+  private boolean canRunBodyPacksPerMethod(BodyPackConfig config) {
+    if (config.produceDava) {
+      return false;
+    }
+    Pack jap = getPack("jap");
+    for (Pack pack : packList) {
+      if (!(pack instanceof BodyPack) || !PhaseOptions.getBoolean(PhaseOptions.v().getPhaseOptions(pack), "enabled")) {
+        continue;
+      }
+      for (Iterator<Transform> it = pack.iterator(); it.hasNext();) {
+        Transform t = it.next();
+        if (!PhaseOptions.getBoolean(PhaseOptions.v().getPhaseOptions(t), "enabled")) {
+          continue;
+        }
+        Transformer transformer = t.getTransformer();
+        if (transformer instanceof BodyTransformer && ((BodyTransformer) transformer).transformsOnlyBody()) {
+          continue;
+        }
+        if (pack == jap || !standardTransforms.contains(t)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs the body packs on every method separately. The methods are ordered by descending sizes of their bodies and taken
+   * from this shared queue by the worker threads, so that large bodies are not left over at the end of the run while the
+   * other threads idle. Whatever has to wait for all methods of a class is done by the thread that finishes the last of
+   * them.
+   */
+  private void runBodyPacksPerMethod(Iterator<SootClass> classes, BodyPackConfig config, int threadNum) {
+    List<MethodBodyPacks> work = new ArrayList<MethodBodyPacks>();
+    while (classes.hasNext()) {
+      SootClass c = classes.next();
+      startBodyPacks(c, config);
+      // transformers may add methods to the class, see runBodyPacks(SootClass)
+      List<SootMethod> methods = new ArrayList<SootMethod>();
+      for (SootMethod m : new ArrayList<SootMethod>(c.getMethods())) {
+        if (m.isConcrete()) {
+          methods.add(m);
+        }
+      }
+      if (methods.isEmpty()) {
+        finishBodyPacks(c, config, new TagCollector());
+        continue;
+      }
+      ClassBodyPacks classWork = new ClassBodyPacks(c, config, methods.size());
+      for (int i = 0; i < methods.size(); i++) {
+        work.add(new MethodBodyPacks(classWork, i, methods.get(i)));
+      }
+    }
+    if (work.isEmpty()) {
+      return;
+    }
+    // with streaming output, classes should be completed one after the other so that they can be written and released;
+    // the bodies have not been loaded yet then anyway
+    if (streamingOutput == null) {
+      Collections.sort(work, new Comparator<MethodBodyPacks>() {
+        @Override
+        public int compare(MethodBodyPacks o1, MethodBodyPacks o2) {
+          return Integer.compare(o2.size, o1.size);
+        }
+      });
+    }
+
+    final AtomicInteger next = new AtomicInteger();
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    for (int i = 0; i < Math.min(threadNum, work.size()); i++) {
+      executor.execute(() -> {
+        for (int index = next.getAndIncrement(); index < work.size(); index = next.getAndIncrement()) {
+          work.get(index).run();
+        }
+      });
+    }
+
+    try {
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Could not wait for pack threads to finish: " + e.getMessage(), e);
+    }
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+  }
+
+  /**
+   * The body packs of all methods of one class when running the body packs per method.
+   */
+  private final class ClassBodyPacks {
+    final SootClass c;
+    final BodyPackConfig config;
+    final TagCollector[] tags;
+    final AtomicInteger remaining;
+
+    ClassBodyPacks(SootClass c, BodyPackConfig config, int methodCount) {
+      this.c = c;
+      this.config = config;
+      this.tags = new TagCollector[methodCount];
+      this.remaining = new AtomicInteger(methodCount);
+    }
+
+    void finished(int index, TagCollector tc) {
+      tags[index] = tc;
+      if (remaining.decrementAndGet() == 0) {
+        // keep the tags in the order of the methods
+        TagCollector classTags = new TagCollector();
+        for (TagCollector t : tags) {
+          classTags.addAll(t);
+        }
+        finishBodyPacks(c, config, classTags);
+      }
+    }
+  }
+
+  /**
+   * The body packs of a single method when running the body packs per method.
+   */
+  private final class MethodBodyPacks implements Runnable {
+    final ClassBodyPacks classWork;
+    final int index;
+    final SootMethod method;
+    /**
+     * The number of units in the body, only used for ordering the work. This is 0 if the body has not been loaded yet, which
+     * is always the case with streaming output, where the work is not ordered.
+     */
+    final int size;
+
+    MethodBodyPacks(ClassBodyPacks classWork, int index, SootMethod method) {
+      this.classWork = classWork;
+      this.index = index;
+      this.method = method;
+      this.size = method.hasActiveBody() ? method.getActiveBody().getUnits().size() : 0;
+    }
+
+    @Override
+    public void run() {
+      TagCollector tc = new TagCollector();
+      runBodyPacks(method, classWork.config, tc);
+      classWork.finished(index, tc);
+    }
+  }
+
+  /**
+   * Writes the classes whose body packs are done while the body packs still run on other classes. Classes are printed by the
+   * thread that finished them. Like {@link #writeOutput(Iterator)}, only class files are printed concurrently; the other
+   * formats are printed by one thread at a time. When writing into a jar, the printed classes are passed to a single writer
+   * thread through a bounded queue, so that printing threads block instead of piling up output if the jar cannot keep up.
+   */
+  private final class StreamingOutput implements Runnable {
+    private final BlockingQueue<PrintedClass> queue;
+    private final Thread writer;
+    private volatile Throwable failure;
+
+    StreamingOutput(int depth) {
+      if (jarFile == null) {
+        queue = null;
+        writer = null;
+      } else {
+        queue = new ArrayBlockingQueue<PrintedClass>(depth);
+        writer = new Thread(this, "Soot jar writer");
+        writer.setDaemon(true);
+        writer.start();
+      }
+    }
+
+    /**
+     * Writes the given class and releases its bodies.
+     */
+    void write(SootClass c) {
+      InnerClassTagAggregator.v().aggregate(c);
+      if (Options.v().output_format() == Options.output_format_class) {
+        writeClass(c);
+      } else {
+        // the printers of the other formats, like Printer.v(), are shared and keep state while they print a class
+        synchronized (this) {
+          writeClass(c);
+          if (Options.v().xml_attributes() && Options.v().output_format() == Options.output_format_jimple) {
+            processXMLForClass(c);
+          }
+        }
+      }
+      if (!Options.v().no_writeout_body_releasing()) {
+        releaseBodies(c);
+      }
+    }
+
+    void enqueue(String fileName, byte[] content) {
+      put(new PrintedClass(fileName, content));
+    }
+
+    private void put(PrintedClass pc) {
+      try {
+        while (!queue.offer(pc, 100, TimeUnit.MILLISECONDS)) {
+          if (failure != null) {
+            throw new CompilationDeathException("Cannot write output jar", failure);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Waits until the writer thread has stored all classes in the jar.
+     */
+    void close() {
+      if (writer == null) {
+        return;
+      }
+      put(PrintedClass.END);
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      if (failure != null) {
+        throw new CompilationDeathException("Cannot write output jar", failure);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (PrintedClass pc = queue.take(); pc != PrintedClass.END; pc = queue.take()) {
+          JarEntry entry = new JarEntry(pc.fileName);
+          entry.setMethod(ZipEntry.DEFLATED);
+          jarFile.putNextEntry(entry);
+          jarFile.write(pc.content);
+          jarFile.closeEntry();
+        }
+      } catch (Throwable t) {
+        failure = t;
+      }
+    }
+  }
+
+  /**
+   * A class printed into memory that waits for being stored in the output jar.
+   */
+  private static final class PrintedClass {
+    static final PrintedClass END = new PrintedClass(null, null);
+
+    final String fileName;
+    final byte[] content;
+
+    PrintedClass(String fileName, byte[] content) {
+      this.fileName = fileName;
+      this.content = content;
+    }
+  }
+
   private void handleInnerClasses() {
     InnerClassTagAggregator agg = InnerClassTagAggregator.v();
     agg.internalTransform("", null);
@@ -892,63 +1259,11 @@ public class PackManager {
     }
   }
 
-  @SuppressWarnings("fallthrough")
   private void runBodyPacks(SootClass c) {
-    final int format = Options.v().output_format();
-    if (format == Options.output_format_dava) {
-      logger.debug("Decompiling {}...", c.getName());
-
-      // January 13th, 2006 SootMethodAddedByDava is set to false for
-      // SuperFirstStmtHandler
-      G.v().SootMethodAddedByDava = false;
-    } else {
-      logger.debug("Transforming {}...", c.getName());
-    }
+    final BodyPackConfig config = new BodyPackConfig();
+    startBodyPacks(c, config);
 
-    boolean produceBaf = false, produceGrimp = false, produceDava = false, produceJimple = true, produceShimple = false;
-
-    switch (format) {
-      case Options.output_format_none:
-      case Options.output_format_xml:
-      case Options.output_format_jimple:
-      case Options.output_format_jimp:
-      case Options.output_format_template:
-      case Options.output_format_dex:
-      case Options.output_format_force_dex:
-        break;
-      case Options.output_format_shimp:
-      case Options.output_format_shimple:
-        produceShimple = true;
-        // FLIP produceJimple
-        produceJimple = false;
-        break;
-      case Options.output_format_dava:
-        produceDava = true;
-        // FALL THROUGH
-      case Options.output_format_grimp:
-      case Options.output_format_grimple:
-        produceGrimp = true;
-        break;
-      case Options.output_format_baf:
-      case Options.output_format_b:
-        produceBaf = true;
-        break;
-      case Options.output_format_jasmin:
-      case Options.output_format_class:
-      case Options.output_format_asm:
-        produceGrimp = Options.v().via_grimp();
-        produceBaf = !produceGrimp;
-        break;
-      default:
-        throw new RuntimeException();
-    }
-
-    soot.xml.TagCollector tc = new soot.xml.TagCollector();
-
-    boolean wholeShimple = Options.v().whole_shimple();
-    if (Options.v().via_shimple()) {
-      produceShimple = true;
-    }
+    TagCollector tc = new TagCollector();
 
     // here we create a copy of the methods so that transformers are able
     // to add method bodies during the following iteration;
@@ -968,68 +1283,161 @@ public class PackManager {
         continue;
       }
 
-      if (produceShimple || wholeShimple) {
-        ShimpleBody sBody = null;
+      runBodyPacks(m, config, tc);
+    }
 
-        // whole shimple or not?
-        {
-          Body body = m.retrieveActiveBody();
+    finishBodyPacks(c, config, tc);
+  }
 
-          if (body instanceof ShimpleBody) {
-            sBody = (ShimpleBody) body;
-            if (!sBody.isSSA()) {
-              sBody.rebuild();
-            }
-          } else {
-            sBody = Shimple.v().newBody(body);
-          }
-        }
+  /**
+   * The intermediate representations the body packs have to produce for the selected output format.
+   */
+  private static final class BodyPackConfig {
+    boolean produceBaf = false;
+    boolean produceGrimp = false;
+    boolean produceDava = false;
+    boolean produceJimple = true;
+    boolean produceShimple = false;
+    final boolean wholeShimple = Options.v().whole_shimple();
+
+    @SuppressWarnings("fallthrough")
+    BodyPackConfig() {
+      switch (Options.v().output_format()) {
+        case Options.output_format_none:
+        case Options.output_format_xml:
+        case Options.output_format_jimple:
+        case Options.output_format_jimp:
+        case Options.output_format_template:
+        case Options.output_format_dex:
+        case Options.output_format_force_dex:
+          break;
+        case Options.output_format_shimp:
+        case Options.output_format_shimple:
+          produceShimple = true;
+          // FLIP produceJimple
+          produceJimple = false;
+          break;
+        case Options.output_format_dava:
+          produceDava = true;
+          // FALL THROUGH
+        case Options.output_format_grimp:
+        case Options.output_format_grimple:
+          produceGrimp = true;
+          break;
+        case Options.output_format_baf:
+        case Options.output_format_b:
+          produceBaf = true;
+          break;
+        case Options.output_format_jasmin:
+        case Options.output_format_class:
+        case Options.output_format_asm:
+          produceGrimp = Options.v().via_grimp();
+          produceBaf = !produceGrimp;
+          break;
+        default:
+          throw new RuntimeException();
+      }
+
+      if (Options.v().via_shimple()) {
+        produceShimple = true;
+      }
+    }
+  }
 
-        m.setActiveBody(sBody);
-        PackManager.v().getPack("stp").apply(sBody);
-        PackManager.v().getPack("sop").apply(sBody);
+  private void startBodyPacks(SootClass c, BodyPackConfig config) {
+    if (config.produceDava) {
+      logger.debug("Decompiling {}...", c.getName());
 
-        if (produceJimple || (wholeShimple && !produceShimple)) {
-          m.setActiveBody(sBody.toJimpleBody());
-        }
+      // January 13th, 2006 SootMethodAddedByDava is set to false for
+      // SuperFirstStmtHandler
+      G.v().SootMethodAddedByDava = false;
+    } else {
+      logger.debug("Transforming {}...", c.getName());
+    }
+  }
+
+  /**
+   * Runs the body packs on the body of the given concrete method.
+   */
+  private void runBodyPacks(SootMethod m, BodyPackConfig config, TagCollector tc) {
+    // The body must not be evicted between the phases, which all work on the body retrieved here
+    final SootMethod pinned = BodyResidencyManager.v().pinWhileInUse(m);
+    try {
+      runBodyPacksPinned(m, config, tc);
+    } finally {
+      if (pinned != null) {
+        BodyResidencyManager.v().unpin(pinned);
       }
+    }
+  }
+
+  private void runBodyPacksPinned(SootMethod m, BodyPackConfig config, TagCollector tc) {
+    if (config.produceShimple || config.wholeShimple) {
+      ShimpleBody sBody = null;
 
-      if (produceJimple) {
+      // whole shimple or not?
+      {
         Body body = m.retrieveActiveBody();
-        // Change
-        CopyPropagator.v().transform(body);
-        ConditionalBranchFolder.v().transform(body);
-        UnreachableCodeEliminator.v().transform(body);
-        DeadAssignmentEliminator.v().transform(body);
-        UnusedLocalEliminator.v().transform(body);
-        PackManager.v().getPack("jtp").apply(body);
-        if (Options.v().validate()) {
-          body.validate();
-        }
-        PackManager.v().getPack("jop").apply(body);
-        PackManager.v().getPack("jap").apply(body);
-        if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
-          // System.out.println("collecting body tags");
-          tc.collectBodyTags(body);
+
+        if (body instanceof ShimpleBody) {
+          sBody = (ShimpleBody) body;
+          if (!sBody.isSSA()) {
+            sBody.rebuild();
+          }
+        } else {
+          sBody = Shimple.v().newBody(body);
         }
       }
 
-      // PackManager.v().getPack("cfg").apply(m.retrieveActiveBody());
+      m.setActiveBody(sBody);
+      PackManager.v().getPack("stp").apply(sBody);
+      PackManager.v().getPack("sop").apply(sBody);
 
-      if (produceGrimp) {
-        m.setActiveBody(Grimp.v().newBody(m.getActiveBody(), "gb"));
-        PackManager.v().getPack("gop").apply(m.getActiveBody());
-      } else if (produceBaf) {
-        m.setActiveBody(convertJimpleBodyToBaf(m));
+      if (config.produceJimple || (config.wholeShimple && !config.produceShimple)) {
+        m.setActiveBody(sBody.toJimpleBody());
       }
     }
 
+    if (config.produceJimple) {
+      Body body = m.retrieveActiveBody();
+      // Change
+      CopyPropagator.v().transform(body);
+      ConditionalBranchFolder.v().transform(body);
+      UnreachableCodeEliminator.v().transform(body);
+      DeadAssignmentEliminator.v().transform(body);
+      UnusedLocalEliminator.v().transform(body);
+      PackManager.v().getPack("jtp").apply(body);
+      if (Options.v().validate()) {
+        body.validate();
+      }
+      PackManager.v().getPack("jop").apply(body);
+      PackManager.v().getPack("jap").apply(body);
+      if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
+        // System.out.println("collecting body tags");
+        tc.collectBodyTags(body);
+      }
+    }
+
+    // PackManager.v().getPack("cfg").apply(m.retrieveActiveBody());
+
+    if (config.produceGrimp) {
+      m.setActiveBody(Grimp.v().newBody(m.getActiveBody(), "gb"));
+      PackManager.v().getPack("gop").apply(m.getActiveBody());
+    } else if (config.produceBaf) {
+      m.setActiveBody(convertJimpleBodyToBaf(m));
+    }
+  }
+
+  /**
+   * Does the work that has to wait until the body packs have been run on all methods of the given class.
+   */
+  private void finishBodyPacks(SootClass c, BodyPackConfig config, TagCollector tc) {
     if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
       processXMLForClass(c, tc);
       // System.out.println("processed xml for class");
     }
 
-    if (produceDava) {
+    if (config.produceDava) {
       for (SootMethod m : c.getMethods()) {
         if (!m.isConcrete()) {
           continue;
@@ -1056,6 +1464,10 @@ public class PackManager {
       }
 
     } // end if produceDava
+
+    if (streamingOutput != null) {
+      streamingOutput.write(c);
+    }
   }
 
   public BafBody convertJimpleBodyToBaf(SootMethod m) {
@@ -1097,18 +1509,23 @@ public class PackManager {
       return;
     }
 
-    OutputStream streamOut = null;
-    PrintWriter writerOut = null;
-
     String fileName = SourceLocator.v().getFileNameFor(c, format);
     if (Options.v().gzip()) {
       fileName = fileName + ".gz";
     }
 
+    OutputStream streamOut = null;
     try {
       if (jarFile != null) {
         // Fix path delimiters according to ZIP specification
         fileName = fileName.replace("\\", "/");
+        if (streamingOutput != null) {
+          // print into memory on this thread, the jar writer thread stores the entry
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          printClass(c, format, fileName, bytes, true);
+          streamingOutput.enqueue(fileName, bytes.toByteArray());
+          return;
+        }
         JarEntry entry = new JarEntry(fileName);
         entry.setMethod(ZipEntry.DEFLATED);
         jarFile.putNextEntry(entry);
@@ -1117,6 +1534,27 @@ public class PackManager {
         new File(fileName).getParentFile().mkdirs();
         streamOut = new FileOutputStream(fileName);
       }
+    } catch (IOException e) {
+      throw new CompilationDeathException("Cannot output file " + fileName, e);
+    }
+
+    printClass(c, format, fileName, streamOut, jarFile == null);
+
+    if (jarFile != null) {
+      try {
+        jarFile.closeEntry();
+      } catch (IOException e) {
+        throw new CompilationDeathException("Cannot close output file " + fileName);
+      }
+    }
+  }
+
+  /**
+   * Prints the given class in the given output format to the given stream.
+   */
+  private void printClass(SootClass c, int format, String fileName, OutputStream streamOut, boolean close) {
+    PrintWriter writerOut = null;
+    try {
       if (Options.v().gzip()) {
         streamOut = new GZIPOutputStream(streamOut);
       }
@@ -1175,11 +1613,9 @@ public class PackManager {
 
     try {
       writerOut.flush();
-      if (jarFile == null) {
+      if (close) {
         streamOut.close();
         writerOut.close();
-      } else {
-        jarFile.closeEntry();
       }
     } catch (IOException e) {
       throw new CompilationDeathException("Cannot close output file " + fileName);
@@ -1258,7 +1694,7 @@ public class PackManager {
 
   private void retrieveAllBodies() {
     // The old coffi front-end is not thread-safe
-    int threadNum = Options.v().coffi() ? 1 : Runtime.getRuntime().availableProcessors();
+    int threadNum = Options.v().coffi() ? 1 : Options.v().getNumThreads();
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
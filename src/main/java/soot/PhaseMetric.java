@@ -0,0 +1,103 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * The metrics of applying one phase to one body or to the scene, as recorded by {@link PhaseMetrics}.
+ */
+public class PhaseMetric {
+  private final String phaseName;
+  private final SootMethod method;
+  private final long wallTime;
+  private final long cpuTime;
+  private final long allocatedBytes;
+  private final int unitsBefore;
+  private final int unitsAfter;
+
+  public PhaseMetric(String phaseName, SootMethod method, long wallTime, long cpuTime, long allocatedBytes,
+      int unitsBefore, int unitsAfter) {
+    this.phaseName = phaseName;
+    this.method = method;
+    this.wallTime = wallTime;
+    this.cpuTime = cpuTime;
+    this.allocatedBytes = allocatedBytes;
+    this.unitsBefore = unitsBefore;
+    this.unitsAfter = unitsAfter;
+  }
+
+  public String getPhaseName() {
+    return phaseName;
+  }
+
+  /**
+   * Returns the method whose body the phase was applied to, or <code>null</code> for a scene phase.
+   */
+  public SootMethod getMethod() {
+    return method;
+  }
+
+  public boolean isBodyPhase() {
+    return method != null;
+  }
+
+  /**
+   * Returns the elapsed wall-clock time in nanoseconds.
+   */
+  public long getWallTime() {
+    return wallTime;
+  }
+
+  /**
+   * Returns the CPU time of the applying thread in nanoseconds, or -1 if the JVM does not support measuring it.
+   */
+  public long getCpuTime() {
+    return cpuTime;
+  }
+
+  /**
+   * Returns the number of bytes allocated by the applying thread, or -1 if the JVM does not support measuring it.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Returns the number of units of the body before the phase, or -1 for a scene phase.
+   */
+  public int getUnitsBefore() {
+    return unitsBefore;
+  }
+
+  /**
+   * Returns the number of units of the body after the phase, or -1 for a scene phase.
+   */
+  public int getUnitsAfter() {
+    return unitsAfter;
+  }
+
+  @Override
+  public String toString() {
+    return phaseName + (method == null ? "" : " on " + method.getSignature()) + ": " + wallTime + "ns";
+  }
+}
@@ -0,0 +1,179 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures every phase that {@link Transform} applies and hands the results to a {@link PhaseMetricsSink}. Nothing is
+ * measured unless a sink has been set, either with {@link #setSink(PhaseMetricsSink)} or with the
+ * <code>-phase-metrics</code> command-line option.
+ *
+ * <p>
+ * CPU time and allocated bytes are taken from the {@link ThreadMXBean} and therefore only cover the thread that applies
+ * the phase, not helper threads the phase may start.
+ * </p>
+ */
+public class PhaseMetrics {
+  private static final Logger logger = LoggerFactory.getLogger(PhaseMetrics.class);
+
+  private final ThreadMXBean threadBean;
+  private volatile boolean measureCpuTime;
+  private volatile boolean measureAllocatedBytes;
+  private boolean enabledCpuTime;
+  private boolean enabledAllocatedBytes;
+  private volatile PhaseMetricsSink sink;
+
+  public PhaseMetrics(Singletons.Global g) {
+    this.threadBean = ManagementFactory.getThreadMXBean();
+  }
+
+  public static PhaseMetrics v() {
+    return G.v().soot_PhaseMetrics();
+  }
+
+  public PhaseMetricsSink getSink() {
+    return sink;
+  }
+
+  /**
+   * Sets the sink that receives the metrics of all phases applied from now on, or switches off measuring if
+   * <code>sink</code> is <code>null</code>. Measuring CPU time and allocated bytes may require to switch on tracking for
+   * all threads of the JVM. This is only done while a sink is set; afterwards, the previous settings are restored.
+   */
+  public synchronized void setSink(PhaseMetricsSink sink) {
+    if (sink != null && this.sink == null) {
+      enableTracking();
+    }
+    this.sink = sink;
+    if (sink == null) {
+      restoreTracking();
+    }
+  }
+
+  public boolean isEnabled() {
+    return sink != null;
+  }
+
+  /**
+   * Starts measuring a phase that is about to be applied to the given body, or to the scene if <code>b</code> is
+   * <code>null</code>.
+   *
+   * @return the running measurement, or <code>null</code> if no sink is set
+   */
+  public Probe start(Body b) {
+    PhaseMetricsSink sink = this.sink;
+    return sink == null ? null : new Probe(sink, b);
+  }
+
+  private void enableTracking() {
+    try {
+      if (threadBean.isCurrentThreadCpuTimeSupported()) {
+        if (!threadBean.isThreadCpuTimeEnabled()) {
+          threadBean.setThreadCpuTimeEnabled(true);
+          enabledCpuTime = true;
+        }
+        measureCpuTime = true;
+      }
+    } catch (UnsupportedOperationException | SecurityException e) {
+      logger.debug("Cannot measure the CPU time of phases: " + e);
+    }
+
+    try {
+      if (threadBean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        if (bean.isThreadAllocatedMemorySupported()) {
+          if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            enabledAllocatedBytes = true;
+          }
+          measureAllocatedBytes = true;
+        }
+      }
+    } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+      logger.debug("Cannot measure the allocated bytes of phases: " + e);
+    }
+  }
+
+  private void restoreTracking() {
+    measureCpuTime = false;
+    measureAllocatedBytes = false;
+    if (enabledCpuTime) {
+      threadBean.setThreadCpuTimeEnabled(false);
+      enabledCpuTime = false;
+    }
+    if (enabledAllocatedBytes) {
+      ((com.sun.management.ThreadMXBean) threadBean).setThreadAllocatedMemoryEnabled(false);
+      enabledAllocatedBytes = false;
+    }
+  }
+
+  private long cpuTime() {
+    return measureCpuTime ? threadBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  private long allocatedBytes() {
+    return measureAllocatedBytes
+        ? ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId())
+        : -1;
+  }
+
+  /**
+   * A running measurement of one phase. Must be finished on the thread that started it.
+   */
+  public final class Probe {
+    private final PhaseMetricsSink sink;
+    private final Body body;
+    private final int unitsBefore;
+    private final long allocStart;
+    private final long cpuStart;
+    private final long wallStart;
+
+    private Probe(PhaseMetricsSink sink, Body body) {
+      this.sink = sink;
+      this.body = body;
+      this.unitsBefore = body == null ? -1 : body.getUnits().size();
+      this.allocStart = allocatedBytes();
+      this.cpuStart = cpuTime();
+      this.wallStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes the measurement and reports it to the sink.
+     */
+    public void finish(String phaseName) {
+      long wall = System.nanoTime() - wallStart;
+      // Tracking may have been switched off since the measurement started
+      long cpu = cpuStart >= 0 && measureCpuTime ? cpuTime() - cpuStart : -1;
+      long alloc = allocStart >= 0 && measureAllocatedBytes ? allocatedBytes() - allocStart : -1;
+      int unitsAfter = body == null ? -1 : body.getUnits().size();
+      sink.record(new PhaseMetric(phaseName, body == null ? null : body.getMethod(), wall, cpu, alloc, unitsBefore,
+          unitsAfter));
+    }
+  }
+}
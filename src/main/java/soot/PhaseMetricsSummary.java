@@ -0,0 +1,198 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PhaseMetricsSink} that sums up the metrics of each phase and exports the sums as JSON or CSV. Phases are
+ * reported in the order in which they were first applied.
+ */
+public class PhaseMetricsSummary implements PhaseMetricsSink {
+
+  private final Map<String, PhaseTotals> totals = new LinkedHashMap<String, PhaseTotals>();
+
+  @Override
+  public synchronized void record(PhaseMetric metric) {
+    PhaseTotals t = totals.get(metric.getPhaseName());
+    if (t == null) {
+      totals.put(metric.getPhaseName(), t = new PhaseTotals(metric.getPhaseName()));
+    }
+    t.add(metric);
+  }
+
+  /**
+   * Returns a snapshot of the totals of all phases recorded so far.
+   */
+  public synchronized List<PhaseTotals> getTotals() {
+    List<PhaseTotals> ret = new ArrayList<PhaseTotals>(totals.size());
+    for (PhaseTotals t : totals.values()) {
+      ret.add(t.copy());
+    }
+    return ret;
+  }
+
+  /**
+   * Writes the totals as a JSON array with one object per phase.
+   */
+  public void writeJson(Writer w) throws IOException {
+    w.write("[");
+    boolean first = true;
+    for (PhaseTotals t : getTotals()) {
+      w.write(first ? "\n" : ",\n");
+      first = false;
+      w.write("  {\"phase\": \"" + escapeJson(t.phaseName) + "\", \"applications\": " + t.applications + ", \"bodies\": "
+          + t.bodies + ", \"wallTimeNanos\": " + t.wallTime + ", \"cpuTimeNanos\": " + t.cpuTime
+          + ", \"allocatedBytes\": " + t.allocatedBytes + ", \"unitsBefore\": " + t.unitsBefore + ", \"unitsAfter\": "
+          + t.unitsAfter + "}");
+    }
+    w.write("\n]\n");
+    w.flush();
+  }
+
+  /**
+   * Writes the totals as comma-separated values, with a header line and one line per phase.
+   */
+  public void writeCsv(Writer w) throws IOException {
+    w.write("phase,applications,bodies,wallTimeNanos,cpuTimeNanos,allocatedBytes,unitsBefore,unitsAfter\n");
+    for (PhaseTotals t : getTotals()) {
+      w.write(escapeCsv(t.phaseName) + "," + t.applications + "," + t.bodies + "," + t.wallTime + "," + t.cpuTime + ","
+          + t.allocatedBytes + "," + t.unitsBefore + "," + t.unitsAfter + "\n");
+    }
+    w.flush();
+  }
+
+  private static String escapeJson(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String escapeCsv(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+      return s;
+    }
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * The summed up metrics of one phase. CPU time and allocated bytes are -1 if they could not be measured.
+   */
+  public static class PhaseTotals {
+    private final String phaseName;
+    private long applications;
+    private long bodies;
+    private long wallTime;
+    private long cpuTime;
+    private long allocatedBytes;
+    private long unitsBefore;
+    private long unitsAfter;
+
+    PhaseTotals(String phaseName) {
+      this.phaseName = phaseName;
+    }
+
+    void add(PhaseMetric m) {
+      applications++;
+      wallTime += m.getWallTime();
+      cpuTime = m.getCpuTime() < 0 || cpuTime < 0 ? -1 : cpuTime + m.getCpuTime();
+      allocatedBytes = m.getAllocatedBytes() < 0 || allocatedBytes < 0 ? -1 : allocatedBytes + m.getAllocatedBytes();
+      if (m.isBodyPhase()) {
+        bodies++;
+        unitsBefore += m.getUnitsBefore();
+        unitsAfter += m.getUnitsAfter();
+      }
+    }
+
+    PhaseTotals copy() {
+      PhaseTotals t = new PhaseTotals(phaseName);
+      t.applications = applications;
+      t.bodies = bodies;
+      t.wallTime = wallTime;
+      t.cpuTime = cpuTime;
+      t.allocatedBytes = allocatedBytes;
+      t.unitsBefore = unitsBefore;
+      t.unitsAfter = unitsAfter;
+      return t;
+    }
+
+    public String getPhaseName() {
+      return phaseName;
+    }
+
+    /**
+     * Returns how often the phase was applied, to bodies or to the scene.
+     */
+    public long getApplications() {
+      return applications;
+    }
+
+    /**
+     * Returns the number of bodies the phase was applied to.
+     */
+    public long getBodies() {
+      return bodies;
+    }
+
+    public long getWallTime() {
+      return wallTime;
+    }
+
+    public long getCpuTime() {
+      return cpuTime;
+    }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Returns the total number of units of all bodies before the phase was applied to them.
+     */
+    public long getUnitsBefore() {
+      return unitsBefore;
+    }
+
+    /**
+     * Returns the total number of units of all bodies after the phase was applied to them.
+     */
+    public long getUnitsAfter() {
+      return unitsAfter;
+    }
+  }
+}
@@ -113,15 +113,20 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
    * @return the corresponding SootClass
    */
   public SootClass getSootClass() {
-    if (sootClass == null) {
+    SootClass c = sootClass;
+    if (c == null && isShared()) {
+      c = Scene.v().getSharedTypeClass(this);
+    }
+    if (c == null) {
       // System.out.println( "wrning: "+this+" has no sootclass" );
-      sootClass = SootResolver.v().makeClassRef(className);
+      c = SootResolver.v().makeClassRef(className);
+      setSootClass(c);
     }
-    return sootClass;
+    return c;
   }
 
   public boolean hasSootClass() {
-    return sootClass != null;
+    return sootClass != null || (isShared() && Scene.v().getSharedTypeClass(this) != null);
   }
 
   public void setClassName(String className) {
@@ -135,7 +140,14 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
    *          The SootClass corresponding to this RefType.
    */
   public void setSootClass(SootClass sootClass) {
-    this.sootClass = sootClass;
+    if (!isShared()) {
+      this.sootClass = sootClass;
+    } else if (this.sootClass == null) {
+      // The snapshot has no class of this name, so every scene binds its own
+      Scene.v().setSharedTypeClass(this, sootClass);
+    } else if (this.sootClass != sootClass) {
+      throw new RuntimeException("Attempt to rebind " + className + ", which is shared with a scene snapshot");
+    }
   }
 
   /**
@@ -255,11 +267,19 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
   }
 
   public AnySubType getAnySubType() {
-    return anySubType;
+    AnySubType t = anySubType;
+    if (t == null && isShared()) {
+      return Scene.v().getSharedAnySubType(this);
+    }
+    return t;
   }
 
   public void setAnySubType(AnySubType anySubType) {
-    this.anySubType = anySubType;
+    if (isShared()) {
+      Scene.v().setSharedAnySubType(this, anySubType);
+    } else {
+      this.anySubType = anySubType;
+    }
   }
 
   public boolean isAllowedInFinalCode() {
@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -114,6 +115,41 @@ public class Scene // extends AbstractHost
     addSootBasicClasses();
 
     determineExcludedPackages();
+
+    SceneSnapshot parent = G.v().SceneSnapshot_parent;
+    if (parent != null) {
+      initializeFrom(parent.getScene());
+    }
+  }
+
+  /**
+   * Makes this scene start out with the classes, types and numbers of the given snapshot scene. All classes of the snapshot
+   * that are not phantom classes become library classes of this scene.
+   */
+  private void initializeFrom(Scene base) {
+    for (SootClass c : base.classes) {
+      classes.add(c);
+      if (c.isPhantom()) {
+        phantomClasses.add(c);
+      } else {
+        libraryClasses.add(c);
+      }
+    }
+    nameToClass.putAll(base.nameToClass);
+
+    typeNumberer = new ArrayNumberer<Type>((ArrayNumberer<Type>) base.typeNumberer);
+    methodNumberer = new ArrayNumberer<SootMethod>((ArrayNumberer<SootMethod>) base.methodNumberer);
+    unitNumberer = new MapNumberer<Unit>((MapNumberer<Unit>) base.unitNumberer);
+    fieldNumberer = new ArrayNumberer<SparkField>((ArrayNumberer<SparkField>) base.fieldNumberer);
+    classNumberer = new ArrayNumberer<SootClass>((ArrayNumberer<SootClass>) base.classNumberer);
+    subSigNumberer = new StringNumberer(base.subSigNumberer);
+    localNumberer = new ArrayNumberer<Local>((ArrayNumberer<Local>) base.localNumberer);
+
+    for (int i = SootClass.HIERARCHY; i <= SootClass.BODIES; i++) {
+      basicclasses[i].addAll(base.basicclasses[i]);
+    }
+    allowsPhantomRefs = base.allowsPhantomRefs;
+    androidAPIVersion = base.androidAPIVersion;
   }
 
   private void determineExcludedPackages() {
@@ -152,6 +188,18 @@ public class Scene // extends AbstractHost
 
   protected final Map<String, RefType> nameToClass = new ConcurrentHashMap<>();
 
+  /**
+   * Array types, any-subtypes and classes created in this scene for types shared with a {@link SceneSnapshot}.
+   */
+  private final Map<Type, ArrayType> sharedArrayTypes = new ConcurrentHashMap<>();
+  private final Map<RefType, AnySubType> sharedAnySubTypes = new ConcurrentHashMap<>();
+  private final Map<RefType, SootClass> sharedTypeClasses = new ConcurrentHashMap<>();
+
+  /**
+   * Bodies created in this scene for methods shared with a {@link SceneSnapshot}.
+   */
+  private final Map<SootMethod, Body> sharedMethodBodies = new ConcurrentHashMap<>();
+
   protected final ArrayNumberer<Kind> kindNumberer;
   protected IterableNumberer<Type> typeNumberer = new ArrayNumberer<Type>();
   protected IterableNumberer<SootMethod> methodNumberer = new ArrayNumberer<SootMethod>();
@@ -163,7 +211,7 @@ public class Scene // extends AbstractHost
   protected IterableNumberer<Local> localNumberer = new ArrayNumberer<Local>();
 
   protected Hierarchy activeHierarchy;
-  protected FastHierarchy activeFastHierarchy;
+  protected volatile FastHierarchy activeFastHierarchy;
   protected CallGraph activeCallGraph;
   protected ReachableMethods reachableMethods;
   protected PointsToAnalysis activePointsToAnalysis;
@@ -788,10 +836,39 @@ public class Scene // extends AbstractHost
 
   private int stateCount;
 
+  private final AtomicInteger methodState = new AtomicInteger();
+
   public int getState() {
     return this.stateCount;
   }
 
+  /**
+   * Returns a number that changes whenever a method is added to or removed from a class, or the superclass of a class is
+   * changed. Results derived from the methods that classes declare or inherit, such as the memoized dispatch of the
+   * {@link FastHierarchy} and the dispatch tables of {@link soot.jimple.toolkits.callgraph.VirtualCalls}, can thereby be
+   * checked for staleness.
+   */
+  public int getMethodState() {
+    return methodState.get();
+  }
+
+  /**
+   * Returns the latest method state at which a method was added to or removed from the given class or one of its
+   * superclasses, or the superclass of one of them was changed. A result derived from the methods that the class declares
+   * or inherits, and computed at a method state not smaller than this, is still valid.
+   */
+  public int getMethodState(SootClass c) {
+    int state = 0;
+    for (; c != null; c = c.getSuperclassUnsafe()) {
+      state = Math.max(state, c.getMethodState());
+    }
+    return state;
+  }
+
+  int modifyMethods() {
+    return methodState.incrementAndGet();
+  }
+
   protected synchronized void modifyHierarchy() {
     stateCount++;
     activeHierarchy = null;
@@ -848,6 +925,7 @@ public class Scene // extends AbstractHost
     if (!c.isInScene()) {
       throw new RuntimeException();
     }
+    c.checkNotShared();
 
     classes.remove(c);
 
@@ -1321,11 +1399,18 @@ public class Scene // extends AbstractHost
   /**
    * Makes a new fast hierarchy is none is active, and returns the active fast hierarchy.
    */
-  public synchronized FastHierarchy getOrMakeFastHierarchy() {
-    if (!hasFastHierarchy()) {
-      setFastHierarchy(new FastHierarchy());
+  public FastHierarchy getOrMakeFastHierarchy() {
+    // Queries on the hierarchy are lock-free, so do not serialize all threads on the scene to get it
+    FastHierarchy hierarchy = activeFastHierarchy;
+    if (hierarchy != null) {
+      return hierarchy;
+    }
+    synchronized (this) {
+      if (!hasFastHierarchy()) {
+        setFastHierarchy(new FastHierarchy());
+      }
+      return getFastHierarchy();
     }
-    return getFastHierarchy();
   }
 
   /**
@@ -1481,6 +1566,46 @@ public class Scene // extends AbstractHost
     return typeNumberer;
   }
 
+  ArrayType getSharedArrayType(Type t) {
+    return sharedArrayTypes.get(t);
+  }
+
+  void setSharedArrayType(Type t, ArrayType at) {
+    sharedArrayTypes.put(t, at);
+  }
+
+  AnySubType getSharedAnySubType(RefType t) {
+    return sharedAnySubTypes.get(t);
+  }
+
+  void setSharedAnySubType(RefType t, AnySubType at) {
+    sharedAnySubTypes.put(t, at);
+  }
+
+  SootClass getSharedTypeClass(RefType t) {
+    return sharedTypeClasses.get(t);
+  }
+
+  void setSharedTypeClass(RefType t, SootClass c) {
+    if (c == null) {
+      sharedTypeClasses.remove(t);
+    } else {
+      sharedTypeClasses.put(t, c);
+    }
+  }
+
+  Body getSharedMethodBody(SootMethod m) {
+    return sharedMethodBodies.get(m);
+  }
+
+  void setSharedMethodBody(SootMethod m, Body b) {
+    if (b == null) {
+      sharedMethodBodies.remove(m);
+    } else {
+      sharedMethodBodies.put(m, b);
+    }
+  }
+
   public IterableNumberer<SootMethod> getMethodNumberer() {
     return methodNumberer;
   }
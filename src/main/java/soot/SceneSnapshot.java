@@ -0,0 +1,307 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.Stmt;
+import soot.options.Options;
+import soot.util.ArrayNumberer;
+import soot.util.MapNumberer;
+
+/**
+ * <p>
+ * A frozen, fully resolved {@link Scene} that can be forked into many cheap, independent {@link G} instances. The typical
+ * use is a service that analyses many applications against the same platform: the platform classes are loaded once into
+ * a scene, that scene is captured with {@link #capture()}, and every analysis then runs in a fresh fork which only needs
+ * to resolve the application's own classes.
+ * </p>
+ *
+ * <p>
+ * A fork shares the classes, methods, fields and types of the snapshot, starts out with copies of the snapshot's
+ * numberers so that all of these keep their numbers, and treats every non-phantom class of the snapshot as a library
+ * class. Everything else, in particular the options, the packs, the call graph, the points-to analysis and the hierarchy,
+ * belongs to the fork. Classes a fork loads are only visible in that fork.
+ * </p>
+ *
+ * <p>
+ * {@link #capture()} brings every class of the scene to at least {@link SootClass#SIGNATURES}, so forks never need to
+ * resolve a shared class any further unless they ask for bodies of library methods. Shared classes are not copied, so they
+ * cannot be modified: adding or removing members, changing their hierarchy or modifiers and removing them from a scene
+ * throws an exception. This includes the members Soot adds for references that cannot be resolved. The scene a snapshot
+ * was captured from must not be used afterwards.
+ * </p>
+ *
+ * <p>
+ * Method bodies that exist when the snapshot is captured are shared as well, and forks must not modify them. Bodies of
+ * shared methods that are created or set later are kept by the scene of the fork that created them, so every fork loads its
+ * own library bodies, with its own locals and types. These bodies are never evicted by the
+ * <code>-body-residency-budget</code>.
+ * </p>
+ *
+ * <p>
+ * Phantom classes are only shared if a shared class refers to them directly, e.g., as its superclass. Every other name the
+ * snapshot cannot resolve is left to the forks, which may find a class of that name on their own class path.
+ * </p>
+ *
+ * <pre>
+ * SceneSnapshot platform = SceneSnapshot.capture();
+ * G.setGlobalObjectGetter(platform.newForkPerThreadGetter());
+ * // on each worker thread, per application; threads started from here on use the same fork:
+ * G.reset();
+ * Options.v().set_process_dir(...);
+ * Scene.v().loadNecessaryClasses();
+ * </pre>
+ */
+public final class SceneSnapshot {
+  private static final Logger logger = LoggerFactory.getLogger(SceneSnapshot.class);
+
+  private final Scene scene;
+  private final Map<Field, Object> sharedSingletons;
+
+  private SceneSnapshot(Scene scene, Map<Field, Object> sharedSingletons) {
+    this.scene = scene;
+    this.sharedSingletons = sharedSingletons;
+  }
+
+  /**
+   * Freezes the scene of the current {@link G} into a snapshot. Every class of the scene is brought to at least
+   * {@link SootClass#SIGNATURES} first, which may load further classes.
+   *
+   * @throws IllegalStateException
+   *           if Soot runs in module mode or with <code>-weak-map-structures</code>, neither of which is supported.
+   */
+  public static SceneSnapshot capture() {
+    if (ModuleUtil.module_mode()) {
+      throw new IllegalStateException("Snapshots of module scenes are not supported");
+    }
+    Scene scene = Scene.v();
+    if (!(scene.getTypeNumberer() instanceof ArrayNumberer) || !(scene.getMethodNumberer() instanceof ArrayNumberer)
+        || !(scene.getFieldNumberer() instanceof ArrayNumberer) || !(scene.getClassNumberer() instanceof ArrayNumberer)
+        || !(scene.getLocalNumberer() instanceof ArrayNumberer) || !(scene.getUnitNumberer() instanceof MapNumberer)) {
+      throw new IllegalStateException("Snapshots of scenes with weak map structures are not supported");
+    }
+
+    resolveSignatures(scene);
+    removeUnreferencedPhantoms(scene);
+    keepBodiesResident(scene);
+    for (SootClass c : scene.getClasses()) {
+      c.markShared();
+    }
+    for (Type t : scene.getTypeNumberer()) {
+      t.markShared();
+    }
+    if (Options.v().verbose()) {
+      logger.debug("Captured scene snapshot with " + scene.getClasses().size() + " classes and "
+          + scene.getTypeNumberer().size() + " types");
+    }
+    return new SceneSnapshot(scene, findSharedSingletons(G.v()));
+  }
+
+  /**
+   * Brings every class of the scene to {@link SootClass#SIGNATURES}, including those that only become known while doing
+   * so. Types without a class are left alone.
+   */
+  private static void resolveSignatures(Scene scene) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (SootClass c : new ArrayList<SootClass>(scene.getClasses())) {
+        if (!c.isPhantom() && c.resolvingLevel() < SootClass.SIGNATURES) {
+          scene.forceResolve(c.getName(), SootClass.SIGNATURES);
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the phantom classes that no other class of the scene refers to directly. Their types stay in the scene, but
+   * without a class, so that every fork resolves these names on its own.
+   */
+  private static void removeUnreferencedPhantoms(Scene scene) {
+    Set<SootClass> referenced = new HashSet<SootClass>();
+    Deque<SootClass> worklist = new ArrayDeque<SootClass>();
+    for (SootClass c : scene.getClasses()) {
+      if (!c.isPhantom()) {
+        worklist.add(c);
+      }
+    }
+    while (!worklist.isEmpty()) {
+      SootClass c = worklist.poll();
+      if (!referenced.add(c)) {
+        continue;
+      }
+      if (c.resolvingLevel() < SootClass.HIERARCHY) {
+        continue;
+      }
+      List<SootClass> refs = new ArrayList<SootClass>(c.getInterfaces());
+      refs.add(c.getSuperclassUnsafe());
+      refs.add(c.getOuterClassUnsafe());
+      if (c.resolvingLevel() >= SootClass.SIGNATURES) {
+        for (SootMethod m : c.getMethods()) {
+          addReferencedClasses(m, refs);
+        }
+      }
+      for (SootClass r : refs) {
+        if (r != null && !referenced.contains(r)) {
+          worklist.add(r);
+        }
+      }
+    }
+    for (SootClass c : new ArrayList<SootClass>(scene.getClasses())) {
+      if (c.isPhantom() && !referenced.contains(c)) {
+        scene.removeClass(c);
+      }
+    }
+  }
+
+  /**
+   * Adds the classes the given method refers to directly, through its exceptions and in its body, to the given list.
+   */
+  private static void addReferencedClasses(SootMethod m, List<SootClass> refs) {
+    if (m.getExceptionsUnsafe() != null) {
+      refs.addAll(m.getExceptionsUnsafe());
+    }
+    if (!m.hasActiveBody()) {
+      return;
+    }
+    Body b = m.getActiveBody();
+    for (Trap t : b.getTraps()) {
+      refs.add(t.getException());
+    }
+    for (Unit u : b.getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr()) {
+        refs.add(s.getInvokeExpr().getMethodRef().getDeclaringClass());
+      } else if (s.containsFieldRef()) {
+        refs.add(s.getFieldRef().getFieldRef().declaringClass());
+      }
+    }
+  }
+
+  /**
+   * Brings back the bodies the {@link BodyResidencyManager} has evicted and stops tracking the residency of all bodies,
+   * since the bodies of shared methods are never evicted.
+   */
+  private static void keepBodiesResident(Scene scene) {
+    BodyResidencyManager residencyManager = BodyResidencyManager.v();
+    for (SootClass c : scene.getClasses()) {
+      if (c.resolvingLevel() < SootClass.SIGNATURES) {
+        continue;
+      }
+      for (SootMethod m : c.getMethods()) {
+        if (m.hasActiveBody()) {
+          m.retrieveActiveBody();
+          synchronized (m) {
+            residencyManager.forget(m);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the singleton types that have been created in the given instance, which every fork has to share.
+   */
+  private static Map<Field, Object> findSharedSingletons(G g) {
+    Map<Field, Object> result = new LinkedHashMap<Field, Object>();
+    for (Field f : Singletons.class.getDeclaredFields()) {
+      if (f.getName().startsWith("instance_") && Type.class.isAssignableFrom(f.getType())) {
+        f.setAccessible(true);
+        try {
+          Object value = f.get(g);
+          if (value != null) {
+            result.put(f, value);
+          }
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the scene this snapshot was captured from.
+   */
+  public Scene getScene() {
+    return scene;
+  }
+
+  /**
+   * Creates a new, independent {@link G} whose {@link Scene} starts out with the contents of this snapshot. Its scene is
+   * created on first use, which has to happen while the fork is the current instance, i.e., through {@link Scene#v()}
+   * after the fork has been made available to {@link G#v()} with {@link G#setGlobalObjectGetter(G.GlobalObjectGetter)}.
+   * This way the scene picks up the options set on the fork.
+   */
+  public G fork() {
+    G g = new G();
+    try {
+      for (Map.Entry<Field, Object> e : sharedSingletons.entrySet()) {
+        e.getKey().set(g, e.getValue());
+      }
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+    g.SceneSnapshot_parent = this;
+    return g;
+  }
+
+  /**
+   * Returns a {@link G.GlobalObjectGetter} which gives every thread its own fork of this snapshot. {@link G#reset()}
+   * replaces the fork of the calling thread by a new one. A new thread starts out with the fork the thread creating it uses
+   * at that time, so the thread pools Soot creates while running work on the fork of the thread that runs Soot.
+   */
+  public G.GlobalObjectGetter newForkPerThreadGetter() {
+    return new G.GlobalObjectGetter() {
+      private final ThreadLocal<G> forks = new InheritableThreadLocal<G>() {
+        @Override
+        protected G initialValue() {
+          return fork();
+        }
+      };
+
+      @Override
+      public G getG() {
+        return forks.get();
+      }
+
+      @Override
+      public void reset() {
+        forks.set(fork());
+      }
+    };
+  }
+}
@@ -84,6 +84,10 @@ public class SootClass extends AbstractHost implements Numberable {
 
   protected boolean isPhantom;
 
+  private volatile boolean shared;
+
+  private volatile int methodState;
+
   public final String moduleName;
   protected SootModuleInfo moduleInformation;
 
@@ -211,6 +215,35 @@ public class SootClass extends AbstractHost implements Numberable {
     return isInScene;
   }
 
+  /**
+   * Returns <code>true</code> if this class belongs to a {@link SceneSnapshot} and may thus be used by several scenes. Shared
+   * classes cannot be modified.
+   */
+  public boolean isShared() {
+    return shared;
+  }
+
+  /**
+   * Returns the {@link Scene#getMethodState() method state} at which a method was last added to or removed from this
+   * class, or its superclass was last changed. Returns 0 if neither has happened yet.
+   */
+  public int getMethodState() {
+    return methodState;
+  }
+
+  void markShared() {
+    shared = true;
+  }
+
+  /**
+   * Throws an exception if this class is shared with a {@link SceneSnapshot}, because other scenes would see the change.
+   */
+  protected void checkNotShared() {
+    if (shared) {
+      throw new RuntimeException("Attempt to modify " + name + ", which is shared with a scene snapshot");
+    }
+  }
+
   /** Tells this class if it is being managed by a Scene. */
   public void setInScene(boolean isInScene) {
     this.isInScene = isInScene;
@@ -247,6 +280,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void addField(SootField f) {
     checkLevel(SIGNATURES);
+    checkNotShared();
     if (f.isDeclared()) {
       throw new RuntimeException("already declared: " + f.getName());
     }
@@ -270,6 +304,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void removeField(SootField f) {
     checkLevel(SIGNATURES);
+    checkNotShared();
     if (!f.isDeclared() || f.getDeclaringClass() != this) {
       throw new RuntimeException("did not declare: " + f.getName());
     }
@@ -704,6 +739,7 @@ public class SootClass extends AbstractHost implements Numberable {
    */
   public void addMethod(SootMethod m) {
     checkLevel(SIGNATURES);
+    checkNotShared();
     if (m.isDeclared()) {
       throw new RuntimeException("already declared: " + m.getName());
     }
@@ -726,6 +762,7 @@ public class SootClass extends AbstractHost implements Numberable {
     methodList.add(m);
     m.setDeclared(true);
     m.setDeclaringClass(this);
+    methodState = Scene.v().modifyMethods();
   }
 
   public synchronized SootMethod getOrAddMethod(SootMethod m) {
@@ -743,10 +780,12 @@ public class SootClass extends AbstractHost implements Numberable {
     if (old != null) {
       return old;
     }
+    checkNotShared();
     subSigToMethods.put(m.getNumberedSubSignature(), m);
     methodList.add(m);
     m.setDeclared(true);
     m.setDeclaringClass(this);
+    methodState = Scene.v().modifyMethods();
     return m;
   }
 
@@ -759,6 +798,7 @@ public class SootClass extends AbstractHost implements Numberable {
     if (old != null) {
       return old;
     }
+    checkNotShared();
 
     if (fields == null) {
       fields = new HashChain<>();
@@ -775,6 +815,7 @@ public class SootClass extends AbstractHost implements Numberable {
    */
   public void removeMethod(SootMethod m) {
     checkLevel(SIGNATURES);
+    checkNotShared();
     if (!m.isDeclared() || m.getDeclaringClass() != this) {
       throw new RuntimeException("incorrect declarer for remove: " + m.getName());
     }
@@ -787,6 +828,7 @@ public class SootClass extends AbstractHost implements Numberable {
     m.setDeclared(false);
     m.setDeclaringClass(null);
     Scene.v().getMethodNumberer().remove(m);
+    methodState = Scene.v().modifyMethods();
   }
 
   /**
@@ -802,6 +844,9 @@ public class SootClass extends AbstractHost implements Numberable {
    */
 
   public void setModifiers(int modifiers) {
+    if (modifiers != this.modifiers) {
+      checkNotShared();
+    }
     this.modifiers = modifiers;
   }
 
@@ -850,6 +895,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void addInterface(SootClass interfaceClass) {
     checkLevel(HIERARCHY);
+    checkNotShared();
     if (implementsInterface(interfaceClass.getName())) {
       throw new RuntimeException("duplicate interface: " + interfaceClass.getName());
     }
@@ -865,6 +911,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void removeInterface(SootClass interfaceClass) {
     checkLevel(HIERARCHY);
+    checkNotShared();
     if (!implementsInterface(interfaceClass.getName())) {
       throw new RuntimeException("no such interface: " + interfaceClass.getName());
     }
@@ -914,7 +961,11 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void setSuperclass(SootClass c) {
     checkLevel(HIERARCHY);
-    superClass = c;
+    if (superClass != c) {
+      checkNotShared();
+      superClass = c;
+      methodState = Scene.v().modifyMethods();
+    }
   }
 
   public boolean hasOuterClass() {
@@ -941,6 +992,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   public void setOuterClass(SootClass c) {
     checkLevel(HIERARCHY);
+    checkNotShared();
     outerClass = c;
   }
 
@@ -1013,6 +1065,7 @@ public class SootClass extends AbstractHost implements Numberable {
    */
 
   public void setName(String name) {
+    checkNotShared();
     this.name = name.intern();
 
     shortName = name;
@@ -1075,6 +1128,7 @@ public class SootClass extends AbstractHost implements Numberable {
 
   // made public for obfuscator..
   public void setRefType(RefType refType) {
+    checkNotShared();
     this.refType = refType;
   }
 
@@ -1096,6 +1150,7 @@ public class SootClass extends AbstractHost implements Numberable {
   /* Renames private fields and methods with numeric names. */
   public void renameFieldsAndMethods(boolean privateOnly) {
     checkLevel(SIGNATURES);
+    checkNotShared();
     // Rename fields. Ignore collisions for now.
     {
       Iterator<SootField> fieldIt = this.getFields().iterator();
@@ -1201,6 +1256,9 @@ public class SootClass extends AbstractHost implements Numberable {
 
   /** Makes this class a phantom class. */
   public void setPhantomClass() {
+    if (!isPhantom) {
+      checkNotShared();
+    }
     Chain<SootClass> c = Scene.v().getContainingChain(this);
     if (c != null) {
       c.remove(this);
@@ -1262,6 +1320,7 @@ public class SootClass extends AbstractHost implements Numberable {
   protected volatile int number = 0;
 
   public void rename(String newName) {
+    checkNotShared();
     this.name = newName;
     // resolvingLevel = BODIES;
 
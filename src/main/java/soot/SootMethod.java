@@ -38,6 +38,7 @@ import soot.dava.toolkits.base.renamer.RemoveFullyQualifiedName;
 import soot.jimple.toolkits.callgraph.VirtualCalls;
 import soot.options.Options;
 import soot.tagkit.AbstractHost;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.util.IterableSet;
 import soot.util.Numberable;
 import soot.util.NumberedString;
@@ -83,12 +84,18 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
   /** Declared exceptions thrown by this method. Created upon demand. */
   protected List<SootClass> exceptions = null;
 
-  /** Active body associated with this method. */
+  /**
+   * Active body associated with this method. For a method shared with a {@link SceneSnapshot}, this is the body it had when
+   * the snapshot was captured, and bodies created later are kept by the scene, see {@link #isShared()}.
+   */
   protected volatile Body activeBody;
 
   /** Tells this method how to find out where its body lives. */
   protected volatile MethodSource ms;
 
+  /** Residency state of the active body if it is tracked by the {@link BodyResidencyManager}. */
+  volatile BodyResidencyManager.Entry residency;
+
   protected volatile String sig;
   protected volatile String subSig;
 
@@ -308,14 +315,27 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
    */
   @SuppressWarnings("deprecation")
   public Body getActiveBody() {
+    if (isShared()) {
+      Body sceneBody = Scene.v().getSharedMethodBody(this);
+      if (sceneBody != null) {
+        return sceneBody;
+      }
+    }
+
     // Retrieve the active body so thread changes do not affect the
     // synchronization between if the body exists and the returned body.
     // This is a quick check just in case the activeBody exists.
     Body activeBody = this.activeBody;
     if (activeBody != null) {
+      touchResidency();
       return activeBody;
     }
 
+    BodyResidencyManager.Entry residency = this.residency;
+    if (residency != null && residency.evicted) {
+      return retrieveActiveBody();
+    }
+
     // Synchronize because we are operating on two fields that may be updated
     // separately otherwise.
     synchronized (this) {
@@ -344,6 +364,13 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
    * Sets the active body for this method.
    */
   public synchronized void setActiveBody(Body body) {
+    if (residency != null) {
+      BodyResidencyManager.v().forget(this);
+    }
+    installActiveBody(body);
+  }
+
+  private void installActiveBody(Body body) {
     if ((declaringClass != null) && declaringClass.isPhantomClass()) {
       throw new RuntimeException("cannot set active body for phantom class! " + this);
     }
@@ -360,6 +387,19 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
       body.setMethod(this);
     }
 
+    if (isShared()) {
+      // Other scenes use this method as well, so the body only belongs to the current one
+      Body sceneBody = Scene.v().getSharedMethodBody(this);
+      if (sceneBody != null && sceneBody != body) {
+        BodyAnalysisCache.v().invalidate(sceneBody);
+      }
+      Scene.v().setSharedMethodBody(this, body);
+      return;
+    }
+
+    if (activeBody != null && activeBody != body) {
+      BodyAnalysisCache.v().invalidate(activeBody);
+    }
     this.activeBody = body;
   }
 
@@ -370,19 +410,29 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
    * get retrieve its active body. Please call {@link SootClass#setApplicationClass()} on the relevant class.
    */
   public Body retrieveActiveBody() {
+    final boolean shared = isShared();
+    if (shared) {
+      Body sceneBody = Scene.v().getSharedMethodBody(this);
+      if (sceneBody != null) {
+        return sceneBody;
+      }
+    }
+
     // Retrieve the active body so thread changes do not affect the
     // synchronization between if the body exists and the returned body.
     // This is a quick check just in case the activeBody exists.
     Body activeBody = this.activeBody;
     if (activeBody != null) {
+      touchResidency();
       return activeBody;
     }
 
     // Synchronize because we are operating on multiple fields that may be updated
-    // separately otherwise.
+    // separately otherwise. This also keeps scenes sharing this method from using
+    // the method source at the same time.
     synchronized (this) {
       // Re-check the activeBody because things might have changed
-      activeBody = this.activeBody;
+      activeBody = shared ? Scene.v().getSharedMethodBody(this) : this.activeBody;
       if (activeBody != null) {
         return activeBody;
       }
@@ -394,32 +444,80 @@ public class SootMethod extends AbstractHost implements ClassMember, Numberable,
         throw new RuntimeException("cannot get resident body for phantom method : " + this);
       }
 
-      if (ms == null) {
-        throw new RuntimeException("No method source set for method " + this);
-      }
+      // An evicted body that was modified comes back from its serialized form
+      BodyResidencyManager residencyManager = BodyResidencyManager.v();
+      activeBody = residencyManager.restore(this);
+      if (activeBody == null) {
+        if (ms == null) {
+          throw new RuntimeException("No method source set for method " + this);
+        }
 
-      // Method sources are not expected to be thread safe
-      activeBody = ms.getBody(this, "jb");
-      setActiveBody(activeBody);
+        // Method sources are not expected to be thread safe
+        activeBody = ms.getBody(this, "jb");
+      }
+      installActiveBody(activeBody);
+      if (shared) {
+        // The residency of the method and its source are used by every scene sharing it
+        return activeBody;
+      }
+      if (activeBody != null) {
+        residencyManager.loaded(this, activeBody);
+      }
 
-      // If configured, we drop the method source to save memory
-      if (Options.v().drop_bodies_after_load()) {
+      // If configured, we drop the method source to save memory, unless the body may have to be loaded again
+      if (Options.v().drop_bodies_after_load() && residency == null) {
         ms = null;
       }
-      return activeBody;
     }
+    BodyResidencyManager.v().evictIfNeeded();
+    return activeBody;
   }
 
   /** Returns true if this method has an active body. */
   public boolean hasActiveBody() {
-    return activeBody != null;
+    if (activeBody != null || (isShared() && Scene.v().getSharedMethodBody(this) != null)) {
+      return true;
+    }
+    BodyResidencyManager.Entry residency = this.residency;
+    return residency != null && residency.evicted;
   }
 
   /** Releases the active body associated with this method. */
   public synchronized void releaseActiveBody() {
+    if (isShared()) {
+      Body sceneBody = Scene.v().getSharedMethodBody(this);
+      if (sceneBody != null) {
+        BodyAnalysisCache.v().invalidate(sceneBody);
+        Scene.v().setSharedMethodBody(this, null);
+      }
+      return;
+    }
+    if (residency != null) {
+      BodyResidencyManager.v().forget(this);
+    }
+    if (activeBody != null) {
+      BodyAnalysisCache.v().invalidate(activeBody);
+    }
     activeBody = null;
   }
 
+  /**
+   * Returns true if this method belongs to a class shared with a {@link SceneSnapshot}. Bodies such a method gets after the
+   * snapshot has been captured are kept by the scene of the current {@link G}, so every fork has bodies of its own.
+   */
+  private boolean isShared() {
+    SootClass declaringClass = this.declaringClass;
+    return declaringClass != null && declaringClass.isShared();
+  }
+
+  /** Records an access to the active body for the {@link BodyResidencyManager}. */
+  private void touchResidency() {
+    BodyResidencyManager.Entry residency = this.residency;
+    if (residency != null && !residency.referenced) {
+      residency.referenced = true;
+    }
+  }
+
   /**
    * Adds the given exception to the list of exceptions thrown by this method unless the exception is already in the list.
    */
@@ -28,8 +28,17 @@ import java.io.InputStream;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +66,21 @@ public class SootResolver {
   @SuppressWarnings("unchecked")
   private final Deque<SootClass>[] worklist = new Deque[4];
 
+  /**
+   * Class sources that are located and read ahead of time by the parallel resolver. Only accessed by the thread that
+   * processes the worklist.
+   */
+  private final Map<SootClass, Future<ClassSource>> prefetchedSources = new HashMap<SootClass, Future<ClassSource>>();
+
+  /**
+   * For each resolving level, the number of classes at the head of the worklist that have already been considered for
+   * prefetching.
+   */
+  private final int[] prefetchScanned = new int[4];
+
+  /** Worker threads of the parallel resolver, created on first use. */
+  private ExecutorService prefetchExecutor = null;
+
   private Program program = null;
 
   public SootResolver(Singletons.Global g) {
@@ -152,9 +176,16 @@ public class SootResolver {
 
   /** Resolve all classes on toResolveWorklist. */
   protected void processResolveWorklist() {
+    final boolean prefetch = usePrefetching();
     for (int i = SootClass.BODIES; i >= SootClass.HIERARCHY; i--) {
       while (!worklist[i].isEmpty()) {
+        if (prefetch) {
+          prefetchClassSources(i);
+        }
         SootClass sc = worklist[i].pop();
+        if (prefetchScanned[i] > 0) {
+          prefetchScanned[i]--;
+        }
         if (resolveEverything()) { // Whole program mode
           boolean onlySignatures = sc.isPhantom() || (Options.v().no_bodies_for_excluded() && Scene.v().isExcluded(sc)
               && !Scene.v().getBasicClasses().contains(sc.getName()));
@@ -185,6 +216,129 @@ public class SootResolver {
         }
       }
     }
+    if (prefetch) {
+      discardPrefetchedSources();
+    }
+  }
+
+  /**
+   * Returns true if the class sources of the classes on the worklist may be located and read on worker threads. This is
+   * only done for the class providers that do not modify any global state while looking up a class.
+   */
+  protected boolean usePrefetching() {
+    if (!Options.v().parallel_resolver() || ModuleUtil.module_mode() || Options.v().polyglot()) {
+      return false;
+    }
+    switch (Options.v().src_prec()) {
+      case Options.src_prec_class:
+      case Options.src_prec_only_class:
+      case Options.src_prec_jimple:
+      case Options.src_prec_java:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Starts locating and reading the class sources of all classes in the given worklist that have not been brought to
+   * hierarchy yet. The first class of the worklist is skipped, since it is resolved right away on the calling thread
+   * anyway. The classes themselves are still built one after another in worklist order, so the Scene ends up in exactly
+   * the same state as with the serial resolver.
+   */
+  private void prefetchClassSources(int level) {
+    final Deque<SootClass> classes = worklist[level];
+    // Newly added classes are always appended to the tail of the worklist
+    int unscanned = classes.size() - Math.max(prefetchScanned[level], 1);
+    prefetchScanned[level] = classes.size();
+    if (unscanned <= 0) {
+      return;
+    }
+    if (prefetchExecutor == null) {
+      int threadNum = Options.v().getNumThreads();
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "Soot resolver");
+              t.setDaemon(true);
+              return t;
+            }
+
+          });
+      executor.allowCoreThreadTimeOut(true);
+      prefetchExecutor = executor;
+    }
+
+    // The workers must not initialize the class path lazily, which would race and read the Scene
+    final SourceLocator locator = SourceLocator.v();
+    locator.prepareClassPath();
+    Iterator<SootClass> it = classes.descendingIterator();
+    for (int i = 0; i < unscanned; i++) {
+      SootClass sc = it.next();
+      if (sc.resolvingLevel() >= SootClass.HIERARCHY || prefetchedSources.containsKey(sc)) {
+        continue;
+      }
+      final String className = sc.getName();
+      prefetchedSources.put(sc, prefetchExecutor.submit(() -> {
+        ClassSource is = locator.getClassSource(className);
+        if (is != null) {
+          is.prefetch();
+        }
+        return is;
+      }));
+    }
+  }
+
+  /**
+   * Closes all class sources that were read ahead of time but turned out not to be needed, because the respective classes
+   * were brought to hierarchy by other means in the meantime.
+   */
+  private void discardPrefetchedSources() {
+    Iterator<Map.Entry<SootClass, Future<ClassSource>>> it = prefetchedSources.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<SootClass, Future<ClassSource>> entry = it.next();
+      if (entry.getKey().resolvingLevel() >= SootClass.HIERARCHY) {
+        it.remove();
+        try {
+          ClassSource is = entry.getValue().get();
+          if (is != null) {
+            is.close();
+          }
+        } catch (InterruptedException | ExecutionException e) {
+          logger.debug("Discarding prefetched class source for " + entry.getKey() + " failed", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the class source for the given class, either the one that has already been located by a worker of the parallel
+   * resolver, or a newly located one.
+   */
+  protected ClassSource locateClassSource(SootClass sc) {
+    Future<ClassSource> prefetched = prefetchedSources.remove(sc);
+    if (prefetched != null) {
+      try {
+        return prefetched.get();
+      } catch (InterruptedException e) {
+        throw new RuntimeException("Interrupted while waiting for the class source of " + sc.getName(), e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      }
+    }
+
+    String className = sc.getName();
+    if (ModuleUtil.module_mode()) {
+      return ModulePathSourceLocator.v().getClassSource(className,
+          com.google.common.base.Optional.fromNullable(sc.moduleName));
+    } else {
+      return SourceLocator.v().getClassSource(className);
+    }
   }
 
   protected void addToResolveWorklist(Type type, int level) {
@@ -223,13 +377,7 @@ public class SootResolver {
 
   protected void bringToHierarchyUnchecked(SootClass sc) {
     String className = sc.getName();
-    ClassSource is;
-    if (ModuleUtil.module_mode()) {
-      is = ModulePathSourceLocator.v().getClassSource(className,
-          com.google.common.base.Optional.fromNullable(sc.moduleName));
-    } else {
-      is = SourceLocator.v().getClassSource(className);
-    }
+    ClassSource is = locateClassSource(sc);
     try {
       boolean modelAsPhantomRef = is == null;
       if (modelAsPhantomRef) {
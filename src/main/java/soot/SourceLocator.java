@@ -32,6 +32,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -122,6 +123,19 @@ public class SourceLocator {
    * classes.
    */
   private Map<String, File> dexClassIndex;
+  /**
+   * The indices of the archives on the class path, used if <code>-index-classpath</code> is set. Unlike the entries of
+   * {@link #archivePathsToEntriesCache}, the indices are never evicted.
+   */
+  private final Map<String, ArchiveIndex> archiveIndices = new HashMap<String, ArchiveIndex>();
+  /**
+   * Archives on the class path that could not be indexed and are searched through {@link #lookupInArchive(String, String)}.
+   */
+  private final Set<String> unindexableArchives = new HashSet<String>();
+  /**
+   * The index over all archives on the current class path.
+   */
+  private volatile ClassPathIndex classPathIndex;
 
   public SourceLocator(Singletons.Global g) {
   }
@@ -175,12 +189,7 @@ public class SourceLocator {
    * Given a class name, uses the soot-class-path to return a ClassSource for the given class.
    */
   public ClassSource getClassSource(String className) {
-    if (classPath == null) {
-      classPath = explodeClassPath(Scene.v().getSootClassPath());
-    }
-    if (classProviders == null) {
-      setupClassProviders();
-    }
+    prepareClassPath();
     JarException ex = null;
     for (ClassProvider cp : classProviders) {
       try {
@@ -239,50 +248,65 @@ public class SourceLocator {
   }
 
   protected void setupClassProviders() {
-    classProviders = new LinkedList<ClassProvider>();
+    List<ClassProvider> providers = new LinkedList<ClassProvider>();
     ClassProvider classFileClassProvider = Options.v().coffi() ? new CoffiClassProvider() : new AsmClassProvider();
     if (this.java9Mode) {
-      classProviders.add(new AsmJava9ClassProvider());
+      providers.add(new AsmJava9ClassProvider());
     }
     switch (Options.v().src_prec()) {
       case Options.src_prec_class:
-        classProviders.add(classFileClassProvider);
-        classProviders.add(new JimpleClassProvider());
-        classProviders.add(new JavaClassProvider());
+        providers.add(classFileClassProvider);
+        providers.add(new JimpleClassProvider());
+        providers.add(new JavaClassProvider());
         break;
       case Options.src_prec_only_class:
-        classProviders.add(classFileClassProvider);
+        providers.add(classFileClassProvider);
         break;
       case Options.src_prec_java:
-        classProviders.add(new JavaClassProvider());
-        classProviders.add(classFileClassProvider);
-        classProviders.add(new JimpleClassProvider());
+        providers.add(new JavaClassProvider());
+        providers.add(classFileClassProvider);
+        providers.add(new JimpleClassProvider());
         break;
       case Options.src_prec_jimple:
-        classProviders.add(new JimpleClassProvider());
-        classProviders.add(classFileClassProvider);
-        classProviders.add(new JavaClassProvider());
+        providers.add(new JimpleClassProvider());
+        providers.add(classFileClassProvider);
+        providers.add(new JavaClassProvider());
         break;
       case Options.src_prec_apk:
-        classProviders.add(new DexClassProvider());
-        classProviders.add(classFileClassProvider);
-        classProviders.add(new JavaClassProvider());
-        classProviders.add(new JimpleClassProvider());
+        providers.add(new DexClassProvider());
+        providers.add(classFileClassProvider);
+        providers.add(new JavaClassProvider());
+        providers.add(new JimpleClassProvider());
         break;
       case Options.src_prec_apk_c_j:
-        classProviders.add(new DexClassProvider());
-        classProviders.add(classFileClassProvider);
-        classProviders.add(new JimpleClassProvider());
+        providers.add(new DexClassProvider());
+        providers.add(classFileClassProvider);
+        providers.add(new JimpleClassProvider());
         break;
       default:
         throw new RuntimeException("Other source precedences are not currently supported.");
     }
+    // Only publish the fully populated list, since the parallel resolver may look up classes concurrently
+    classProviders = providers;
   }
 
   public void setClassProviders(List<ClassProvider> classProviders) {
     this.classProviders = classProviders;
   }
 
+  /**
+   * Explodes the soot-class-path and sets up the class providers unless this has already happened. The
+   * {@link SootResolver} calls this before it looks up class sources on other threads, which then only read these fields.
+   */
+  void prepareClassPath() {
+    if (classPath == null) {
+      classPath = explodeClassPath(Scene.v().getSootClassPath());
+    }
+    if (classProviders == null) {
+      setupClassProviders();
+    }
+  }
+
   public List<String> classPath() {
     return classPath;
   }
@@ -610,6 +634,9 @@ public class SourceLocator {
    * Searches for a file with the given name in the exploded classPath.
    */
   public FoundFile lookupInClassPath(String fileName) {
+    if (Options.v().index_classpath()) {
+      return lookupInClassPathIndex(fileName);
+    }
     for (String dir : classPath) {
       FoundFile ret = null;
       ClassSourceType cst = getClassSourceType(dir);
@@ -625,6 +652,110 @@ public class SourceLocator {
     return null;
   }
 
+  /**
+   * Searches for a file with the given name in the exploded classPath using the index over all archives on the class path.
+   * Only the class path entries that are not covered by the index and precede the first archive containing the file are
+   * searched individually.
+   */
+  private FoundFile lookupInClassPathIndex(String fileName) {
+    ClassPathIndex index = getClassPathIndex();
+    Integer archive = index.firstArchive.get(fileName);
+    int end = archive == null ? index.classPath.size() : archive;
+    for (int i = index.firstUnindexed; i < end; i++) {
+      if (index.archives[i] != null) {
+        continue;
+      }
+      String dir = index.classPath.get(i);
+      FoundFile ret = null;
+      ClassSourceType cst = getClassSourceType(dir);
+      if (cst == ClassSourceType.zip || cst == ClassSourceType.jar) {
+        ret = lookupInArchive(dir, fileName);
+      } else if (cst == ClassSourceType.directory) {
+        ret = lookupInDir(dir, fileName);
+      }
+      if (ret != null) {
+        return ret;
+      }
+    }
+    return archive == null ? null : new FoundFile(index.archives[archive], fileName);
+  }
+
+  private ClassPathIndex getClassPathIndex() {
+    List<String> cp = classPath;
+    ClassPathIndex index = classPathIndex;
+    if (index != null && index.classPath == cp) {
+      return index;
+    }
+    synchronized (this) {
+      index = classPathIndex;
+      if (index == null || index.classPath != cp) {
+        index = new ClassPathIndex(cp);
+        for (int i = 0; i < cp.size(); i++) {
+          String dir = cp.get(i);
+          ClassSourceType cst = getClassSourceType(dir);
+          ArchiveIndex archive = null;
+          if (cst == ClassSourceType.zip || cst == ClassSourceType.jar) {
+            archive = getArchiveIndex(dir);
+          }
+          if (archive != null) {
+            index.archives[i] = archive;
+            for (String entry : archive.getEntryNames()) {
+              if (!index.firstArchive.containsKey(entry)) {
+                index.firstArchive.put(entry, i);
+              }
+            }
+          } else if (index.firstUnindexed == cp.size()) {
+            index.firstUnindexed = i;
+          }
+        }
+        classPathIndex = index;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Returns the index for the given archive, or <code>null</code> if the archive cannot be indexed. The index is read from
+   * the directory given by <code>-classpath-index-dir</code> if possible, and written there otherwise.
+   */
+  private ArchiveIndex getArchiveIndex(String archivePath) {
+    if (unindexableArchives.contains(archivePath)) {
+      return null;
+    }
+    ArchiveIndex index = archiveIndices.get(archivePath);
+    if (index == null) {
+      File archive = new File(archivePath);
+      String indexDir = Options.v().classpath_index_dir();
+      File indexFile = indexDir.isEmpty() ? null
+          : new File(indexDir, archive.getName() + "-" + Integer.toHexString(archivePath.hashCode()) + ".idx");
+      if (indexFile != null) {
+        try {
+          index = ArchiveIndex.read(archive, indexFile);
+        } catch (IOException e) {
+          logger.debug("Could not read the index of " + archivePath + " from " + indexFile, e);
+        }
+      }
+      if (index == null) {
+        try {
+          index = ArchiveIndex.build(archive);
+        } catch (IOException e) {
+          logger.debug("Could not index the archive " + archivePath, e);
+          unindexableArchives.add(archivePath);
+          return null;
+        }
+        if (indexFile != null) {
+          try {
+            index.write(indexFile);
+          } catch (IOException e) {
+            logger.debug("Could not write the index of " + archivePath + " to " + indexFile, e);
+          }
+        }
+      }
+      archiveIndices.put(archivePath, index);
+    }
+    return index;
+  }
+
   private FoundFile lookupInDir(String dir, String fileName) {
     File f = new File(dir, fileName);
     if (f.exists() && f.canRead()) {
@@ -707,6 +838,24 @@ public class SourceLocator {
     this.dexClassPathExtensions = null;
   }
 
+  /**
+   * Maps every file name found in an indexed archive on a given class path to the position of the first archive on the
+   * class path that contains it.
+   */
+  private static class ClassPathIndex {
+    final List<String> classPath;
+    final ArchiveIndex[] archives;
+    final Map<String, Integer> firstArchive = new HashMap<String, Integer>();
+    /** The position of the first class path entry that is not covered by the index. */
+    int firstUnindexed;
+
+    ClassPathIndex(List<String> classPath) {
+      this.classPath = classPath;
+      this.archives = new ArchiveIndex[classPath.size()];
+      this.firstUnindexed = classPath.size();
+    }
+  }
+
   protected enum ClassSourceType {
     jar, zip, apk, dex, directory, jrt, unknown
   }
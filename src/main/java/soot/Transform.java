@@ -90,7 +90,8 @@ public class Transform implements HasPhaseOptions {
 
   public void apply() {
     Map<String, String> options = PhaseOptions.v().getPhaseOptions(phaseName);
-    if (PhaseOptions.getBoolean(options, "enabled")) {
+    final boolean enabled = PhaseOptions.getBoolean(options, "enabled");
+    if (enabled) {
       if (Options.v().verbose()) {
         logger.debug("" + "Applying phase " + phaseName + " to the scene.");
       }
@@ -99,7 +100,11 @@ public class Transform implements HasPhaseOptions {
       PhaseDumper.v().dumpBefore(getPhaseName());
     }
 
+    PhaseMetrics.Probe probe = enabled ? PhaseMetrics.v().start(null) : null;
     ((SceneTransformer) t).transform(phaseName, options);
+    if (probe != null) {
+      probe.finish(phaseName);
+    }
 
     if (DEBUG) {
       PhaseDumper.v().dumpAfter(getPhaseName());
@@ -108,7 +113,8 @@ public class Transform implements HasPhaseOptions {
 
   public void apply(Body b) {
     Map<String, String> options = PhaseOptions.v().getPhaseOptions(phaseName);
-    if (PhaseOptions.getBoolean(options, "enabled")) {
+    final boolean enabled = PhaseOptions.getBoolean(options, "enabled");
+    if (enabled) {
       if (Options.v().verbose()) {
         logger.debug("" + "Applying phase " + phaseName + " to " + b.getMethod() + ".");
       }
@@ -117,7 +123,19 @@ public class Transform implements HasPhaseOptions {
       PhaseDumper.v().dumpBefore(b, getPhaseName());
     }
 
-    ((BodyTransformer) t).transform(b, phaseName, options);
+    PhaseMetrics.Probe probe = enabled ? PhaseMetrics.v().start(b) : null;
+    // Transformers hold on to the units of the body, which must therefore not be evicted meanwhile
+    final SootMethod pinned = BodyResidencyManager.v().pinWhileInUse(b);
+    try {
+      ((BodyTransformer) t).transform(b, phaseName, options);
+    } finally {
+      if (pinned != null) {
+        BodyResidencyManager.v().unpin(pinned);
+      }
+    }
+    if (probe != null) {
+      probe.finish(phaseName);
+    }
 
     if (DEBUG) {
       PhaseDumper.v().dumpAfter(b, getPhaseName());
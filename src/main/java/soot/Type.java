@@ -72,11 +72,32 @@ public abstract class Type implements Switchable, Serializable, Numberable {
   }
 
   public void setArrayType(ArrayType at) {
-    arrayType = at;
+    if (shared) {
+      // Types of a snapshot are shared by all its forks, each of which
+      // numbers the array types it creates on its own
+      Scene.v().setSharedArrayType(this, at);
+    } else {
+      arrayType = at;
+    }
   }
 
   public ArrayType getArrayType() {
-    return arrayType;
+    ArrayType at = arrayType;
+    if (at == null && shared) {
+      return Scene.v().getSharedArrayType(this);
+    }
+    return at;
+  }
+
+  /**
+   * Returns <code>true</code> if this type belongs to a {@link SceneSnapshot} and may thus be used by several scenes.
+   */
+  public boolean isShared() {
+    return shared;
+  }
+
+  void markShared() {
+    shared = true;
   }
 
   public ArrayType makeArrayType() {
@@ -102,4 +123,5 @@ public abstract class Type implements Switchable, Serializable, Numberable {
 
   protected ArrayType arrayType;
   private int number = 0;
+  private boolean shared = false;
 }
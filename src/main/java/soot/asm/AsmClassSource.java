@@ -25,8 +25,10 @@ package soot.asm;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.objectweb.asm.ClassReader;
 
+import soot.BodyCache;
 import soot.ClassSource;
 import soot.FoundFile;
 import soot.SootClass;
@@ -41,6 +43,11 @@ public class AsmClassSource extends ClassSource {
 
   protected FoundFile foundFile;
 
+  /**
+   * Contents of the class file if they have already been loaded by {@link #prefetch()}.
+   */
+  protected byte[] prefetchedBytes;
+
   /**
    * Constructs a new ASM class source.
    * 
@@ -57,17 +64,39 @@ public class AsmClassSource extends ClassSource {
     this.foundFile = foundFile;
   }
 
+  @Override
+  public void prefetch() {
+    if (prefetchedBytes == null && foundFile != null) {
+      prefetchedBytes = readClassFile();
+    }
+  }
+
   @Override
   public Dependencies resolve(SootClass sc) {
+    byte[] classBytes = prefetchedBytes;
+    prefetchedBytes = null;
+    if (classBytes == null) {
+      classBytes = readClassFile();
+    }
+    ClassReader clsr = new ClassReader(classBytes);
+    SootClassBuilder scb = new SootClassBuilder(sc);
+    clsr.accept(scb, ClassReader.SKIP_FRAMES);
+    if (BodyCache.v().isEnabled()) {
+      BodyCache.v().attach(sc, BodyCache.v().computeClassKey(classBytes));
+    }
+    Dependencies deps = new Dependencies();
+    deps.typesToSignature.addAll(scb.deps);
+    return deps;
+  }
+
+  /**
+   * Reads the contents of the class file and closes this class source.
+   */
+  private byte[] readClassFile() {
     InputStream d = null;
     try {
       d = foundFile.inputStream();
-      ClassReader clsr = new ClassReader(d);
-      SootClassBuilder scb = new SootClassBuilder(sc);
-      clsr.accept(scb, ClassReader.SKIP_FRAMES);
-      Dependencies deps = new Dependencies();
-      deps.typesToSignature.addAll(scb.deps);
-      return deps;
+      return IOUtils.toByteArray(d);
     } catch (IOException e) {
       throw new RuntimeException("Error: Failed to create class reader from class source.", e);
     } finally {
@@ -91,4 +120,4 @@ public class AsmClassSource extends ClassSource {
       foundFile = null;
     }
   }
-}
\ No newline at end of file
+}
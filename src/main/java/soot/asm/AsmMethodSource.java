@@ -293,17 +293,17 @@ import soot.util.Chain;
  *
  * @author Aaloan Miftah
  */
-final class AsmMethodSource implements MethodSource {
+final class AsmMethodSource implements MethodSource, StackFrame.Converter {
   private static final Logger logger = LoggerFactory.getLogger(AsmMethodSource.class);
 
   private static final Operand DWORD_DUMMY = new Operand(null, null);
   private final String module;
-  private static final String METAFACTORY_SIGNATURE =
+  static final String METAFACTORY_SIGNATURE =
       "<java.lang.invoke.LambdaMetafactory: java.lang.invoke.CallSite "
           + "metafactory(java.lang.invoke.MethodHandles$Lookup,java.lang.String,java.lang.invoke.MethodType,"
           + ""
           + "java.lang.invoke.MethodType,java.lang.invoke.MethodHandle,java.lang.invoke.MethodType)>";
-  private static final String ALT_METAFACTORY_SIGNATURE =
+  static final String ALT_METAFACTORY_SIGNATURE =
       "<java.lang.invoke.LambdaMetafactory: java.lang.invoke.CallSite "
           + "altMetafactory(java.lang.invoke.MethodHandles$Lookup,"
           + "java.lang.String,java.lang.invoke.MethodType,java.lang.Object[])>";
@@ -543,7 +543,23 @@ final class AsmMethodSource implements MethodSource {
     }
   }
 
-  Local newStackLocal() {
+  @Override
+  public void setUnit(Operand producer, Unit u) {
+    setUnit(producer.insn, u);
+  }
+
+  @Override
+  public void mergeUnits(Operand producer, Unit u) {
+    mergeUnits(producer.insn, u);
+  }
+
+  @Override
+  public Unit getUnit(Operand producer) {
+    return getUnit(producer.insn);
+  }
+
+  @Override
+  public Local newStackLocal() {
     Integer idx = nextLocal++;
     Local l = Jimple.v().newLocal("$stack" + idx, UnknownType.v());
     locals.put(idx, l);
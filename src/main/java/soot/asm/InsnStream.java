@@ -0,0 +1,498 @@
+package soot.asm;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.objectweb.asm.Opcodes.JSR;
+import static org.objectweb.asm.Opcodes.RET;
+import static org.objectweb.asm.tree.AbstractInsnNode.FIELD_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.IINC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INT_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INVOKE_DYNAMIC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.JUMP_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.LABEL;
+import static org.objectweb.asm.tree.AbstractInsnNode.LDC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.LINE;
+import static org.objectweb.asm.tree.AbstractInsnNode.LOOKUPSWITCH_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.METHOD_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.MULTIANEWARRAY_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.TABLESWITCH_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.TYPE_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.VAR_INSN;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Compact encoding of the code of a method, recorded by visiting the method once. Instead of a tree of instruction nodes,
+ * each instruction, label and line number takes two <code>int</code>s, and the few operands that are not numbers are kept
+ * in a single pool. Labels are numbered in the order they are first referenced. The positions of the nodes are the ones
+ * the nodes would have in a {@link org.objectweb.asm.tree.InsnList}, except that stack map frames are dropped.
+ *
+ * <p>
+ * The first <code>int</code> of a node holds its type, as in {@link org.objectweb.asm.tree.AbstractInsnNode#getType()}, its
+ * opcode and a 16 bit extra operand. The second one holds its operand, or the index of its operands in the pool:
+ * </p>
+ * <ul>
+ * <li>int and var instructions: the operand or the local</li>
+ * <li>iinc: the local, and the increment as extra operand</li>
+ * <li>jumps and labels: the label</li>
+ * <li>line numbers: the start label, and the line as extra operand</li>
+ * <li>type, field, method, ldc, invokedynamic and multianewarray instructions: the pool index of the descriptor, or of
+ * the owner, name and descriptor, or of the constant, or of the name, descriptor, bootstrap method and its arguments; the
+ * dimensions of multianewarray and whether the owner of a method is an interface are the extra operand</li>
+ * <li>switches: the pool index of an <code>int[]</code> holding minimum, maximum, default and case labels of a table
+ * switch, or the default label, the keys and the case labels of a lookup switch</li>
+ * </ul>
+ *
+ * <p>
+ * Code with subroutines cannot be converted from this encoding. It is recorded in full, so that it can be replayed into
+ * a {@link org.objectweb.asm.commons.JSRInlinerAdapter} with {@link #accept(MethodVisitor)}.
+ * </p>
+ */
+final class InsnStream extends MethodVisitor {
+
+  private static final int NO_LABEL = -1;
+
+  private int[] code = new int[32];
+  private int size;
+  private Object[] pool = new Object[8];
+  private int poolSize;
+
+  private int[] labelNodes = new int[8];
+  private int labelCount;
+  private final BitSet jumpTargets = new BitSet();
+
+  private int[] tryCatchBlocks = new int[0];
+  private String[] tryCatchTypes = new String[0];
+  private int tryCatchCount;
+
+  private String[] localNames = new String[0];
+  private List<LocalVariable> localVariables;
+
+  private int maxStack;
+  private int maxLocals;
+  private boolean hasSubroutines;
+
+  InsnStream() {
+    super(Opcodes.ASM6);
+  }
+
+  /** Returns the number of nodes. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the type of the node at the given position. */
+  int type(int insn) {
+    return code[insn << 1] & 0xff;
+  }
+
+  /** Returns the opcode of the node at the given position, or -1 for labels and line numbers. */
+  int opcode(int insn) {
+    return ((code[insn << 1] >> 8) & 0xff) - 1;
+  }
+
+  /** Returns the operand of the node at the given position. */
+  int operand(int insn) {
+    return code[(insn << 1) + 1];
+  }
+
+  /** Returns the extra operand of the node at the given position, sign-extended. */
+  int extra(int insn) {
+    return code[insn << 1] >> 16;
+  }
+
+  /** Returns the line number of the line number node at the given position. */
+  int line(int insn) {
+    return code[insn << 1] >>> 16;
+  }
+
+  /** Returns the entry of the pool at the given index. */
+  @SuppressWarnings("unchecked")
+  <A> A pool(int index) {
+    return (A) pool[index];
+  }
+
+  /** Returns the number of labels. */
+  int labelCount() {
+    return labelCount;
+  }
+
+  /** Returns the position of the given label, or -1 if it has not been placed. */
+  int labelNode(int label) {
+    return labelNodes[label];
+  }
+
+  /** Returns whether a jump or switch instruction targets the given label. */
+  boolean isJumpTarget(int label) {
+    return jumpTargets.get(label);
+  }
+
+  /** Returns the number of try-catch blocks. */
+  int tryCatchCount() {
+    return tryCatchCount;
+  }
+
+  /** Returns the start label of the try-catch block with the given index. */
+  int tryCatchStart(int tc) {
+    return tryCatchBlocks[3 * tc];
+  }
+
+  /** Returns the end label of the try-catch block with the given index. */
+  int tryCatchEnd(int tc) {
+    return tryCatchBlocks[3 * tc + 1];
+  }
+
+  /** Returns the handler label of the try-catch block with the given index. */
+  int tryCatchHandler(int tc) {
+    return tryCatchBlocks[3 * tc + 2];
+  }
+
+  /** Returns the internal name of the exception caught by the try-catch block with the given index, or null. */
+  String tryCatchType(int tc) {
+    return tryCatchTypes[tc];
+  }
+
+  /** Returns the name of the first local variable with the given index, or null. */
+  String localName(int local) {
+    return local < localNames.length ? localNames[local] : null;
+  }
+
+  int maxLocals() {
+    return maxLocals;
+  }
+
+  int maxStack() {
+    return maxStack;
+  }
+
+  /** Returns whether the code uses JSR or RET and must be replayed into a subroutine inliner. */
+  boolean hasSubroutines() {
+    return hasSubroutines;
+  }
+
+  private int label(Label label) {
+    Object info = label.info;
+    if (info instanceof Integer) {
+      return (Integer) info;
+    }
+    int id = labelCount++;
+    if (id == labelNodes.length) {
+      labelNodes = Arrays.copyOf(labelNodes, id << 1);
+    }
+    labelNodes[id] = NO_LABEL;
+    label.info = id;
+    return id;
+  }
+
+  private int target(Label label) {
+    int id = label(label);
+    jumpTargets.set(id);
+    return id;
+  }
+
+  private void add(int type, int opcode, int extra, int operand) {
+    int i = size << 1;
+    if (i == code.length) {
+      code = Arrays.copyOf(code, i << 1);
+    }
+    code[i] = type | ((opcode + 1) << 8) | (extra << 16);
+    code[i + 1] = operand;
+    size++;
+  }
+
+  private int addToPool(Object... entries) {
+    int index = poolSize;
+    if (poolSize + entries.length > pool.length) {
+      pool = Arrays.copyOf(pool, Math.max(pool.length << 1, poolSize + entries.length));
+    }
+    for (Object entry : entries) {
+      pool[poolSize++] = entry;
+    }
+    return index;
+  }
+
+  @Override
+  public void visitInsn(int opcode) {
+    add(INSN, opcode, 0, 0);
+  }
+
+  @Override
+  public void visitIntInsn(int opcode, int operand) {
+    add(INT_INSN, opcode, 0, operand);
+  }
+
+  @Override
+  public void visitVarInsn(int opcode, int var) {
+    if (opcode == RET) {
+      hasSubroutines = true;
+    }
+    add(VAR_INSN, opcode, 0, var);
+  }
+
+  @Override
+  public void visitTypeInsn(int opcode, String type) {
+    add(TYPE_INSN, opcode, 0, addToPool(type));
+  }
+
+  @Override
+  public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+    add(FIELD_INSN, opcode, 0, addToPool(owner, name, descriptor));
+  }
+
+  @Override
+  public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+    add(METHOD_INSN, opcode, isInterface ? 1 : 0, addToPool(owner, name, descriptor));
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(String name, String descriptor, Handle bsm, Object... bsmArgs) {
+    add(INVOKE_DYNAMIC_INSN, Opcodes.INVOKEDYNAMIC, 0, addToPool(name, descriptor, bsm, bsmArgs));
+  }
+
+  @Override
+  public void visitJumpInsn(int opcode, Label label) {
+    if (opcode == JSR) {
+      hasSubroutines = true;
+    }
+    add(JUMP_INSN, opcode, 0, target(label));
+  }
+
+  @Override
+  public void visitLabel(Label label) {
+    int id = label(label);
+    labelNodes[id] = size;
+    add(LABEL, -1, 0, id);
+  }
+
+  @Override
+  public void visitLdcInsn(Object value) {
+    add(LDC_INSN, Opcodes.LDC, 0, addToPool(value));
+  }
+
+  @Override
+  public void visitIincInsn(int var, int increment) {
+    add(IINC_INSN, Opcodes.IINC, increment, var);
+  }
+
+  @Override
+  public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+    int[] operands = new int[3 + labels.length];
+    operands[0] = min;
+    operands[1] = max;
+    operands[2] = target(dflt);
+    for (int i = 0; i < labels.length; i++) {
+      operands[3 + i] = target(labels[i]);
+    }
+    add(TABLESWITCH_INSN, Opcodes.TABLESWITCH, 0, addToPool(operands));
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+    int[] operands = new int[1 + 2 * keys.length];
+    operands[0] = target(dflt);
+    System.arraycopy(keys, 0, operands, 1, keys.length);
+    for (int i = 0; i < labels.length; i++) {
+      operands[1 + keys.length + i] = target(labels[i]);
+    }
+    add(LOOKUPSWITCH_INSN, Opcodes.LOOKUPSWITCH, 0, addToPool(operands));
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+    add(MULTIANEWARRAY_INSN, Opcodes.MULTIANEWARRAY, numDimensions, addToPool(descriptor));
+  }
+
+  @Override
+  public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+    int i = 3 * tryCatchCount;
+    if (i == tryCatchBlocks.length) {
+      tryCatchBlocks = Arrays.copyOf(tryCatchBlocks, Math.max(3, i << 1));
+      tryCatchTypes = Arrays.copyOf(tryCatchTypes, tryCatchBlocks.length / 3);
+    }
+    tryCatchBlocks[i] = label(start);
+    tryCatchBlocks[i + 1] = label(end);
+    tryCatchBlocks[i + 2] = label(handler);
+    tryCatchTypes[tryCatchCount++] = type;
+  }
+
+  @Override
+  public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
+    if (index >= localNames.length) {
+      localNames = Arrays.copyOf(localNames, index + 1);
+    }
+    if (localNames[index] == null) {
+      localNames[index] = name;
+    }
+    if (hasSubroutines) {
+      if (localVariables == null) {
+        localVariables = new ArrayList<LocalVariable>();
+      }
+      localVariables.add(new LocalVariable(name, descriptor, signature, label(start), label(end), index));
+    }
+  }
+
+  @Override
+  public void visitLineNumber(int line, Label start) {
+    add(LINE, -1, line, label(start));
+  }
+
+  @Override
+  public void visitMaxs(int maxStack, int maxLocals) {
+    this.maxStack = maxStack;
+    this.maxLocals = maxLocals;
+  }
+
+  @Override
+  public void visitEnd() {
+    code = Arrays.copyOf(code, size << 1);
+    pool = Arrays.copyOf(pool, poolSize);
+    labelNodes = Arrays.copyOf(labelNodes, labelCount);
+    tryCatchBlocks = Arrays.copyOf(tryCatchBlocks, 3 * tryCatchCount);
+    tryCatchTypes = Arrays.copyOf(tryCatchTypes, tryCatchCount);
+  }
+
+  /**
+   * Visits the recorded code with the given visitor. This is only supported for code with subroutines, for which the
+   * local variables are recorded in full.
+   */
+  void accept(MethodVisitor mv) {
+    if (!hasSubroutines) {
+      throw new IllegalStateException("Only code with subroutines can be replayed");
+    }
+    Label[] labels = new Label[labelCount];
+    for (int i = 0; i < labelCount; i++) {
+      labels[i] = new Label();
+    }
+    mv.visitCode();
+    for (int tc = 0; tc < tryCatchCount; tc++) {
+      mv.visitTryCatchBlock(labels[tryCatchStart(tc)], labels[tryCatchEnd(tc)], labels[tryCatchHandler(tc)],
+          tryCatchType(tc));
+    }
+    for (int insn = 0; insn < size; insn++) {
+      int op = opcode(insn);
+      int operand = operand(insn);
+      switch (type(insn)) {
+        case INSN:
+          mv.visitInsn(op);
+          break;
+        case INT_INSN:
+          mv.visitIntInsn(op, operand);
+          break;
+        case VAR_INSN:
+          mv.visitVarInsn(op, operand);
+          break;
+        case TYPE_INSN:
+          mv.visitTypeInsn(op, this.<String>pool(operand));
+          break;
+        case FIELD_INSN:
+          mv.visitFieldInsn(op, this.<String>pool(operand), this.<String>pool(operand + 1),
+              this.<String>pool(operand + 2));
+          break;
+        case METHOD_INSN:
+          mv.visitMethodInsn(op, this.<String>pool(operand), this.<String>pool(operand + 1),
+              this.<String>pool(operand + 2), extra(insn) != 0);
+          break;
+        case INVOKE_DYNAMIC_INSN:
+          mv.visitInvokeDynamicInsn(this.<String>pool(operand), this.<String>pool(operand + 1),
+              this.<Handle>pool(operand + 2), this.<Object[]>pool(operand + 3));
+          break;
+        case JUMP_INSN:
+          mv.visitJumpInsn(op, labels[operand]);
+          break;
+        case LABEL:
+          mv.visitLabel(labels[operand]);
+          break;
+        case LDC_INSN:
+          mv.visitLdcInsn(pool(operand));
+          break;
+        case IINC_INSN:
+          mv.visitIincInsn(operand, extra(insn));
+          break;
+        case TABLESWITCH_INSN: {
+          int[] operands = pool(operand);
+          Label[] targets = new Label[operands.length - 3];
+          for (int i = 0; i < targets.length; i++) {
+            targets[i] = labels[operands[3 + i]];
+          }
+          mv.visitTableSwitchInsn(operands[0], operands[1], labels[operands[2]], targets);
+          break;
+        }
+        case LOOKUPSWITCH_INSN: {
+          int[] operands = pool(operand);
+          int n = (operands.length - 1) / 2;
+          Label[] targets = new Label[n];
+          for (int i = 0; i < n; i++) {
+            targets[i] = labels[operands[1 + n + i]];
+          }
+          mv.visitLookupSwitchInsn(labels[operands[0]], Arrays.copyOfRange(operands, 1, 1 + n), targets);
+          break;
+        }
+        case MULTIANEWARRAY_INSN:
+          mv.visitMultiANewArrayInsn(this.<String>pool(operand), extra(insn));
+          break;
+        case LINE:
+          mv.visitLineNumber(line(insn), labels[operand]);
+          break;
+        default:
+          throw new IllegalStateException("Unknown instruction type: " + type(insn));
+      }
+    }
+    if (localVariables != null) {
+      for (LocalVariable lv : localVariables) {
+        mv.visitLocalVariable(lv.name, lv.descriptor, lv.signature, labels[lv.start], labels[lv.end], lv.index);
+      }
+    }
+    mv.visitMaxs(maxStack, maxLocals);
+    mv.visitEnd();
+  }
+
+  /**
+   * A local variable of code with subroutines, which is kept for replaying the code.
+   */
+  private static final class LocalVariable {
+    final String name;
+    final String descriptor;
+    final String signature;
+    final int start;
+    final int end;
+    final int index;
+
+    LocalVariable(String name, String descriptor, String signature, int start, int end, int index) {
+      this.name = name;
+      this.descriptor = descriptor;
+      this.signature = signature;
+      this.start = start;
+      this.end = end;
+      this.index = index;
+    }
+  }
+}
@@ -31,14 +31,18 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.TypePath;
 import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.objectweb.asm.tree.MethodNode;
 
 import soot.ArrayType;
+import soot.MethodSource;
 import soot.RefType;
 import soot.SootMethod;
 import soot.Type;
+import soot.options.Options;
 import soot.tagkit.AnnotationConstants;
 import soot.tagkit.AnnotationDefaultTag;
 import soot.tagkit.AnnotationTag;
@@ -47,11 +51,12 @@ import soot.tagkit.VisibilityLocalVariableAnnotationTag;
 import soot.tagkit.VisibilityParameterAnnotationTag;
 
 /**
- * Soot method builder.
+ * Soot method builder. The code of the method is recorded either in a tree of instruction nodes, with subroutines inlined,
+ * or in an {@link InsnStream} if {@link Options#asm_streaming()} is set.
  *
  * @author Aaloan Miftah
  */
-class MethodBuilder extends JSRInlinerAdapter {
+class MethodBuilder extends MethodVisitor {
 
   private TagBuilder tb;
   private VisibilityAnnotationTag[] visibleParamAnnotations;
@@ -60,11 +65,19 @@ class MethodBuilder extends JSRInlinerAdapter {
   private List<VisibilityAnnotationTag> invisibleLocalVarAnnotations;
   private final SootMethod method;
   private final SootClassBuilder scb;
+  private final String desc;
+  private final String[] ex;
 
   MethodBuilder(SootMethod method, SootClassBuilder scb, String desc, String[] ex) {
-    super(Opcodes.ASM6, null, method.getModifiers(), method.getName(), desc, null, ex);
+    super(Opcodes.ASM6, Options.v().asm_streaming() ? new InsnStream() : newInliner(method, desc, ex));
     this.method = method;
     this.scb = scb;
+    this.desc = desc;
+    this.ex = ex;
+  }
+
+  private static JSRInlinerAdapter newInliner(SootMethod method, String desc, String[] ex) {
+    return new JSRInlinerAdapter(null, method.getModifiers(), method.getName(), desc, null, ex);
   }
 
   private TagBuilder getTagBuilder() {
@@ -253,8 +266,24 @@ class MethodBuilder extends JSRInlinerAdapter {
       method.addTag(tag);
     }
     if (method.isConcrete()) {
-      method.setSource(
-          new AsmMethodSource(maxLocals, instructions, localVariables, tryCatchBlocks, scb.getKlass().moduleName));
+      method.setSource(newMethodSource());
+    }
+  }
+
+  private MethodSource newMethodSource() {
+    String module = scb.getKlass().moduleName;
+    MethodNode node;
+    if (mv instanceof InsnStream) {
+      InsnStream code = (InsnStream) mv;
+      if (!code.hasSubroutines()) {
+        return new StreamMethodSource(code, module);
+      }
+      // subroutines are only inlined on the tree of instruction nodes
+      node = newInliner(method, desc, ex);
+      code.accept(node);
+    } else {
+      node = (MethodNode) mv;
     }
+    return new AsmMethodSource(node.maxLocals, node.instructions, node.localVariables, node.tryCatchBlocks, module);
   }
 }
@@ -39,6 +39,7 @@ import soot.ValueBox;
 final class Operand {
 
   final AbstractInsnNode insn;
+  final int insnIndex;
   final Value value;
   Local stack;
   private Object boxes;
@@ -53,6 +54,21 @@ final class Operand {
    */
   Operand(AbstractInsnNode insn, Value value) {
     this.insn = insn;
+    this.insnIndex = -1;
+    this.value = value;
+  }
+
+  /**
+   * Constructs a new stack operand for an instruction of an {@link InsnStream}.
+   * 
+   * @param insnIndex
+   *          the position of the instruction that produced this operand.
+   * @param value
+   *          the generated value.
+   */
+  Operand(int insnIndex, Value value) {
+    this.insn = null;
+    this.insnIndex = insnIndex;
     this.value = value;
   }
 
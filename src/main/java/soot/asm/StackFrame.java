@@ -42,7 +42,7 @@ final class StackFrame {
   private Local[] inStackLocals;
   private ValueBox[] boxes;
   private ArrayList<Operand[]> in;
-  private final AsmMethodSource src;
+  private final Converter src;
 
   /**
    * Constructs a new stack frame.
@@ -50,7 +50,7 @@ final class StackFrame {
    * @param src
    *          source the frame belongs to.
    */
-  StackFrame(AsmMethodSource src) {
+  StackFrame(Converter src) {
     this.src = src;
   }
 
@@ -123,11 +123,11 @@ final class StackFrame {
         if (newOp.stack == null) {
           newOp.stack = stack;
           AssignStmt as = Jimple.v().newAssignStmt(stack, newOp.value);
-          src.setUnit(newOp.insn, as);
+          src.setUnit(newOp, as);
           newOp.updateBoxes();
         } else {
           AssignStmt as = Jimple.v().newAssignStmt(stack, newOp.stackOrValue());
-          src.mergeUnits(newOp.insn, as);
+          src.mergeUnits(newOp, as);
           newOp.addBox(as.getRightOpBox());
         }
       } else {
@@ -154,9 +154,9 @@ final class StackFrame {
           if (prevOp.stack == null) {
             prevOp.stack = stack;
             AssignStmt as = Jimple.v().newAssignStmt(stack, prevOp.value);
-            src.setUnit(prevOp.insn, as);
+            src.setUnit(prevOp, as);
           } else {
-            Unit u = src.getUnit(prevOp.insn);
+            Unit u = src.getUnit(prevOp);
             DefinitionStmt as = (DefinitionStmt) (u instanceof UnitContainer ? ((UnitContainer) u).getFirstUnit() : u);
             ValueBox lvb = as.getLeftOpBox();
             assert lvb.getValue() == prevOp.stack : "Invalid stack local!";
@@ -169,9 +169,9 @@ final class StackFrame {
           if (newOp.stack == null) {
             newOp.stack = stack;
             AssignStmt as = Jimple.v().newAssignStmt(stack, newOp.value);
-            src.setUnit(newOp.insn, as);
+            src.setUnit(newOp, as);
           } else {
-            Unit u = src.getUnit(newOp.insn);
+            Unit u = src.getUnit(newOp);
             DefinitionStmt as = (DefinitionStmt) (u instanceof UnitContainer ? ((UnitContainer) u).getFirstUnit() : u);
             ValueBox lvb = as.getLeftOpBox();
             assert lvb.getValue() == newOp.stack : "Invalid stack local!";
@@ -206,4 +206,30 @@ final class StackFrame {
       in.add(oprs);
     }
   }
+
+  /**
+   * A method source that converts instructions with stack frames.
+   */
+  interface Converter {
+
+    /**
+     * Creates a new local for a stack operand.
+     */
+    Local newStackLocal();
+
+    /**
+     * Sets the unit of the instruction that produced the given operand.
+     */
+    void setUnit(Operand producer, Unit u);
+
+    /**
+     * Adds a unit to the units of the instruction that produced the given operand.
+     */
+    void mergeUnits(Operand producer, Unit u);
+
+    /**
+     * Returns the unit of the instruction that produced the given operand.
+     */
+    Unit getUnit(Operand producer);
+  }
 }
@@ -0,0 +1,2092 @@
+package soot.asm;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.D2F;
+import static org.objectweb.asm.Opcodes.D2I;
+import static org.objectweb.asm.Opcodes.D2L;
+import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.DASTORE;
+import static org.objectweb.asm.Opcodes.DCMPG;
+import static org.objectweb.asm.Opcodes.DCMPL;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DDIV;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DNEG;
+import static org.objectweb.asm.Opcodes.DREM;
+import static org.objectweb.asm.Opcodes.DRETURN;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.DSUB;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.DUP2_X1;
+import static org.objectweb.asm.Opcodes.DUP2_X2;
+import static org.objectweb.asm.Opcodes.DUP_X1;
+import static org.objectweb.asm.Opcodes.DUP_X2;
+import static org.objectweb.asm.Opcodes.F2D;
+import static org.objectweb.asm.Opcodes.F2I;
+import static org.objectweb.asm.Opcodes.F2L;
+import static org.objectweb.asm.Opcodes.FCMPG;
+import static org.objectweb.asm.Opcodes.FCMPL;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.FCONST_2;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2B;
+import static org.objectweb.asm.Opcodes.I2C;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.I2F;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_5;
+import static org.objectweb.asm.Opcodes.ICONST_M1;
+import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ACMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IOR;
+import static org.objectweb.asm.Opcodes.IREM;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISHR;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.IUSHR;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.JSR;
+import static org.objectweb.asm.Opcodes.L2D;
+import static org.objectweb.asm.Opcodes.L2F;
+import static org.objectweb.asm.Opcodes.L2I;
+import static org.objectweb.asm.Opcodes.LADD;
+import static org.objectweb.asm.Opcodes.LALOAD;
+import static org.objectweb.asm.Opcodes.LAND;
+import static org.objectweb.asm.Opcodes.LASTORE;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.LCONST_1;
+import static org.objectweb.asm.Opcodes.LDIV;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LMUL;
+import static org.objectweb.asm.Opcodes.LNEG;
+import static org.objectweb.asm.Opcodes.LOR;
+import static org.objectweb.asm.Opcodes.LREM;
+import static org.objectweb.asm.Opcodes.LRETURN;
+import static org.objectweb.asm.Opcodes.LSHL;
+import static org.objectweb.asm.Opcodes.LSHR;
+import static org.objectweb.asm.Opcodes.LSTORE;
+import static org.objectweb.asm.Opcodes.LSUB;
+import static org.objectweb.asm.Opcodes.LUSHR;
+import static org.objectweb.asm.Opcodes.LXOR;
+import static org.objectweb.asm.Opcodes.MONITORENTER;
+import static org.objectweb.asm.Opcodes.MONITOREXIT;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.NOP;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RET;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SALOAD;
+import static org.objectweb.asm.Opcodes.SASTORE;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.T_BOOLEAN;
+import static org.objectweb.asm.Opcodes.T_BYTE;
+import static org.objectweb.asm.Opcodes.T_CHAR;
+import static org.objectweb.asm.Opcodes.T_DOUBLE;
+import static org.objectweb.asm.Opcodes.T_FLOAT;
+import static org.objectweb.asm.Opcodes.T_INT;
+import static org.objectweb.asm.Opcodes.T_LONG;
+import static org.objectweb.asm.Opcodes.T_SHORT;
+import static org.objectweb.asm.tree.AbstractInsnNode.FIELD_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.IINC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INT_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.INVOKE_DYNAMIC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.JUMP_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.LABEL;
+import static org.objectweb.asm.tree.AbstractInsnNode.LDC_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.LINE;
+import static org.objectweb.asm.tree.AbstractInsnNode.LOOKUPSWITCH_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.METHOD_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.MULTIANEWARRAY_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.TABLESWITCH_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.TYPE_INSN;
+import static org.objectweb.asm.tree.AbstractInsnNode.VAR_INSN;
+
+import com.google.common.base.Optional;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Handle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.LambdaMetaFactory;
+import soot.Local;
+import soot.LongType;
+import soot.MethodSource;
+import soot.Modifier;
+import soot.ModuleScene;
+import soot.ModuleUtil;
+import soot.PackManager;
+import soot.PhaseOptions;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.UnknownType;
+import soot.Value;
+import soot.ValueBox;
+import soot.VoidType;
+import soot.coffi.Util;
+import soot.jimple.AddExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.ConditionExpr;
+import soot.jimple.Constant;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.FloatConstant;
+import soot.jimple.GotoStmt;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.LookupSwitchStmt;
+import soot.jimple.MethodHandle;
+import soot.jimple.MethodType;
+import soot.jimple.MonitorStmt;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.ReturnStmt;
+import soot.jimple.StringConstant;
+import soot.jimple.TableSwitchStmt;
+import soot.jimple.ThrowStmt;
+import soot.jimple.UnopExpr;
+import soot.options.Options;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.Tag;
+import soot.util.Chain;
+
+/**
+ * Generates Jimple bodies from the code of a method recorded in an {@link InsnStream}. The conversion is the one of
+ * {@link AsmMethodSource}, so that both build the same bodies, but instructions and labels are addressed by their position
+ * in the stream: units, stack frames, label boxes and trap handlers are kept in arrays instead of maps, and the operand
+ * stack is a plain array that is snapshot once per edge.
+ *
+ * @see soot.options.Options#asm_streaming()
+ */
+final class StreamMethodSource implements MethodSource, StackFrame.Converter {
+  private static final Logger logger = LoggerFactory.getLogger(StreamMethodSource.class);
+
+  private static final Operand DWORD_DUMMY = new Operand(-1, null);
+  private static final Operand[] EMPTY_STACK = new Operand[0];
+
+  /* -const fields- */
+  private final InsnStream code;
+  private final String module;
+  private final CastAndReturnInliner castAndReturnInliner = new CastAndReturnInliner();
+  /* -state fields- */
+  private int nextLocal;
+  private Local[] locals;
+  private List<Local> localChain;
+  private List<UnitBox>[] labels;
+  private Unit[] units;
+  private Operand[] stack;
+  private int stackSize;
+  private StackFrame[] frames;
+  private List<UnitBox>[] trapHandlers;
+  private int[] handlerLabels;
+  private BitSet inlineExceptionLabels;
+  private Unit[] inlineExceptionHandlers;
+  private JimpleBody body;
+  private int lastLineNumber;
+  private Map<Long, Edge> edges;
+  private ArrayDeque<Edge> conversionWorklist;
+
+  StreamMethodSource(InsnStream code, String module) {
+    this.code = code;
+    this.module = module;
+  }
+
+  private StackFrame getFrame(int insn) {
+    StackFrame frame = frames[insn];
+    if (frame == null) {
+      frame = frames[insn] = new StackFrame(this);
+    }
+    return frame;
+  }
+
+  private SootClass getClassFromScene(String className) {
+    SootClass result;
+    if (ModuleUtil.module_mode()) {
+      result = ModuleScene.v().getSootClassUnsafe(className, Optional.fromNullable(this.module));
+    } else {
+      result = Scene.v().getSootClassUnsafe(className);
+    }
+
+    if (result == null) {
+      String msg = String.format("%s was not found on classpath.", className);
+      if (Options.v().allow_phantom_refs()) {
+        RefType ref = RefType.v(className);
+        // make sure nobody else creates the same class
+        synchronized (ref) {
+          logger.warn(msg);
+          result = Scene.v().makeSootClass(className, Modifier.PUBLIC);
+          Scene.v().addClass(result);
+          result.setPhantomClass();
+          return ref.getSootClass();
+        }
+      } else {
+        throw new RuntimeException(msg);
+      }
+    }
+    return result;
+  }
+
+  private Optional<String> moduleName() {
+    return Optional.fromNullable(this.body.getMethod().getDeclaringClass().moduleName);
+  }
+
+  private Local getLocal(int idx) {
+    if (idx >= code.maxLocals()) {
+      throw new IllegalArgumentException("Invalid local index: " + idx);
+    }
+    Local l = locals[idx];
+    if (l == null) {
+      String name = code.localName(idx);
+      /* normally for try-catch blocks */
+      if (name == null) {
+        name = "l" + idx;
+      }
+      l = locals[idx] = Jimple.v().newLocal(name, UnknownType.v());
+      localChain.add(l);
+    }
+    return l;
+  }
+
+  private void push(Operand opr) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, Math.max(4, stackSize << 1));
+    }
+    stack[stackSize++] = opr;
+  }
+
+  private void pushDual(Operand opr) {
+    push(DWORD_DUMMY);
+    push(opr);
+  }
+
+  private Operand peek() {
+    return stack[stackSize - 1];
+  }
+
+  private void push(Type t, Operand opr) {
+    if (AsmUtil.isDWord(t)) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private Operand pop() {
+    if (stackSize == 0) {
+      throw new RuntimeException("Stack underrun");
+    }
+    Operand opr = stack[--stackSize];
+    stack[stackSize] = null;
+    return opr;
+  }
+
+  private Operand popDual() {
+    Operand o = pop();
+    Operand o2 = pop();
+    if (o2 != DWORD_DUMMY && o2 != o) {
+      throw new AssertionError("Not dummy operand, " + o2.value + " -- " + o.value);
+    }
+    return o;
+  }
+
+  private Operand pop(Type t) {
+    return AsmUtil.isDWord(t) ? popDual() : pop();
+  }
+
+  private Operand popLocal(Operand o) {
+    Value v = o.value;
+    Local l = o.stack;
+    if (l == null && !(v instanceof Local)) {
+      l = o.stack = newStackLocal();
+      setUnit(o.insnIndex, Jimple.v().newAssignStmt(l, v));
+      o.updateBoxes();
+    }
+    return o;
+  }
+
+  private Operand popImmediate(Operand o) {
+    Value v = o.value;
+    Local l = o.stack;
+    if (l == null && !(v instanceof Local) && !(v instanceof Constant)) {
+      l = o.stack = newStackLocal();
+      setUnit(o.insnIndex, Jimple.v().newAssignStmt(l, v));
+      o.updateBoxes();
+    }
+    return o;
+  }
+
+  private Operand popStackConst(Operand o) {
+    Value v = o.value;
+    Local l = o.stack;
+    if (l == null && !(v instanceof Constant)) {
+      l = o.stack = newStackLocal();
+      setUnit(o.insnIndex, Jimple.v().newAssignStmt(l, v));
+      o.updateBoxes();
+    }
+    return o;
+  }
+
+  private Operand popLocal() {
+    return popLocal(pop());
+  }
+
+  private Operand popImmediate() {
+    return popImmediate(pop());
+  }
+
+  private Operand popImmediateDual() {
+    return popImmediate(popDual());
+  }
+
+  private Operand popImmediate(Type t) {
+    return AsmUtil.isDWord(t) ? popImmediateDual() : popImmediate();
+  }
+
+  private Operand popStackConst() {
+    return popStackConst(pop());
+  }
+
+  private void setUnit(int insn, Unit u) {
+    if (Options.v().keep_line_number() && lastLineNumber >= 0) {
+      Tag lineTag = u.getTag("LineNumberTag");
+      if (lineTag == null) {
+        lineTag = new LineNumberTag(lastLineNumber);
+        u.addTag(lineTag);
+      } else if (((LineNumberTag) lineTag).getLineNumber() != lastLineNumber) {
+        throw new RuntimeException("Line tag mismatch");
+      }
+    }
+
+    Unit o = units[insn];
+    units[insn] = u;
+    if (o != null) {
+      throw new AssertionError(code.opcode(insn) + " already has a unit, " + o);
+    }
+  }
+
+  private void mergeUnits(int insn, Unit u) {
+    Unit prev = units[insn];
+    units[insn] = prev == null ? u : new UnitContainer(prev, u);
+  }
+
+  @Override
+  public void setUnit(Operand producer, Unit u) {
+    setUnit(producer.insnIndex, u);
+  }
+
+  @Override
+  public void mergeUnits(Operand producer, Unit u) {
+    mergeUnits(producer.insnIndex, u);
+  }
+
+  @Override
+  public Unit getUnit(Operand producer) {
+    return units[producer.insnIndex];
+  }
+
+  @Override
+  public Local newStackLocal() {
+    int idx = nextLocal++;
+    Local l = Jimple.v().newLocal("$stack" + idx, UnknownType.v());
+    localChain.add(l);
+    return l;
+  }
+
+  private void addLabelBox(int label, UnitBox box) {
+    List<UnitBox> boxes = labels[label];
+    if (boxes == null) {
+      boxes = labels[label] = new ArrayList<UnitBox>(2);
+    }
+    boxes.add(box);
+  }
+
+  private void assignReadOps(Local l) {
+    for (int i = 0; i < stackSize; i++) {
+      Operand opr = stack[i];
+      if (opr == DWORD_DUMMY || opr.stack != null || (l == null && opr.value instanceof Local)) {
+        continue;
+      }
+      if (l != null && !opr.value.equivTo(l)) {
+        List<ValueBox> uses = opr.value.getUseBoxes();
+        boolean noref = true;
+        for (ValueBox use : uses) {
+          Value val = use.getValue();
+          if (val.equivTo(l)) {
+            noref = false;
+            break;
+          }
+        }
+        if (noref) {
+          continue;
+        }
+      }
+      int op = code.opcode(opr.insnIndex);
+      if (l == null && op != GETFIELD && op != GETSTATIC && (op < IALOAD && op > SALOAD)) {
+        continue;
+      }
+      Local stack = newStackLocal();
+      opr.stack = stack;
+      AssignStmt as = Jimple.v().newAssignStmt(stack, opr.value);
+      opr.updateBoxes();
+      setUnit(opr.insnIndex, as);
+    }
+  }
+
+  private void convertGetFieldInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    Type type;
+    if (out == null) {
+      int operands = code.operand(insn);
+      String owner = code.pool(operands);
+      String name = code.pool(operands + 1);
+      String desc = code.pool(operands + 2);
+      SootClass declClass = this.getClassFromScene(AsmUtil.toQualifiedName(owner));
+      type = AsmUtil.toJimpleType(desc, moduleName());
+      Value val;
+      SootFieldRef ref;
+      if (code.opcode(insn) == GETSTATIC) {
+        ref = Scene.v().makeFieldRef(declClass, name, type, true);
+        val = Jimple.v().newStaticFieldRef(ref);
+      } else {
+        Operand base = popLocal();
+        ref = Scene.v().makeFieldRef(declClass, name, type, false);
+        InstanceFieldRef ifr = Jimple.v().newInstanceFieldRef(base.stackOrValue(), ref);
+        val = ifr;
+        base.addBox(ifr.getBaseBox());
+        frame.in(base);
+        frame.boxes(ifr.getBaseBox());
+      }
+      opr = new Operand(insn, val);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      type = opr.<FieldRef>value().getFieldRef().type();
+      if (code.opcode(insn) == GETFIELD) {
+        frame.mergeIn(pop());
+      }
+    }
+    push(type, opr);
+  }
+
+  private void convertPutFieldInsn(int insn) {
+    boolean instance = code.opcode(insn) == PUTFIELD;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr, rvalue;
+    Type type;
+    if (out == null) {
+      int operands = code.operand(insn);
+      String owner = code.pool(operands);
+      String name = code.pool(operands + 1);
+      String desc = code.pool(operands + 2);
+      SootClass declClass = this.getClassFromScene(AsmUtil.toQualifiedName(owner));
+      type = AsmUtil.toJimpleType(desc, moduleName());
+      Value val;
+      SootFieldRef ref;
+      rvalue = popImmediate(type);
+      if (!instance) {
+        ref = Scene.v().makeFieldRef(declClass, name, type, true);
+        val = Jimple.v().newStaticFieldRef(ref);
+        frame.in(rvalue);
+      } else {
+        Operand base = popLocal();
+        ref = Scene.v().makeFieldRef(declClass, name, type, false);
+        InstanceFieldRef ifr = Jimple.v().newInstanceFieldRef(base.stackOrValue(), ref);
+        val = ifr;
+        base.addBox(ifr.getBaseBox());
+        frame.in(rvalue, base);
+      }
+      opr = new Operand(insn, val);
+      frame.out(opr);
+      AssignStmt as = Jimple.v().newAssignStmt(val, rvalue.stackOrValue());
+      rvalue.addBox(as.getRightOpBox());
+      if (!instance) {
+        frame.boxes(as.getRightOpBox());
+      } else {
+        frame.boxes(as.getRightOpBox(), ((InstanceFieldRef) val).getBaseBox());
+      }
+      setUnit(insn, as);
+    } else {
+      opr = out[0];
+      type = opr.<FieldRef>value().getFieldRef().type();
+      rvalue = pop(type);
+      if (!instance) {
+        /* PUTSTATIC only needs one operand on the stack, the rvalue */
+        frame.mergeIn(rvalue);
+      } else {
+        /* PUTFIELD has a rvalue and a base */
+        frame.mergeIn(rvalue, pop());
+      }
+    }
+    /*
+     * in case any static field or array is read from, and the static constructor or the field this instruction writes to,
+     * modifies that field, write out any previous read from field/array
+     */
+    assignReadOps(null);
+  }
+
+  private void convertFieldInsn(int insn) {
+    int op = code.opcode(insn);
+    if (op == GETSTATIC || op == GETFIELD) {
+      convertGetFieldInsn(insn);
+    } else {
+      convertPutFieldInsn(insn);
+    }
+  }
+
+  private void convertIincInsn(int insn) {
+    Local local = getLocal(code.operand(insn));
+    assignReadOps(local);
+    if (units[insn] == null) {
+      AddExpr add = Jimple.v().newAddExpr(local, IntConstant.v(code.extra(insn)));
+      setUnit(insn, Jimple.v().newAssignStmt(local, add));
+    }
+  }
+
+  private void convertConstInsn(int insn) {
+    int op = code.opcode(insn);
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Value v;
+      if (op == ACONST_NULL) {
+        v = NullConstant.v();
+      } else if (op >= ICONST_M1 && op <= ICONST_5) {
+        v = IntConstant.v(op - ICONST_0);
+      } else if (op == LCONST_0 || op == LCONST_1) {
+        v = LongConstant.v(op - LCONST_0);
+      } else if (op >= FCONST_0 && op <= FCONST_2) {
+        v = FloatConstant.v(op - FCONST_0);
+      } else if (op == DCONST_0 || op == DCONST_1) {
+        v = DoubleConstant.v(op - DCONST_0);
+      } else {
+        throw new AssertionError("Unknown constant opcode: " + op);
+      }
+      opr = new Operand(insn, v);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+    }
+    if (op == LCONST_0 || op == LCONST_1 || op == DCONST_0 || op == DCONST_1) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertArrayLoadInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Operand indx = popImmediate();
+      Operand base = popImmediate();
+      ArrayRef ar = Jimple.v().newArrayRef(base.stackOrValue(), indx.stackOrValue());
+      indx.addBox(ar.getIndexBox());
+      base.addBox(ar.getBaseBox());
+      opr = new Operand(insn, ar);
+      frame.in(indx, base);
+      frame.boxes(ar.getIndexBox(), ar.getBaseBox());
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      frame.mergeIn(pop(), pop());
+    }
+    int op = code.opcode(insn);
+    if (op == DALOAD || op == LALOAD) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertArrayStoreInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == LASTORE || op == DASTORE;
+    StackFrame frame = getFrame(insn);
+    if (units[insn] == null) {
+      Operand valu = dword ? popImmediateDual() : popImmediate();
+      Operand indx = popImmediate();
+      Operand base = popLocal();
+      ArrayRef ar = Jimple.v().newArrayRef(base.stackOrValue(), indx.stackOrValue());
+      indx.addBox(ar.getIndexBox());
+      base.addBox(ar.getBaseBox());
+      AssignStmt as = Jimple.v().newAssignStmt(ar, valu.stackOrValue());
+      valu.addBox(as.getRightOpBox());
+      frame.in(valu, indx, base);
+      frame.boxes(as.getRightOpBox(), ar.getIndexBox(), ar.getBaseBox());
+      setUnit(insn, as);
+    } else {
+      frame.mergeIn(dword ? popDual() : pop(), pop(), pop());
+    }
+  }
+
+  private void convertDupInsn(int insn) {
+    int op = code.opcode(insn);
+
+    // Get the top stack value which we need in either case
+    Operand dupd = popImmediate();
+    Operand dupd2 = null;
+
+    // Some instructions allow operands that take two registers
+    boolean dword = op == DUP2 || op == DUP2_X1 || op == DUP2_X2;
+    if (dword) {
+      if (peek() == DWORD_DUMMY) {
+        pop();
+        dupd2 = dupd;
+      } else {
+        dupd2 = popImmediate();
+      }
+    }
+
+    if (op == DUP) {
+      // val -> val, val
+      push(dupd);
+      push(dupd);
+    } else if (op == DUP_X1) {
+      // val2, val1 -> val1, val2, val1
+      // value1, value2 must not be of type double or long
+      Operand o2 = popImmediate();
+      push(dupd);
+      push(o2);
+      push(dupd);
+    } else if (op == DUP_X2) {
+      // value3, value2, value1 -> value1, value3, value2, value1
+      Operand o2 = popImmediate();
+      Operand o3 = peek() == DWORD_DUMMY ? pop() : popImmediate();
+      push(dupd);
+      push(o3);
+      push(o2);
+      push(dupd);
+    } else if (op == DUP2) {
+      // value2, value1 -> value2, value1, value2, value1
+      push(dupd2);
+      push(dupd);
+      push(dupd2);
+      push(dupd);
+    } else if (op == DUP2_X1) {
+      // value3, value2, value1 -> value2, value1, value3, value2, value1
+      Operand o2 = popImmediate();
+      push(dupd2);
+      push(dupd);
+      push(o2);
+      push(dupd2);
+      push(dupd);
+    } else if (op == DUP2_X2) {
+      // (value4, value3), (value2, value1) -> (value2, value1), (value4, value3), (value2, value1)
+      Operand o2 = popImmediate();
+      Operand o2h = peek() == DWORD_DUMMY ? pop() : popImmediate();
+      push(dupd2);
+      push(dupd);
+      push(o2h);
+      push(o2);
+      push(dupd2);
+      push(dupd);
+    }
+  }
+
+  private void convertBinopInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == DADD || op == LADD || op == DSUB || op == LSUB || op == DMUL || op == LMUL || op == DDIV
+        || op == LDIV || op == DREM || op == LREM || op == LSHL || op == LSHR || op == LUSHR || op == LAND || op == LOR
+        || op == LXOR || op == LCMP || op == DCMPL || op == DCMPG;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Operand op2 = (dword && op != LSHL && op != LSHR && op != LUSHR) ? popImmediateDual() : popImmediate();
+      Operand op1 = dword ? popImmediateDual() : popImmediate();
+      Value v1 = op1.stackOrValue();
+      Value v2 = op2.stackOrValue();
+      BinopExpr binop;
+      if (op >= IADD && op <= DADD) {
+        binop = Jimple.v().newAddExpr(v1, v2);
+      } else if (op >= ISUB && op <= DSUB) {
+        binop = Jimple.v().newSubExpr(v1, v2);
+      } else if (op >= IMUL && op <= DMUL) {
+        binop = Jimple.v().newMulExpr(v1, v2);
+      } else if (op >= IDIV && op <= DDIV) {
+        binop = Jimple.v().newDivExpr(v1, v2);
+      } else if (op >= IREM && op <= DREM) {
+        binop = Jimple.v().newRemExpr(v1, v2);
+      } else if (op >= ISHL && op <= LSHL) {
+        binop = Jimple.v().newShlExpr(v1, v2);
+      } else if (op >= ISHR && op <= LSHR) {
+        binop = Jimple.v().newShrExpr(v1, v2);
+      } else if (op >= IUSHR && op <= LUSHR) {
+        binop = Jimple.v().newUshrExpr(v1, v2);
+      } else if (op >= IAND && op <= LAND) {
+        binop = Jimple.v().newAndExpr(v1, v2);
+      } else if (op >= IOR && op <= LOR) {
+        binop = Jimple.v().newOrExpr(v1, v2);
+      } else if (op >= IXOR && op <= LXOR) {
+        binop = Jimple.v().newXorExpr(v1, v2);
+      } else if (op == LCMP) {
+        binop = Jimple.v().newCmpExpr(v1, v2);
+      } else if (op == FCMPL || op == DCMPL) {
+        binop = Jimple.v().newCmplExpr(v1, v2);
+      } else if (op == FCMPG || op == DCMPG) {
+        binop = Jimple.v().newCmpgExpr(v1, v2);
+      } else {
+        throw new AssertionError("Unknown binop: " + op);
+      }
+      op1.addBox(binop.getOp1Box());
+      op2.addBox(binop.getOp2Box());
+      opr = new Operand(insn, binop);
+      frame.in(op2, op1);
+      frame.boxes(binop.getOp2Box(), binop.getOp1Box());
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      if (dword) {
+        if (op != LSHL && op != LSHR && op != LUSHR) {
+          frame.mergeIn(popDual(), popDual());
+        } else {
+          frame.mergeIn(pop(), popDual());
+        }
+      } else {
+        frame.mergeIn(pop(), pop());
+      }
+    }
+    if (dword && (op < LCMP || op > DCMPG)) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertUnopInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == LNEG || op == DNEG;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Operand op1 = dword ? popImmediateDual() : popImmediate();
+      Value v1 = op1.stackOrValue();
+      UnopExpr unop;
+      if (op >= INEG && op <= DNEG) {
+        unop = Jimple.v().newNegExpr(v1);
+      } else if (op == ARRAYLENGTH) {
+        unop = Jimple.v().newLengthExpr(v1);
+      } else {
+        throw new AssertionError("Unknown unop: " + op);
+      }
+      op1.addBox(unop.getOpBox());
+      opr = new Operand(insn, unop);
+      frame.in(op1);
+      frame.boxes(unop.getOpBox());
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      frame.mergeIn(dword ? popDual() : pop());
+    }
+    if (dword) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertPrimCastInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean tod = op == I2L || op == I2D || op == F2L || op == F2D || op == D2L || op == L2D;
+    boolean fromd = op == D2L || op == L2D || op == D2I || op == L2I || op == D2F || op == L2F;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Type totype;
+      if (op == I2L || op == F2L || op == D2L) {
+        totype = LongType.v();
+      } else if (op == L2I || op == F2I || op == D2I) {
+        totype = IntType.v();
+      } else if (op == I2F || op == L2F || op == D2F) {
+        totype = FloatType.v();
+      } else if (op == I2D || op == L2D || op == F2D) {
+        totype = DoubleType.v();
+      } else if (op == I2B) {
+        totype = ByteType.v();
+      } else if (op == I2S) {
+        totype = ShortType.v();
+      } else if (op == I2C) {
+        totype = CharType.v();
+      } else {
+        throw new AssertionError("Unknonw prim cast op: " + op);
+      }
+      Operand val = fromd ? popImmediateDual() : popImmediate();
+      CastExpr cast = Jimple.v().newCastExpr(val.stackOrValue(), totype);
+      opr = new Operand(insn, cast);
+      val.addBox(cast.getOpBox());
+      frame.in(val);
+      frame.boxes(cast.getOpBox());
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      frame.mergeIn(fromd ? popDual() : pop());
+    }
+    if (tod) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertReturnInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == LRETURN || op == DRETURN;
+    StackFrame frame = getFrame(insn);
+    if (units[insn] == null) {
+      Operand val = dword ? popImmediateDual() : popImmediate();
+      ReturnStmt ret = Jimple.v().newReturnStmt(val.stackOrValue());
+      val.addBox(ret.getOpBox());
+      frame.in(val);
+      frame.boxes(ret.getOpBox());
+      setUnit(insn, ret);
+    } else {
+      frame.mergeIn(dword ? popDual() : pop());
+    }
+  }
+
+  private void convertInsn(int insn) {
+    int op = code.opcode(insn);
+    if (op == NOP) {
+      /*
+       * We can ignore NOP instructions, but for completeness, we handle them
+       */
+      if (units[insn] == null) {
+        units[insn] = Jimple.v().newNopStmt();
+      }
+    } else if (op >= ACONST_NULL && op <= DCONST_1) {
+      convertConstInsn(insn);
+    } else if (op >= IALOAD && op <= SALOAD) {
+      convertArrayLoadInsn(insn);
+    } else if (op >= IASTORE && op <= SASTORE) {
+      convertArrayStoreInsn(insn);
+    } else if (op == POP) {
+      popImmediate();
+    } else if (op == POP2) {
+      popImmediate();
+      if (peek() == DWORD_DUMMY) {
+        pop();
+      } else {
+        popImmediate();
+      }
+    } else if (op >= DUP && op <= DUP2_X2) {
+      convertDupInsn(insn);
+    } else if (op == SWAP) {
+      Operand o1 = popImmediate();
+      Operand o2 = popImmediate();
+      push(o1);
+      push(o2);
+    } else if ((op >= IADD && op <= DREM) || (op >= ISHL && op <= LXOR) || (op >= LCMP && op <= DCMPG)) {
+      convertBinopInsn(insn);
+    } else if ((op >= INEG && op <= DNEG) || op == ARRAYLENGTH) {
+      convertUnopInsn(insn);
+    } else if (op >= I2L && op <= I2S) {
+      convertPrimCastInsn(insn);
+    } else if (op >= IRETURN && op <= ARETURN) {
+      convertReturnInsn(insn);
+    } else if (op == RETURN) {
+      if (units[insn] == null) {
+        setUnit(insn, Jimple.v().newReturnVoidStmt());
+      }
+    } else if (op == ATHROW) {
+      StackFrame frame = getFrame(insn);
+      Operand opr;
+      if (units[insn] == null) {
+        opr = popImmediate();
+        ThrowStmt ts = Jimple.v().newThrowStmt(opr.stackOrValue());
+        opr.addBox(ts.getOpBox());
+        frame.in(opr);
+        frame.out(opr);
+        frame.boxes(ts.getOpBox());
+        setUnit(insn, ts);
+      } else {
+        opr = pop();
+        frame.mergeIn(opr);
+      }
+      push(opr);
+    } else if (op == MONITORENTER || op == MONITOREXIT) {
+      StackFrame frame = getFrame(insn);
+      if (units[insn] == null) {
+        Operand opr = popStackConst();
+        MonitorStmt ts = op == MONITORENTER ? Jimple.v().newEnterMonitorStmt(opr.stackOrValue())
+            : Jimple.v().newExitMonitorStmt(opr.stackOrValue());
+        opr.addBox(ts.getOpBox());
+        frame.in(opr);
+        frame.boxes(ts.getOpBox());
+        setUnit(insn, ts);
+      } else {
+        frame.mergeIn(pop());
+      }
+    } else {
+      throw new AssertionError("Unknown insn op: " + op);
+    }
+  }
+
+  private void convertIntInsn(int insn) {
+    int op = code.opcode(insn);
+    int operand = code.operand(insn);
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Value v;
+      if (op == BIPUSH || op == SIPUSH) {
+        v = IntConstant.v(operand);
+      } else {
+        Type type;
+        switch (operand) {
+          case T_BOOLEAN:
+            type = BooleanType.v();
+            break;
+          case T_CHAR:
+            type = CharType.v();
+            break;
+          case T_FLOAT:
+            type = FloatType.v();
+            break;
+          case T_DOUBLE:
+            type = DoubleType.v();
+            break;
+          case T_BYTE:
+            type = ByteType.v();
+            break;
+          case T_SHORT:
+            type = ShortType.v();
+            break;
+          case T_INT:
+            type = IntType.v();
+            break;
+          case T_LONG:
+            type = LongType.v();
+            break;
+          default:
+            throw new AssertionError("Unknown NEWARRAY type!");
+        }
+        Operand size = popImmediate();
+        NewArrayExpr anew = Jimple.v().newNewArrayExpr(type, size.stackOrValue());
+        size.addBox(anew.getSizeBox());
+        frame.in(size);
+        frame.boxes(anew.getSizeBox());
+        v = anew;
+      }
+      opr = new Operand(insn, v);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      if (op == NEWARRAY) {
+        frame.mergeIn(pop());
+      }
+    }
+    push(opr);
+  }
+
+  private void convertJumpInsn(int insn) {
+    int op = code.opcode(insn);
+    if (op == GOTO) {
+      if (units[insn] == null) {
+        UnitBox box = Jimple.v().newStmtBox(null);
+        addLabelBox(code.operand(insn), box);
+        setUnit(insn, Jimple.v().newGotoStmt(box));
+      }
+      return;
+    }
+    /* must be ifX insn */
+    StackFrame frame = getFrame(insn);
+    if (units[insn] == null) {
+      Operand val = popImmediate();
+      Value v = val.stackOrValue();
+      ConditionExpr cond;
+      if (op >= IF_ICMPEQ && op <= IF_ACMPNE) {
+        Operand val1 = popImmediate();
+        Value v1 = val1.stackOrValue();
+        if (op == IF_ICMPEQ) {
+          cond = Jimple.v().newEqExpr(v1, v);
+        } else if (op == IF_ICMPNE) {
+          cond = Jimple.v().newNeExpr(v1, v);
+        } else if (op == IF_ICMPLT) {
+          cond = Jimple.v().newLtExpr(v1, v);
+        } else if (op == IF_ICMPGE) {
+          cond = Jimple.v().newGeExpr(v1, v);
+        } else if (op == IF_ICMPGT) {
+          cond = Jimple.v().newGtExpr(v1, v);
+        } else if (op == IF_ICMPLE) {
+          cond = Jimple.v().newLeExpr(v1, v);
+        } else if (op == IF_ACMPEQ) {
+          cond = Jimple.v().newEqExpr(v1, v);
+        } else if (op == IF_ACMPNE) {
+          cond = Jimple.v().newNeExpr(v1, v);
+        } else {
+          throw new AssertionError("Unknown if op: " + op);
+        }
+        val1.addBox(cond.getOp1Box());
+        val.addBox(cond.getOp2Box());
+        frame.boxes(cond.getOp2Box(), cond.getOp1Box());
+        frame.in(val, val1);
+      } else {
+        if (op == IFEQ) {
+          cond = Jimple.v().newEqExpr(v, IntConstant.v(0));
+        } else if (op == IFNE) {
+          cond = Jimple.v().newNeExpr(v, IntConstant.v(0));
+        } else if (op == IFLT) {
+          cond = Jimple.v().newLtExpr(v, IntConstant.v(0));
+        } else if (op == IFGE) {
+          cond = Jimple.v().newGeExpr(v, IntConstant.v(0));
+        } else if (op == IFGT) {
+          cond = Jimple.v().newGtExpr(v, IntConstant.v(0));
+        } else if (op == IFLE) {
+          cond = Jimple.v().newLeExpr(v, IntConstant.v(0));
+        } else if (op == IFNULL) {
+          cond = Jimple.v().newEqExpr(v, NullConstant.v());
+        } else if (op == IFNONNULL) {
+          cond = Jimple.v().newNeExpr(v, NullConstant.v());
+        } else {
+          throw new AssertionError("Unknown if op: " + op);
+        }
+        val.addBox(cond.getOp1Box());
+        frame.boxes(cond.getOp1Box());
+        frame.in(val);
+      }
+      UnitBox box = Jimple.v().newStmtBox(null);
+      addLabelBox(code.operand(insn), box);
+      setUnit(insn, Jimple.v().newIfStmt(cond, box));
+    } else {
+      if (op >= IF_ICMPEQ && op <= IF_ACMPNE) {
+        frame.mergeIn(pop(), pop());
+      } else {
+        frame.mergeIn(pop());
+      }
+    }
+  }
+
+  private void convertLdcInsn(int insn) {
+    Object val = code.pool(code.operand(insn));
+    boolean dword = val instanceof Long || val instanceof Double;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Value v = toSootValue(val);
+      opr = new Operand(insn, v);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+    }
+    if (dword) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private Value toSootValue(Object val) throws AssertionError {
+    Value v;
+    if (val instanceof Integer) {
+      v = IntConstant.v((Integer) val);
+    } else if (val instanceof Float) {
+      v = FloatConstant.v((Float) val);
+    } else if (val instanceof Long) {
+      v = LongConstant.v((Long) val);
+    } else if (val instanceof Double) {
+      v = DoubleConstant.v((Double) val);
+    } else if (val instanceof String) {
+      v = StringConstant.v(val.toString());
+    } else if (val instanceof org.objectweb.asm.Type) {
+      org.objectweb.asm.Type t = (org.objectweb.asm.Type) val;
+      if (t.getSort() == org.objectweb.asm.Type.METHOD) {
+        List<Type> paramTypes = AsmUtil.toJimpleDesc(t.getDescriptor(), moduleName());
+        Type returnType = paramTypes.remove(paramTypes.size() - 1);
+        v = MethodType.v(paramTypes, returnType);
+      } else {
+        v = ClassConstant.v(t.getDescriptor());
+      }
+    } else if (val instanceof Handle) {
+      Handle h = (Handle) val;
+      if (MethodHandle.isMethodRef(h.getTag())) {
+        v = MethodHandle.v(toSootMethodRef(h), h.getTag());
+      } else {
+        v = MethodHandle.v(toSootFieldRef(h), h.getTag());
+      }
+    } else {
+      throw new AssertionError("Unknown constant type: " + val.getClass());
+    }
+    return v;
+  }
+
+  private void convertLookupSwitchInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    if (units[insn] != null) {
+      frame.mergeIn(pop());
+      return;
+    }
+    Operand key = popImmediate();
+    int[] operands = code.pool(code.operand(insn));
+    int n = (operands.length - 1) / 2;
+    UnitBox dflt = Jimple.v().newStmtBox(null);
+
+    List<UnitBox> targets = new ArrayList<UnitBox>(n);
+    addLabelBox(operands[0], dflt);
+    for (int i = 0; i < n; i++) {
+      UnitBox box = Jimple.v().newStmtBox(null);
+      targets.add(box);
+      addLabelBox(operands[1 + n + i], box);
+    }
+
+    List<IntConstant> keys = new ArrayList<IntConstant>(n);
+    for (int i = 0; i < n; i++) {
+      keys.add(IntConstant.v(operands[1 + i]));
+    }
+
+    LookupSwitchStmt lss = Jimple.v().newLookupSwitchStmt(key.stackOrValue(), keys, targets, dflt);
+    key.addBox(lss.getKeyBox());
+    frame.in(key);
+    frame.boxes(lss.getKeyBox());
+    setUnit(insn, lss);
+  }
+
+  private void convertMethodInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean instance = op != INVOKESTATIC;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    Type returnType;
+    if (out == null) {
+      int operands = code.operand(insn);
+      String owner = code.pool(operands);
+      String name = code.pool(operands + 1);
+      String desc = code.pool(operands + 2);
+      String clsName = AsmUtil.toQualifiedName(owner);
+      if (clsName.charAt(0) == '[') {
+        clsName = "java.lang.Object";
+      }
+      SootClass cls = this.getClassFromScene(clsName);
+
+      List<Type> sigTypes = AsmUtil.toJimpleDesc(desc, moduleName());
+      returnType = sigTypes.remove(sigTypes.size() - 1);
+      SootMethodRef ref = Scene.v().makeMethodRef(cls, name, sigTypes, returnType, !instance);
+      int nrArgs = sigTypes.size();
+      final Operand[] args;
+      List<Value> argList = Collections.emptyList();
+      if (!instance) {
+        args = nrArgs == 0 ? null : new Operand[nrArgs];
+        if (args != null) {
+          argList = new ArrayList<Value>(nrArgs);
+        }
+      } else {
+        args = new Operand[nrArgs + 1];
+        if (nrArgs != 0) {
+          argList = new ArrayList<Value>(nrArgs);
+        }
+      }
+      while (nrArgs-- != 0) {
+        args[nrArgs] = popImmediate(sigTypes.get(nrArgs));
+        argList.add(args[nrArgs].stackOrValue());
+      }
+      if (argList.size() > 1) {
+        Collections.reverse(argList);
+      }
+      if (instance) {
+        args[args.length - 1] = popLocal();
+      }
+      ValueBox[] boxes = args == null ? null : new ValueBox[args.length];
+      InvokeExpr invoke;
+      if (!instance) {
+        invoke = Jimple.v().newStaticInvokeExpr(ref, argList);
+      } else {
+        Local base = (Local) args[args.length - 1].stackOrValue();
+        InstanceInvokeExpr iinvoke;
+        if (op == INVOKESPECIAL) {
+          iinvoke = Jimple.v().newSpecialInvokeExpr(base, ref, argList);
+        } else if (op == INVOKEVIRTUAL) {
+          iinvoke = Jimple.v().newVirtualInvokeExpr(base, ref, argList);
+        } else if (op == INVOKEINTERFACE) {
+          iinvoke = Jimple.v().newInterfaceInvokeExpr(base, ref, argList);
+        } else {
+          throw new AssertionError("Unknown invoke op:" + op);
+        }
+        boxes[boxes.length - 1] = iinvoke.getBaseBox();
+        args[args.length - 1].addBox(boxes[boxes.length - 1]);
+        invoke = iinvoke;
+      }
+      if (boxes != null) {
+        for (int i = 0; i != sigTypes.size(); i++) {
+          boxes[i] = invoke.getArgBox(i);
+          args[i].addBox(boxes[i]);
+        }
+        frame.boxes(boxes);
+        frame.in(args);
+      }
+      opr = new Operand(insn, invoke);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      returnType = mergeInvokeArguments(frame, opr);
+    }
+    if (AsmUtil.isDWord(returnType)) {
+      pushDual(opr);
+    } else if (!(returnType instanceof VoidType)) {
+      push(opr);
+    } else if (units[insn] == null) {
+      setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
+    }
+    /*
+     * assign all read ops in case the method modifies any of the fields
+     */
+    assignReadOps(null);
+  }
+
+  /**
+   * Merges the arguments of an invoke expression that has already been converted with the operands on the stack, and
+   * returns its return type.
+   */
+  private Type mergeInvokeArguments(StackFrame frame, Operand opr) {
+    InvokeExpr expr = (InvokeExpr) opr.value;
+    List<Type> types = expr.getMethodRef().getParameterTypes();
+    Operand[] oprs;
+    int nrArgs = types.size();
+    if (expr.getMethodRef().isStatic()) {
+      oprs = nrArgs == 0 ? null : new Operand[nrArgs];
+    } else {
+      oprs = new Operand[nrArgs + 1];
+    }
+    if (oprs != null) {
+      while (nrArgs-- != 0) {
+        oprs[nrArgs] = pop(types.get(nrArgs));
+      }
+      if (!expr.getMethodRef().isStatic()) {
+        oprs[oprs.length - 1] = pop();
+      }
+      frame.mergeIn(oprs);
+    }
+    return expr.getMethodRef().getReturnType();
+  }
+
+  private void convertInvokeDynamicInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    Type returnType;
+    if (out == null) {
+      int operands = code.operand(insn);
+      String name = code.pool(operands);
+      String desc = code.pool(operands + 1);
+      Handle bsm = code.pool(operands + 2);
+      Object[] bsmArgs = code.pool(operands + 3);
+
+      // convert info on bootstrap method
+      SootMethodRef bsmMethodRef = toSootMethodRef(bsm);
+      List<Value> bsmMethodArgs = new ArrayList<Value>(bsmArgs.length);
+      for (Object bsmArg : bsmArgs) {
+        bsmMethodArgs.add(toSootValue(bsmArg));
+      }
+
+      // create ref to actual method
+      SootClass bclass = Scene.v().getSootClass(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME);
+
+      // Generate parameters & returnType & parameterTypes
+      Type[] types = Util.v().jimpleTypesOfFieldOrMethodDescriptor(desc);
+      int nrArgs = types.length - 1;
+      List<Type> parameterTypes = new ArrayList<Type>(nrArgs);
+      List<Value> methodArgs = new ArrayList<Value>(nrArgs);
+
+      Operand[] args = new Operand[nrArgs];
+      ValueBox[] boxes = new ValueBox[nrArgs];
+
+      // Beware: Call stack is FIFO, Jimple is linear
+
+      while (nrArgs-- != 0) {
+        parameterTypes.add(types[nrArgs]);
+        args[nrArgs] = popImmediate(types[nrArgs]);
+        methodArgs.add(args[nrArgs].stackOrValue());
+      }
+      if (methodArgs.size() > 1) {
+        Collections.reverse(methodArgs); // Call stack is FIFO, Jimple is linear
+        Collections.reverse(parameterTypes);
+      }
+      returnType = types[types.length - 1];
+
+      SootMethodRef bootstrap_model = null;
+
+      if (PhaseOptions.getBoolean(PhaseOptions.v().getPhaseOptions("jb"), "model-lambdametafactory")) {
+        String bsmMethodRefStr = bsmMethodRef.toString();
+        if (bsmMethodRefStr.equals(AsmMethodSource.METAFACTORY_SIGNATURE)
+            || bsmMethodRefStr.equals(AsmMethodSource.ALT_METAFACTORY_SIGNATURE)) {
+          SootClass enclosingClass = body.getMethod().getDeclaringClass();
+          bootstrap_model = LambdaMetaFactory.v().makeLambdaHelper(bsmMethodArgs, bsm.getTag(), name, types, enclosingClass);
+        }
+      }
+
+      InvokeExpr indy;
+
+      if (bootstrap_model != null) {
+        indy = Jimple.v().newStaticInvokeExpr(bootstrap_model, methodArgs);
+      } else {
+        // if not mimicking the LambdaMetaFactory, we model invokeDynamic method refs as static
+        // method references
+        // of methods on the type SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME
+        SootMethodRef methodRef = Scene.v().makeMethodRef(bclass, name, parameterTypes, returnType, true);
+
+        indy = Jimple.v().newDynamicInvokeExpr(bsmMethodRef, bsmMethodArgs, methodRef, bsm.getTag(), methodArgs);
+      }
+
+      for (int i = 0; i < types.length - 1; i++) {
+        boxes[i] = indy.getArgBox(i);
+        args[i].addBox(boxes[i]);
+      }
+
+      frame.boxes(boxes);
+      frame.in(args);
+      opr = new Operand(insn, indy);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      returnType = mergeInvokeArguments(frame, opr);
+    }
+    if (AsmUtil.isDWord(returnType)) {
+      pushDual(opr);
+    } else if (!(returnType instanceof VoidType)) {
+      push(opr);
+    } else if (units[insn] == null) {
+      setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
+    }
+    /*
+     * assign all read ops in case the method modifies any of the fields
+     */
+    assignReadOps(null);
+  }
+
+  private SootMethodRef toSootMethodRef(Handle methodHandle) {
+    String bsmClsName = AsmUtil.toQualifiedName(methodHandle.getOwner());
+    SootClass bsmCls = this.getClassFromScene(bsmClsName);
+    List<Type> bsmSigTypes = AsmUtil.toJimpleDesc(methodHandle.getDesc(), moduleName());
+    Type returnType = bsmSigTypes.remove(bsmSigTypes.size() - 1);
+    return Scene.v().makeMethodRef(bsmCls, methodHandle.getName(), bsmSigTypes, returnType,
+        methodHandle.getTag() == MethodHandle.Kind.REF_INVOKE_STATIC.getValue());
+  }
+
+  private SootFieldRef toSootFieldRef(Handle methodHandle) {
+    String bsmClsName = AsmUtil.toQualifiedName(methodHandle.getOwner());
+    SootClass bsmCls = Scene.v().getSootClass(bsmClsName);
+    Type t = AsmUtil.toJimpleDesc(methodHandle.getDesc(), moduleName()).get(0);
+    int kind = methodHandle.getTag();
+    return Scene.v().makeFieldRef(bsmCls, methodHandle.getName(), t,
+        kind == MethodHandle.Kind.REF_GET_FIELD_STATIC.getValue()
+            || kind == MethodHandle.Kind.REF_PUT_FIELD_STATIC.getValue());
+  }
+
+  private void convertMultiANewArrayInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      ArrayType t = (ArrayType) AsmUtil.toJimpleType(code.<String>pool(code.operand(insn)), moduleName());
+      int dims = code.extra(insn);
+      Operand[] sizes = new Operand[dims];
+      Value[] sizeVals = new Value[dims];
+      ValueBox[] boxes = new ValueBox[dims];
+      while (dims-- != 0) {
+        sizes[dims] = popImmediate();
+        sizeVals[dims] = sizes[dims].stackOrValue();
+      }
+      NewMultiArrayExpr nm = Jimple.v().newNewMultiArrayExpr(t, Arrays.asList(sizeVals));
+      for (int i = 0; i != boxes.length; i++) {
+        ValueBox vb = nm.getSizeBox(i);
+        sizes[i].addBox(vb);
+        boxes[i] = vb;
+      }
+      frame.boxes(boxes);
+      frame.in(sizes);
+      opr = new Operand(insn, nm);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      int dims = code.extra(insn);
+      Operand[] sizes = new Operand[dims];
+      while (dims-- != 0) {
+        sizes[dims] = pop();
+      }
+      frame.mergeIn(sizes);
+    }
+    push(opr);
+  }
+
+  private void convertTableSwitchInsn(int insn) {
+    StackFrame frame = getFrame(insn);
+    if (units[insn] != null) {
+      frame.mergeIn(pop());
+      return;
+    }
+    Operand key = popImmediate();
+    int[] operands = code.pool(code.operand(insn));
+    UnitBox dflt = Jimple.v().newStmtBox(null);
+    List<UnitBox> targets = new ArrayList<UnitBox>(operands.length - 3);
+    addLabelBox(operands[2], dflt);
+    for (int i = 3; i < operands.length; i++) {
+      UnitBox box = Jimple.v().newStmtBox(null);
+      targets.add(box);
+      addLabelBox(operands[i], box);
+    }
+    TableSwitchStmt tss = Jimple.v().newTableSwitchStmt(key.stackOrValue(), operands[0], operands[1], targets, dflt);
+    key.addBox(tss.getKeyBox());
+    frame.in(key);
+    frame.boxes(tss.getKeyBox());
+    setUnit(insn, tss);
+  }
+
+  private void convertTypeInsn(int insn) {
+    int op = code.opcode(insn);
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      Type t = AsmUtil.toJimpleRefType(code.<String>pool(code.operand(insn)), moduleName());
+      Value val;
+      if (op == NEW) {
+        val = Jimple.v().newNewExpr((RefType) t);
+      } else {
+        Operand op1 = popImmediate();
+        Value v1 = op1.stackOrValue();
+        ValueBox vb;
+        if (op == ANEWARRAY) {
+          NewArrayExpr expr = Jimple.v().newNewArrayExpr(t, v1);
+          vb = expr.getSizeBox();
+          val = expr;
+        } else if (op == CHECKCAST) {
+          CastExpr expr = Jimple.v().newCastExpr(v1, t);
+          vb = expr.getOpBox();
+          val = expr;
+        } else if (op == INSTANCEOF) {
+          InstanceOfExpr expr = Jimple.v().newInstanceOfExpr(v1, t);
+          vb = expr.getOpBox();
+          val = expr;
+        } else {
+          throw new AssertionError("Unknown type op: " + op);
+        }
+        op1.addBox(vb);
+        frame.in(op1);
+        frame.boxes(vb);
+      }
+      opr = new Operand(insn, val);
+      frame.out(opr);
+    } else {
+      opr = out[0];
+      if (op != NEW) {
+        frame.mergeIn(pop());
+      }
+    }
+    push(opr);
+  }
+
+  private void convertVarLoadInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == LLOAD || op == DLOAD;
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      opr = new Operand(insn, getLocal(code.operand(insn)));
+      frame.out(opr);
+    } else {
+      opr = out[0];
+    }
+    if (dword) {
+      pushDual(opr);
+    } else {
+      push(opr);
+    }
+  }
+
+  private void convertVarStoreInsn(int insn) {
+    int op = code.opcode(insn);
+    boolean dword = op == LSTORE || op == DSTORE;
+    StackFrame frame = getFrame(insn);
+    Operand opr = dword ? popDual() : pop();
+    Local local = getLocal(code.operand(insn));
+    if (units[insn] == null) {
+      DefinitionStmt as = Jimple.v().newAssignStmt(local, opr.stackOrValue());
+      opr.addBox(as.getRightOpBox());
+      frame.boxes(as.getRightOpBox());
+      frame.in(opr);
+      setUnit(insn, as);
+    } else {
+      frame.mergeIn(opr);
+    }
+    assignReadOps(local);
+  }
+
+  private void convertVarInsn(int insn) {
+    int op = code.opcode(insn);
+    if (op >= ILOAD && op <= ALOAD) {
+      convertVarLoadInsn(insn);
+    } else if (op >= ISTORE && op <= ASTORE) {
+      convertVarStoreInsn(insn);
+    } else {
+      throw new AssertionError("Unknown var op: " + op);
+    }
+  }
+
+  /* Conversion */
+
+  private void convertLabel(int insn) {
+    int ln = code.operand(insn);
+    if (trapHandlers[ln] == null) {
+      return;
+    }
+
+    // We create a nop statement as a placeholder so that we can jump
+    // somewhere from the real exception handler in case this is inline
+    // code
+    if (inlineExceptionLabels.get(ln)) {
+      if (units[insn] == null) {
+        NopStmt nop = Jimple.v().newNopStmt();
+        setUnit(insn, nop);
+      }
+      return;
+    }
+
+    StackFrame frame = getFrame(insn);
+    Operand[] out = frame.out();
+    Operand opr;
+    if (out == null) {
+      CaughtExceptionRef ref = Jimple.v().newCaughtExceptionRef();
+      Local stack = newStackLocal();
+      DefinitionStmt as = Jimple.v().newIdentityStmt(stack, ref);
+      opr = new Operand(insn, ref);
+      opr.stack = stack;
+      frame.out(opr);
+      setUnit(insn, as);
+    } else {
+      opr = out[0];
+    }
+    push(opr);
+  }
+
+  private Operand[] snapshotStack() {
+    return stackSize == 0 ? EMPTY_STACK : Arrays.copyOf(stack, stackSize);
+  }
+
+  private void addEdge(int cur, int tgt, Operand[] stackss) {
+    Long key = ((long) cur << 32) | tgt;
+    Edge edge = edges.get(key);
+    if (edge == null) {
+      // make sure to store last line number to stay sound if the branch that comes later in
+      // bytecode is processed first
+      edge = new Edge(tgt, stackss, lastLineNumber);
+      edge.prevStacks.add(stackss);
+      edges.put(key, edge);
+      conversionWorklist.add(edge);
+      return;
+    }
+    if (edge.stack != null) {
+      Operand[] stackTemp = edge.stack;
+      if (stackTemp.length != stackss.length) {
+        throw new AssertionError("Multiple un-equal stacks!");
+      }
+      for (int j = 0; j != stackss.length; j++) {
+        if (!stackTemp[j].equivTo(stackss[j])) {
+          throw new AssertionError("Multiple un-equal stacks!");
+        }
+      }
+      return;
+    }
+    for (Operand[] ps : edge.prevStacks) {
+      if (Arrays.equals(ps, stackss)) {
+        return;
+      }
+    }
+    edge.stack = stackss;
+    edge.prevStacks.add(stackss);
+    conversionWorklist.add(edge);
+  }
+
+  private void addSwitchEdges(int insn, int[] operands, int dflt, int from) {
+    Operand[] stackss = snapshotStack();
+    addEdge(insn, code.labelNode(operands[dflt]), stackss);
+    for (int i = from; i < operands.length; i++) {
+      addEdge(insn, code.labelNode(operands[i]), stackss);
+    }
+  }
+
+  private void convert() {
+    ArrayDeque<Edge> worklist = new ArrayDeque<Edge>();
+    for (int ln : handlerLabels) {
+      if (checkInlineExceptionHandler(ln)) {
+        handleInlineExceptionHandler(ln, worklist);
+      } else {
+        worklist.add(new Edge(code.labelNode(ln), EMPTY_STACK, -1));
+      }
+    }
+    worklist.add(new Edge(0, EMPTY_STACK, -1));
+    conversionWorklist = worklist;
+    edges = new HashMap<Long, Edge>();
+
+    int nrInsn = code.size();
+    do {
+      Edge edge = worklist.pollLast();
+      int insn = edge.insn;
+      System.arraycopy(edge.stack, 0, stack, 0, edge.stack.length);
+      Arrays.fill(stack, edge.stack.length, stackSize > edge.stack.length ? stackSize : edge.stack.length, null);
+      stackSize = edge.stack.length;
+      // restore line. this is important since we might have traversed the edge that leads to
+      // bytecode far away from the branch statement first and are now processing the statement
+      // right after the branch which should start with the lastLineNumber as it was for the branch
+      // statement
+      lastLineNumber = edge.lastLineNumber == -1 ? lastLineNumber : edge.lastLineNumber;
+      edge.stack = null;
+      do {
+        int type = code.type(insn);
+        if (type == FIELD_INSN) {
+          convertFieldInsn(insn);
+        } else if (type == IINC_INSN) {
+          convertIincInsn(insn);
+        } else if (type == INSN) {
+          convertInsn(insn);
+          int op = code.opcode(insn);
+          if ((op >= IRETURN && op <= RETURN) || op == ATHROW) {
+            break;
+          }
+        } else if (type == INT_INSN) {
+          convertIntInsn(insn);
+        } else if (type == LDC_INSN) {
+          convertLdcInsn(insn);
+        } else if (type == JUMP_INSN) {
+          convertJumpInsn(insn);
+          int op = code.opcode(insn);
+          if (op == JSR) {
+            throw new UnsupportedOperationException("JSR!");
+          }
+          Operand[] stackss = snapshotStack();
+          if (op != GOTO) {
+            /* ifX opcode, i.e. two successors */
+            addEdge(insn, insn + 1, stackss);
+          }
+          addEdge(insn, code.labelNode(code.operand(insn)), stackss);
+          break;
+        } else if (type == LOOKUPSWITCH_INSN) {
+          convertLookupSwitchInsn(insn);
+          int[] operands = code.pool(code.operand(insn));
+          addSwitchEdges(insn, operands, 0, 1 + (operands.length - 1) / 2);
+          break;
+        } else if (type == METHOD_INSN) {
+          convertMethodInsn(insn);
+        } else if (type == INVOKE_DYNAMIC_INSN) {
+          convertInvokeDynamicInsn(insn);
+        } else if (type == MULTIANEWARRAY_INSN) {
+          convertMultiANewArrayInsn(insn);
+        } else if (type == TABLESWITCH_INSN) {
+          convertTableSwitchInsn(insn);
+          addSwitchEdges(insn, code.<int[]>pool(code.operand(insn)), 2, 3);
+          break;
+        } else if (type == TYPE_INSN) {
+          convertTypeInsn(insn);
+        } else if (type == VAR_INSN) {
+          if (code.opcode(insn) == RET) {
+            throw new UnsupportedOperationException("RET!");
+          }
+          convertVarInsn(insn);
+        } else if (type == LABEL) {
+          convertLabel(insn);
+        } else if (type == LINE) {
+          lastLineNumber = code.line(insn);
+        } else {
+          throw new RuntimeException("Unknown instruction type: " + type);
+        }
+      } while (++insn < nrInsn);
+    } while (!worklist.isEmpty());
+    conversionWorklist = null;
+    edges = null;
+  }
+
+  private void handleInlineExceptionHandler(int ln, ArrayDeque<Edge> worklist) {
+    // Catch the exception
+    CaughtExceptionRef ref = Jimple.v().newCaughtExceptionRef();
+    Local local = newStackLocal();
+    DefinitionStmt as = Jimple.v().newIdentityStmt(local, ref);
+
+    int insn = code.labelNode(ln);
+    Operand opr = new Operand(insn, ref);
+    opr.stack = local;
+
+    worklist.add(new Edge(insn, new Operand[] { opr }, -1));
+
+    // Save the statements
+    inlineExceptionHandlers[ln] = as;
+  }
+
+  private boolean checkInlineExceptionHandler(int ln) {
+    // If this label is reachable through an exception and through normal
+    // code, we have to split the exceptional case (with the exception on
+    // the stack) from the normal fall-through case without anything on the
+    // stack.
+    if (code.isJumpTarget(ln)) {
+      inlineExceptionLabels.set(ln);
+      return true;
+    }
+    return false;
+  }
+
+  private void emitLocals() {
+    JimpleBody jb = body;
+    SootMethod m = jb.getMethod();
+    Collection<Local> jbl = jb.getLocals();
+    Collection<Unit> jbu = jb.getUnits();
+    int iloc = 0;
+    if (!m.isStatic()) {
+      Local l = getLocal(iloc++);
+      jbu.add(Jimple.v().newIdentityStmt(l, Jimple.v().newThisRef(m.getDeclaringClass().getType())));
+    }
+    int nrp = 0;
+    for (Object ot : m.getParameterTypes()) {
+      Type t = (Type) ot;
+      Local l = getLocal(iloc);
+      jbu.add(Jimple.v().newIdentityStmt(l, Jimple.v().newParameterRef(t, nrp++)));
+      if (AsmUtil.isDWord(t)) {
+        iloc += 2;
+      } else {
+        iloc++;
+      }
+    }
+    for (Local l : localChain) {
+      jbl.add(l);
+    }
+  }
+
+  private void emitTraps() {
+    Chain<Trap> traps = body.getTraps();
+    SootClass throwable = Scene.v().getSootClass("java.lang.Throwable");
+    int[] nextHandler = new int[code.labelCount()];
+    for (int tc = 0; tc < code.tryCatchCount(); tc++) {
+      UnitBox start = Jimple.v().newStmtBox(null);
+      UnitBox end = Jimple.v().newStmtBox(null);
+      int ln = code.tryCatchHandler(tc);
+      UnitBox handler = trapHandlers[ln].get(nextHandler[ln]++);
+      String type = code.tryCatchType(tc);
+      SootClass cls = type == null ? throwable : getClassFromScene(AsmUtil.toQualifiedName(type));
+      Trap trap = Jimple.v().newTrap(cls, start, end, handler);
+      traps.add(trap);
+      addLabelBox(code.tryCatchStart(tc), start);
+      addLabelBox(code.tryCatchEnd(tc), end);
+    }
+  }
+
+  private void emitUnits(Unit u) {
+    if (u instanceof UnitContainer) {
+      for (Unit uu : ((UnitContainer) u).units) {
+        emitUnits(uu);
+      }
+    } else {
+      body.getUnits().add(u);
+    }
+  }
+
+  private void emitUnits() {
+    int[] labls = new int[code.labelCount()];
+    int nrLabls = 0;
+
+    for (int insn = 0, nrInsn = code.size(); insn < nrInsn; insn++) {
+      boolean isLabel = code.type(insn) == LABEL;
+      // Save the label to assign it to the next real unit
+      if (isLabel) {
+        labls[nrLabls++] = code.operand(insn);
+      }
+
+      // Get the unit associated with the current instruction
+      Unit u = units[insn];
+      if (u == null) {
+        continue;
+      }
+
+      emitUnits(u);
+
+      // If this is an exception handler, register the starting unit for it
+      {
+        IdentityStmt caughtEx = null;
+        if (u instanceof IdentityStmt) {
+          caughtEx = (IdentityStmt) u;
+        } else if (u instanceof UnitContainer) {
+          caughtEx = getIdentityRefFromContrainer((UnitContainer) u);
+        }
+
+        if (isLabel && caughtEx != null && caughtEx.getRightOp() instanceof CaughtExceptionRef) {
+          // We directly place this label
+          List<UnitBox> traps = trapHandlers[code.operand(insn)];
+          if (traps != null) {
+            for (UnitBox ub : traps) {
+              ub.setUnit(caughtEx);
+            }
+          }
+        }
+      }
+
+      // Register this unit for all targets of the labels ending up at it
+      for (int i = 0; i < nrLabls; i++) {
+        List<UnitBox> boxes = labels[labls[i]];
+        if (boxes != null) {
+          for (UnitBox box : boxes) {
+            box.setUnit(u instanceof UnitContainer ? ((UnitContainer) u).getFirstUnit() : u);
+          }
+        }
+      }
+      nrLabls = 0;
+    }
+
+    // Emit the inline exception handlers
+    for (int ln : handlerLabels) {
+      Unit handler = inlineExceptionHandlers[ln];
+      if (handler == null) {
+        continue;
+      }
+      emitUnits(handler);
+
+      for (UnitBox ub : trapHandlers[ln]) {
+        ub.setUnit(handler);
+      }
+
+      // We need to jump to the original implementation
+      Unit targetUnit = units[code.labelNode(ln)];
+      GotoStmt gotoImpl = Jimple.v().newGotoStmt(targetUnit);
+      body.getUnits().add(gotoImpl);
+    }
+
+    /* set remaining labels & boxes to last unit of chain */
+    if (nrLabls == 0) {
+      return;
+    }
+    Unit end = Jimple.v().newNopStmt();
+    body.getUnits().add(end);
+    for (int i = 0; i < nrLabls; i++) {
+      List<UnitBox> boxes = labels[labls[i]];
+      if (boxes != null) {
+        for (UnitBox box : boxes) {
+          box.setUnit(end);
+        }
+      }
+    }
+  }
+
+  private IdentityStmt getIdentityRefFromContrainer(UnitContainer u) {
+    for (Unit uu : u.units) {
+      if (uu instanceof IdentityStmt) {
+        return (IdentityStmt) uu;
+      } else if (uu instanceof UnitContainer) {
+        return getIdentityRefFromContrainer((UnitContainer) uu);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Body getBody(SootMethod m, String phaseName) {
+    if (!m.isConcrete()) {
+      return null;
+    }
+    JimpleBody jb = Jimple.v().newBody(m);
+    /* initialize */
+    int nrInsn = code.size();
+    int maxLocals = code.maxLocals();
+    int nrLabels = code.labelCount();
+    nextLocal = maxLocals;
+    locals = new Local[maxLocals];
+    localChain = new ArrayList<Local>(maxLocals + (maxLocals / 2));
+    labels = new List[nrLabels];
+    units = new Unit[nrInsn];
+    frames = new StackFrame[nrInsn];
+    stack = new Operand[Math.max(4, code.maxStack() + 1)];
+    stackSize = 0;
+    trapHandlers = new List[nrLabels];
+    inlineExceptionLabels = new BitSet(nrLabels);
+    inlineExceptionHandlers = new Unit[nrLabels];
+    lastLineNumber = -1;
+    body = jb;
+    /* retrieve all trap handlers */
+    int nrHandlers = 0;
+    handlerLabels = new int[code.tryCatchCount()];
+    for (int tc = 0; tc < code.tryCatchCount(); tc++) {
+      int ln = code.tryCatchHandler(tc);
+      if (trapHandlers[ln] == null) {
+        trapHandlers[ln] = new ArrayList<UnitBox>(1);
+        handlerLabels[nrHandlers++] = ln;
+      }
+      trapHandlers[ln].add(Jimple.v().newStmtBox(null));
+    }
+    handlerLabels = Arrays.copyOf(handlerLabels, nrHandlers);
+    /* convert instructions */
+    try {
+      convert();
+    } catch (Throwable t) {
+      throw new RuntimeException("Failed to convert " + m, t);
+    }
+
+    /* build body (add units, locals, traps, etc.) */
+    emitLocals();
+    emitTraps();
+    emitUnits();
+
+    /* clean up */
+    locals = null;
+    localChain = null;
+    labels = null;
+    units = null;
+    stack = null;
+    frames = null;
+    trapHandlers = null;
+    handlerLabels = null;
+    inlineExceptionLabels = null;
+    inlineExceptionHandlers = null;
+    body = null;
+
+    // Make sure to inline patterns of the form to enable proper variable
+    // splitting and type assignment:
+    // a = new A();
+    // goto l0;
+    // l0:
+    // b = (B) a;
+    // return b;
+    castAndReturnInliner.transform(jb);
+
+    try {
+      PackManager.v().getPack("jb").apply(jb);
+    } catch (Throwable t) {
+      throw new RuntimeException("Failed to apply jb to " + m, t);
+    }
+
+    return jb;
+  }
+
+  private static final class Edge {
+    /* edge endpoint */
+    final int insn;
+    /* previous stacks at edge */
+    final List<Operand[]> prevStacks = new ArrayList<Operand[]>(1);
+    final int lastLineNumber;
+    /* current stack at edge, shared with the previous stacks and never modified */
+    Operand[] stack;
+
+    Edge(int insn, Operand[] stack, int lastLineNumber) {
+      this.insn = insn;
+      this.stack = stack;
+      this.lastLineNumber = lastLineNumber;
+    }
+  }
+}
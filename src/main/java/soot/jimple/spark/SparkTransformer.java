@@ -22,7 +22,11 @@ package soot.jimple.spark;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -53,13 +57,18 @@ import soot.jimple.spark.pag.PAG;
 import soot.jimple.spark.pag.PAG2HTML;
 import soot.jimple.spark.pag.PAGDumper;
 import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.OffHeapSetStore;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
 import soot.jimple.spark.solver.EBBCollapser;
+import soot.jimple.spark.solver.HeapBudgetExceededException;
+import soot.jimple.spark.solver.OnFlyCallGraph;
 import soot.jimple.spark.solver.PropAlias;
 import soot.jimple.spark.solver.PropCycle;
+import soot.jimple.spark.solver.PropIncremental;
 import soot.jimple.spark.solver.PropIter;
 import soot.jimple.spark.solver.PropMerge;
+import soot.jimple.spark.solver.PropParallel;
 import soot.jimple.spark.solver.PropWorklist;
 import soot.jimple.spark.solver.Propagator;
 import soot.jimple.spark.solver.SCCCollapser;
@@ -84,8 +93,137 @@ public class SparkTransformer extends SceneTransformer {
     return G.v().soot_jimple_spark_SparkTransformer();
   }
 
+  /**
+   * The steps by which Spark gives up precision to stay within its heap budget, in the order in which they are taken.
+   */
+  protected enum Degradation {
+    OFF_HEAP_SETS("set-impl", "offheap", "large points-to sets kept off the heap") {
+      @Override
+      boolean isTaken(SparkOptions opts) {
+        if (opts.set_impl() == SparkOptions.set_impl_double) {
+          return opts.double_set_old() == SparkOptions.double_set_old_offheap;
+        }
+        return opts.set_impl() == SparkOptions.set_impl_offheap;
+      }
+
+      @Override
+      void take(SparkOptions opts, Map<String, String> options) {
+        if (opts.set_impl() == SparkOptions.set_impl_double) {
+          // Only the old sets grow large; keeping the double sets spares the solver from propagating whole sets
+          options.put("double-set-old", value);
+        } else {
+          super.take(opts, options);
+        }
+      }
+    },
+    MERGED_STRING_CONSTANTS("string-constants", "false", "string constants merged into a single node") {
+      @Override
+      boolean isTaken(SparkOptions opts) {
+        return !opts.string_constants();
+      }
+    },
+    FIELD_BASED("field-based", "true", "instance fields collapsed over all objects") {
+      @Override
+      boolean isTaken(SparkOptions opts) {
+        return opts.field_based() || opts.vta();
+      }
+    },
+    TYPES_FOR_SITES("types-for-sites", "true", "objects represented by their types instead of allocation sites") {
+      @Override
+      boolean isTaken(SparkOptions opts) {
+        return opts.types_for_sites() || opts.vta();
+      }
+    };
+
+    final String option;
+    final String value;
+    final String description;
+
+    Degradation(String option, String value, String description) {
+      this.option = option;
+      this.value = value;
+      this.description = description;
+    }
+
+    /** Returns true if the given options are already at most as precise as this step makes them. */
+    abstract boolean isTaken(SparkOptions opts);
+
+    /** Changes the given options, which have been parsed into <code>opts</code>, as this step requires. */
+    void take(SparkOptions opts, Map<String, String> options) {
+      options.put(option, value);
+    }
+  }
+
+  private final List<String> degradations = new ArrayList<String>();
+
+  /**
+   * Returns descriptions of the precision that the last run of Spark gave up to stay within the heap budget, in the order
+   * in which it was given up. The list is empty if the budget was kept with the given options.
+   */
+  public List<String> getDegradations() {
+    return Collections.unmodifiableList(degradations);
+  }
+
   protected void internalTransform(String phaseName, Map<String, String> options) {
     SparkOptions opts = new SparkOptions(options);
+    if (opts.incremental() && updatePAG()) {
+      return;
+    }
+
+    degradations.clear();
+    while (true) {
+      try {
+        analyze(opts);
+        break;
+      } catch (HeapBudgetExceededException e) {
+        options = degrade(options, e);
+        opts = new SparkOptions(options);
+        discardAttempt();
+      }
+    }
+    if (!degradations.isEmpty()) {
+      logger.warn("[Spark] To stay within the heap budget, the points-to sets were computed with "
+          + String.join(", ", degradations));
+    }
+  }
+
+  /**
+   * Returns the options for the next attempt after the heap budget has been exceeded with the given options, and records
+   * the precision that is given up.
+   */
+  protected Map<String, String> degrade(Map<String, String> options, HeapBudgetExceededException e) {
+    SparkOptions opts = new SparkOptions(options);
+    Map<String, String> degraded = new HashMap<String, String>(options);
+    for (Degradation d : Degradation.values()) {
+      if (!d.isTaken(opts)) {
+        d.take(opts, degraded);
+        degradations.add(d.description);
+        logger.warn("[Spark] " + e.getMessage() + ", restarting with " + d.description);
+        return degraded;
+      }
+    }
+    degraded.put("heap-budget", "0");
+    degradations.add("no heap budget");
+    logger.warn("[Spark] " + e.getMessage() + " with all precision trade-offs made, restarting without a budget");
+    return degraded;
+  }
+
+  /**
+   * Drops the state of an attempt that exceeded the heap budget. The method PAGs of the attempt are bound to its pointer
+   * assignment graph and have already been added to it, so the next attempt has to build them again, as well as the call
+   * graph.
+   */
+  protected void discardAttempt() {
+    G.v().resetSparkState();
+    Scene.v().releaseCallGraph();
+    Scene.v().releaseReachableMethods();
+  }
+
+  /**
+   * Runs the analysis once with the given options. Throws a {@link HeapBudgetExceededException} if the heap budget is
+   * exceeded before the points-to sets have been computed.
+   */
+  protected void analyze(SparkOptions opts) {
     final String output_dir = SourceLocator.v().getOutputDir();
 
     // Build pointer assignment graph
@@ -153,9 +291,16 @@ public class SparkTransformer extends SceneTransformer {
     // Propagate
     Date startProp = new Date();
     propagatePAG(opts, pag);
+    // The solution is complete, later work may not be cut short
+    pag.setHeapBudget(null);
     Date endProp = new Date();
     reportTime("Propagation", startProp, endProp);
     reportTime("Solution found", startSimplify, endProp);
+    if (opts.verbose() && pag.getOffHeapSetStore() != null) {
+      OffHeapSetStore store = pag.getOffHeapSetStore();
+      logger.debug("[Spark] Off-heap points-to sets: " + (store.getUsedBytes() >> 20) + " MB used, "
+          + (store.getReservedBytes() >> 20) + " MB reserved" + (store.isMapped() ? " in mapped files" : ""));
+    }
 
     if (opts.force_gc()) {
       doGC();
@@ -184,6 +329,9 @@ public class SparkTransformer extends SceneTransformer {
       new PAG2HTML(pag, output_dir).dump();
     }
     Scene.v().setPointsToAnalysis(pag);
+    if (opts.incremental()) {
+      pag.setIncrementalPropagator(new PropIncremental(pag));
+    }
     if (opts.add_tags()) {
       addTags(pag);
     }
@@ -210,6 +358,33 @@ public class SparkTransformer extends SceneTransformer {
     }
   }
 
+  /**
+   * Brings the solution of the previous run up to date if only method bodies changed since. Returns false if the solution
+   * has to be recomputed from scratch.
+   */
+  protected boolean updatePAG() {
+    if (!Scene.v().hasPointsToAnalysis() || !(Scene.v().getPointsToAnalysis() instanceof PAG)) {
+      return false;
+    }
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    PropIncremental propagator = pag.getIncrementalPropagator();
+    if (propagator == null) {
+      return false;
+    }
+    Date startUpdate = new Date();
+    if (!propagator.update()) {
+      return false;
+    }
+    Date endUpdate = new Date();
+    reportTime("Incremental update", startUpdate, endUpdate);
+
+    OnFlyCallGraph ofcg = pag.getOnFlyCallGraph();
+    Scene.v().setCallGraph(ofcg.callGraph());
+    Scene.v().setReachableMethods(ofcg.reachableMethods());
+    Scene.v().setPointsToAnalysis(pag);
+    return true;
+  }
+
   protected void propagatePAG(SparkOptions opts, final PAG pag) {
     Propagator propagator = null;
     switch (opts.propagator()) {
@@ -219,6 +394,9 @@ public class SparkTransformer extends SceneTransformer {
       case SparkOptions.propagator_worklist:
         propagator = new PropWorklist(pag);
         break;
+      case SparkOptions.propagator_parallel:
+        propagator = new PropParallel(pag);
+        break;
       case SparkOptions.propagator_cycle:
         propagator = new PropCycle(pag);
         break;
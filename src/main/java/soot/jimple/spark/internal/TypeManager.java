@@ -97,6 +97,34 @@ public final class TypeManager {
     if (type == null) {
       return null;
     }
+    updateTypeMasks();
+    BitVector ret = typeMask.get(type);
+    if (ret == null && fh != null) {
+      // If we have a phantom class and have no type mask, we assume that
+      // it is not cast-compatible to anything
+      SootClass curClass = ((RefType) type).getSootClass();
+      if (curClass.isPhantom()) {
+        return new BitVector();
+      } else {
+        // Scan through the hierarchy. We might have a phantom class higher up
+        while (curClass.hasSuperclass()) {
+          curClass = curClass.getSuperclass();
+          if (type instanceof RefType && curClass.isPhantom()) {
+            return new BitVector();
+          }
+        }
+
+        throw new RuntimeException("Type mask not found for type " + type);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the allocation nodes created since the type masks were last updated to the type masks. Until further allocation
+   * nodes are created, {@link #get(Type)} then only reads the type masks.
+   */
+  final public void updateTypeMasks() {
     while (allocNodeListener.hasNext()) {
       AllocNode n = allocNodeListener.next();
       for (final Type t : Scene.v().getTypeNumberer()) {
@@ -124,26 +152,35 @@ public final class TypeManager {
         }
       }
     }
-    BitVector ret = (BitVector) typeMask.get(type);
-    if (ret == null && fh != null) {
-      // If we have a phantom class and have no type mask, we assume that
-      // it is not cast-compatible to anything
-      SootClass curClass = ((RefType) type).getSootClass();
-      if (curClass.isPhantom()) {
-        return new BitVector();
-      } else {
-        // Scan through the hierarchy. We might have a phantom class higher up
-        while (curClass.hasSuperclass()) {
-          curClass = curClass.getSuperclass();
-          if (type instanceof RefType && curClass.isPhantom()) {
-            return new BitVector();
-          }
-        }
+  }
 
-        throw new RuntimeException("Type mask not found for type " + type);
+  /**
+   * Returns true if some type masks disagree with {@link #castNeverFails(Type, Type)}. Allocation nodes of an
+   * {@link AnySubType} that exist when the type masks are made are only added to the masks of types without subtypes, even
+   * though casts from them never fail. Whether such a node ends up in a points-to set may then depend on whether it is added
+   * on its own or through a type mask, i.e., on the order of propagation.
+   */
+  final public boolean masksDisagreeWithCasts() {
+    return fh != null && typeMask != null && !anySubtypeAllocs.isEmpty() && !anySubtypeAllocsInAllMasks;
+  }
+
+  /**
+   * Adds the allocation nodes of an {@link AnySubType} to all type masks, so that the type masks agree with
+   * {@link #castNeverFails(Type, Type)} and points-to sets no longer depend on the order of propagation. Points-to sets
+   * propagated afterwards may contain these nodes where they would have been filtered out before.
+   */
+  final public void makeMasksAgreeWithCasts() {
+    if (!masksDisagreeWithCasts()) {
+      return;
+    }
+    updateTypeMasks();
+    for (Iterator<Type> it = typeMask.keyIterator(); it.hasNext();) {
+      BitVector mask = typeMask.get(it.next());
+      for (AllocNode an : anySubtypeAllocs) {
+        mask.set(an.getNumber());
       }
     }
-    return ret;
+    anySubtypeAllocsInAllMasks = true;
   }
 
   final public void clearTypeMask() {
@@ -151,6 +188,7 @@ public final class TypeManager {
   }
 
   final public void makeTypeMask() {
+    anySubtypeAllocsInAllMasks = false;
     RefType.v("java.lang.Class");
     typeMask = new LargeNumberedMap<Type, BitVector>(Scene.v().getTypeNumberer());
     if (fh == null) {
@@ -207,6 +245,9 @@ public final class TypeManager {
 
   private LargeNumberedMap<Type, BitVector> typeMask = null;
 
+  /** Whether {@link #makeMasksAgreeWithCasts()} has been called since the type masks were made. */
+  private boolean anySubtypeAllocsInAllMasks = false;
+
   final public boolean castNeverFails(Type src, Type dst) {
     if (fh == null) {
       return true;
@@ -237,6 +278,10 @@ public final class TypeManager {
     return fh == null ? null : fh.get();
   }
 
+  public Supplier<FastHierarchy> getFastHierarchySupplier() {
+    return fh;
+  }
+
   protected Supplier<FastHierarchy> fh = null;
   protected PAG pag;
   protected QueueReader<AllocNode> allocNodeListener = null;
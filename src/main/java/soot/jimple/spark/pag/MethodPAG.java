@@ -22,6 +22,7 @@ package soot.jimple.spark.pag;
  * #L%
  */
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -111,6 +112,23 @@ public final class MethodPAG {
     }
   }
 
+  /**
+   * Removes the edges of this method from the main PAG again, undoing {@link #addToPAG(Context)} without a context.
+   */
+  public void removeFromPAG() {
+    if (!hasBeenAdded) {
+      return;
+    }
+    hasBeenAdded = false;
+    for (QueueReader<Node> reader : Arrays.asList(internalReader.clone(), inReader.clone(), outReader.clone())) {
+      while (reader.hasNext()) {
+        Node src = reader.next();
+        Node dst = reader.next();
+        pag.removeEdge(src, dst);
+      }
+    }
+  }
+
   public void addInternalEdge(Node src, Node dst) {
     if (src == null) {
       return;
@@ -25,6 +25,7 @@ package soot.jimple.spark.pag;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import soot.Context;
 import soot.FastHierarchy;
+import soot.G;
 import soot.Kind;
 import soot.Local;
 import soot.PhaseOptions;
@@ -69,13 +71,18 @@ import soot.jimple.spark.sets.DoublePointsToSet;
 import soot.jimple.spark.sets.EmptyPointsToSet;
 import soot.jimple.spark.sets.HashPointsToSet;
 import soot.jimple.spark.sets.HybridPointsToSet;
+import soot.jimple.spark.sets.OffHeapPointsToSet;
+import soot.jimple.spark.sets.OffHeapSetStore;
 import soot.jimple.spark.sets.P2SetFactory;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
 import soot.jimple.spark.sets.SharedHybridSet;
 import soot.jimple.spark.sets.SharedListSet;
 import soot.jimple.spark.sets.SortedArraySet;
+import soot.jimple.spark.solver.HeapBudget;
+import soot.jimple.spark.solver.HeapBudgetExceededException;
 import soot.jimple.spark.solver.OnFlyCallGraph;
+import soot.jimple.spark.solver.PropIncremental;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.pointer.util.NativeMethodDriver;
 import soot.options.CGOptions;
@@ -132,6 +139,9 @@ public class PAG implements PointsToAnalysis {
       case SparkOptions.set_impl_bit:
         setFactory = BitPointsToSet.getFactory();
         break;
+      case SparkOptions.set_impl_offheap:
+        setFactory = getOffHeapSetFactory();
+        break;
       case SparkOptions.set_impl_double:
         P2SetFactory oldF;
         P2SetFactory newF;
@@ -154,6 +164,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_old_bit:
             oldF = BitPointsToSet.getFactory();
             break;
+          case SparkOptions.double_set_old_offheap:
+            oldF = getOffHeapSetFactory();
+            break;
           default:
             throw new RuntimeException();
         }
@@ -176,6 +189,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_new_bit:
             newF = BitPointsToSet.getFactory();
             break;
+          case SparkOptions.double_set_new_offheap:
+            newF = getOffHeapSetFactory();
+            break;
           default:
             throw new RuntimeException();
         }
@@ -185,6 +201,9 @@ public class PAG implements PointsToAnalysis {
         throw new RuntimeException();
     }
     runGeomPTA = opts.geom_pta();
+    if (opts.heap_budget() > 0) {
+      heapBudget = new HeapBudget(opts.heap_budget() * 1024L * 1024L);
+    }
   }
 
   /** Returns the set of objects pointed to by variable l. */
@@ -264,6 +283,45 @@ public class PAG implements PointsToAnalysis {
     return setFactory;
   }
 
+  /**
+   * Returns the store holding the bit vectors of off-heap points-to sets, or null if this PAG does not use them.
+   */
+  public OffHeapSetStore getOffHeapSetStore() {
+    return offHeapSetStore;
+  }
+
+  /**
+   * Returns the monitor of the heap budget given by the <code>heap-budget</code> option, or null if there is none.
+   */
+  public HeapBudget getHeapBudget() {
+    return heapBudget;
+  }
+
+  public void setHeapBudget(HeapBudget heapBudget) {
+    this.heapBudget = heapBudget;
+  }
+
+  /**
+   * Called by the builders and propagators for each unit of work. Throws a {@link HeapBudgetExceededException} if the heap
+   * budget has been exceeded.
+   */
+  public void checkHeapBudget() {
+    HeapBudget heapBudget = this.heapBudget;
+    if (heapBudget != null) {
+      heapBudget.check();
+    }
+  }
+
+  private P2SetFactory getOffHeapSetFactory() {
+    if (offHeapSetStore == null) {
+      String dir = opts.offheap_dir();
+      offHeapSetStore = new OffHeapSetStore(dir == null || dir.isEmpty() ? null : new File(dir));
+      // closed when Spark or Soot is reset
+      G.v().OffHeapSetStore_stores.add(offHeapSetStore);
+    }
+    return OffHeapPointsToSet.getFactory(offHeapSetStore);
+  }
+
   private <K extends Node> void lookupInMap(Map<K, Object> map) {
     for (K object : map.keySet()) {
       lookup(map, object);
@@ -313,6 +371,30 @@ public class PAG implements PointsToAnalysis {
     return addToMap(assignInstance, from, to) | addToMap(assignInstanceInv, to, from);
   }
 
+  public boolean doRemoveSimpleEdge(VarNode from, VarNode to) {
+    return removeFromMap(simple, from, to) | removeFromMap(simpleInv, to, from);
+  }
+
+  public boolean doRemoveStoreEdge(VarNode from, FieldRefNode to) {
+    return removeFromMap(store, from, to) | removeFromMap(storeInv, to, from);
+  }
+
+  public boolean doRemoveLoadEdge(FieldRefNode from, VarNode to) {
+    return removeFromMap(load, from, to) | removeFromMap(loadInv, to, from);
+  }
+
+  public boolean doRemoveAllocEdge(AllocNode from, VarNode to) {
+    return removeFromMap(alloc, from, to) | removeFromMap(allocInv, to, from);
+  }
+
+  public boolean doRemoveNewInstanceEdge(VarNode from, NewInstanceNode to) {
+    return removeFromMap(newInstance, from, to) | removeFromMap(newInstanceInv, to, from);
+  }
+
+  public boolean doRemoveAssignInstanceEdge(NewInstanceNode from, VarNode to) {
+    return removeFromMap(assignInstance, from, to) | removeFromMap(assignInstanceInv, to, from);
+  }
+
   /** Node uses this to notify PAG that n2 has been merged into n1. */
   void mergedWith(Node n1, Node n2) {
     if (n1.equals(n2)) {
@@ -577,6 +659,8 @@ public class PAG implements PointsToAnalysis {
   }
 
   protected P2SetFactory setFactory;
+  protected OffHeapSetStore offHeapSetStore;
+  protected volatile HeapBudget heapBudget;
   protected boolean somethingMerged = false;
 
   /**
@@ -978,6 +1062,45 @@ public class PAG implements PointsToAnalysis {
     return edgeQueue.reader();
   }
 
+  /**
+   * Removes an edge from the graph, returning false if it was not there. The points-to sets are not updated; this is up to
+   * the caller, see {@link soot.jimple.spark.solver.PropIncremental}.
+   */
+  public boolean removeEdge(Node from, Node to) {
+    from = from.getReplacement();
+    to = to.getReplacement();
+    boolean ret;
+    if (from instanceof VarNode) {
+      if (to instanceof VarNode) {
+        ret = doRemoveSimpleEdge((VarNode) from, (VarNode) to);
+      } else if (to instanceof FieldRefNode) {
+        ret = doRemoveStoreEdge((VarNode) from, (FieldRefNode) to);
+      } else if (to instanceof NewInstanceNode) {
+        ret = doRemoveNewInstanceEdge((VarNode) from, (NewInstanceNode) to);
+      } else {
+        throw new RuntimeException("Invalid node type");
+      }
+    } else if (from instanceof FieldRefNode) {
+      ret = doRemoveLoadEdge((FieldRefNode) from, (VarNode) to);
+    } else if (from instanceof NewInstanceNode) {
+      ret = doRemoveAssignInstanceEdge((NewInstanceNode) from, (VarNode) to);
+    } else {
+      ret = doRemoveAllocEdge((AllocNode) from, (VarNode) to);
+    }
+    if (ret) {
+      removedEdgeQueue.add(from);
+      removedEdgeQueue.add(to);
+    }
+    return ret;
+  }
+
+  protected ChunkedQueue<Node> removedEdgeQueue = new ChunkedQueue<Node>();
+
+  /** Returns a reader over the source and target of every edge removed with {@link #removeEdge(Node, Node)}. */
+  public QueueReader<Node> removedEdgeReader() {
+    return removedEdgeQueue.reader();
+  }
+
   public int getNumAllocNodes() {
     return allocNodeNumberer.size();
   }
@@ -998,6 +1121,19 @@ public class PAG implements PointsToAnalysis {
     return ofcg;
   }
 
+  /**
+   * Sets the propagator that updates the solution of this PAG when only method bodies change, see the Spark option
+   * <code>incremental</code>.
+   */
+  public void setIncrementalPropagator(PropIncremental incrementalPropagator) {
+    this.incrementalPropagator = incrementalPropagator;
+  }
+
+  /** Returns the propagator that updates the solution of this PAG, or null if it cannot be updated incrementally. */
+  public PropIncremental getIncrementalPropagator() {
+    return incrementalPropagator;
+  }
+
   /**
    * Adds the base of a dereference to the list of dereferenced variables.
    */
@@ -1061,6 +1197,163 @@ public class PAG implements PointsToAnalysis {
     return assign2edges.get(val);
   }
 
+  /**
+   * Takes back everything {@link #addCallTarget(Edge)} added for the call edge e: the assignment edges that no other call
+   * edge added as well, and the entries of {@link #callAssigns}, {@link #callToMethod} and
+   * {@link #virtualCallsToReceivers} that no other call edge accounts for. This is only possible with the Spark option
+   * <code>incremental</code>, which records what every call edge added; otherwise nothing is removed.
+   */
+  public void removeCallTarget(Edge e) {
+    CallTargetRecord record = callTargetRecords.remove(e);
+    if (record == null) {
+      return;
+    }
+    for (Pair<Node, Node> pval : record.edges) {
+      if (runGeomPTA) {
+        assign2edges.remove(pval, e);
+      }
+      Integer count = callEdgeCounts.get(pval);
+      if (count == null) {
+        // The edge was there before any call edge added it
+        continue;
+      }
+      if (count == 1) {
+        callEdgeCounts.remove(pval);
+        removeEdge(pval.getO1(), pval.getO2());
+      } else {
+        callEdgeCounts.put(pval, count - 1);
+      }
+    }
+
+    InvokeExpr ie = record.ie;
+    if (ie == null) {
+      return;
+    }
+    List<CallTargetRecord> remaining = callTargetRecordsByCall.get(ie);
+    remaining.remove(record);
+    if (remaining.isEmpty()) {
+      callTargetRecordsByCall.remove(ie);
+    }
+    for (Pair<Node, Node> pval : record.callAssigns) {
+      if (!anyPutsCallAssign(remaining, pval)) {
+        callAssigns.remove(ie, pval);
+      }
+    }
+    if (record.putsCallToMethod && !anyPutsCallToMethod(remaining)) {
+      callToMethod.remove(ie);
+    }
+
+    // Replay how the remaining call edges of this call determined its receiver
+    Node receiver = null;
+    boolean virtualCall = false;
+    for (CallTargetRecord r : remaining) {
+      if (r.handler || (virtualCall && receiver == null)) {
+        receiver = r.receiver;
+      }
+      virtualCall |= !r.callAssigns.isEmpty();
+    }
+    if (receiver == null) {
+      virtualCallsToReceivers.remove(ie);
+    } else {
+      virtualCallsToReceivers.put(ie, receiver);
+    }
+  }
+
+  private static boolean anyPutsCallAssign(List<CallTargetRecord> records, Pair<Node, Node> pval) {
+    for (CallTargetRecord r : records) {
+      if (r.callAssigns.contains(pval)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean anyPutsCallToMethod(List<CallTargetRecord> records) {
+    for (CallTargetRecord r : records) {
+      if (r.putsCallToMethod) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** What {@link #addCallTarget(Edge)} added for one call edge. */
+  private static class CallTargetRecord {
+    final InvokeExpr ie;
+    final List<Pair<Node, Node>> edges = new ArrayList<Pair<Node, Node>>();
+    final List<Pair<Node, Node>> callAssigns = new ArrayList<Pair<Node, Node>>();
+    boolean putsCallToMethod;
+    Node receiver;
+    boolean handler;
+
+    CallTargetRecord(InvokeExpr ie) {
+      this.ie = ie;
+    }
+  }
+
+  /**
+   * Returns the record of what is added for the given call edge, or null if nothing needs to be recorded because call
+   * targets are never removed.
+   */
+  private CallTargetRecord recordCallTarget(Edge e, InvokeExpr ie) {
+    if (e == null || !opts.incremental()) {
+      return null;
+    }
+    CallTargetRecord record = callTargetRecords.get(e);
+    if (record == null) {
+      record = new CallTargetRecord(ie);
+      callTargetRecords.put(e, record);
+      if (ie != null) {
+        List<CallTargetRecord> l = callTargetRecordsByCall.get(ie);
+        if (l == null) {
+          callTargetRecordsByCall.put(ie, l = new ArrayList<CallTargetRecord>());
+        }
+        l.add(record);
+      }
+    }
+    return record;
+  }
+
+  private void addCallEdge(Node from, Node to, CallTargetRecord record) {
+    boolean added = addEdge(from, to);
+    if (record == null) {
+      return;
+    }
+    Pair<Node, Node> pval = new Pair<Node, Node>(from, to);
+    record.edges.add(pval);
+    Integer count = callEdgeCounts.get(pval);
+    if (count != null) {
+      callEdgeCounts.put(pval, count + 1);
+    } else if (added) {
+      callEdgeCounts.put(pval, 1);
+    }
+  }
+
+  private void putCallAssign(InvokeExpr ie, Pair<Node, Node> pval, CallTargetRecord record) {
+    callAssigns.put(ie, pval);
+    if (record != null) {
+      record.callAssigns.add(pval);
+    }
+  }
+
+  private void putCallToMethod(InvokeExpr ie, SootMethod m, CallTargetRecord record) {
+    callToMethod.put(ie, m);
+    if (record != null) {
+      record.putsCallToMethod = true;
+    }
+  }
+
+  private void putReceiver(InvokeExpr ie, Node receiver, boolean virtualCall, CallTargetRecord record) {
+    if (record != null) {
+      record.receiver = receiver;
+    }
+    if (virtualCall && !virtualCallsToReceivers.containsKey(ie)) {
+      virtualCallsToReceivers.put(ie, receiver);
+    }
+  }
+
+  private PropIncremental incrementalPropagator;
+
   public void addCallTarget(Edge e) {
     if (!e.passesParameters()) {
       return;
@@ -1068,6 +1361,9 @@ public class PAG implements PointsToAnalysis {
     MethodPAG srcmpag = MethodPAG.v(this, e.src());
     MethodPAG tgtmpag = MethodPAG.v(this, e.tgt());
     Pair<Node, Node> pval;
+    Stmt srcStmt = e.srcStmt();
+    CallTargetRecord record
+        = recordCallTarget(e, srcStmt != null && srcStmt.containsInvokeExpr() ? srcStmt.getInvokeExpr() : null);
 
     if (e.isExplicit() || e.kind() == Kind.THREAD || e.kind() == Kind.ASYNCTASK) {
       addCallTarget(srcmpag, tgtmpag, (Stmt) e.srcUnit(), e.srcCtxt(), e.tgtCtxt(), e);
@@ -1083,14 +1379,12 @@ public class PAG implements PointsToAnalysis {
       thiz = tgtmpag.parameterize(thiz, e.tgtCtxt());
       thiz = thiz.getReplacement();
 
-      addEdge(parm, thiz);
+      addCallEdge(parm, thiz, record);
       pval = addInterproceduralAssignment(parm, thiz, e);
-      callAssigns.put(ie, pval);
-      callToMethod.put(ie, srcmpag.getMethod());
+      putCallAssign(ie, pval, record);
+      putCallToMethod(ie, srcmpag.getMethod(), record);
 
-      if (virtualCall && !virtualCallsToReceivers.containsKey(ie)) {
-        virtualCallsToReceivers.put(ie, parm);
-      }
+      putReceiver(ie, parm, virtualCall, record);
     } else if (e.kind() == Kind.HANDLER) {
       InvokeExpr ie = e.srcStmt().getInvokeExpr();
       boolean virtualCall = callAssigns.containsKey(ie);
@@ -1104,12 +1398,16 @@ public class PAG implements PointsToAnalysis {
       thiz = tgtmpag.parameterize(thiz, e.tgtCtxt());
       thiz = thiz.getReplacement();
 
-      addEdge(base, thiz);
+      addCallEdge(base, thiz, record);
       pval = addInterproceduralAssignment(base, thiz, e);
-      callAssigns.put(ie, pval);
-      callToMethod.put(ie, srcmpag.getMethod());
+      putCallAssign(ie, pval, record);
+      putCallToMethod(ie, srcmpag.getMethod(), record);
 
       virtualCallsToReceivers.put(ie, base);
+      if (record != null) {
+        record.receiver = base;
+        record.handler = true;
+      }
     } else if (e.kind() == Kind.PRIVILEGED) {
       // Flow from first parameter of doPrivileged() invocation
       // to this of target, and from return of target to the
@@ -1124,10 +1422,10 @@ public class PAG implements PointsToAnalysis {
       thiz = tgtmpag.parameterize(thiz, e.tgtCtxt());
       thiz = thiz.getReplacement();
 
-      addEdge(parm, thiz);
+      addCallEdge(parm, thiz, record);
       pval = addInterproceduralAssignment(parm, thiz, e);
-      callAssigns.put(ie, pval);
-      callToMethod.put(ie, srcmpag.getMethod());
+      putCallAssign(ie, pval, record);
+      putCallToMethod(ie, srcmpag.getMethod(), record);
 
       if (e.srcUnit() instanceof AssignStmt) {
         AssignStmt as = (AssignStmt) e.srcUnit();
@@ -1140,10 +1438,10 @@ public class PAG implements PointsToAnalysis {
         lhs = srcmpag.parameterize(lhs, e.srcCtxt());
         lhs = lhs.getReplacement();
 
-        addEdge(ret, lhs);
+        addCallEdge(ret, lhs, record);
         pval = addInterproceduralAssignment(ret, lhs, e);
-        callAssigns.put(ie, pval);
-        callToMethod.put(ie, srcmpag.getMethod());
+        putCallAssign(ie, pval, record);
+        putCallToMethod(ie, srcmpag.getMethod(), record);
       }
     } else if (e.kind() == Kind.FINALIZE) {
       Node srcThis = srcmpag.nodeFactory().caseThis();
@@ -1154,7 +1452,7 @@ public class PAG implements PointsToAnalysis {
       tgtThis = tgtmpag.parameterize(tgtThis, e.tgtCtxt());
       tgtThis = tgtThis.getReplacement();
 
-      addEdge(srcThis, tgtThis);
+      addCallEdge(srcThis, tgtThis, record);
       pval = addInterproceduralAssignment(srcThis, tgtThis, e);
     } else if (e.kind() == Kind.NEWINSTANCE) {
       Stmt s = (Stmt) e.srcUnit();
@@ -1169,18 +1467,18 @@ public class PAG implements PointsToAnalysis {
       initThis = tgtmpag.parameterize(initThis, e.tgtCtxt());
       initThis = initThis.getReplacement();
 
-      addEdge(newObject, initThis);
+      addCallEdge(newObject, initThis, record);
       if (s instanceof AssignStmt) {
         AssignStmt as = (AssignStmt) s;
         Node asLHS = srcmpag.nodeFactory().getNode(as.getLeftOp());
         asLHS = srcmpag.parameterize(asLHS, e.srcCtxt());
         asLHS = asLHS.getReplacement();
-        addEdge(newObject, asLHS);
+        addCallEdge(newObject, asLHS, record);
       }
 
       pval = addInterproceduralAssignment(newObject, initThis, e);
-      callAssigns.put(s.getInvokeExpr(), pval);
-      callToMethod.put(s.getInvokeExpr(), srcmpag.getMethod());
+      putCallAssign(s.getInvokeExpr(), pval, record);
+      putCallToMethod(s.getInvokeExpr(), srcmpag.getMethod(), record);
     } else if (e.kind() == Kind.REFL_INVOKE) {
       // Flow (1) from first parameter of invoke(..) invocation
       // to this of target, (2) from the contents of the second (array)
@@ -1202,10 +1500,10 @@ public class PAG implements PointsToAnalysis {
         thiz = tgtmpag.parameterize(thiz, e.tgtCtxt());
         thiz = thiz.getReplacement();
 
-        addEdge(parm0, thiz);
+        addCallEdge(parm0, thiz, record);
         pval = addInterproceduralAssignment(parm0, thiz, e);
-        callAssigns.put(ie, pval);
-        callToMethod.put(ie, srcmpag.getMethod());
+        putCallAssign(ie, pval, record);
+        putCallToMethod(ie, srcmpag.getMethod(), record);
       }
 
       // (2)
@@ -1229,9 +1527,9 @@ public class PAG implements PointsToAnalysis {
           tgtParmI = tgtmpag.parameterize(tgtParmI, e.tgtCtxt());
           tgtParmI = tgtParmI.getReplacement();
 
-          addEdge(parm1contents, tgtParmI);
+          addCallEdge(parm1contents, tgtParmI, record);
           pval = addInterproceduralAssignment(parm1contents, tgtParmI, e);
-          callAssigns.put(ie, pval);
+          putCallAssign(ie, pval, record);
         }
       }
 
@@ -1250,9 +1548,9 @@ public class PAG implements PointsToAnalysis {
         lhs = srcmpag.parameterize(lhs, e.srcCtxt());
         lhs = lhs.getReplacement();
 
-        addEdge(ret, lhs);
+        addCallEdge(ret, lhs, record);
         pval = addInterproceduralAssignment(ret, lhs, e);
-        callAssigns.put(ie, pval);
+        putCallAssign(ie, pval, record);
       }
     } else if (e.kind() == Kind.REFL_CLASS_NEWINSTANCE || e.kind() == Kind.REFL_CONSTR_NEWINSTANCE) {
       // (1) create a fresh node for the new object
@@ -1281,13 +1579,13 @@ public class PAG implements PointsToAnalysis {
       SootClass tgtClass = e.getTgt().method().getDeclaringClass();
       RefType tgtType = tgtClass.getType();
       AllocNode site = makeAllocNode(new Pair<Node, SootClass>(cls, tgtClass), tgtType, null);
-      addEdge(site, newObject);
+      addCallEdge(site, newObject, record);
 
       // (2)
       Node initThis = tgtmpag.nodeFactory().caseThis();
       initThis = tgtmpag.parameterize(initThis, e.tgtCtxt());
       initThis = initThis.getReplacement();
-      addEdge(newObject, initThis);
+      addCallEdge(newObject, initThis, record);
       addInterproceduralAssignment(newObject, initThis, e);
 
       // (3)
@@ -1312,9 +1610,9 @@ public class PAG implements PointsToAnalysis {
             tgtParmI = tgtmpag.parameterize(tgtParmI, e.tgtCtxt());
             tgtParmI = tgtParmI.getReplacement();
 
-            addEdge(parm1contents, tgtParmI);
+            addCallEdge(parm1contents, tgtParmI, record);
             pval = addInterproceduralAssignment(parm1contents, tgtParmI, e);
-            callAssigns.put(iie, pval);
+            putCallAssign(iie, pval, record);
           }
         }
       }
@@ -1325,12 +1623,12 @@ public class PAG implements PointsToAnalysis {
         Node asLHS = srcmpag.nodeFactory().getNode(as.getLeftOp());
         asLHS = srcmpag.parameterize(asLHS, e.srcCtxt());
         asLHS = asLHS.getReplacement();
-        addEdge(newObject, asLHS);
+        addCallEdge(newObject, asLHS, record);
       }
 
       pval = addInterproceduralAssignment(newObject, initThis, e);
-      callAssigns.put(s.getInvokeExpr(), pval);
-      callToMethod.put(s.getInvokeExpr(), srcmpag.getMethod());
+      putCallAssign(s.getInvokeExpr(), pval, record);
+      putCallToMethod(s.getInvokeExpr(), srcmpag.getMethod(), record);
     } else {
       throw new RuntimeException("Unhandled edge " + e);
     }
@@ -1345,6 +1643,7 @@ public class PAG implements PointsToAnalysis {
     MethodNodeFactory srcnf = srcmpag.nodeFactory();
     MethodNodeFactory tgtnf = tgtmpag.nodeFactory();
     InvokeExpr ie = s.getInvokeExpr();
+    CallTargetRecord record = recordCallTarget(e, ie);
     boolean virtualCall = callAssigns.containsKey(ie);
     int numArgs = ie.getArgCount();
     for (int i = 0; i < numArgs; i++) {
@@ -1364,10 +1663,10 @@ public class PAG implements PointsToAnalysis {
       parm = tgtmpag.parameterize(parm, tgtContext);
       parm = parm.getReplacement();
 
-      addEdge(argNode, parm);
+      addCallEdge(argNode, parm, record);
       Pair<Node, Node> pval = addInterproceduralAssignment(argNode, parm, e);
-      callAssigns.put(ie, pval);
-      callToMethod.put(ie, srcmpag.getMethod());
+      putCallAssign(ie, pval, record);
+      putCallToMethod(ie, srcmpag.getMethod(), record);
     }
     if (ie instanceof InstanceInvokeExpr) {
       InstanceInvokeExpr iie = (InstanceInvokeExpr) ie;
@@ -1379,13 +1678,11 @@ public class PAG implements PointsToAnalysis {
       Node thisRef = tgtnf.caseThis();
       thisRef = tgtmpag.parameterize(thisRef, tgtContext);
       thisRef = thisRef.getReplacement();
-      addEdge(baseNode, thisRef);
+      addCallEdge(baseNode, thisRef, record);
       Pair<Node, Node> pval = addInterproceduralAssignment(baseNode, thisRef, e);
-      callAssigns.put(ie, pval);
-      callToMethod.put(ie, srcmpag.getMethod());
-      if (virtualCall && !virtualCallsToReceivers.containsKey(ie)) {
-        virtualCallsToReceivers.put(ie, baseNode);
-      }
+      putCallAssign(ie, pval, record);
+      putCallToMethod(ie, srcmpag.getMethod(), record);
+      putReceiver(ie, baseNode, virtualCall, record);
     }
     if (s instanceof AssignStmt) {
       Value dest = ((AssignStmt) s).getLeftOp();
@@ -1399,10 +1696,10 @@ public class PAG implements PointsToAnalysis {
         retNode = tgtmpag.parameterize(retNode, tgtContext);
         retNode = retNode.getReplacement();
 
-        addEdge(retNode, destNode);
+        addCallEdge(retNode, destNode, record);
         Pair<Node, Node> pval = addInterproceduralAssignment(retNode, destNode, e);
-        callAssigns.put(ie, pval);
-        callToMethod.put(ie, srcmpag.getMethod());
+        putCallAssign(ie, pval, record);
+        putCallToMethod(ie, srcmpag.getMethod(), record);
       }
     }
   }
@@ -1458,6 +1755,23 @@ public class PAG implements PointsToAnalysis {
     return ((Set<Node>) valueList).add(value);
   }
 
+  @SuppressWarnings("unchecked")
+  protected <K extends Node> boolean removeFromMap(Map<K, Object> m, K key, Node value) {
+    Object valueList = m.get(key);
+    if (valueList == null) {
+      return false;
+    } else if (!(valueList instanceof Set)) {
+      Node[] ar = (Node[]) valueList;
+      HashSet<Node> vl = new HashSet<Node>(ar.length + 4);
+      m.put(key, vl);
+      for (Node element : ar) {
+        vl.add(element);
+      }
+      return vl.remove(value);
+    }
+    return ((Set<Node>) valueList).remove(value);
+  }
+
   private boolean runGeomPTA = false;
   protected MultiMap<Pair<Node, Node>, Edge> assign2edges = new HashMultiMap<>();
   private final Map<Object, LocalVarNode> valToLocalVarNode = new HashMap<>(1000);
@@ -1483,4 +1797,11 @@ public class PAG implements PointsToAnalysis {
   public Map<InvokeExpr, SootMethod> callToMethod = new HashMap<InvokeExpr, SootMethod>();
   public Map<InvokeExpr, Node> virtualCallsToReceivers = new HashMap<InvokeExpr, Node>();
 
+  /** What every call edge added, in the order of the call edges of each call, if call targets can be removed. */
+  private final Map<Edge, CallTargetRecord> callTargetRecords = new HashMap<Edge, CallTargetRecord>();
+  private final Map<InvokeExpr, List<CallTargetRecord>> callTargetRecordsByCall
+      = new HashMap<InvokeExpr, List<CallTargetRecord>>();
+  /** The number of call edges that added each assignment edge that was not there before. */
+  private final Map<Pair<Node, Node>, Integer> callEdgeCounts = new HashMap<Pair<Node, Node>, Integer>();
+
 }
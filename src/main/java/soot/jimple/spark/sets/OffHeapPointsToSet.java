@@ -0,0 +1,291 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+import soot.PointsToSet;
+import soot.Type;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.util.ArrayNumberer;
+import soot.util.BitVector;
+
+/**
+ * Implementation of points-to set that keeps its bit vector outside of the Java heap, in an {@link OffHeapSetStore} shared
+ * by all sets of a pointer assignment graph. Like {@link HybridPointsToSet}, sets of up to 16 elements keep an explicit list
+ * of allocation node numbers; larger sets switch to a bit vector that only spans the range of words that actually contain
+ * elements.
+ */
+public final class OffHeapPointsToSet extends PointsToSetInternal {
+  private static final int SMALL_SIZE = 16;
+
+  private final PAG pag;
+  private final OffHeapSetStore store;
+
+  /** Numbers of the elements while the set is small, null while empty or once the bit vector is used. */
+  private int[] small = null;
+  private int smallSize = 0;
+
+  /** The off-heap bit vector, null while the set is small. */
+  private OffHeapSetStore.Block block = null;
+
+  private boolean empty = true;
+
+  public OffHeapPointsToSet(Type type, PAG pag, OffHeapSetStore store) {
+    super(type);
+    this.pag = pag;
+    this.store = store;
+  }
+
+  /** Returns true if this set contains no run-time objects. */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  private boolean superAddAll(PointsToSetInternal other, PointsToSetInternal exclude) {
+    boolean ret = super.addAll(other, exclude);
+    if (ret) {
+      empty = false;
+    }
+    return ret;
+  }
+
+  private boolean nativeAddAll(OffHeapPointsToSet other, OffHeapPointsToSet exclude) {
+    if (other == this) {
+      return false;
+    }
+    boolean ret = false;
+    if (other.block == null) {
+      ArrayNumberer<AllocNode> numberer = pag.getAllocNodeNumberer();
+      for (int i = 0; i < other.smallSize; i++) {
+        int n = other.small[i];
+        if (exclude == null || !exclude.contains(n)) {
+          ret = add(numberer.get(n)) | ret;
+        }
+      }
+    } else {
+      BitVector mask = getBitMask(other, pag);
+      for (int w = other.block.base; w < other.block.base + other.block.words; w++) {
+        long bits = other.getWord(w);
+        if (bits == 0L) {
+          continue;
+        }
+        if (mask != null) {
+          bits &= mask.getWord(w);
+        }
+        if (exclude != null) {
+          bits &= ~exclude.getWord(w);
+        }
+        if (bits != 0L) {
+          ret = orWord(w, bits) | ret;
+        }
+      }
+    }
+    if (ret) {
+      empty = false;
+    }
+    return ret;
+  }
+
+  /**
+   * Adds contents of other into this set, returns true if this set changed.
+   */
+  public boolean addAll(final PointsToSetInternal other, final PointsToSetInternal exclude) {
+    if (other != null && !(other instanceof OffHeapPointsToSet)) {
+      return superAddAll(other, exclude);
+    }
+    if (exclude != null && !(exclude instanceof OffHeapPointsToSet)) {
+      return superAddAll(other, exclude);
+    }
+    return nativeAddAll((OffHeapPointsToSet) other, (OffHeapPointsToSet) exclude);
+  }
+
+  /** Calls v's visit method on all nodes in this set. */
+  public boolean forall(P2SetVisitor v) {
+    ArrayNumberer<AllocNode> numberer = pag.getAllocNodeNumberer();
+    if (block == null) {
+      for (int i = 0; i < smallSize; i++) {
+        v.visit(numberer.get(small[i]));
+      }
+    } else {
+      // Re-read the block in every step, the visitor may grow this set
+      for (int w = block.base; w < block.base + block.words; w++) {
+        for (long bits = getWord(w); bits != 0L; bits &= bits - 1) {
+          v.visit(numberer.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+        }
+      }
+    }
+    return v.getReturnValue();
+  }
+
+  /** Adds n to this set, returns true if n was not already in this set. */
+  public boolean add(Node n) {
+    if (pag.getTypeManager().castNeverFails(n.getType(), type)) {
+      return fastAdd(n.getNumber());
+    }
+    return false;
+  }
+
+  /** Returns true iff the set contains n. */
+  public boolean contains(Node n) {
+    return contains(n.getNumber());
+  }
+
+  public boolean hasNonEmptyIntersection(PointsToSet other) {
+    if (other instanceof OffHeapPointsToSet) {
+      OffHeapPointsToSet o = (OffHeapPointsToSet) other;
+      if (block != null && o.block != null) {
+        int from = Math.max(block.base, o.block.base);
+        int to = Math.min(block.base + block.words, o.block.base + o.block.words);
+        for (int w = from; w < to; w++) {
+          if ((getWord(w) & o.getWord(w)) != 0L) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+    return super.hasNonEmptyIntersection(other);
+  }
+
+  public int size() {
+    if (block == null) {
+      return smallSize;
+    }
+    int ret = 0;
+    for (int w = block.base; w < block.base + block.words; w++) {
+      ret += Long.bitCount(getWord(w));
+    }
+    return ret;
+  }
+
+  public static P2SetFactory getFactory(final OffHeapSetStore store) {
+    return new P2SetFactory() {
+      public final PointsToSetInternal newSet(Type type, PAG pag) {
+        return new OffHeapPointsToSet(type, pag, store);
+      }
+    };
+  }
+
+  /* End of public methods. */
+  /* End of package methods. */
+
+  private boolean contains(int n) {
+    if (block == null) {
+      for (int i = 0; i < smallSize; i++) {
+        if (small[i] == n) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return (getWord(n >>> 6) & (1L << n)) != 0L;
+  }
+
+  private boolean fastAdd(int n) {
+    if (block == null) {
+      for (int i = 0; i < smallSize; i++) {
+        if (small[i] == n) {
+          return false;
+        }
+      }
+      if (smallSize < SMALL_SIZE) {
+        if (small == null) {
+          small = new int[4];
+        } else if (smallSize == small.length) {
+          int[] newSmall = new int[smallSize * 2];
+          System.arraycopy(small, 0, newSmall, 0, smallSize);
+          small = newSmall;
+        }
+        small[smallSize++] = n;
+        empty = false;
+        return true;
+      }
+    }
+    return orWord(n >>> 6, 1L << n);
+  }
+
+  /** Returns word w of the bit vector. */
+  private long getWord(int w) {
+    OffHeapSetStore.Block b = block;
+    if (b == null) {
+      long ret = 0L;
+      for (int i = 0; i < smallSize; i++) {
+        if (small[i] >>> 6 == w) {
+          ret |= 1L << small[i];
+        }
+      }
+      return ret;
+    }
+    if (w < b.base || w >= b.base + b.words) {
+      return 0L;
+    }
+    return store.get(b.address + w - b.base);
+  }
+
+  /** Sets the given bits in word w of the bit vector, switching to the bit vector first if needed. */
+  private boolean orWord(int w, long bits) {
+    if (block == null) {
+      convertToBits(w);
+    }
+    long address = wordAddress(w);
+    long old = store.get(address);
+    if ((old | bits) == old) {
+      return false;
+    }
+    store.put(address, old | bits);
+    empty = false;
+    return true;
+  }
+
+  /** Moves the elements of the small list into a bit vector that also spans word w. */
+  private void convertToBits(int w) {
+    int lo = w;
+    int hi = w + 1;
+    for (int i = 0; i < smallSize; i++) {
+      lo = Math.min(lo, small[i] >>> 6);
+      hi = Math.max(hi, (small[i] >>> 6) + 1);
+    }
+    block = store.allocate(this, hi - lo, lo);
+    for (int i = 0; i < smallSize; i++) {
+      long address = wordAddress(small[i] >>> 6);
+      store.put(address, store.get(address) | (1L << small[i]));
+    }
+    small = null;
+    smallSize = 0;
+  }
+
+  /** Returns the address of word w of the bit vector, growing the bit vector if it does not span w yet. */
+  private long wordAddress(int w) {
+    OffHeapSetStore.Block b = block;
+    if (w < b.base || w >= b.base + b.words) {
+      int hi = Math.max(b.base + b.words, w + 1);
+      int words = hi - Math.min(b.base, w);
+      if (Integer.highestOneBit(words) != words) {
+        words = Integer.highestOneBit(words) << 1;
+      }
+      // When growing downwards, leave room below w for further growth
+      store.resize(b, words, w < b.base ? Math.max(0, hi - words) : b.base);
+    }
+    return b.address + w - b.base;
+  }
+}
@@ -0,0 +1,328 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage for the bit vectors of {@link OffHeapPointsToSet}s outside of the Java heap. The memory is divided into segments
+ * of {@link #SEGMENT_WORDS} 64-bit words, which are either direct buffers or regions of a memory-mapped temporary file. In
+ * the latter case, the operating system may page the solution out to disk.
+ *
+ * <p>
+ * Blocks are addressed by a word address and always have a power of two size, so freed blocks can be recycled through one
+ * free list per size. The blocks of a points-to set that has been garbage collected are returned to the free lists the
+ * next time a block is allocated.
+ * </p>
+ *
+ * <p>
+ * Allocating and freeing blocks is thread-safe. Reading and writing words is not synchronized; a block must only be
+ * written by one thread at a time, as for the on-heap points-to sets.
+ * </p>
+ *
+ * <p>
+ * The memory is not returned to the operating system before the store is {@link #close() closed}.
+ * </p>
+ */
+public final class OffHeapSetStore {
+  private static final Logger logger = LoggerFactory.getLogger(OffHeapSetStore.class);
+
+  /** Log2 of the number of words in a segment. */
+  static final int SEGMENT_SHIFT = 20;
+
+  /** Number of 64-bit words in a segment; no block can be larger than this. */
+  public static final int SEGMENT_WORDS = 1 << SEGMENT_SHIFT;
+
+  private static final long SEGMENT_MASK = SEGMENT_WORDS - 1;
+
+  private final File directory;
+  private File file;
+  private FileChannel channel;
+
+  /** The buffers backing the segments, so that they can be released on {@link #close()}. */
+  private ByteBuffer[] buffers = new ByteBuffer[0];
+
+  /** Replaced on growth, so readers on other threads always see a consistent array. */
+  private volatile LongBuffer[] segments = new LongBuffer[0];
+
+  /** First unused word of the last segment. */
+  private int top = SEGMENT_WORDS;
+
+  /** For every size class, a stack of free block addresses. */
+  private final long[][] freeBlocks = new long[SEGMENT_SHIFT + 1][];
+  private final int[] freeCounts = new int[SEGMENT_SHIFT + 1];
+
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+  private final Set<Block> liveBlocks = new HashSet<Block>();
+
+  private long usedWords = 0;
+
+  /**
+   * Creates a store that keeps its segments in direct buffers.
+   */
+  public OffHeapSetStore() {
+    this(null);
+  }
+
+  /**
+   * Creates a store whose segments are mapped from a temporary file in the given directory, or kept in direct buffers if
+   * the directory is <code>null</code>.
+   */
+  public OffHeapSetStore(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * A block of words owned by a points-to set. The block is freed once its owner has been garbage collected.
+   */
+  static final class Block extends PhantomReference<Object> {
+    /** Word address of the first word. */
+    long address;
+
+    /** Number of words, always a power of two. */
+    int words;
+
+    /** Index of the bit vector word stored at <code>address</code>. */
+    int base;
+
+    Block(Object owner, ReferenceQueue<Object> queue) {
+      super(owner, queue);
+    }
+  }
+
+  /**
+   * Allocates a zeroed block of the given number of words for the given owner. The number of words is rounded up to the
+   * next power of two.
+   */
+  synchronized Block allocate(Object owner, int words, int base) {
+    Block ret = new Block(owner, queue);
+    ret.words = roundUp(words);
+    ret.address = allocateWords(ret.words);
+    ret.base = base;
+    liveBlocks.add(ret);
+    return ret;
+  }
+
+  /**
+   * Moves the block to a larger zeroed region of the given number of words starting at bit vector word <code>base</code>
+   * and copies the old words over. The block's old region is freed.
+   */
+  synchronized void resize(Block block, int words, int base) {
+    words = roundUp(words);
+    long address = allocateWords(words);
+    int shift = block.base - base;
+    if (shift < 0 || shift + block.words > words) {
+      throw new IllegalArgumentException("New block region does not cover the old one");
+    }
+    for (int i = 0; i < block.words; i++) {
+      put(address + shift + i, get(block.address + i));
+    }
+    freeWords(block.address, block.words);
+    block.address = address;
+    block.words = words;
+    block.base = base;
+  }
+
+  /** Returns the word at the given address. */
+  long get(long address) {
+    return segments[(int) (address >>> SEGMENT_SHIFT)].get((int) (address & SEGMENT_MASK));
+  }
+
+  /** Stores the word at the given address. */
+  void put(long address, long value) {
+    segments[(int) (address >>> SEGMENT_SHIFT)].put((int) (address & SEGMENT_MASK), value);
+  }
+
+  /** Returns the number of bytes in blocks that are in use. */
+  public synchronized long getUsedBytes() {
+    return usedWords << 3;
+  }
+
+  /** Returns the number of bytes reserved for segments, including free space. */
+  public long getReservedBytes() {
+    return ((long) segments.length) << (SEGMENT_SHIFT + 3);
+  }
+
+  /** Returns true if the segments are mapped from a file. */
+  public boolean isMapped() {
+    return directory != null;
+  }
+
+  private static int roundUp(int words) {
+    if (words <= 0 || words > SEGMENT_WORDS) {
+      throw new IllegalArgumentException("Cannot allocate " + words + " words; at most " + SEGMENT_WORDS + " are supported");
+    }
+    return Integer.highestOneBit(words) == words ? words : Integer.highestOneBit(words) << 1;
+  }
+
+  private long allocateWords(int words) {
+    reclaim();
+    usedWords += words;
+    int sizeClass = Integer.numberOfTrailingZeros(words);
+    if (freeCounts[sizeClass] > 0) {
+      long address = freeBlocks[sizeClass][--freeCounts[sizeClass]];
+      for (int i = 0; i < words; i++) {
+        put(address + i, 0L);
+      }
+      return address;
+    }
+    if (top + words > SEGMENT_WORDS) {
+      // Hand the rest of the current segment to the free lists
+      while (top < SEGMENT_WORDS) {
+        int size = Integer.lowestOneBit(top);
+        pushFree((((long) segments.length - 1) << SEGMENT_SHIFT) + top, size);
+        top += size;
+      }
+      addSegment();
+      top = 0;
+    }
+    long address = (((long) segments.length - 1) << SEGMENT_SHIFT) + top;
+    top += words;
+    return address;
+  }
+
+  private void freeWords(long address, int words) {
+    usedWords -= words;
+    pushFree(address, words);
+  }
+
+  private void pushFree(long address, int words) {
+    int sizeClass = Integer.numberOfTrailingZeros(words);
+    long[] stack = freeBlocks[sizeClass];
+    if (stack == null) {
+      stack = freeBlocks[sizeClass] = new long[16];
+    } else if (freeCounts[sizeClass] == stack.length) {
+      stack = freeBlocks[sizeClass] = Arrays.copyOf(stack, stack.length * 2);
+    }
+    stack[freeCounts[sizeClass]++] = address;
+  }
+
+  /** Frees the blocks of all owners that have been garbage collected. */
+  private void reclaim() {
+    for (Reference<?> ref; (ref = queue.poll()) != null;) {
+      Block block = (Block) ref;
+      if (liveBlocks.remove(block)) {
+        freeWords(block.address, block.words);
+      }
+    }
+  }
+
+  /**
+   * Releases the segments and deletes the temporary file, if any. The points-to sets using this store must not be accessed
+   * anymore afterwards. Closing a store twice has no effect.
+   */
+  public synchronized void close() {
+    ByteBuffer[] old = buffers;
+    buffers = new ByteBuffer[0];
+    segments = new LongBuffer[0];
+    top = SEGMENT_WORDS;
+    Arrays.fill(freeCounts, 0);
+    liveBlocks.clear();
+    usedWords = 0;
+    for (ByteBuffer buffer : old) {
+      unmap(buffer);
+    }
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.debug("Could not close " + file, e);
+      }
+      channel = null;
+      if (!file.delete()) {
+        logger.debug("Could not delete " + file);
+      }
+      file = null;
+    }
+  }
+
+  /**
+   * Frees the memory of the given direct or mapped buffer right away instead of waiting for it to be garbage collected. There
+   * is no public API for this, so the cleaner of the buffer is invoked the way the running JVM allows.
+   */
+  private static void unmap(ByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner;
+      try {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        // Java 8
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        return;
+      }
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.debug("Could not release points-to set segment", e);
+    }
+  }
+
+  private void addSegment() {
+    LongBuffer[] old = segments;
+    ByteBuffer buffer;
+    long bytes = ((long) SEGMENT_WORDS) << 3;
+    if (directory == null) {
+      buffer = ByteBuffer.allocateDirect((int) bytes);
+    } else {
+      try {
+        if (channel == null) {
+          file = File.createTempFile("soot-pts", ".bin", directory);
+          file.deleteOnExit();
+          channel = new RandomAccessFile(file, "rw").getChannel();
+          logger.debug("Mapping points-to sets from " + file);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, old.length * bytes, bytes);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not map points-to set segment in " + directory, e);
+      }
+    }
+    buffers = Arrays.copyOf(buffers, buffers.length + 1);
+    buffers[old.length] = buffer;
+    LongBuffer[] ret = Arrays.copyOf(old, old.length + 1);
+    ret[old.length] = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+    segments = ret;
+  }
+}
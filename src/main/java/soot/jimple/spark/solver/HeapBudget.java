@@ -0,0 +1,93 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Watches the heap while Spark builds the pointer assignment graph and propagates points-to sets, so that the analysis can
+ * be restarted with less precision before it runs out of memory. See the <code>heap-budget</code> option of
+ * <code>cg.spark</code>.
+ */
+public class HeapBudget {
+  /** The heap is measured once per this many calls to {@link #check()}. */
+  private static final int CHECK_INTERVAL = 4096;
+  /** Garbage is collected to confirm that the budget is exceeded at most once per this many milliseconds. */
+  private static final long MIN_GC_INTERVAL = 1000;
+
+  private final long budget;
+  private int calls = 0;
+  private long lastGC = 0;
+  private long peakUsage = 0;
+
+  /**
+   * Creates a monitor for the given budget in bytes.
+   */
+  public HeapBudget(long budget) {
+    this.budget = budget;
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+
+  /** Returns the highest heap use in bytes that was confirmed by a garbage collection. */
+  public long getPeakUsage() {
+    return peakUsage;
+  }
+
+  /**
+   * Cheap check to be called for every unit of work. Measures the heap now and then and throws a
+   * {@link HeapBudgetExceededException} if more than the budget is in use. Callers on several threads may share one
+   * monitor; they only affect how often the heap is measured.
+   */
+  public void check() {
+    if (++calls % CHECK_INTERVAL == 0) {
+      checkNow();
+    }
+  }
+
+  /**
+   * Measures the heap and throws a {@link HeapBudgetExceededException} if more than the budget is in use. As the used heap
+   * includes garbage, garbage is collected before concluding that the budget has been exceeded.
+   */
+  public synchronized void checkNow() {
+    if (usedHeap() <= budget) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (now - lastGC < MIN_GC_INTERVAL) {
+      return;
+    }
+    System.gc();
+    lastGC = System.currentTimeMillis();
+    long used = usedHeap();
+    peakUsage = Math.max(peakUsage, used);
+    if (used > budget) {
+      throw new HeapBudgetExceededException(used, budget);
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
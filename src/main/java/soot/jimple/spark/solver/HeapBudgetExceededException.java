@@ -0,0 +1,47 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Thrown when Spark uses more heap than its {@link HeapBudget} allows.
+ */
+@SuppressWarnings("serial")
+public class HeapBudgetExceededException extends RuntimeException {
+  private final long used;
+  private final long budget;
+
+  public HeapBudgetExceededException(long used, long budget) {
+    super("Heap use of " + (used >> 20) + " MB exceeds the budget of " + (budget >> 20) + " MB");
+    this.used = used;
+    this.budget = budget;
+  }
+
+  /** Returns the number of bytes in use when the budget was found to be exceeded. */
+  public long getUsed() {
+    return used;
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+}
@@ -89,6 +89,7 @@ public class OnFlyCallGraph {
     reachableMethods.update();
     while (reachablesReader.hasNext()) {
       MethodOrMethodContext m = reachablesReader.next();
+      pag.checkHeapBudget();
       MethodPAG mpag = MethodPAG.v(pag, m.method());
       mpag.build();
       mpag.addToPAG(m.context());
@@ -98,6 +99,7 @@ public class OnFlyCallGraph {
   private void processCallEdges() {
     while (callEdges.hasNext()) {
       Edge e = callEdges.next();
+      pag.checkHeapBudget();
       MethodPAG amp = MethodPAG.v(pag, e.tgt());
       amp.build();
       amp.addToPAG(e.tgtCtxt());
@@ -124,6 +126,7 @@ public class OnFlyCallGraph {
   }
 
   public void updatedNode(VarNode vn) {
+    pag.checkHeapBudget();
     Object r = vn.getVariable();
     if (!(r instanceof Local)) {
       return;
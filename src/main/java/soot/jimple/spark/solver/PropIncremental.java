@@ -0,0 +1,346 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.MethodPAG;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.callgraph.OnFlyCallGraphBuilder;
+import soot.options.SparkOptions;
+import soot.util.queue.QueueReader;
+
+/**
+ * Updates a solution found with the on-the-fly call graph after method bodies have changed. The part of the pointer
+ * assignment graph and the call edges of every changed method are replaced, and the points-to sets of the nodes that
+ * depended on them are recomputed with the worklist algorithm, while all other points-to sets are kept.
+ *
+ * Whenever the class hierarchy changes, the solution has to be recomputed from scratch. Methods that are no longer called
+ * after a change stay reachable, and so do the call edges found through reflection.
+ */
+public class PropIncremental extends PropWorklist {
+  private static final Logger logger = LoggerFactory.getLogger(PropIncremental.class);
+
+  private final Map<SootMethod, Body> bodies = new HashMap<SootMethod, Body>();
+  private final Map<SootMethod, Long> modificationCounts = new HashMap<SootMethod, Long>();
+  private int sceneState;
+
+  /**
+   * Creates an incremental propagator for a PAG whose points-to sets have already been propagated, and remembers the
+   * current bodies of all methods in it.
+   */
+  public PropIncremental(PAG pag) {
+    super(pag);
+    ofcg = pag.getOnFlyCallGraph();
+    snapshot();
+  }
+
+  /** Returns whether the solution can be updated for the options of the PAG and the current Scene. */
+  public boolean canUpdate() {
+    SparkOptions opts = pag.getOpts();
+    if (ofcg == null || !opts.on_fly_cg() || opts.vta() || opts.rta() || opts.simple_edges_bidirectional()
+        || opts.geom_pta() || !pag.newInstanceSources().isEmpty() || Scene.v().getState() != sceneState) {
+      return false;
+    }
+    // The method PAGs are dropped when Spark is reset
+    for (SootMethod m : bodies.keySet()) {
+      MethodPAG mpag = G.v().MethodPAG_methodToPag.get(m);
+      if (mpag == null || mpag.pag() != pag) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the reachable methods whose active body was replaced or modified since the solution was computed. */
+  public Set<SootMethod> changedMethods() {
+    Set<SootMethod> ret = new LinkedHashSet<SootMethod>();
+    for (SootMethod m : G.v().MethodPAG_methodToPag.keySet()) {
+      if (!m.hasActiveBody() || !ofcg.reachableMethods().contains(m)) {
+        continue;
+      }
+      Body b = m.getActiveBody();
+      Long modificationCount = modificationCounts.get(m);
+      if (bodies.get(m) != b || modificationCount == null || modificationCount != b.getModificationCount()) {
+        ret.add(m);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Brings the solution up to date with the current bodies of all methods. Returns false without changing anything if this
+   * is not possible, in which case the solution has to be recomputed from scratch.
+   */
+  public boolean update() {
+    if (!canUpdate()) {
+      return false;
+    }
+    Set<SootMethod> changed = changedMethods();
+    if (changed.isEmpty()) {
+      return true;
+    }
+    if (pag.getOpts().verbose()) {
+      logger.debug("Updating points-to sets for " + changed.size() + " changed methods");
+    }
+    final OnFlyCallGraphBuilder ofcgb = ofcg.ofcgb();
+    final CallGraph cg = ofcg.callGraph();
+    final QueueReader<Node> removedEdges = pag.removedEdgeReader();
+    final Map<SparkField, List<FieldRefNode>> fieldRefs = new HashMap<SparkField, List<FieldRefNode>>();
+    for (FieldRefNode fr : pag.getFieldRefNodeNumberer()) {
+      List<FieldRefNode> l = fieldRefs.get(fr.getField());
+      if (l == null) {
+        fieldRefs.put(fr.getField(), l = new ArrayList<FieldRefNode>());
+      }
+      l.add(fr);
+    }
+
+    // Retract the edges of the changed methods
+    for (SootMethod m : changed) {
+      List<Edge> callEdges = new ArrayList<Edge>();
+      for (Iterator<Edge> it = cg.edgesOutOf(m); it.hasNext();) {
+        callEdges.add(it.next());
+      }
+      for (Edge e : callEdges) {
+        cg.removeEdge(e);
+        pag.removeCallTarget(e);
+      }
+      ofcgb.retractMethod(m);
+      MethodPAG.v(pag, m).removeFromPAG();
+      G.v().MethodPAG_methodToPag.remove(m);
+    }
+
+    // Everything that may have flowed along the removed edges has to be computed again
+    Set<Node> region = findAffectedRegion(removedEdges, fieldRefs);
+    for (Node n : region) {
+      n.discardP2Set();
+    }
+
+    // Add the new edges of the changed methods
+    QueueReader<Node> addedEdges = pag.edgeReader();
+    for (SootMethod m : changed) {
+      MethodPAG mpag = MethodPAG.v(pag, m);
+      mpag.build();
+      mpag.addToPAG(null);
+      ofcgb.reprocessMethod(m);
+    }
+    ofcg.build();
+    Set<VarNode> targets = new HashSet<VarNode>();
+    while (addedEdges.hasNext()) {
+      addedEdges.next();
+      Node tgt = addedEdges.next().getReplacement();
+      if (tgt instanceof VarNode) {
+        targets.add((VarNode) tgt);
+      }
+    }
+    for (Node n : region) {
+      if (n instanceof VarNode) {
+        targets.add((VarNode) n);
+      } else {
+        pullStores((AllocDotField) n, fieldRefs);
+      }
+    }
+    for (VarNode v : targets) {
+      if (pull(v)) {
+        varNodeWorkList.add(v);
+      }
+    }
+
+    do {
+      while (!varNodeWorkList.isEmpty()) {
+        VarNode src = varNodeWorkList.iterator().next();
+        varNodeWorkList.remove(src);
+        handleVarNode(src);
+      }
+      handleFieldRefs();
+    } while (!varNodeWorkList.isEmpty());
+
+    if (pag.getOpts().verbose()) {
+      logger.debug("Recomputed points-to sets of " + region.size() + " nodes");
+    }
+    snapshot();
+    return true;
+  }
+
+  /**
+   * Finds the nodes whose points-to sets may depend on one of the removed edges, following the old solution. The call edges
+   * found for receivers among them are removed as well, since they may not be found again.
+   */
+  protected Set<Node> findAffectedRegion(QueueReader<Node> removedEdges, Map<SparkField, List<FieldRefNode>> fieldRefs) {
+    final Set<Node> region = new HashSet<Node>();
+    final Deque<Node> worklist = new ArrayDeque<Node>();
+    while (true) {
+      while (removedEdges.hasNext()) {
+        removedEdges.next();
+        Node tgt = removedEdges.next();
+        if (tgt instanceof FieldRefNode) {
+          addFieldsOfBase((FieldRefNode) tgt, region, worklist);
+        } else if (region.add(tgt)) {
+          worklist.add(tgt);
+        }
+      }
+      if (worklist.isEmpty()) {
+        break;
+      }
+      Node n = worklist.removeFirst();
+      if (n instanceof VarNode) {
+        VarNode v = (VarNode) n;
+        for (Node tgt : pag.simpleLookup(v)) {
+          if (region.add(tgt)) {
+            worklist.add(tgt);
+          }
+        }
+        for (Node tgt : pag.storeLookup(v)) {
+          addFieldsOfBase((FieldRefNode) tgt, region, worklist);
+        }
+        for (FieldRefNode fr : v.getAllFieldRefs()) {
+          for (Node tgt : pag.loadLookup(fr)) {
+            if (region.add(tgt)) {
+              worklist.add(tgt);
+            }
+          }
+          if (pag.storeInvLookup(fr).length > 0) {
+            addFieldsOfBase(fr, region, worklist);
+          }
+        }
+        Object variable = v.getVariable();
+        if (variable instanceof Local) {
+          for (Edge e : ofcg.ofcgb().retractReceiver((Local) variable)) {
+            pag.removeCallTarget(e);
+          }
+        }
+      } else if (n instanceof AllocDotField) {
+        AllocDotField adf = (AllocDotField) n;
+        List<FieldRefNode> l = fieldRefs.get(adf.getField());
+        if (l == null) {
+          continue;
+        }
+        for (FieldRefNode fr : l) {
+          Node[] loadTargets = pag.loadLookup(fr);
+          if (loadTargets.length > 0 && fr.getBase().getP2Set().contains(adf.getBase())) {
+            for (Node tgt : loadTargets) {
+              if (region.add(tgt)) {
+                worklist.add(tgt);
+              }
+            }
+          }
+        }
+      }
+    }
+    return region;
+  }
+
+  private void addFieldsOfBase(FieldRefNode fr, final Set<Node> region, final Deque<Node> worklist) {
+    final SparkField field = fr.getField();
+    fr.getBase().getP2Set().forall(new P2SetVisitor() {
+      @Override
+      public void visit(Node n) {
+        AllocDotField adf = ((AllocNode) n).dot(field);
+        if (adf != null && region.add(adf)) {
+          worklist.add(adf);
+        }
+      }
+    });
+  }
+
+  /** Adds to v everything that its predecessors outside the worklist already point to. */
+  private boolean pull(VarNode v) {
+    final PointsToSetInternal p2set = v.makeP2Set();
+    for (Node src : pag.allocInvLookup(v)) {
+      p2set.add(src);
+    }
+    for (Node src : pag.simpleInvLookup(v)) {
+      p2set.addAll(src.getP2Set(), null);
+    }
+    for (Node src : pag.loadInvLookup(v)) {
+      final SparkField field = ((FieldRefNode) src).getField();
+      ((FieldRefNode) src).getBase().getP2Set().forall(new P2SetVisitor() {
+        @Override
+        public void visit(Node n) {
+          AllocDotField adf = ((AllocNode) n).dot(field);
+          if (adf != null) {
+            p2set.addAll(adf.getP2Set(), null);
+          }
+        }
+      });
+    }
+    return !p2set.isEmpty();
+  }
+
+  /** Adds to adf everything that is stored into it from variables outside the worklist. */
+  private void pullStores(AllocDotField adf, Map<SparkField, List<FieldRefNode>> fieldRefs) {
+    PointsToSetInternal p2set = adf.makeP2Set();
+    List<FieldRefNode> l = fieldRefs.get(adf.getField());
+    if (l == null) {
+      return;
+    }
+    for (FieldRefNode fr : l) {
+      Node[] storeSources = pag.storeInvLookup(fr);
+      if (storeSources.length > 0 && fr.getBase().getP2Set().contains(adf.getBase())) {
+        for (Node src : storeSources) {
+          p2set.addAll(src.getP2Set(), null);
+        }
+      }
+    }
+  }
+
+  private void snapshot() {
+    sceneState = Scene.v().getState();
+    bodies.clear();
+    modificationCounts.clear();
+    for (SootMethod m : G.v().MethodPAG_methodToPag.keySet()) {
+      if (m.hasActiveBody()) {
+        Body b = m.getActiveBody();
+        bodies.put(m, b);
+        modificationCounts.put(m, b.getModificationCount());
+      }
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package soot.jimple.spark.solver;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.FastHierarchy;
+import soot.G;
+import soot.jimple.spark.internal.TypeManager;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.DoublePointsToSet;
+import soot.jimple.spark.sets.P2SetFactory;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+/**
+ * Propagates points-to sets along the pointer assignment graph like {@link PropWorklist}, but propagates along simple
+ * assignment edges on multiple threads. It computes the same points-to sets as {@link PropWorklist}.
+ *
+ * <p>
+ * The solver works in rounds. Each round first computes the closure of the pending points-to information over the simple
+ * edges in waves. Within a wave, the new points-to information of every target node is pulled from its sources in the
+ * current wave, so each points-to set is only written by one thread and only read by the same thread or after the wave
+ * has finished. Afterwards, all nodes whose points-to sets changed are handled sequentially for everything but simple
+ * edges, i.e. field stores and loads and the on-the-fly call graph, which may change the pointer assignment graph.
+ * </p>
+ *
+ * <p>
+ * Points-to set implementations that share state between sets (<code>heintze</code> and <code>sharedlist</code>) are not
+ * safe for concurrent use; with these, the waves are processed on a single thread.
+ * </p>
+ *
+ * <p>
+ * The type masks are brought up to date before propagation starts and before each wave, so all threads of a wave read the
+ * same masks. If the type masks disagree with the cast checks, see {@link TypeManager#masksDisagreeWithCasts()}, the
+ * points-to sets would depend on the order of propagation. This is the usual case in whole-program mode, where native
+ * methods and reflection create allocation nodes of any subtype. The solver then first adds these nodes to all type masks
+ * with {@link TypeManager#makeMasksAgreeWithCasts()}, so its points-to sets are the same for every order of propagation.
+ * They contain the sets {@link PropWorklist} computes, and may additionally contain allocation nodes of any subtype in
+ * variables whose type has subtypes, which {@link PropWorklist} only keeps there if they arrive on their own rather than
+ * through a type mask.
+ * </p>
+ */
+public class PropParallel extends PropWorklist {
+  private static final Logger logger = LoggerFactory.getLogger(PropParallel.class);
+
+  /**
+   * Waves with fewer target nodes than this are not worth distributing over threads. Tests lower it to run small programs on
+   * the pool.
+   */
+  static int minParallelTargets = 64;
+
+  protected final int threadNum;
+
+  /**
+   * Points-to information that has been flushed from the new set of a node before it was propagated along the simple edges
+   * of that node.
+   */
+  protected final Map<VarNode, PointsToSetInternal> pendingSimple = new HashMap<VarNode, PointsToSetInternal>();
+
+  /**
+   * Creates the sets in {@link #pendingSimple}. It is looked up here because the worker threads may not see the
+   * {@link G} instance of the thread that runs Spark.
+   */
+  protected final P2SetFactory deltaSetFactory;
+
+  public PropParallel(PAG pag) {
+    super(pag);
+    this.handleSimpleEdges = false;
+    this.threadNum = isThreadSafe(pag.getOpts()) ? Options.v().getNumThreads() : 1;
+    this.deltaSetFactory
+        = pag.getOpts().set_impl() == SparkOptions.set_impl_double ? G.v().newSetFactory : pag.getSetFactory();
+  }
+
+  /**
+   * Checks whether the points-to sets selected by the given options can be modified concurrently, as long as every set is
+   * only accessed by one thread.
+   */
+  protected static boolean isThreadSafe(SparkOptions opts) {
+    switch (opts.set_impl()) {
+      case SparkOptions.set_impl_hash:
+      case SparkOptions.set_impl_hybrid:
+      case SparkOptions.set_impl_array:
+      case SparkOptions.set_impl_bit:
+      case SparkOptions.set_impl_offheap:
+        return true;
+      case SparkOptions.set_impl_double:
+        return opts.double_set_old() != SparkOptions.double_set_old_heintze
+            && opts.double_set_old() != SparkOptions.double_set_old_sharedlist
+            && opts.double_set_new() != SparkOptions.double_set_new_heintze
+            && opts.double_set_new() != SparkOptions.double_set_new_sharedlist;
+      default:
+        return false;
+    }
+  }
+
+  /** Actually does the propagation. */
+  @Override
+  public void propagate() {
+    TypeManager typeManager = pag.getTypeManager();
+    if (typeManager.masksDisagreeWithCasts()) {
+      if (pag.getOpts().verbose()) {
+        logger.debug("[Spark] Adding allocation nodes of any subtype to all type masks");
+      }
+      typeManager.makeMasksAgreeWithCasts();
+    }
+
+    ofcg = pag.getOnFlyCallGraph();
+    new TopoSorter(pag, false).sort();
+    for (AllocNode object : pag.allocSources()) {
+      handleAllocNode(object);
+    }
+
+    final Supplier<FastHierarchy> hierarchy = typeManager.getFastHierarchySupplier();
+    boolean verbose = pag.getOpts().verbose();
+    ExecutorService executor = threadNum > 1 ? Executors.newFixedThreadPool(threadNum) : null;
+    try {
+      do {
+        if (verbose) {
+          logger.debug("Worklist has " + varNodeWorkList.size() + " nodes.");
+        }
+        while (!varNodeWorkList.isEmpty()) {
+          if (hierarchy != null) {
+            // The worker threads may not see the G instance of this thread, so they get the current hierarchy
+            final FastHierarchy fh = hierarchy.get();
+            typeManager.setFastHierarchy(() -> fh);
+          }
+          Set<VarNode> changed = propagateSimpleEdges(executor);
+          typeManager.setFastHierarchy(hierarchy);
+          for (VarNode src : changed) {
+            if (varNodeWorkList.contains(src)) {
+              // The new set of src was extended since the simple edges were handled and is about to be flushed
+              pendingSimple(src).addAll(src.getP2Set().getNewSet(), null);
+            }
+            handleVarNode(src);
+          }
+        }
+        if (verbose) {
+          logger.debug("Now handling field references");
+        }
+        handleFieldRefs();
+      } while (!varNodeWorkList.isEmpty());
+    } finally {
+      typeManager.setFastHierarchy(hierarchy);
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Propagates the pending points-to information of all nodes on the worklist along simple edges until nothing changes
+   * anymore. Empties the worklist.
+   *
+   * @return all nodes whose points-to set has new elements that still need to be handled by
+   *         {@link PropWorklist#handleVarNode(VarNode)}, in the order of the worklist
+   */
+  protected Set<VarNode> propagateSimpleEdges(ExecutorService executor) {
+    Set<VarNode> changed = new TreeSet<VarNode>(varNodeWorkList);
+    Map<VarNode, PointsToSetInternal> wave = new HashMap<VarNode, PointsToSetInternal>();
+    for (VarNode src : varNodeWorkList) {
+      PointsToSetInternal delta = pendingSimple.remove(src);
+      if (delta == null) {
+        delta = newDeltaSet(src);
+      }
+      delta.addAll(src.getP2Set().getNewSet(), null);
+      if (!delta.isEmpty()) {
+        wave.put(src, delta);
+      }
+    }
+    varNodeWorkList.clear();
+
+    // Allocation nodes created since the last wave have to be added to the type masks before they are read concurrently
+    TypeManager typeManager = pag.getTypeManager();
+    if (typeManager.getFastHierarchy() != null) {
+      typeManager.updateTypeMasks();
+    }
+
+    while (!wave.isEmpty()) {
+      Map<VarNode, List<PointsToSetInternal>> targets = new LinkedHashMap<VarNode, List<PointsToSetInternal>>();
+      for (Map.Entry<VarNode, PointsToSetInternal> e : wave.entrySet()) {
+        for (Node element : pag.simpleLookup(e.getKey())) {
+          VarNode target = (VarNode) element.getReplacement();
+          List<PointsToSetInternal> sources = targets.get(target);
+          if (sources == null) {
+            targets.put(target, sources = new ArrayList<PointsToSetInternal>());
+          }
+          sources.add(e.getValue());
+        }
+      }
+      wave = pullAll(new ArrayList<Map.Entry<VarNode, List<PointsToSetInternal>>>(targets.entrySet()), executor);
+      changed.addAll(wave.keySet());
+    }
+    return changed;
+  }
+
+  /**
+   * Pulls the given deltas into their targets, on multiple threads if worthwhile.
+   *
+   * @return the new elements of all targets that changed
+   */
+  private Map<VarNode, PointsToSetInternal> pullAll(final List<Map.Entry<VarNode, List<PointsToSetInternal>>> targets,
+      ExecutorService executor) {
+    if (executor == null || targets.size() < minParallelTargets) {
+      return pull(targets);
+    }
+    for (Map.Entry<VarNode, List<PointsToSetInternal>> e : targets) {
+      // a new double set reads its factories from G, which the worker threads may not see
+      e.getKey().makeP2Set();
+    }
+    int chunkSize = Math.max(1, (targets.size() + threadNum * 4 - 1) / (threadNum * 4));
+    List<Callable<Map<VarNode, PointsToSetInternal>>> tasks = new ArrayList<Callable<Map<VarNode, PointsToSetInternal>>>();
+    for (int i = 0; i < targets.size(); i += chunkSize) {
+      final List<Map.Entry<VarNode, List<PointsToSetInternal>>> chunk
+          = targets.subList(i, Math.min(i + chunkSize, targets.size()));
+      tasks.add(new Callable<Map<VarNode, PointsToSetInternal>>() {
+        @Override
+        public Map<VarNode, PointsToSetInternal> call() {
+          return pull(chunk);
+        }
+      });
+    }
+    Map<VarNode, PointsToSetInternal> ret = new HashMap<VarNode, PointsToSetInternal>();
+    try {
+      for (Future<Map<VarNode, PointsToSetInternal>> f : executor.invokeAll(tasks)) {
+        ret.putAll(f.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    return ret;
+  }
+
+  private Map<VarNode, PointsToSetInternal> pull(List<Map.Entry<VarNode, List<PointsToSetInternal>>> targets) {
+    Map<VarNode, PointsToSetInternal> ret = new HashMap<VarNode, PointsToSetInternal>();
+    for (Map.Entry<VarNode, List<PointsToSetInternal>> e : targets) {
+      VarNode target = e.getKey();
+      PointsToSetInternal p2set = target.makeP2Set();
+      PointsToSetInternal exclude = p2set instanceof DoublePointsToSet ? ((DoublePointsToSet) p2set).getOldSet() : p2set;
+      PointsToSetInternal delta = newDeltaSet(target);
+      for (PointsToSetInternal source : e.getValue()) {
+        delta.addAll(source, exclude);
+      }
+      if (!delta.isEmpty() && p2set.addAll(delta, null)) {
+        ret.put(target, delta);
+      }
+    }
+    return ret;
+  }
+
+  private PointsToSetInternal pendingSimple(VarNode node) {
+    PointsToSetInternal ret = pendingSimple.get(node);
+    if (ret == null) {
+      pendingSimple.put(node, ret = newDeltaSet(node));
+    }
+    return ret;
+  }
+
+  private PointsToSetInternal newDeltaSet(VarNode node) {
+    return deltaSetFactory.newSet(node.getType(), pag);
+  }
+}
@@ -57,6 +57,11 @@ import soot.util.queue.QueueReader;
 public class PropWorklist extends Propagator {
   private static final Logger logger = LoggerFactory.getLogger(PropWorklist.class);
   protected final Set<VarNode> varNodeWorkList = new TreeSet<VarNode>();
+  /**
+   * Whether {@link #handleVarNode(VarNode)} propagates along simple assignment edges. Subclasses that handle these edges
+   * separately can switch this off.
+   */
+  protected boolean handleSimpleEdges = true;
 
   public PropWorklist(PAG pag) {
     this.pag = pag;
@@ -78,45 +83,55 @@ public class PropWorklist extends Propagator {
       while (!varNodeWorkList.isEmpty()) {
         VarNode src = varNodeWorkList.iterator().next();
         varNodeWorkList.remove(src);
+        pag.checkHeapBudget();
         handleVarNode(src);
       }
       if (verbose) {
         logger.debug("Now handling field references");
       }
-      for (Object object : pag.storeSources()) {
-        final VarNode src = (VarNode) object;
-        Node[] targets = pag.storeLookup(src);
-        for (Node element0 : targets) {
-          final FieldRefNode target = (FieldRefNode) element0;
-          target.getBase().makeP2Set().forall(new P2SetVisitor() {
-            public final void visit(Node n) {
-              AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n, target.getField());
-              if (ofcg != null) {
-                ofcg.updatedFieldRef(nDotF, src.getP2Set());
-              }
-              nDotF.makeP2Set().addAll(src.getP2Set(), null);
+      handleFieldRefs();
+    } while (!varNodeWorkList.isEmpty());
+  }
+
+  /**
+   * Propagates points-to information along all field stores and loads. Load targets whose points-to sets change are added to
+   * the worklist.
+   */
+  protected void handleFieldRefs() {
+    for (Object object : pag.storeSources()) {
+      final VarNode src = (VarNode) object;
+      pag.checkHeapBudget();
+      Node[] targets = pag.storeLookup(src);
+      for (Node element0 : targets) {
+        final FieldRefNode target = (FieldRefNode) element0;
+        target.getBase().makeP2Set().forall(new P2SetVisitor() {
+          public final void visit(Node n) {
+            AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n, target.getField());
+            if (ofcg != null) {
+              ofcg.updatedFieldRef(nDotF, src.getP2Set());
             }
-          });
-        }
-      }
-      HashSet<Object[]> edgesToPropagate = new HashSet<Object[]>();
-      for (Object object : pag.loadSources()) {
-        handleFieldRefNode((FieldRefNode) object, edgesToPropagate);
-      }
-      Set<PointsToSetInternal> nodesToFlush = Collections.newSetFromMap(new IdentityHashMap<PointsToSetInternal, Boolean>());
-      for (Object[] pair : edgesToPropagate) {
-        PointsToSetInternal nDotF = (PointsToSetInternal) pair[0];
-        PointsToSetInternal newP2Set = nDotF.getNewSet();
-        VarNode loadTarget = (VarNode) pair[1];
-        if (loadTarget.makeP2Set().addAll(newP2Set, null)) {
-          varNodeWorkList.add(loadTarget);
-        }
-        nodesToFlush.add(nDotF);
+            nDotF.makeP2Set().addAll(src.getP2Set(), null);
+          }
+        });
       }
-      for (PointsToSetInternal nDotF : nodesToFlush) {
-        nDotF.flushNew();
+    }
+    HashSet<Object[]> edgesToPropagate = new HashSet<Object[]>();
+    for (Object object : pag.loadSources()) {
+      handleFieldRefNode((FieldRefNode) object, edgesToPropagate);
+    }
+    Set<PointsToSetInternal> nodesToFlush = Collections.newSetFromMap(new IdentityHashMap<PointsToSetInternal, Boolean>());
+    for (Object[] pair : edgesToPropagate) {
+      PointsToSetInternal nDotF = (PointsToSetInternal) pair[0];
+      PointsToSetInternal newP2Set = nDotF.getNewSet();
+      VarNode loadTarget = (VarNode) pair[1];
+      if (loadTarget.makeP2Set().addAll(newP2Set, null)) {
+        varNodeWorkList.add(loadTarget);
       }
-    } while (!varNodeWorkList.isEmpty());
+      nodesToFlush.add(nDotF);
+    }
+    for (PointsToSetInternal nDotF : nodesToFlush) {
+      nDotF.flushNew();
+    }
   }
 
   /* End of public methods. */
@@ -227,14 +242,16 @@ public class PropWorklist extends Propagator {
       }
     }
 
-    Node[] simpleTargets = pag.simpleLookup(src);
-    for (Node element : simpleTargets) {
-      if (element.makeP2Set().addAll(newP2Set, null)) {
-        varNodeWorkList.add((VarNode) element);
-        if (element == src) {
-          flush = false;
+    if (handleSimpleEdges) {
+      Node[] simpleTargets = pag.simpleLookup(src);
+      for (Node element : simpleTargets) {
+        if (element.makeP2Set().addAll(newP2Set, null)) {
+          varNodeWorkList.add((VarNode) element);
+          if (element == src) {
+            flush = false;
+          }
+          ret = true;
         }
-        ret = true;
       }
     }
 
@@ -30,10 +30,11 @@ import soot.Body;
 import soot.BodyTransformer;
 import soot.G;
 import soot.Singletons;
+import soot.Unit;
 import soot.jimple.Stmt;
 import soot.tagkit.LinkTag;
+import soot.toolkits.graph.CHKDominatorsFinder;
 import soot.toolkits.graph.ExceptionalUnitGraph;
-import soot.toolkits.graph.MHGDominatorsFinder;
 
 /**
  * A body transformer that records avail expression information in tags. - both pessimistic and optimistic options
@@ -48,7 +49,7 @@ public class DominatorsTagger extends BodyTransformer {
 
   protected void internalTransform(Body b, String phaseName, Map opts) {
 
-    MHGDominatorsFinder analysis = new MHGDominatorsFinder(new ExceptionalUnitGraph(b));
+    CHKDominatorsFinder<Unit> analysis = new CHKDominatorsFinder<Unit>(new ExceptionalUnitGraph(b));
     Iterator it = b.getUnits().iterator();
     while (it.hasNext()) {
       Stmt s = (Stmt) it.next();
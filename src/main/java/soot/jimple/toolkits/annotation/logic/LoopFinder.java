@@ -35,9 +35,9 @@ import soot.Body;
 import soot.BodyTransformer;
 import soot.Unit;
 import soot.jimple.Stmt;
-import soot.toolkits.graph.ExceptionalUnitGraph;
-import soot.toolkits.graph.MHGDominatorsFinder;
+import soot.toolkits.graph.DominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.BodyAnalysisCache;
 
 public class LoopFinder extends BodyTransformer {
 
@@ -55,7 +55,7 @@ public class LoopFinder extends BodyTransformer {
     if (loops != null) {
       return loops;
     }
-    return getLoops(new ExceptionalUnitGraph(b));
+    return getLoops(BodyAnalysisCache.v().getExceptionalUnitGraph(b));
   }
 
   public Set<Loop> getLoops(UnitGraph g) {
@@ -63,16 +63,15 @@ public class LoopFinder extends BodyTransformer {
       return loops;
     }
 
-    MHGDominatorsFinder<Unit> a = new MHGDominatorsFinder<Unit>(g);
+    DominatorsFinder<Unit> a = BodyAnalysisCache.v().getDominatorsFinder(g);
     Map<Stmt, List<Stmt>> loops = new HashMap<Stmt, List<Stmt>>();
 
     for (Unit u : g.getBody().getUnits()) {
       List<Unit> succs = g.getSuccsOf(u);
-      List<Unit> dominaters = a.getDominators(u);
       List<Stmt> headers = new ArrayList<Stmt>();
 
       for (Unit succ : succs) {
-        if (dominaters.contains(succ)) {
+        if (a.isDominatedBy(u, succ)) {
           // header succeeds and dominates s, we have a loop
           headers.add((Stmt) succ);
         }
@@ -38,6 +38,7 @@ import soot.jimple.NullConstant;
 import soot.jimple.Stmt;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.util.Chain;
 
 public class NullCheckEliminator extends BodyTransformer {
@@ -66,7 +67,7 @@ public class NullCheckEliminator extends BodyTransformer {
     do {
       changed = false;
 
-      NullnessAnalysis analysis = analysisFactory.newAnalysis(new ExceptionalUnitGraph(body));
+      NullnessAnalysis analysis = analysisFactory.newAnalysis(BodyAnalysisCache.v().getExceptionalUnitGraph(body));
 
       Chain<Unit> units = body.getUnits();
       Stmt s;
@@ -115,4 +116,8 @@ public class NullCheckEliminator extends BodyTransformer {
     } while (changed);
   }
 
-}
\ No newline at end of file
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
+}
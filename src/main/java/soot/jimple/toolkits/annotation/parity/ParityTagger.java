@@ -43,8 +43,8 @@ import soot.tagkit.ColorTag;
 import soot.tagkit.KeyTag;
 import soot.tagkit.StringTag;
 import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.scalar.BitVectorLiveLocals;
 import soot.toolkits.scalar.LiveLocals;
-import soot.toolkits.scalar.SimpleLiveLocals;
 
 /**
  * A body transformer that records parity analysis information in tags.
@@ -67,7 +67,7 @@ public class ParityTagger extends BodyTransformer {
     ParityAnalysis a;
 
     if (isInteractive) {
-      LiveLocals sll = new SimpleLiveLocals(new BriefUnitGraph(b));
+      LiveLocals sll = new BitVectorLiveLocals(new BriefUnitGraph(b));
       Options.v().set_interactive_mode(isInteractive);
 
       a = new ParityAnalysis(new BriefUnitGraph(b), sll);
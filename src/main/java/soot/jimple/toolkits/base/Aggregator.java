@@ -52,6 +52,7 @@ import soot.jimple.StmtBody;
 import soot.options.Options;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.PseudoTopologicalOrderer;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.toolkits.scalar.LocalDefs;
 import soot.toolkits.scalar.LocalUses;
 import soot.toolkits.scalar.UnitValueBoxPair;
@@ -122,13 +123,19 @@ public class Aggregator extends BodyTransformer {
 
   }
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
+
   private static boolean internalAggregate(StmtBody body, Map<ValueBox, Zone> boxToZone, boolean onlyStackVars) {
     boolean hadAggregation = false;
     Chain<Unit> units = body.getUnits();
 
-    ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body);
-    LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(graph);
-    LocalUses localUses = LocalUses.Factory.newLocalUses(body, localDefs);
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body);
+    LocalDefs localDefs = cache.getLocalDefs(graph, false);
+    LocalUses localUses = cache.getLocalUses(graph, false);
 
     List<Unit> unitList = new PseudoTopologicalOrderer<Unit>().newList(graph, false);
     for (Unit u : unitList) {
@@ -67,5 +67,12 @@ public class CallGraphPack extends RadioScenePack {
         }
       }
     }
+
+    if (options.compact()) {
+      CallGraph cg = Scene.v().getCallGraph();
+      if (!(cg instanceof CompactCallGraph) && CompactCallGraph.isCompactable(cg)) {
+        Scene.v().setCallGraph(new CompactCallGraph(cg));
+      }
+    }
   }
 }
@@ -0,0 +1,589 @@
+package soot.jimple.toolkits.callgraph;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+/**
+ * A call graph that stores its edges in compressed sparse row (CSR) arrays. Every edge has an integer id, and the source
+ * method, target method, source unit and kind of each edge are kept in primitive arrays indexed by that id. For each of the
+ * three kinds of queries (edges out of a unit, edges out of a method, edges into a method), the ids of the matching edges
+ * are stored consecutively in one int array, and a second int array holds the start offset of each row. Method rows are
+ * indexed by the numbers assigned by {@link soot.Scene#getMethodNumberer()}, unit rows by an index local to the graph.
+ *
+ * <p>
+ * A compact call graph is created from a fully built {@link CallGraph} and answers all queries with equal edges in the same
+ * order. It keeps neither the {@link Edge} objects nor the hash maps and the edge queue of the original graph. Queries
+ * create the {@link Edge} objects they return on demand, so edges returned by different queries are equal, but not
+ * necessarily identical. Listeners only see the edges that are present when the graph is compacted, not the ones that had
+ * been removed before. The first modification converts the graph back to the regular representation, so it can be used
+ * wherever a {@link CallGraph} is expected. Only context-insensitive call graphs can be compacted, see
+ * {@link #isCompactable(CallGraph)}.
+ * </p>
+ */
+public class CompactCallGraph extends CallGraph {
+  private static final int[] EMPTY_ROW = new int[0];
+
+  protected boolean frozen = true;
+
+  protected EdgeTable edgeTable;
+  protected MethodOrMethodContext[] sourceMethodArray;
+  protected BitSet targetMethodKeys;
+
+  protected int[] unitOffsets;
+  protected int[] unitEdges;
+  protected int[] srcOffsets;
+  protected int[] srcEdges;
+  protected int[] tgtOffsets;
+  protected int[] tgtEdges;
+
+  /**
+   * Creates a compact copy of the given call graph.
+   *
+   * @param cg
+   *          the call graph to compact, which must satisfy {@link #isCompactable(CallGraph)}. The given graph is not
+   *          modified.
+   */
+  public CompactCallGraph(CallGraph cg) {
+    if (!isCompactable(cg)) {
+      throw new IllegalArgumentException("Only context-insensitive call graphs over numbered methods can be compacted");
+    }
+
+    // Assign ids to the edges, and local indices to the source units and kinds
+    final int size = cg.size();
+    Map<Edge, Integer> ids = new IdentityHashMap<Edge, Integer>(size);
+    Map<Unit, Integer> unitIndices = new IdentityHashMap<Unit, Integer>();
+    List<Unit> unitList = new ArrayList<Unit>();
+    List<Kind> kindList = new ArrayList<Kind>();
+    int maxMethod = 0;
+    for (Edge e : cg) {
+      ids.put(e, ids.size());
+      maxMethod = Math.max(maxMethod, Math.max(e.src().getNumber(), e.tgt().getNumber()));
+      if (!unitIndices.containsKey(e.srcUnit())) {
+        unitIndices.put(e.srcUnit(), unitList.size());
+        unitList.add(e.srcUnit());
+      }
+      if (!kindList.contains(e.kind())) {
+        kindList.add(e.kind());
+      }
+    }
+
+    // Sort the units by their identity hash codes, so that the row of a unit can be found by binary search
+    long[] unitKeys = new long[unitList.size()];
+    for (int i = 0; i < unitKeys.length; i++) {
+      unitKeys[i] = ((long) System.identityHashCode(unitList.get(i)) << 32) | i;
+    }
+    Arrays.sort(unitKeys);
+    Unit[] units = new Unit[unitKeys.length];
+    int[] unitHashes = new int[unitKeys.length];
+    for (int row = 0; row < unitKeys.length; row++) {
+      Unit u = unitList.get((int) unitKeys[row]);
+      units[row] = u;
+      unitHashes[row] = (int) (unitKeys[row] >> 32);
+      unitIndices.put(u, row);
+    }
+
+    EdgeTable table = new EdgeTable(size, new SootMethod[maxMethod + 1], units, unitHashes,
+        kindList.toArray(new Kind[kindList.size()]));
+    for (Edge e : cg) {
+      table.set(ids.get(e), e, unitIndices.get(e.srcUnit()), kindList.indexOf(e.kind()));
+    }
+    edgeTable = table;
+
+    sourceMethodArray = cg.srcMethodToEdge.keySet().toArray(new MethodOrMethodContext[0]);
+    targetMethodKeys = new BitSet(maxMethod + 1);
+    for (MethodOrMethodContext m : cg.tgtToEdge.keySet()) {
+      targetMethodKeys.set(m.method().getNumber());
+    }
+
+    // Count the edges in each row
+    unitOffsets = new int[units.length + 1];
+    srcOffsets = new int[maxMethod + 2];
+    tgtOffsets = new int[maxMethod + 2];
+    for (int id = 0; id < size; id++) {
+      unitOffsets[table.unit[id] + 1]++;
+      srcOffsets[table.src[id] + 1]++;
+      tgtOffsets[table.tgt[id] + 1]++;
+    }
+    prefixSum(unitOffsets);
+    prefixSum(srcOffsets);
+    prefixSum(tgtOffsets);
+
+    // Fill the rows in the order in which the original graph returns the edges
+    unitEdges = new int[size];
+    for (int row = 0; row < units.length; row++) {
+      int pos = unitOffsets[row];
+      for (Edge e = cg.srcUnitToEdge.get(units[row]); pos < unitOffsets[row + 1]; e = e.nextByUnit()) {
+        unitEdges[pos++] = ids.get(e);
+      }
+    }
+    srcEdges = new int[size];
+    for (MethodOrMethodContext m : sourceMethodArray) {
+      int pos = srcOffsets[m.method().getNumber()];
+      for (Iterator<Edge> it = cg.edgesOutOf(m); it.hasNext();) {
+        srcEdges[pos++] = ids.get(it.next());
+      }
+    }
+    tgtEdges = new int[size];
+    for (MethodOrMethodContext m : cg.tgtToEdge.keySet()) {
+      int pos = tgtOffsets[m.method().getNumber()];
+      for (Iterator<Edge> it = cg.edgesInto(m); it.hasNext();) {
+        tgtEdges[pos++] = ids.get(it.next());
+      }
+    }
+
+    // The edge set, the maps and the queue of the regular representation are only created when the graph is thawed
+    edges = Collections.emptySet();
+    srcMethodToEdge = Collections.emptyMap();
+    srcUnitToEdge = Collections.emptyMap();
+    tgtToEdge = Collections.emptyMap();
+    stream = null;
+    reader = null;
+  }
+
+  /**
+   * Checks whether the given call graph can be compacted, i.e., whether all its edges connect methods without context that
+   * have been assigned a number by the Scene.
+   */
+  public static boolean isCompactable(CallGraph cg) {
+    for (Edge e : cg) {
+      if (!(e.getSrc() instanceof SootMethod) || !(e.getTgt() instanceof SootMethod)) {
+        return false;
+      }
+      if (e.src().getNumber() <= 0 || e.tgt().getNumber() <= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void prefixSum(int[] offsets) {
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+  }
+
+  private static int methodRow(MethodOrMethodContext m, int[] offsets) {
+    if (!(m instanceof SootMethod)) {
+      return -1;
+    }
+    int n = ((SootMethod) m).getNumber();
+    return n > 0 && n < offsets.length - 1 ? n : -1;
+  }
+
+  private Iterator<Edge> rowIterator(int[] offsets, int[] ids, int row) {
+    if (row < 0) {
+      return new RowIterator(edgeTable, EMPTY_ROW, 0, 0);
+    }
+    return new RowIterator(edgeTable, ids, offsets[row], offsets[row + 1]);
+  }
+
+  /**
+   * Converts this call graph back into the regular representation so that it can be modified.
+   */
+  protected void thaw() {
+    if (!frozen) {
+      return;
+    }
+    frozen = false;
+
+    final EdgeTable table = edgeTable;
+    final int size = table.size();
+    Edge[] edgeArray = new Edge[size];
+    for (int id = 0; id < size; id++) {
+      edgeArray[id] = table.get(id);
+    }
+
+    edges = new LinkedHashSet<Edge>(Arrays.asList(edgeArray));
+    stream = new ChunkedQueue<Edge>();
+    reader = stream.reader();
+    for (Edge e : edgeArray) {
+      stream.add(e);
+    }
+
+    // Link the edges of each row in the order of the row, each row starting right after the dummy edge
+    srcMethodToEdge = new LinkedHashMap<MethodOrMethodContext, Edge>();
+    for (MethodOrMethodContext m : sourceMethodArray) {
+      int row = methodRow(m, srcOffsets);
+      Edge prev = dummy;
+      for (int i = srcOffsets[row]; i < srcOffsets[row + 1]; i++) {
+        edgeArray[srcEdges[i]].insertAfterBySrc(prev);
+        prev = edgeArray[srcEdges[i]];
+      }
+      srcMethodToEdge.put(m, srcOffsets[row] == srcOffsets[row + 1] ? null : edgeArray[srcEdges[srcOffsets[row]]]);
+    }
+    srcUnitToEdge = new LinkedHashMap<Unit, Edge>();
+    for (int row = 0; row < unitOffsets.length - 1; row++) {
+      Edge prev = dummy;
+      for (int i = unitOffsets[row]; i < unitOffsets[row + 1]; i++) {
+        edgeArray[unitEdges[i]].insertAfterByUnit(prev);
+        prev = edgeArray[unitEdges[i]];
+      }
+      srcUnitToEdge.put(table.units[row], edgeArray[unitEdges[unitOffsets[row]]]);
+    }
+    tgtToEdge = new LinkedHashMap<MethodOrMethodContext, Edge>();
+    for (int row = targetMethodKeys.nextSetBit(0); row >= 0; row = targetMethodKeys.nextSetBit(row + 1)) {
+      Edge prev = dummy;
+      for (int i = tgtOffsets[row]; i < tgtOffsets[row + 1]; i++) {
+        edgeArray[tgtEdges[i]].insertAfterByTgt(prev);
+        prev = edgeArray[tgtEdges[i]];
+      }
+      tgtToEdge.put(table.methods[row], tgtOffsets[row] == tgtOffsets[row + 1] ? null : edgeArray[tgtEdges[tgtOffsets[row]]]);
+    }
+
+    edgeTable = null;
+    sourceMethodArray = null;
+    targetMethodKeys = null;
+    unitOffsets = unitEdges = null;
+    srcOffsets = srcEdges = null;
+    tgtOffsets = tgtEdges = null;
+  }
+
+  /** Returns true if this call graph still uses the compact representation. */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  @Override
+  public boolean addEdge(Edge e) {
+    thaw();
+    return super.addEdge(e);
+  }
+
+  @Override
+  public boolean removeAllEdgesOutOf(Unit u) {
+    thaw();
+    return super.removeAllEdgesOutOf(u);
+  }
+
+  @Override
+  public boolean swapEdgesOutOf(Stmt out, Stmt in) {
+    thaw();
+    return super.swapEdgesOutOf(out, in);
+  }
+
+  @Override
+  public boolean removeEdge(Edge e) {
+    thaw();
+    // Edges returned while the graph was frozen are only equal to the edges of the thawed graph, and removing an edge
+    // requires the instance that is linked into the graph
+    for (Iterator<Edge> it = super.edgesOutOf(e.getSrc()); it.hasNext();) {
+      Edge linked = it.next();
+      if (linked.equals(e)) {
+        return super.removeEdge(linked);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isEntryMethod(SootMethod method) {
+    if (!frozen) {
+      return super.isEntryMethod(method);
+    }
+    int row = methodRow(method, tgtOffsets);
+    return row < 0 || !targetMethodKeys.get(row);
+  }
+
+  @Override
+  public Edge findEdge(Unit u, SootMethod callee) {
+    if (!frozen) {
+      return super.findEdge(u, callee);
+    }
+    int row = edgeTable.unitRow(u);
+    if (row >= 0) {
+      for (int i = unitOffsets[row]; i < unitOffsets[row + 1]; i++) {
+        if (edgeTable.methods[edgeTable.tgt[unitEdges[i]]] == callee) {
+          return edgeTable.get(unitEdges[i]);
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Iterator<MethodOrMethodContext> sourceMethods() {
+    if (!frozen) {
+      return super.sourceMethods();
+    }
+    return Collections.unmodifiableList(Arrays.asList(sourceMethodArray)).iterator();
+  }
+
+  @Override
+  public Iterator<Edge> edgesOutOf(Unit u) {
+    if (!frozen) {
+      return super.edgesOutOf(u);
+    }
+    if (u == null) {
+      throw new RuntimeException();
+    }
+    int row = edgeTable.unitRow(u);
+    return rowIterator(unitOffsets, unitEdges, row);
+  }
+
+  @Override
+  public Iterator<Edge> edgesOutOf(MethodOrMethodContext m) {
+    if (!frozen) {
+      return super.edgesOutOf(m);
+    }
+    if (m == null) {
+      throw new RuntimeException();
+    }
+    int row = methodRow(m, srcOffsets);
+    return rowIterator(srcOffsets, srcEdges, row);
+  }
+
+  @Override
+  public Iterator<Edge> edgesInto(MethodOrMethodContext m) {
+    if (!frozen) {
+      return super.edgesInto(m);
+    }
+    if (m == null) {
+      throw new RuntimeException();
+    }
+    int row = methodRow(m, tgtOffsets);
+    return rowIterator(tgtOffsets, tgtEdges, row);
+  }
+
+  @Override
+  public QueueReader<Edge> listener() {
+    return frozen ? new EdgeReader(0) : super.listener();
+  }
+
+  @Override
+  public QueueReader<Edge> newListener() {
+    return frozen ? new EdgeReader(edgeTable.size()) : super.newListener();
+  }
+
+  @Override
+  public int size() {
+    return frozen ? edgeTable.size() : super.size();
+  }
+
+  @Override
+  public Iterator<Edge> iterator() {
+    if (!frozen) {
+      return super.iterator();
+    }
+    final EdgeTable table = edgeTable;
+    return new Iterator<Edge>() {
+      private int id = 0;
+
+      @Override
+      public boolean hasNext() {
+        return id < table.size();
+      }
+
+      @Override
+      public Edge next() {
+        if (id >= table.size()) {
+          throw new NoSuchElementException();
+        }
+        return table.get(id++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * The attributes of all edges, indexed by edge id. Methods are stored by their number, units and kinds by an index into
+   * a table local to the call graph. The units are sorted by their identity hash codes.
+   */
+  static class EdgeTable {
+    final int[] src;
+    final int[] tgt;
+    final int[] unit;
+    final byte[] kind;
+
+    final SootMethod[] methods;
+    final Unit[] units;
+    final int[] unitHashes;
+    final Kind[] kinds;
+
+    EdgeTable(int size, SootMethod[] methods, Unit[] units, int[] unitHashes, Kind[] kinds) {
+      this.src = new int[size];
+      this.tgt = new int[size];
+      this.unit = new int[size];
+      this.kind = new byte[size];
+      this.methods = methods;
+      this.units = units;
+      this.unitHashes = unitHashes;
+      this.kinds = kinds;
+    }
+
+    int size() {
+      return src.length;
+    }
+
+    void set(int id, Edge e, int unitRow, int kindIndex) {
+      src[id] = e.src().getNumber();
+      tgt[id] = e.tgt().getNumber();
+      unit[id] = unitRow;
+      kind[id] = (byte) kindIndex;
+      methods[src[id]] = e.src();
+      methods[tgt[id]] = e.tgt();
+    }
+
+    Edge get(int id) {
+      return new Edge(methods[src[id]], units[unit[id]], methods[tgt[id]], kinds[kind[id]]);
+    }
+
+    /**
+     * Returns the number of the row for the given unit, or -1 if no edge starts at the unit.
+     */
+    int unitRow(Unit u) {
+      int hash = System.identityHashCode(u);
+      int row = Arrays.binarySearch(unitHashes, hash);
+      if (row < 0) {
+        return -1;
+      }
+      while (row > 0 && unitHashes[row - 1] == hash) {
+        row--;
+      }
+      for (; row < units.length && unitHashes[row] == hash; row++) {
+        if (units[row] == u) {
+          return row;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Iterates over the edges whose ids are stored in a range of a CSR array. The iterator keeps working if the call graph is
+   * thawed while iterating, just like the iterators of the regular representation keep working when edges are removed.
+   */
+  static class RowIterator implements Iterator<Edge> {
+    private final EdgeTable table;
+    private final int[] ids;
+    private final int end;
+    private int position;
+
+    RowIterator(EdgeTable table, int[] ids, int start, int end) {
+      this.table = table;
+      this.ids = ids;
+      this.position = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return position < end;
+    }
+
+    @Override
+    public Edge next() {
+      if (position >= end) {
+        throw new NoSuchElementException();
+      }
+      return table.get(ids[position++]);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * A listener that reads the edges by id while the graph is frozen. Once the graph has been thawed, it continues on the
+   * queue of the regular representation, which starts with the edges in the order of their ids.
+   */
+  class EdgeReader extends QueueReader<Edge> {
+    private int position;
+    private QueueReader<Edge> thawed;
+
+    EdgeReader(int position) {
+      super(null, 0);
+      this.position = position;
+    }
+
+    private QueueReader<Edge> thawed() {
+      if (thawed == null && !frozen) {
+        thawed = CompactCallGraph.this.reader.clone();
+        for (int i = 0; i < position; i++) {
+          thawed.next();
+        }
+      }
+      return thawed;
+    }
+
+    @Override
+    public boolean hasNext() {
+      QueueReader<Edge> r = thawed();
+      return r == null ? position < edgeTable.size() : r.hasNext();
+    }
+
+    @Override
+    public Edge next() {
+      QueueReader<Edge> r = thawed();
+      if (r != null) {
+        return r.next();
+      }
+      if (position >= edgeTable.size()) {
+        throw new NoSuchElementException();
+      }
+      return edgeTable.get(position++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void remove(Edge o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueueReader<Edge> clone() {
+      EdgeReader clone = new EdgeReader(position);
+      clone.thawed = thawed == null ? null : thawed.clone();
+      return clone;
+    }
+  }
+}
@@ -276,6 +276,100 @@ public class OnFlyCallGraphBuilder {
     }
   }
 
+  /**
+   * Forgets everything this builder derived from the current body of m: its call sites, the static edges out of it and the
+   * receivers it registered. Afterwards, {@link #reprocessMethod(MethodOrMethodContext)} picks up the new body. The edges
+   * already in the call graph are left alone; removing them is up to the caller.
+   */
+  public void retractMethod(SootMethod m) {
+    if (!analyzedMethods.remove(m)) {
+      return;
+    }
+    List<Edge> staticEdges = new ArrayList<Edge>();
+    for (Iterator<Edge> it = cicg.edgesOutOf(m); it.hasNext();) {
+      staticEdges.add(it.next());
+    }
+    for (Edge e : staticEdges) {
+      cicg.removeEdge(e);
+    }
+    List<Local> receivers = methodToReceivers.get(m);
+    if (receivers != null) {
+      for (Local receiver : receivers) {
+        receiverToSites.put(receiver, null);
+      }
+      methodToReceivers.put(m, null);
+    }
+    List<Local> stringConstants = methodToStringConstants.get(m);
+    if (stringConstants != null) {
+      for (Local constant : stringConstants) {
+        stringConstToSites.put(constant, null);
+      }
+      methodToStringConstants.put(m, null);
+    }
+    for (Local base : new ArrayList<Local>(baseToInvokeSite.keySet())) {
+      for (InvokeCallSite ics : new ArrayList<InvokeCallSite>(baseToInvokeSite.get(base))) {
+        if (ics.container() == m) {
+          baseToInvokeSite.remove(base, ics);
+          reachingBaseTypes.remove(base);
+          Local argArray = ics.argArray();
+          if (argArray != null) {
+            invokeArgsToInvokeSite.remove(argArray);
+            invokeArgsToSize.remove(argArray);
+            reachingArgTypes.remove(argArray);
+          }
+        }
+      }
+    }
+    if (analysisKey == m) {
+      analysisKey = null;
+      nullnessCache = null;
+      arrayCache = null;
+    }
+  }
+
+  /**
+   * Finds the call sites in the current body of the given method again, after {@link #retractMethod(SootMethod)}.
+   */
+  public void reprocessMethod(MethodOrMethodContext momc) {
+    SootMethod m = momc.method();
+    if (appOnly && !m.getDeclaringClass().isApplicationClass()) {
+      return;
+    }
+    if (analyzedMethods.add(m)) {
+      processNewMethod(m);
+    }
+    processNewMethodContext(momc);
+  }
+
+  /**
+   * Removes the call edges that were found for the types reaching receiver from the call graph and returns them. They are
+   * found again when types are added for receiver with {@link #addType(Local, Context, Type, Context)}.
+   */
+  public List<Edge> retractReceiver(Local receiver) {
+    List<VirtualCallSite> sites = receiverToSites.get(receiver);
+    if (sites == null) {
+      return Collections.emptyList();
+    }
+    CallGraph cg = cm.callGraph();
+    List<Edge> ret = new ArrayList<Edge>();
+    for (VirtualCallSite site : sites) {
+      Set<Edge> staticEdges = new HashSet<Edge>();
+      for (Iterator<Edge> it = cicg.edgesOutOf(site.stmt()); it.hasNext();) {
+        staticEdges.add(it.next());
+      }
+      for (Iterator<Edge> it = cg.edgesOutOf(site.stmt()); it.hasNext();) {
+        Edge e = it.next();
+        if (e.kind() == site.kind() && !staticEdges.contains(e)) {
+          ret.add(e);
+        }
+      }
+    }
+    for (Edge e : ret) {
+      cg.removeEdge(e);
+    }
+    return ret;
+  }
+
   public boolean wantTypes(Local receiver) {
     return receiverToSites.get(receiver) != null || baseToInvokeSite.get(receiver) != null;
   }
@@ -23,11 +23,14 @@ package soot.jimple.toolkits.callgraph;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.AnySubType;
 import soot.ArrayType;
@@ -46,10 +49,8 @@ import soot.options.CGOptions;
 import soot.toolkits.scalar.Pair;
 import soot.util.Chain;
 import soot.util.HashMultiMap;
-import soot.util.LargeNumberedMap;
 import soot.util.MultiMap;
 import soot.util.NumberedString;
-import soot.util.SmallNumberedMap;
 import soot.util.queue.ChunkedQueue;
 
 /**
@@ -67,8 +68,12 @@ public class VirtualCalls {
     return G.v().soot_jimple_toolkits_callgraph_VirtualCalls();
   }
 
-  private final LargeNumberedMap<Type, SmallNumberedMap<SootMethod>> typeToVtbl
-      = new LargeNumberedMap<Type, SmallNumberedMap<SootMethod>>(Scene.v().getTypeNumberer());
+  /**
+   * The dispatch tables of the classes that have been used as receivers so far, and of their superclasses. A table is
+   * rebuilt once methods have been added to or removed from its class or one of the superclasses, see
+   * {@link Scene#getMethodState(SootClass)}.
+   */
+  private final ConcurrentMap<SootClass, Vtable> classToVtbl = new ConcurrentHashMap<SootClass, Vtable>();
 
   public SootMethod resolveSpecial(SpecialInvokeExpr iie, NumberedString subSig, SootMethod container) {
     return resolveSpecial(iie, subSig, container, false);
@@ -93,32 +98,89 @@ public class VirtualCalls {
   }
 
   public SootMethod resolveNonSpecial(RefType t, NumberedString subSig, boolean appOnly) {
-    SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
-    if (vtbl == null) {
-      typeToVtbl.put(t, vtbl = new SmallNumberedMap<SootMethod>());
-    }
-    SootMethod ret = vtbl.get(subSig);
-    if (ret != null) {
-      return ret;
-    }
     SootClass cls = t.getSootClass();
     if (appOnly && cls.isLibraryClass()) {
       return null;
     }
+    return getVtbl(cls).get(subSig);
+  }
 
-    SootMethod m = cls.getMethodUnsafe(subSig);
-    if (m != null) {
-      if (!m.isAbstract()) {
-        ret = m;
+  /**
+   * Returns the dispatch table of the given class, building it and those of its superclasses if necessary.
+   */
+  private Vtable getVtbl(SootClass cls) {
+    final Scene scene = Scene.v();
+    final int methodState = scene.getMethodState();
+    Vtable vtbl = classToVtbl.get(cls);
+    if (vtbl != null) {
+      if (vtbl.validatedAt == methodState) {
+        return vtbl;
       }
-    } else {
-      SootClass c = cls.getSuperclassUnsafe();
-      if (c != null) {
-        ret = resolveNonSpecial(c.getType(), subSig);
+      if (scene.getMethodState(cls) <= vtbl.methodState) {
+        vtbl.validatedAt = methodState;
+        return vtbl;
+      }
+    }
+    SootClass superClass = cls.getSuperclassUnsafe();
+    vtbl = new Vtable(cls, superClass == null ? null : getVtbl(superClass), methodState);
+    classToVtbl.put(cls, vtbl);
+    return vtbl;
+  }
+
+  /**
+   * The dispatch table of a class. It holds, for every subsignature that the class declares or inherits, the method that
+   * is called on a receiver of exactly that class, or <code>null</code> if the most specific declaration is abstract.
+   * Entries are sorted by subsignature number, so that dispatch is a binary search instead of a walk up the superclass
+   * chain.
+   */
+  private static final class Vtable {
+    final int methodState;
+    final int[] subSigs;
+    final SootMethod[] targets;
+    /**
+     * The last {@link Scene#getMethodState() method state} at which this table was known to be valid.
+     */
+    volatile int validatedAt;
+
+    Vtable(SootClass cls, Vtable inherited, int methodState) {
+      this.methodState = methodState;
+      this.validatedAt = methodState;
+
+      SootMethod[] declared = cls.getMethods().toArray(new SootMethod[0]);
+      Arrays.sort(declared, (a, b) -> Integer.compare(a.getNumberedSubSignature().getNumber(),
+          b.getNumberedSubSignature().getNumber()));
+
+      int[] inheritedSubSigs = inherited == null ? new int[0] : inherited.subSigs;
+      SootMethod[] inheritedTargets = inherited == null ? new SootMethod[0] : inherited.targets;
+      int[] subSigs = new int[declared.length + inheritedSubSigs.length];
+      SootMethod[] targets = new SootMethod[subSigs.length];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < declared.length || j < inheritedSubSigs.length) {
+        int declaredSubSig = i < declared.length ? declared[i].getNumberedSubSignature().getNumber() : Integer.MAX_VALUE;
+        int inheritedSubSig = j < inheritedSubSigs.length ? inheritedSubSigs[j] : Integer.MAX_VALUE;
+        if (declaredSubSig <= inheritedSubSig) {
+          SootMethod m = declared[i++];
+          subSigs[size] = declaredSubSig;
+          targets[size++] = m.isAbstract() ? null : m;
+          if (declaredSubSig == inheritedSubSig) {
+            // Overridden
+            j++;
+          }
+        } else {
+          subSigs[size] = inheritedSubSig;
+          targets[size++] = inheritedTargets[j++];
+        }
       }
+      this.subSigs = size == subSigs.length ? subSigs : Arrays.copyOf(subSigs, size);
+      this.targets = size == targets.length ? targets : Arrays.copyOf(targets, size);
+    }
+
+    SootMethod get(NumberedString subSig) {
+      int index = Arrays.binarySearch(subSigs, subSig.getNumber());
+      return index < 0 ? null : targets[index];
     }
-    vtbl.put(subSig, ret);
-    return ret;
   }
 
   protected MultiMap<Type, Type> baseToSubTypes = new HashMultiMap<Type, Type>();
@@ -27,6 +27,7 @@ import heros.template.DefaultIDETabulationProblem;
 
 import soot.SootMethod;
 import soot.Unit;
+import soot.options.Options;
 
 /**
  * A {@link DefaultIDETabulationProblem} with {@link Unit}s as nodes and {@link SootMethod}s as methods.
@@ -38,4 +39,13 @@ public abstract class DefaultJimpleIDETabulationProblem<D, V, I extends Interpro
     super(icfg);
   }
 
+  /**
+   * Returns the number of threads given with the <code>-num-threads</code> option, or the number of available processors if
+   * it is not set.
+   */
+  @Override
+  public int numThreads() {
+    return Options.v().getNumThreads();
+  }
+
 }
@@ -28,6 +28,7 @@ import heros.template.DefaultIFDSTabulationProblem;
 
 import soot.SootMethod;
 import soot.Unit;
+import soot.options.Options;
 
 /**
  * A {@link DefaultIDETabulationProblem} with {@link Unit}s as nodes and {@link SootMethod}s as methods.
@@ -39,4 +40,13 @@ public abstract class DefaultJimpleIFDSTabulationProblem<D, I extends Interproce
     super(icfg);
   }
 
+  /**
+   * Returns the number of threads given with the <code>-num-threads</code> option, or the number of available processors if
+   * it is not set.
+   */
+  @Override
+  public int numThreads() {
+    return Options.v().getNumThreads();
+  }
+
 }
@@ -26,6 +26,7 @@ import com.google.common.collect.Table.Cell;
 
 import heros.IDETabulationProblem;
 import heros.InterproceduralCFG;
+import heros.solver.CountingThreadPoolExecutor;
 import heros.solver.IDESolver;
 
 import java.io.FileNotFoundException;
@@ -34,6 +35,8 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +60,37 @@ public class JimpleIDESolver<D, V, I extends InterproceduralCFG<Unit, SootMethod
     this.DUMP_RESULTS = dumpResults;
   }
 
+  /**
+   * Creates a solver that uses the given number of threads instead of the number requested by the problem.
+   */
+  public JimpleIDESolver(IDETabulationProblem<Unit, D, SootMethod, V, I> problem, boolean dumpResults, int numThreads) {
+    this(problem, dumpResults);
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + numThreads);
+    }
+    if (numThreads != this.numThreads) {
+      executor.shutdown();
+      this.numThreads = numThreads;
+      this.executor = getExecutor();
+    }
+  }
+
+  /**
+   * Returns the number of threads this solver uses.
+   */
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * Creates an executor that actually runs all {@link #getNumThreads()} threads. The executor of heros only grows beyond a
+   * single thread when its work queue is full, which never happens with an unbounded queue.
+   */
+  @Override
+  protected CountingThreadPoolExecutor getExecutor() {
+    return new CountingThreadPoolExecutor(numThreads, numThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+  }
+
   @Override
   public void solve() {
     super.solve();
@@ -27,7 +27,6 @@ import com.google.common.cache.LoadingCache;
 
 import heros.DontSynchronize;
 import heros.SynchronizedBy;
-import heros.solver.IDESolver;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -47,7 +46,8 @@ import soot.Value;
 import soot.jimple.Stmt;
 import soot.toolkits.graph.BriefUnitGraph;
 import soot.toolkits.graph.DirectedGraph;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraphFactory;
+import soot.util.ConcurrentSoftLoadingCache;
 
 public abstract class AbstractJimpleBasedICFG implements BiDiInterproceduralCFG<Unit, SootMethod> {
 
@@ -56,27 +56,27 @@ public abstract class AbstractJimpleBasedICFG implements BiDiInterproceduralCFG<
   @DontSynchronize("written by single thread; read afterwards")
   private final Map<Unit, Body> unitToOwner = createUnitToOwnerMap();
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected LoadingCache<Body, DirectedGraph<Unit>> bodyToUnitGraph
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<Body, DirectedGraph<Unit>>() {
+      = new ConcurrentSoftLoadingCache<Body, DirectedGraph<Unit>>(new CacheLoader<Body, DirectedGraph<Unit>>() {
         @Override
         public DirectedGraph<Unit> load(Body body) throws Exception {
           return makeGraph(body);
         }
       });
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected LoadingCache<SootMethod, List<Value>> methodToParameterRefs
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<SootMethod, List<Value>>() {
+      = new ConcurrentSoftLoadingCache<SootMethod, List<Value>>(new CacheLoader<SootMethod, List<Value>>() {
         @Override
         public List<Value> load(SootMethod m) throws Exception {
           return m.getActiveBody().getParameterRefs();
         }
       });
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected LoadingCache<SootMethod, Set<Unit>> methodToCallsFromWithin
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<SootMethod, Set<Unit>>() {
+      = new ConcurrentSoftLoadingCache<SootMethod, Set<Unit>>(new CacheLoader<SootMethod, Set<Unit>>() {
         @Override
         public Set<Unit> load(SootMethod m) throws Exception {
           return getCallsFromWithinMethod(m);
@@ -127,7 +127,7 @@ public abstract class AbstractJimpleBasedICFG implements BiDiInterproceduralCFG<
   }
 
   protected DirectedGraph<Unit> makeGraph(Body body) {
-    return enableExceptions ? new ExceptionalUnitGraph(body) : new BriefUnitGraph(body);
+    return enableExceptions ? ExceptionalUnitGraphFactory.createExceptionalUnitGraph(body) : new BriefUnitGraph(body);
   }
 
   protected Set<Unit> getCallsFromWithinMethod(SootMethod m) {
@@ -0,0 +1,506 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.DontSynchronize;
+import heros.ThreadSafe;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.toolkits.graph.DirectedGraph;
+import soot.util.IdentityIndex;
+import soot.util.IntRelation;
+
+/**
+ * <p>
+ * An immutable interprocedural control-flow graph which answers all queries from flat arrays. It is built once, by asking
+ * another ICFG (by default a {@link JimpleBasedInterproceduralCFG}) about every unit of the reachable methods of the
+ * {@link Scene}, and returns the same answers afterwards without consulting the call graph or any cache.
+ * </p>
+ *
+ * <p>
+ * Units are numbered so that the units of each method form one contiguous range in chain order. Successors,
+ * predecessors, return sites and callees of unit <code>i</code>, and callers, calls, start and end points of method
+ * <code>m</code>, are slices of one <code>int</code> array per relation, delimited by an offset array. Units and methods
+ * are mapped to their numbers with an open addressing identity table, so that each query costs one table probe and one
+ * array access.
+ * </p>
+ *
+ * <p>
+ * Bodies and call graph must not change after the graph has been built. Callers in methods that are not reachable are not
+ * recorded. {@link #getOrCreateUnitGraph(SootMethod)} is passed on to the underlying ICFG.
+ * </p>
+ */
+@ThreadSafe
+public class CompiledInterproceduralCFG implements BiDiInterproceduralCFG<Unit, SootMethod> {
+
+  private static final byte CALL = 1;
+  private static final byte START_POINT = 2;
+  private static final byte EXIT = 4;
+  private static final byte RETURN_SITE = 8;
+
+  @DontSynchronize("readonly")
+  private final BiDiInterproceduralCFG<Unit, SootMethod> icfg;
+
+  @DontSynchronize("readonly")
+  private final Unit[] units;
+  @DontSynchronize("readonly")
+  private final IdentityIndex unitIndex;
+  @DontSynchronize("readonly")
+  private final int[] unitToMethod;
+  @DontSynchronize("readonly")
+  private final byte[] flags;
+
+  @DontSynchronize("readonly")
+  private final SootMethod[] methods;
+  @DontSynchronize("readonly")
+  private final IdentityIndex methodIndex;
+  /** The units of method <code>m</code> are <code>firstUnit[m] .. firstUnit[m + 1] - 1</code>. */
+  @DontSynchronize("readonly")
+  private final int[] firstUnit;
+  @DontSynchronize("readonly")
+  private final List<List<Value>> parameterRefs;
+
+  @DontSynchronize("readonly")
+  private final IntRelation succs;
+  @DontSynchronize("readonly")
+  private final IntRelation preds;
+  @DontSynchronize("readonly")
+  private final IntRelation returnSites;
+  @DontSynchronize("readonly")
+  private final IntRelation callees;
+  @DontSynchronize("readonly")
+  private final IntRelation callers;
+  @DontSynchronize("readonly")
+  private final IntRelation callsFromWithin;
+  @DontSynchronize("readonly")
+  private final IntRelation startPoints;
+  @DontSynchronize("readonly")
+  private final IntRelation endPoints;
+
+  /**
+   * Compiles a {@link JimpleBasedInterproceduralCFG} with exceptional edges for the current call graph.
+   */
+  public CompiledInterproceduralCFG() {
+    this(new JimpleBasedInterproceduralCFG());
+  }
+
+  /**
+   * Compiles a {@link JimpleBasedInterproceduralCFG} for the current call graph.
+   *
+   * @param enableExceptions
+   *          whether the unit graphs have exceptional edges
+   */
+  public CompiledInterproceduralCFG(boolean enableExceptions) {
+    this(new JimpleBasedInterproceduralCFG(enableExceptions));
+  }
+
+  /**
+   * Compiles the given ICFG for the units of the reachable methods of the {@link Scene}.
+   *
+   * @param icfg
+   *          the ICFG whose answers are recorded
+   */
+  public CompiledInterproceduralCFG(BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+    this.icfg = icfg;
+
+    // Number the reachable methods and their units
+    List<SootMethod> methodList = new ArrayList<SootMethod>();
+    Map<SootMethod, Integer> methodNumbers = new HashMap<SootMethod, Integer>();
+    List<Unit> unitList = new ArrayList<Unit>();
+    int[] first = new int[16];
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      SootMethod m = it.next().method();
+      if (methodNumbers.containsKey(m)) {
+        continue;
+      }
+      if (methodList.size() + 1 >= first.length) {
+        first = Arrays.copyOf(first, first.length * 2);
+      }
+      first[methodList.size()] = unitList.size();
+      methodNumbers.put(m, methodList.size());
+      methodList.add(m);
+      if (m.hasActiveBody()) {
+        unitList.addAll(m.getActiveBody().getUnits());
+      }
+    }
+    final int numReachable = methodList.size();
+    first[numReachable] = unitList.size();
+    this.units = unitList.toArray(new Unit[unitList.size()]);
+    this.unitIndex = new IdentityIndex(units);
+    final int numUnits = units.length;
+
+    this.unitToMethod = new int[numUnits];
+    for (int m = 0; m < numReachable; m++) {
+      Arrays.fill(unitToMethod, first[m], first[m + 1], m);
+    }
+
+    // Intraprocedural edges and calls. Callees that are not reachable are numbered as they come up.
+    this.flags = new byte[numUnits];
+    IntRelation.Builder succsBuilder = new IntRelation.Builder(numUnits, numUnits, false);
+    IntRelation.Builder predsBuilder = new IntRelation.Builder(numUnits, numUnits, false);
+    IntRelation.Builder returnSitesBuilder = new IntRelation.Builder(numUnits, numUnits, false);
+    IntRelation.Builder calleesBuilder = new IntRelation.Builder(numUnits, numUnits, false);
+    for (int i = 0; i < numUnits; i++) {
+      Unit u = units[i];
+      addUnits(succsBuilder, icfg.getSuccsOf(u));
+      addUnits(predsBuilder, icfg.getPredsOf(u));
+      if (icfg.isCallStmt(u)) {
+        flags[i] |= CALL;
+        addUnits(returnSitesBuilder, icfg.getReturnSitesOfCallAt(u));
+      }
+      // Units that are not calls can still have callees, e.g. static initializers
+      for (SootMethod callee : icfg.getCalleesOfCallAt(u)) {
+        Integer n = methodNumbers.get(callee);
+        if (n == null) {
+          n = methodList.size();
+          methodNumbers.put(callee, n);
+          methodList.add(callee);
+        }
+        calleesBuilder.add(n);
+      }
+      if (icfg.isStartPoint(u)) {
+        flags[i] |= START_POINT;
+      }
+      if (icfg.isExitStmt(u)) {
+        flags[i] |= EXIT;
+      }
+      succsBuilder.endRow();
+      predsBuilder.endRow();
+      returnSitesBuilder.endRow();
+      calleesBuilder.endRow();
+    }
+    this.succs = succsBuilder.build();
+    this.preds = predsBuilder.build();
+    this.returnSites = returnSitesBuilder.build();
+    this.callees = calleesBuilder.build();
+    for (int i = 0; i < numUnits; i++) {
+      for (int j = preds.start(i); j < preds.end(i); j++) {
+        if ((flags[preds.targets()[j]] & CALL) != 0) {
+          flags[i] |= RETURN_SITE;
+          break;
+        }
+      }
+    }
+
+    // Per method tables
+    final int numMethods = methodList.size();
+    this.methods = methodList.toArray(new SootMethod[numMethods]);
+    this.methodIndex = new IdentityIndex(methods);
+    this.firstUnit = new int[numMethods + 1];
+    System.arraycopy(first, 0, firstUnit, 0, numReachable);
+    Arrays.fill(firstUnit, numReachable, numMethods + 1, numUnits);
+    this.parameterRefs = new ArrayList<List<Value>>(numMethods);
+    IntRelation.Builder callersBuilder = new IntRelation.Builder(numMethods, numMethods, false);
+    IntRelation.Builder callsBuilder = new IntRelation.Builder(numMethods, numMethods, false);
+    IntRelation.Builder startPointsBuilder = new IntRelation.Builder(numMethods, numMethods, false);
+    IntRelation.Builder endPointsBuilder = new IntRelation.Builder(numMethods, numMethods, false);
+    for (int m = 0; m < numMethods; m++) {
+      SootMethod method = methods[m];
+      addUnits(callersBuilder, icfg.getCallersOf(method));
+      for (int i = firstUnit[m]; i < firstUnit[m + 1]; i++) {
+        if ((flags[i] & CALL) != 0) {
+          callsBuilder.add(i);
+        }
+      }
+      if (method.hasActiveBody()) {
+        addUnits(startPointsBuilder, icfg.getStartPointsOf(method));
+        addUnits(endPointsBuilder, icfg.getEndPointsOf(method));
+        parameterRefs.add(icfg.getParameterRefs(method));
+      } else {
+        parameterRefs.add(null);
+      }
+      callersBuilder.endRow();
+      callsBuilder.endRow();
+      startPointsBuilder.endRow();
+      endPointsBuilder.endRow();
+    }
+    this.callers = callersBuilder.build();
+    this.callsFromWithin = callsBuilder.build();
+    this.startPoints = startPointsBuilder.build();
+    this.endPoints = endPointsBuilder.build();
+  }
+
+  /**
+   * Adds the numbers of the given units to the current row, skipping units that are not in the graph.
+   */
+  private void addUnits(IntRelation.Builder builder, Collection<Unit> us) {
+    for (Unit u : us) {
+      int i = u == null ? -1 : unitIndex.get(u);
+      if (i >= 0) {
+        builder.add(i);
+      }
+    }
+  }
+
+  @Override
+  public SootMethod getMethodOf(Unit u) {
+    int i = unitIndex.get(u);
+    return i < 0 ? null : methods[unitToMethod[i]];
+  }
+
+  @Override
+  public List<Unit> getSuccsOf(Unit u) {
+    return unitRow(succs, unitIndex.get(u));
+  }
+
+  @Override
+  public List<Unit> getPredsOf(Unit u) {
+    return unitRow(preds, unitIndex.get(u));
+  }
+
+  @Override
+  public List<Unit> getPredsOfCallAt(Unit u) {
+    return getPredsOf(u);
+  }
+
+  @Override
+  public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+    int i = unitIndex.get(u);
+    if (i < 0 || callees.size(i) == 0) {
+      return Collections.emptySet();
+    }
+    return new ElementList<SootMethod>(methods, callees.targets(), callees.start(i), callees.end(i));
+  }
+
+  @Override
+  public Collection<Unit> getCallersOf(SootMethod m) {
+    return unitRow(callers, methodIndex.get(m));
+  }
+
+  @Override
+  public Set<Unit> getCallsFromWithin(SootMethod m) {
+    int i = methodIndex.get(m);
+    if (i < 0 || callsFromWithin.size(i) == 0) {
+      return Collections.emptySet();
+    }
+    return new UnitSet(callsFromWithin.targets(), callsFromWithin.start(i), callsFromWithin.end(i));
+  }
+
+  @Override
+  public Collection<Unit> getStartPointsOf(SootMethod m) {
+    return unitRow(startPoints, methodIndex.get(m));
+  }
+
+  @Override
+  public Collection<Unit> getEndPointsOf(SootMethod m) {
+    return unitRow(endPoints, methodIndex.get(m));
+  }
+
+  @Override
+  public Collection<Unit> getReturnSitesOfCallAt(Unit u) {
+    int i = unitIndex.get(u);
+    if (i >= 0 && (flags[i] & CALL) == 0) {
+      // Like AbstractJimpleBasedICFG, answer with the successors for units that are not calls
+      return unitRow(succs, i);
+    }
+    return unitRow(returnSites, i);
+  }
+
+  @Override
+  public boolean isCallStmt(Unit u) {
+    return hasFlag(u, CALL);
+  }
+
+  @Override
+  public boolean isExitStmt(Unit u) {
+    return hasFlag(u, EXIT);
+  }
+
+  @Override
+  public boolean isStartPoint(Unit u) {
+    return hasFlag(u, START_POINT);
+  }
+
+  @Override
+  public boolean isReturnSite(Unit n) {
+    return hasFlag(n, RETURN_SITE);
+  }
+
+  @Override
+  public boolean isReachable(Unit u) {
+    return unitIndex.get(u) >= 0;
+  }
+
+  @Override
+  public Set<Unit> allNonCallStartNodes() {
+    return unitsWithout(CALL | START_POINT);
+  }
+
+  @Override
+  public Set<Unit> allNonCallEndNodes() {
+    return unitsWithout(CALL | EXIT);
+  }
+
+  @Override
+  public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+    if (!u.fallsThrough()) {
+      return false;
+    }
+    // The units of a method are numbered in chain order
+    int i = unitIndex.get(u);
+    return i >= 0 && i + 1 < firstUnit[unitToMethod[i] + 1] && units[i + 1] == succ;
+  }
+
+  @Override
+  public boolean isBranchTarget(Unit u, Unit succ) {
+    if (!u.branches()) {
+      return false;
+    }
+    for (UnitBox ub : u.getUnitBoxes()) {
+      if (ub.getUnit() == succ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public List<Value> getParameterRefs(SootMethod m) {
+    int i = methodIndex.get(m);
+    List<Value> refs = i < 0 ? null : parameterRefs.get(i);
+    return refs == null ? icfg.getParameterRefs(m) : refs;
+  }
+
+  @Override
+  public DirectedGraph<Unit> getOrCreateUnitGraph(SootMethod m) {
+    return icfg.getOrCreateUnitGraph(m);
+  }
+
+  private boolean hasFlag(Unit u, int flag) {
+    int i = unitIndex.get(u);
+    return i >= 0 && (flags[i] & flag) != 0;
+  }
+
+  private Set<Unit> unitsWithout(int mask) {
+    Set<Unit> res = new LinkedHashSet<Unit>();
+    for (int i = 0; i < units.length; i++) {
+      if ((flags[i] & mask) == 0) {
+        res.add(units[i]);
+      }
+    }
+    return res;
+  }
+
+  private List<Unit> unitRow(IntRelation table, int i) {
+    if (i < 0 || table.size(i) == 0) {
+      return Collections.emptyList();
+    }
+    return new ElementList<Unit>(units, table.targets(), table.start(i), table.end(i));
+  }
+
+  /**
+   * A read-only view of one row of an {@link IntRelation}.
+   */
+  private static final class ElementList<E> extends AbstractList<E> implements RandomAccess {
+    private final E[] elements;
+    private final int[] targets;
+    private final int from;
+    private final int to;
+
+    ElementList(E[] elements, int[] targets, int from, int to) {
+      this.elements = elements;
+      this.targets = targets;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public E get(int i) {
+      if (i < 0 || i >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + (to - from));
+      }
+      return elements[targets[from + i]];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+  /**
+   * A read-only set view of one row of an {@link IntRelation} whose targets are in ascending order.
+   */
+  private final class UnitSet extends AbstractSet<Unit> {
+    private final int[] targets;
+    private final int from;
+    private final int to;
+
+    UnitSet(int[] targets, int from, int to) {
+      this.targets = targets;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      int i = o instanceof Unit ? unitIndex.get(o) : -1;
+      return i >= 0 && Arrays.binarySearch(targets, from, to, i) >= 0;
+    }
+
+    @Override
+    public Iterator<Unit> iterator() {
+      return new Iterator<Unit>() {
+        private int next = from;
+
+        @Override
+        public boolean hasNext() {
+          return next < to;
+        }
+
+        @Override
+        public Unit next() {
+          if (next >= to) {
+            throw new NoSuchElementException();
+          }
+          return units[targets[next++]];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+}
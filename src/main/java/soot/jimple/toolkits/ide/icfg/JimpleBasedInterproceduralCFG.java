@@ -47,6 +47,7 @@ import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.callgraph.EdgePredicate;
 import soot.jimple.toolkits.callgraph.Filter;
+import soot.util.ConcurrentSoftLoadingCache;
 
 /**
  * Default implementation for the {@link InterproceduralCFG} interface. Includes all statements reachable from
@@ -107,9 +108,9 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
     }
   };
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected final LoadingCache<Unit, Collection<SootMethod>> unitToCallees
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(loaderUnitToCallees);
+      = new ConcurrentSoftLoadingCache<Unit, Collection<SootMethod>>(loaderUnitToCallees);
 
   protected CacheLoader<SootMethod, Collection<Unit>> loaderMethodToCallers
       = new CacheLoader<SootMethod, Collection<Unit>>() {
@@ -127,9 +128,9 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
           return res;
         }
       };
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected final LoadingCache<SootMethod, Collection<Unit>> methodToCallers
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(loaderMethodToCallers);
+      = new ConcurrentSoftLoadingCache<SootMethod, Collection<Unit>>(loaderMethodToCallers);
 
   public JimpleBasedInterproceduralCFG() {
     this(true);
@@ -26,7 +26,6 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
 import heros.SynchronizedBy;
-import heros.solver.IDESolver;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -60,6 +59,7 @@ import soot.jimple.Stmt;
 import soot.jimple.VirtualInvokeExpr;
 import soot.jimple.toolkits.pointer.LocalMustNotAliasAnalysis;
 import soot.options.Options;
+import soot.util.ConcurrentSoftLoadingCache;
 
 /**
  * This is an implementation of AbstractJimpleBasedICFG that computes the ICFG on-the-fly. In other words, it can be used
@@ -78,18 +78,19 @@ import soot.options.Options;
  */
 public class OnTheFlyJimpleBasedICFG extends AbstractJimpleBasedICFG {
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected final LoadingCache<Body, LocalMustNotAliasAnalysis> bodyToLMNAA
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<Body, LocalMustNotAliasAnalysis>() {
-        @Override
-        public LocalMustNotAliasAnalysis load(Body body) throws Exception {
-          return new LocalMustNotAliasAnalysis(getOrCreateUnitGraph(body), body);
-        }
-      });
+      = new ConcurrentSoftLoadingCache<Body, LocalMustNotAliasAnalysis>(
+          new CacheLoader<Body, LocalMustNotAliasAnalysis>() {
+            @Override
+            public LocalMustNotAliasAnalysis load(Body body) throws Exception {
+              return new LocalMustNotAliasAnalysis(getOrCreateUnitGraph(body), body);
+            }
+          });
 
-  @SynchronizedBy("by use of synchronized LoadingCache class")
+  @SynchronizedBy("by use of lock-free ConcurrentSoftLoadingCache class")
   protected final LoadingCache<Unit, Set<SootMethod>> unitToCallees
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<Unit, Set<SootMethod>>() {
+      = new ConcurrentSoftLoadingCache<Unit, Set<SootMethod>>(new CacheLoader<Unit, Set<SootMethod>>() {
         @Override
         public Set<SootMethod> load(Unit u) throws Exception {
           Stmt stmt = (Stmt) u;
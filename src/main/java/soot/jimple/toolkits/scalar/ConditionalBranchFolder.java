@@ -92,4 +92,8 @@ public class ConditionalBranchFolder extends BodyTransformer {
 
   } // foldBranches
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 } // BranchFolder
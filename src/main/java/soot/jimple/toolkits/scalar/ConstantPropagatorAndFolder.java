@@ -44,10 +44,10 @@ import soot.jimple.NullConstant;
 import soot.jimple.NumericConstant;
 import soot.jimple.StringConstant;
 import soot.options.Options;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.Orderer;
 import soot.toolkits.graph.PseudoTopologicalOrderer;
 import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.toolkits.scalar.LocalDefs;
 
 /**
@@ -72,8 +72,9 @@ public class ConstantPropagatorAndFolder extends BodyTransformer {
       logger.debug("[" + b.getMethod().getName() + "] Propagating and folding constants...");
     }
 
-    UnitGraph g = new ExceptionalUnitGraph(b);
-    LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(g);
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    UnitGraph g = cache.getExceptionalUnitGraph(b);
+    LocalDefs localDefs = cache.getLocalDefs(g, false);
 
     // Perform a constant/local propagation pass.
     Orderer<Unit> orderer = new PseudoTopologicalOrderer<Unit>();
@@ -121,10 +122,20 @@ public class ConstantPropagatorAndFolder extends BodyTransformer {
       }
     }
 
+    // values have been replaced in place, which does not show in the modification count
+    if (numPropagated > 0 || numFolded > 0) {
+      cache.invalidate(b);
+    }
+
     if (Options.v().verbose()) {
       logger.debug("[" + b.getMethod().getName() + "]     Propagated: " + numPropagated + ", Folded:  " + numFolded);
     }
 
   } // optimizeConstants
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
+
 }
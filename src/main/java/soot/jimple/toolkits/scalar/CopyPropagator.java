@@ -55,9 +55,9 @@ import soot.tagkit.LineNumberTag;
 import soot.tagkit.SourceLnPosTag;
 import soot.tagkit.Tag;
 import soot.toolkits.exceptions.ThrowAnalysis;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.PseudoTopologicalOrderer;
 import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.toolkits.scalar.LocalDefs;
 import soot.util.Chain;
 
@@ -100,6 +100,7 @@ public class CopyPropagator extends BodyTransformer {
     StmtBody stmtBody = (StmtBody) b;
     int fastCopyPropagationCount = 0;
     int slowCopyPropagationCount = 0;
+    boolean propagatedConstants = false;
 
     if (Options.v().verbose()) {
       logger.debug("[" + stmtBody.getMethod().getName() + "] Propagating copies...");
@@ -136,10 +137,11 @@ public class CopyPropagator extends BodyTransformer {
     }
 
     // Go through the definitions, building the webs
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
     UnitGraph graph =
-        new ExceptionalUnitGraph(stmtBody, throwAnalysis, forceOmitExceptingUnitEdges);
+        cache.getExceptionalUnitGraph(stmtBody, throwAnalysis, forceOmitExceptingUnitEdges);
 
-    LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(graph);
+    LocalDefs localDefs = cache.getLocalDefs(graph, false);
 
     // Perform a local propagation pass.
     {
@@ -201,6 +203,7 @@ public class CopyPropagator extends BodyTransformer {
                 if (useBox.canContainValue(def.getRightOp())) {
                   useBox.setValue(def.getRightOp());
                   copyLineTags(useBox, def);
+                  propagatedConstants = true;
                 }
               } else if (def.getRightOp() instanceof CastExpr) {
                 CastExpr ce = (CastExpr) def.getRightOp();
@@ -213,6 +216,7 @@ public class CopyPropagator extends BodyTransformer {
                     if (useBox.canContainValue(NullConstant.v())) {
                       useBox.setValue(NullConstant.v());
                       copyLineTags(useBox, def);
+                      propagatedConstants = true;
                     }
                   }
                 }
@@ -282,6 +286,11 @@ public class CopyPropagator extends BodyTransformer {
       }
     }
 
+    // the uses have been replaced in place, which does not show in the modification count
+    if (propagatedConstants || fastCopyPropagationCount > 0 || slowCopyPropagationCount > 0) {
+      cache.invalidate(stmtBody);
+    }
+
     if (Options.v().verbose()) {
       logger.debug(
           "["
@@ -298,6 +307,11 @@ public class CopyPropagator extends BodyTransformer {
     }
   }
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
+
   private void copyLineTags(ValueBox useBox, DefinitionStmt def) {
     // we might have a def statement which contains a propagated constant itself as right-op. we
     // want to propagate the tags of this constant and not the def statement itself in this case.
@@ -71,6 +71,7 @@ import soot.jimple.NullConstant;
 import soot.jimple.RemExpr;
 import soot.jimple.Stmt;
 import soot.options.Options;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.toolkits.scalar.LocalDefs;
 import soot.toolkits.scalar.LocalUses;
 import soot.toolkits.scalar.UnitValueBoxPair;
@@ -236,7 +237,9 @@ public class DeadAssignmentEliminator extends BodyTransformer {
       // Add all the statements which are used to compute values
       // for the essential statements, recursively
 
-      final LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(b);
+      final BodyAnalysisCache cache = BodyAnalysisCache.v();
+      final LocalDefs localDefs = cache.getLocalDefs(b);
+      final long modCount = b.getModificationCount();
 
       if (!allEssential) {
         Set<Unit> essential = new HashSet<Unit>(b.getUnits().size());
@@ -260,7 +263,9 @@ public class DeadAssignmentEliminator extends BodyTransformer {
       }
 
       if (checkInvoke) {
-        final LocalUses localUses = LocalUses.Factory.newLocalUses(b, localDefs);
+        // if dead statements have been removed, the cached definitions are out of date
+        final LocalUses localUses = b.getModificationCount() == modCount ? cache.getLocalUses(b)
+            : LocalUses.Factory.newLocalUses(b, localDefs);
         // Eliminate dead assignments from invokes such as x = f(), where
         // x is no longer used
 
@@ -302,4 +307,9 @@ public class DeadAssignmentEliminator extends BodyTransformer {
       Timers.v().deadCodeTimer.end();
     }
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
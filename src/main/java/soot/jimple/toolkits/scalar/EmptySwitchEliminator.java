@@ -61,4 +61,9 @@ public class EmptySwitchEliminator extends BodyTransformer {
     }
 
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
@@ -41,19 +41,25 @@ import soot.jimple.NewExpr;
 import soot.jimple.NewMultiArrayExpr;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.ArrayFlowUniverse;
 import soot.toolkits.scalar.ArraySparseSet;
+import soot.toolkits.scalar.BitVectorFlowAnalysis;
 import soot.toolkits.scalar.FlowSet;
 import soot.toolkits.scalar.ForwardFlowAnalysis;
 
 /**
  * Implements an available expressions analysis on local variables. The current implementation is slow but correct. A better
  * implementation would use an implicit universe and the kill rule would be computed on-the-fly for each statement.
+ *
+ * <p>
+ * The flow values are computed by a {@link BitVectorFlowAnalysis} over all expressions that are generated somewhere in the
+ * body. The flow maps hold read-only views of its results, which list the expressions in the order of the units generating
+ * them. Units that cannot be reached from the heads are top.
+ * </p>
  */
 public class FastAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Value>> {
   SideEffectTester st;
 
-  Map<Unit, FlowSet<Value>> unitToGenerateSet;
-  Map<Unit, FlowSet<Value>> unitToPreserveSet;
   Map<Value, Unit> rhsToContainingStmt;
 
   FlowSet<Value> emptySet;
@@ -70,42 +76,58 @@ public class FastAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit,
 
     emptySet = new ToppedSet<Value>(new ArraySparseSet<Value>());
 
-    // Create generate sets
-    {
-      unitToGenerateSet = new HashMap<Unit, FlowSet<Value>>(g.size() * 2 + 1, 0.7f);
-
-      for (Unit s : g) {
-        FlowSet<Value> genSet = emptySet.clone();
-        // In Jimple, expressions only occur as the RHS of an
-        // AssignStmt.
-        if (s instanceof AssignStmt) {
-          AssignStmt as = (AssignStmt) s;
-          if (as.getRightOp() instanceof Expr || as.getRightOp() instanceof FieldRef) {
-            Value gen = as.getRightOp();
-            rhsToContainingStmt.put(gen, s);
-
-            boolean cantAdd = false;
-            if (gen instanceof NewExpr || gen instanceof NewArrayExpr || gen instanceof NewMultiArrayExpr) {
-              cantAdd = true;
-            }
-            if (gen instanceof InvokeExpr) {
-              cantAdd = true;
-            }
-
-            // Whee, double negative!
-            if (!cantAdd) {
-              genSet.add(gen, genSet);
-            }
-          }
+    for (Unit s : g) {
+      if (s instanceof AssignStmt) {
+        Value rhs = ((AssignStmt) s).getRightOp();
+        if (rhs instanceof Expr || rhs instanceof FieldRef) {
+          rhsToContainingStmt.put(rhs, s);
         }
-
-        unitToGenerateSet.put(s, genSet);
       }
     }
 
     doAnalysis();
   }
 
+  @Override
+  protected void doAnalysis() {
+    Solver solver = new Solver(graph);
+    unitToBeforeFlow = solver.getFlowSetsBefore(this::newInitialFlow);
+    unitToAfterFlow = solver.getFlowSetsAfter(this::newInitialFlow);
+  }
+
+  /**
+   * Returns the expression made available by <code>u</code>, or <code>null</code>. In Jimple, expressions only occur as the
+   * RHS of an AssignStmt.
+   */
+  private Value generatedBy(Unit u) {
+    if (u instanceof AssignStmt) {
+      Value gen = ((AssignStmt) u).getRightOp();
+      if (gen instanceof Expr || gen instanceof FieldRef) {
+        if (gen instanceof NewExpr || gen instanceof NewArrayExpr || gen instanceof NewMultiArrayExpr) {
+          return null;
+        }
+        if (gen instanceof InvokeExpr) {
+          return null;
+        }
+        return gen;
+      }
+    }
+    return null;
+  }
+
+  /** Returns whether <code>u</code> can change the value of <code>avail</code>. */
+  private boolean isKilledBy(Unit u, Value avail) {
+    if (avail instanceof FieldRef) {
+      return st.unitCanWriteTo(u, avail);
+    }
+    for (ValueBox vb : avail.getUseBoxes()) {
+      if (st.unitCanWriteTo(u, vb.getValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   protected FlowSet<Value> newInitialFlow() {
     FlowSet<Value> newSet = emptySet.clone();
     ((ToppedSet<Value>) newSet).setTop(true);
@@ -123,7 +145,10 @@ public class FastAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit,
     }
 
     // Perform generation
-    out.union(unitToGenerateSet.get(u), out);
+    Value gen = generatedBy(u);
+    if (gen != null) {
+      out.add(gen, out);
+    }
 
     // Perform kill.
     if (((ToppedSet<Value>) out).isTop()) {
@@ -134,17 +159,8 @@ public class FastAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit,
 
     // iterate over things (avail) in out set.
     for (Value avail : l) {
-      if (avail instanceof FieldRef) {
-        if (st.unitCanWriteTo(u, avail)) {
-          out.remove(avail, out);
-        }
-      } else {
-        for (ValueBox vb : avail.getUseBoxes()) {
-          Value use = vb.getValue();
-          if (st.unitCanWriteTo(u, use)) {
-            out.remove(avail, out);
-          }
-        }
+      if (isKilledBy(u, avail)) {
+        out.remove(avail, out);
       }
     }
   }
@@ -156,4 +172,34 @@ public class FastAvailableExpressionsAnalysis extends ForwardFlowAnalysis<Unit,
   protected void copy(FlowSet<Value> sourceSet, FlowSet<Value> destSet) {
     sourceSet.copy(destSet);
   }
+
+  /**
+   * Solves the analysis over the expressions generated in the body. Like {@link #flowThrough(FlowSet, Unit, FlowSet)}, the
+   * side effect tester is only asked about expressions that actually reach a unit.
+   */
+  private class Solver extends BitVectorFlowAnalysis<Unit, Value> {
+    Solver(DirectedGraph<Unit> g) {
+      super(g, new ArrayFlowUniverse<Value>(new Value[0]), true, Meet.INTERSECTION);
+      doAnalysis();
+    }
+
+    @Override
+    protected void computeGenKill(Unit u) {
+      // an expression that is killed by its own unit is not available afterwards
+      Value gen = generatedBy(u);
+      if (gen != null && !isKilledBy(u, gen)) {
+        gen(gen);
+      }
+    }
+
+    @Override
+    protected boolean isKillOnDemand() {
+      return true;
+    }
+
+    @Override
+    protected boolean isKilled(Unit u, Value avail) {
+      return isKilledBy(u, avail);
+    }
+  }
 }
@@ -196,4 +196,9 @@ public class LocalNameStandardizer extends BodyTransformer {
       }
     }
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
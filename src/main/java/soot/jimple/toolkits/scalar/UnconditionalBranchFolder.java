@@ -39,6 +39,7 @@ import soot.jimple.IfStmt;
 import soot.jimple.Stmt;
 import soot.jimple.StmtBody;
 import soot.options.Options;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.util.Chain;
 
 public class UnconditionalBranchFolder extends BodyTransformer {
@@ -119,6 +120,12 @@ public class UnconditionalBranchFolder extends BodyTransformer {
         }
       }
     }
+
+    // retargeted branches do not show in the modification count
+    if (numFixed[0] > 0) {
+      BodyAnalysisCache.v().invalidate(body);
+    }
+
     if (Options.v().verbose()) {
       logger.debug("[" + body.getMethod().getName() + "]     " + numFixed[0] + " of " + numFound[0] + " branches folded.");
     }
@@ -168,4 +175,8 @@ public class UnconditionalBranchFolder extends BodyTransformer {
     return finalTarget;
   } // getFinalTarget
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 } // JumpOptimizer
@@ -46,6 +46,7 @@ import soot.toolkits.exceptions.PedanticThrowAnalysis;
 import soot.toolkits.exceptions.ThrowAnalysis;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.util.Chain;
 
 public class UnreachableCodeEliminator extends BodyTransformer {
@@ -78,7 +79,7 @@ public class UnreachableCodeEliminator extends BodyTransformer {
           = PhaseOptions.getBoolean(options, "remove-unreachable-traps", true) ? Scene.v().getDefaultThrowAnalysis()
               : PedanticThrowAnalysis.v();
     }
-    ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body, throwAnalysis, false);
+    ExceptionalUnitGraph graph = BodyAnalysisCache.v().getExceptionalUnitGraph(body, throwAnalysis, false);
 
     Chain<Unit> units = body.getUnits();
     int numPruned = units.size();
@@ -154,4 +155,9 @@ public class UnreachableCodeEliminator extends BodyTransformer {
 
     return visited;
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
@@ -40,6 +40,7 @@ import soot.RefType;
 import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
+import soot.Unit;
 import soot.Value;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
@@ -54,7 +55,7 @@ import soot.jimple.toolkits.callgraph.Filter;
 import soot.jimple.toolkits.callgraph.TransitiveTargets;
 import soot.jimple.toolkits.pointer.LocalMustAliasAnalysis;
 import soot.toolkits.graph.BriefUnitGraph;
-import soot.toolkits.graph.MHGPostDominatorsFinder;
+import soot.toolkits.graph.CHKPostDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ArraySparseSet;
 import soot.toolkits.scalar.FlowSet;
@@ -95,7 +96,7 @@ public class StartJoinAnalysis extends ForwardFlowAnalysis {
 
     if (!startStatements.isEmpty()) {
       // Get supporting info and analyses
-      MHGPostDominatorsFinder pd = new MHGPostDominatorsFinder(new BriefUnitGraph(sm.getActiveBody()));
+      CHKPostDominatorsFinder<Unit> pd = new CHKPostDominatorsFinder<Unit>(new BriefUnitGraph(sm.getActiveBody()));
       // EqualUsesAnalysis lif = new EqualUsesAnalysis(g);
       LocalMustAliasAnalysis lma = new LocalMustAliasAnalysis(g);
       TransitiveTargets runMethodTargets = new TransitiveTargets(callGraph, new Filter(new RunMethodsPred()));
@@ -176,7 +177,7 @@ public class StartJoinAnalysis extends ForwardFlowAnalysis {
           barriers.addAll(g.getSuccsOf(join)); // definitions of the start variable are tracked until they pass a join
           // if( lif.areEqualUses( start, (Local) startObject, join, (Local) joinObject, barriers) )
           if (lma.mustAlias((Local) startObject, start, (Local) joinObject, join)) {
-            if ((pd.getDominators(start)).contains(join)) // does join post-dominate start?
+            if (pd.isDominatedBy(start, join)) // does join post-dominate start?
             {
               // logger.debug("START-JOIN PAIR: " + start + ", " + join);
               startToJoin.put(start, join); // then this join always joins this start's thread
@@ -4,8 +4,10 @@ import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Map;
 
 import soot.ArrayType;
 import soot.FloatType;
@@ -17,6 +19,7 @@ import soot.RefType;
 import soot.Scene;
 import soot.SootClass;
 import soot.Type;
+import soot.toolkits.scalar.Pair;
 
 /*-
  * #%L
@@ -46,6 +49,13 @@ import soot.Type;
  * @author Ben Bellamy
  */
 public class BytecodeHierarchy implements IHierarchy {
+  /**
+   * The least common ancestors of pairs of reference and array types that this hierarchy has computed. A type resolver
+   * asks for the same pairs again for every candidate typing, and computing them requires walking the complete ancestry of
+   * both types.
+   */
+  private final Map<Pair<Type, Type>, Collection<Type>> lcaCache = new HashMap<Pair<Type, Type>, Collection<Type>>();
+
   /*
    * Returns a collection of nodes, each with type Object, each at the leaf end of a different path from root to Object.
    */
@@ -285,7 +295,20 @@ public class BytecodeHierarchy implements IHierarchy {
   }
 
   public Collection<Type> lcas(Type a, Type b) {
-    return lcas_(a, b);
+    if (!isRefOrArray(a) || !isRefOrArray(b) || TypeResolver.typesEqual(a, b)) {
+      return lcas_(a, b);
+    }
+    Pair<Type, Type> key = new Pair<Type, Type>(a, b);
+    Collection<Type> r = lcaCache.get(key);
+    if (r == null) {
+      r = Collections.unmodifiableCollection(lcas_(a, b));
+      lcaCache.put(key, r);
+    }
+    return r;
+  }
+
+  private static boolean isRefOrArray(Type t) {
+    return t instanceof RefType || t instanceof ArrayType;
   }
 
   public boolean ancestor(Type ancestor, Type child) {
@@ -24,49 +24,112 @@ package soot.jimple.toolkits.typing.fast;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import soot.Local;
 import soot.Type;
 
 /**
+ * A mapping from locals to types.
+ *
+ * The types are stored in arrays indexed by the number of each local, relative to the lowest number among the locals the
+ * typing is created for. A copy shares these arrays with the original, in pages of {@value #PAGE_SIZE} locals, and a page is
+ * only copied when one of the two typings changes it, so that creating a candidate typing for a method with many locals is
+ * cheap.
+ *
  * @author Ben Bellamy
  */
 public class Typing {
-  private HashMap<Local, Type> map;
+  private static final int PAGE_SHIFT = 5;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  /** The assignment of locals to slots, shared by a typing and all its copies. */
+  private final LocalIndex index;
+  private Type[][] pages;
+  /** Whether this typing may change the respective page in place, i.e., no copy shares it. */
+  private boolean[] owned;
 
   public Typing(Collection<Local> vs) {
-    map = new HashMap<Local, Type>(vs.size());
+    this.index = new LocalIndex(vs);
+    int numPages = (this.index.size() + PAGE_MASK) >>> PAGE_SHIFT;
+    this.pages = new Type[numPages][];
+    this.owned = new boolean[numPages];
     final BottomType bottomType = BottomType.v();
     for (Local v : vs) {
-      this.map.put(v, bottomType);
+      this.set(v, bottomType);
     }
   }
 
   public Typing(Typing tg) {
-    this.map = new HashMap<Local, Type>(tg.map);
+    this.index = tg.index;
+    this.pages = tg.pages.clone();
+    this.owned = new boolean[this.pages.length];
+    Arrays.fill(tg.owned, false);
   }
 
   public Type get(Local v) {
-    return this.map.get(v);
+    int slot = this.index.slotOf(v);
+    return slot < 0 ? null : this.typeAt(slot);
   }
 
   public Type set(Local v, Type t) {
-    return this.map.put(v, t);
+    int slot = this.index.slotOf(v);
+    if (slot < 0) {
+      slot = this.index.add(v);
+    }
+    Type[] page = this.writablePage(slot >>> PAGE_SHIFT);
+    Type old = page[slot & PAGE_MASK];
+    page[slot & PAGE_MASK] = t;
+    return old;
+  }
+
+  private Type typeAt(int slot) {
+    int p = slot >>> PAGE_SHIFT;
+    if (p >= this.pages.length) {
+      return null;
+    }
+    Type[] page = this.pages[p];
+    return page == null ? null : page[slot & PAGE_MASK];
+  }
+
+  private Type[] writablePage(int p) {
+    if (p >= this.pages.length) {
+      int length = Math.max(p + 1, this.pages.length * 2);
+      this.pages = Arrays.copyOf(this.pages, length);
+      this.owned = Arrays.copyOf(this.owned, length);
+    }
+    Type[] page = this.pages[p];
+    if (page == null) {
+      page = new Type[PAGE_SIZE];
+    } else if (!this.owned[p]) {
+      page = page.clone();
+    } else {
+      return page;
+    }
+    this.pages[p] = page;
+    this.owned[p] = true;
+    return page;
   }
 
   @Override
   public String toString() {
     StringBuffer sb = new StringBuffer();
     sb.append('{');
-    for (Local v : this.map.keySet()) {
-      sb.append(v);
-      sb.append(':');
-      sb.append(this.get(v));
-      sb.append(',');
+    for (int slot = 0, n = this.index.size(); slot < n; slot++) {
+      Type t = this.typeAt(slot);
+      if (t != null) {
+        sb.append(this.index.localAt(slot));
+        sb.append(':');
+        sb.append(t);
+        sb.append(',');
+      }
     }
     sb.append('}');
     return sb.toString();
@@ -92,8 +155,13 @@ public class Typing {
 
   public static int compare(Typing a, Typing b, IHierarchy h) {
     int r = 0;
-    for (Local v : a.map.keySet()) {
-      Type ta = a.get(v), tb = b.get(v);
+    final boolean sameIndex = a.index == b.index;
+    for (int slot = 0, n = a.index.size(); slot < n; slot++) {
+      Type ta = a.typeAt(slot);
+      if (ta == null) {
+        continue;
+      }
+      Type tb = sameIndex ? b.typeAt(slot) : b.get(a.index.localAt(slot));
 
       int cmp;
       if (TypeResolver.typesEqual(ta, tb)) {
@@ -115,4 +183,73 @@ public class Typing {
     }
     return r;
   }
-}
\ No newline at end of file
+
+  /**
+   * Assigns a slot to each local. The locals of a body are usually numbered consecutively, so that a local's slot is
+   * normally its number minus the lowest number among the initial locals. Locals whose numbers fall outside of this window
+   * or collide with another local are kept in a map instead.
+   */
+  private static final class LocalIndex {
+    private final int base;
+    private final Local[] window;
+    private final List<Local> others = new ArrayList<Local>();
+    private Map<Local, Integer> otherSlots;
+
+    LocalIndex(Collection<Local> vs) {
+      int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+      for (Local v : vs) {
+        int number = v.getNumber();
+        min = Math.min(min, number);
+        max = Math.max(max, number);
+      }
+      // Only use a window if it is not much larger than the number of locals
+      if (!vs.isEmpty() && (long) max - min < 2L * vs.size() + PAGE_SIZE) {
+        this.base = min;
+        this.window = new Local[max - min + 1];
+      } else {
+        this.base = 0;
+        this.window = new Local[0];
+      }
+      for (Local v : vs) {
+        if (this.slotOf(v) < 0) {
+          this.add(v);
+        }
+      }
+    }
+
+    int size() {
+      return this.window.length + this.others.size();
+    }
+
+    int slotOf(Local v) {
+      int slot = v.getNumber() - this.base;
+      if (slot >= 0 && slot < this.window.length && this.window[slot] == v) {
+        return slot;
+      }
+      if (this.otherSlots == null) {
+        return -1;
+      }
+      Integer s = this.otherSlots.get(v);
+      return s == null ? -1 : s;
+    }
+
+    int add(Local v) {
+      int slot = v.getNumber() - this.base;
+      if (slot >= 0 && slot < this.window.length && this.window[slot] == null) {
+        this.window[slot] = v;
+        return slot;
+      }
+      if (this.otherSlots == null) {
+        this.otherSlots = new IdentityHashMap<Local, Integer>();
+      }
+      slot = this.size();
+      this.others.add(v);
+      this.otherSlots.put(v, slot);
+      return slot;
+    }
+
+    Local localAt(int slot) {
+      return slot < this.window.length ? this.window[slot] : this.others.get(slot - this.window.length);
+    }
+  }
+}
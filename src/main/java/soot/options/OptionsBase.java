@@ -109,6 +109,17 @@ abstract class OptionsBase {
     return options.removeFirst();
   }
 
+  public abstract int num_threads();
+
+  /**
+   * Returns the number of threads for work that Soot runs in parallel, which is the value of the <code>num-threads</code>
+   * option if it has been set, and the number of available processors otherwise.
+   */
+  public int getNumThreads() {
+    int numThreads = num_threads();
+    return numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+  }
+
   protected LinkedList<String> classes = new LinkedList<String>();
 
   public LinkedList<String> classes() {
@@ -32,15 +32,16 @@ import soot.shimple.toolkits.graph.SimpleGlobalValueNumberer;
 import soot.toolkits.graph.Block;
 import soot.toolkits.graph.BlockGraph;
 import soot.toolkits.graph.BlockGraphConverter;
+import soot.toolkits.graph.CHKDominatorsFinder;
 import soot.toolkits.graph.CytronDominanceFrontier;
 import soot.toolkits.graph.DominanceFrontier;
 import soot.toolkits.graph.DominatorTree;
 import soot.toolkits.graph.DominatorsFinder;
 import soot.toolkits.graph.ExceptionalBlockGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraphFactory;
 import soot.toolkits.graph.HashReversibleGraph;
 import soot.toolkits.graph.ReversibleGraph;
-import soot.toolkits.graph.SimpleDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -107,7 +108,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
       return rdFinder;
     }
 
-    rdFinder = new SimpleDominatorsFinder<Block>(getReverseBlockGraph());
+    rdFinder = new CHKDominatorsFinder<Block>(getReverseBlockGraph());
     return rdFinder;
   }
 
@@ -146,7 +147,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
 
     UnreachableCodeEliminator.v().transform(getBody());
 
-    ug = new ExceptionalUnitGraph(getBody());
+    ug = ExceptionalUnitGraphFactory.createExceptionalUnitGraph(getBody());
     return ug;
   }
 
@@ -155,7 +156,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
       return dFinder;
     }
 
-    dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
+    dFinder = new CHKDominatorsFinder<Block>(getBlockGraph());
     return dFinder;
   }
 
@@ -45,6 +45,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -208,6 +209,17 @@ public class DexPrinter {
   protected MultiDexBuilder dexBuilder;
   protected File originalApk;
 
+  /**
+   * The classes whose {@link ClassDef}s are built in parallel when printing, see {@link Options#parallel_dex()}
+   */
+  protected final List<SootClass> pendingClasses = new ArrayList<SootClass>();
+
+  /**
+   * The array initializations found in the bodies that have been prepared for the translation to dex before building the
+   * {@link ClassDef}s in parallel
+   */
+  private final Map<SootMethod, DexArrayInitDetector> preparedBodies = new HashMap<SootMethod, DexArrayInitDetector>();
+
   public DexPrinter() {
     dexBuilder = createDexBuilder();
   }
@@ -230,9 +242,16 @@ public class DexPrinter {
       apiLevel = Math.min(androidSDKVersionInfo.minSdkVersion, androidSDKVersionInfo.sdkTargetVersion);
     }
 
+    if (Options.v().parallel_dex()) {
+      return new ParallelMultiDexBuilder(Opcodes.forApi(apiLevel), getThreadCount());
+    }
     return new MultiDexBuilder(Opcodes.forApi(apiLevel));
   }
 
+  private static int getThreadCount() {
+    return Options.v().getNumThreads();
+  }
+
   private static boolean isSignatureFile(String fileName) {
     return SIGNATURE_FILE_PATTERN.matcher(fileName).matches();
   }
@@ -611,6 +630,35 @@ public class DexPrinter {
   }
 
   private void addAsClassDefItem(SootClass c) {
+    dexBuilder.internClass(toClassDef(c));
+  }
+
+  /**
+   * Builds the {@link ClassDef}s of all pending classes in parallel and interns them in the order in which the classes have
+   * been added. Retrieving and transforming the bodies is not thread-safe, so all bodies are prepared one after the other
+   * beforehand.
+   */
+  private void addPendingClasses() {
+    List<Callable<ClassDef>> tasks = new ArrayList<Callable<ClassDef>>(pendingClasses.size());
+    for (final SootClass c : pendingClasses) {
+      for (SootMethod m : c.getMethods()) {
+        if (!m.isPhantom() && !m.isAbstract() && !m.isNative()) {
+          preparedBodies.put(m, prepareBody(m));
+        }
+      }
+      tasks.add(() -> toClassDef(c));
+    }
+    pendingClasses.clear();
+    try {
+      for (ClassDef classDef : ParallelMultiDexBuilder.invokeAll(tasks, getThreadCount())) {
+        dexBuilder.internClass(classDef);
+      }
+    } finally {
+      preparedBodies.clear();
+    }
+  }
+
+  protected ClassDef toClassDef(SootClass c) {
     // add source file tag if any
     String sourceFile = null;
     if (c.hasTag("SourceFileTag")) {
@@ -665,9 +713,8 @@ public class DexPrinter {
 
     Collection<Method> methods = toMethods(c);
 
-    ClassDef classDef = new ImmutableClassDef(classType, accessFlags, superClass, interfaces, sourceFile,
-        buildClassAnnotations(c), fields, methods);
-    dexBuilder.internClass(classDef);
+    return new ImmutableClassDef(classType, accessFlags, superClass, interfaces, sourceFile, buildClassAnnotations(c),
+        fields, methods);
   }
 
   private Set<Annotation> buildClassAnnotations(SootClass c) {
@@ -1119,10 +1166,12 @@ public class DexPrinter {
     return methods;
   }
 
-  private MethodImplementation toMethodImplementation(SootMethod m) {
-    if (m.isAbstract() || m.isNative()) {
-      return null;
-    }
+  /**
+   * Retrieves the body of the given method and transforms it into the shape the translation to dex expects.
+   *
+   * @return the array initializations found in the body
+   */
+  private DexArrayInitDetector prepareBody(SootMethod m) {
     Body activeBody = m.retrieveActiveBody();
 
     // check the method name to make sure that dexopt won't get into trouble
@@ -1161,6 +1210,18 @@ public class DexPrinter {
     // Split the tries since Dalvik does not supported nested try/catch
     // blocks
     TrapSplitter.v().transform(activeBody);
+    return initDetector;
+  }
+
+  private MethodImplementation toMethodImplementation(SootMethod m) {
+    if (m.isAbstract() || m.isNative()) {
+      return null;
+    }
+    DexArrayInitDetector initDetector = preparedBodies.get(m);
+    if (initDetector == null) {
+      initDetector = prepareBody(m);
+    }
+    Body activeBody = m.getActiveBody();
 
     // word count of incoming parameters
     int inWords = SootToDexUtils.getDexWords(m.getParameterTypes());
@@ -1203,7 +1264,7 @@ public class DexPrinter {
 
     fixLongJumps(instructions, labelAssinger, stmtV);
 
-    Map<Local, Integer> seenRegisters = new HashMap<Local, Integer>();
+    Map<Local, Integer> seenRegisters = new LinkedHashMap<Local, Integer>();
     Map<Instruction, LocalRegisterAssignmentInformation> instructionRegisterMap = stmtV.getInstructionRegisterMap();
 
     if (Options.v().write_local_annotations()) {
@@ -1653,7 +1714,11 @@ public class DexPrinter {
       return;
     }
 
-    addAsClassDefItem(c);
+    if (Options.v().parallel_dex()) {
+      pendingClasses.add(c);
+    } else {
+      addAsClassDefItem(c);
+    }
     // save original APK for this class, needed to copy all the other files
     // inside
     Map<String, File> dexClassIndex = SourceLocator.v().dexClassIndex();
@@ -1672,6 +1737,9 @@ public class DexPrinter {
   }
 
   public void print() {
+    if (!pendingClasses.isEmpty()) {
+      addPendingClasses();
+    }
     try {
       if (Options.v().output_jar()
           || (originalApk != null && Options.v().output_format() != Options.output_format_force_dex)) {
@@ -0,0 +1,298 @@
+package soot.toDex;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.iface.Annotation;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.ExceptionHandler;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.TryBlock;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction;
+import org.jf.dexlib2.iface.reference.FieldReference;
+import org.jf.dexlib2.iface.reference.MethodReference;
+import org.jf.dexlib2.iface.reference.Reference;
+import org.jf.dexlib2.iface.reference.TypeReference;
+import org.jf.dexlib2.writer.DexWriter;
+import org.jf.dexlib2.writer.io.FileDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+
+/**
+ * A {@link MultiDexBuilder} that spreads the work of building the dex files over several threads. Instead of interning every
+ * class into one {@link DexPool} after the other, the classes are first partitioned into dex files by an estimate of the
+ * type, field and method references each of them adds. The partitions are then interned into independent pools and written
+ * concurrently.
+ *
+ * <p>
+ * The output only depends on the order in which the classes are added: the partitions are formed in that order, and the
+ * dex files are named in the order of their partitions. Should a partition still overflow because the estimate was too
+ * low, it is split further the same way {@link MultiDexBuilder} does.
+ * </p>
+ */
+public class ParallelMultiDexBuilder extends MultiDexBuilder {
+
+  protected final int threads;
+  protected final List<ClassDef> classes = new ArrayList<>();
+
+  public ParallelMultiDexBuilder(Opcodes opcodes, int threads) {
+    super(opcodes);
+    this.threads = threads;
+  }
+
+  @Override
+  public void internClass(ClassDef clz) {
+    classes.add(clz);
+  }
+
+  @Override
+  public List<File> writeTo(String folder) throws IOException {
+    final List<List<ClassDef>> partitions = partition();
+
+    // intern every partition into pools of its own
+    List<Callable<List<DexPool>>> interning = new ArrayList<>(partitions.size());
+    for (final List<ClassDef> partition : partitions) {
+      interning.add(() -> {
+        MultiDexBuilder builder = new MultiDexBuilder(opcodes);
+        for (ClassDef clz : partition) {
+          builder.internClass(clz);
+        }
+        return builder.dexPools;
+      });
+    }
+    dexPools.clear();
+    for (List<DexPool> pools : invokeAll(interning, threads)) {
+      dexPools.addAll(pools);
+    }
+
+    List<Callable<File>> writing = new ArrayList<>(dexPools.size());
+    for (final DexPool dexPool : dexPools) {
+      final int count = writing.size();
+      writing.add(() -> {
+        // name dex files: classes.dex, classes2.dex, classes3.dex, etc.
+        File file = new File(folder, "classes" + (count == 0 ? "" : count + 1) + ".dex");
+        FileDataStore fds = new FileDataStore(file);
+        try {
+          dexPool.writeTo(fds);
+        } finally {
+          fds.close();
+        }
+        return file;
+      });
+    }
+    return invokeAll(writing, threads);
+  }
+
+  /**
+   * Splits the classes into consecutive partitions whose estimated number of type, field and method references each stays
+   * within the limits of a single dex file. Before Lollipop, all classes must go into one dex file.
+   */
+  protected List<List<ClassDef>> partition() {
+    final List<List<ClassDef>> partitions = new ArrayList<>();
+    if (!opcodes.isArt()) {
+      partitions.add(classes);
+      return partitions;
+    }
+
+    List<Callable<References>> estimating = new ArrayList<>(classes.size());
+    for (final ClassDef clz : classes) {
+      estimating.add(() -> new References(clz));
+    }
+    final List<References> references = invokeAll(estimating, threads);
+
+    List<ClassDef> current = new ArrayList<>();
+    References union = new References();
+    for (int i = 0; i < classes.size(); i++) {
+      References refs = references.get(i);
+      if (!current.isEmpty() && !union.fits(refs)) {
+        partitions.add(current);
+        current = new ArrayList<>();
+        union = new References();
+      }
+      union.addAll(refs);
+      current.add(classes.get(i));
+    }
+    if (!current.isEmpty()) {
+      partitions.add(current);
+    }
+    return partitions;
+  }
+
+  /**
+   * Runs the given tasks on at most the given number of threads and returns their results in the order of the tasks.
+   */
+  static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int threads) {
+    if (tasks.size() < 2 || threads < 2) {
+      List<T> results = new ArrayList<>(tasks.size());
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return results;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    try {
+      List<Future<T>> futures = new ArrayList<>(tasks.size());
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      List<T> results = new ArrayList<>(tasks.size());
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while building dex files", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The types, fields and methods a class refers to, i.e. the items it adds to the index sections of a dex file that limit
+   * its size.
+   */
+  protected static class References {
+    final Set<String> types = new HashSet<>();
+    final Set<FieldReference> fields = new HashSet<>();
+    final Set<MethodReference> methods = new HashSet<>();
+
+    References() {
+    }
+
+    References(ClassDef clz) {
+      addType(clz.getType());
+      addType(clz.getSuperclass());
+      for (String intf : clz.getInterfaces()) {
+        addType(intf);
+      }
+      addAnnotations(clz.getAnnotations());
+      for (Field f : clz.getFields()) {
+        addField(f);
+        addAnnotations(f.getAnnotations());
+      }
+      for (Method m : clz.getMethods()) {
+        addMethod(m);
+        addAnnotations(m.getAnnotations());
+        MethodImplementation impl = m.getImplementation();
+        if (impl != null) {
+          for (Instruction insn : impl.getInstructions()) {
+            if (insn instanceof ReferenceInstruction) {
+              addReference(((ReferenceInstruction) insn).getReference());
+            }
+          }
+          for (TryBlock<? extends ExceptionHandler> tb : impl.getTryBlocks()) {
+            for (ExceptionHandler handler : tb.getExceptionHandlers()) {
+              addType(handler.getExceptionType());
+            }
+          }
+        }
+      }
+    }
+
+    private void addType(CharSequence type) {
+      if (type != null) {
+        types.add(type.toString());
+      }
+    }
+
+    private void addField(FieldReference f) {
+      fields.add(f);
+      addType(f.getDefiningClass());
+      addType(f.getType());
+    }
+
+    private void addMethod(MethodReference m) {
+      methods.add(m);
+      addType(m.getDefiningClass());
+      addType(m.getReturnType());
+      for (CharSequence p : m.getParameterTypes()) {
+        addType(p);
+      }
+    }
+
+    private void addReference(Reference ref) {
+      if (ref instanceof MethodReference) {
+        addMethod((MethodReference) ref);
+      } else if (ref instanceof FieldReference) {
+        addField((FieldReference) ref);
+      } else if (ref instanceof TypeReference) {
+        addType(((TypeReference) ref).getType());
+      }
+    }
+
+    private void addAnnotations(Set<? extends Annotation> annotations) {
+      for (Annotation a : annotations) {
+        addType(a.getType());
+      }
+    }
+
+    /**
+     * Returns whether the given references can be added without exceeding the limits of a dex file.
+     */
+    boolean fits(References other) {
+      return fits(types, other.types) && fits(fields, other.fields) && fits(methods, other.methods);
+    }
+
+    private static <T> boolean fits(Set<T> union, Set<T> added) {
+      int size = union.size();
+      for (T t : added) {
+        if (!union.contains(t) && ++size > DexWriter.MAX_POOL_SIZE) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void addAll(References other) {
+      types.addAll(other.types);
+      fields.addAll(other.fields);
+      methods.addAll(other.methods);
+    }
+  }
+}
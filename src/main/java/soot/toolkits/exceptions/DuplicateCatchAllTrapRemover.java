@@ -115,4 +115,8 @@ public class DuplicateCatchAllTrapRemover extends BodyTransformer {
     return false;
   }
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
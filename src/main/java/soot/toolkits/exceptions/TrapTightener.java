@@ -39,6 +39,7 @@ import soot.jimple.toolkits.scalar.UnreachableCodeEliminator;
 import soot.options.Options;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph.ExceptionDest;
+import soot.toolkits.scalar.BodyAnalysisCache;
 import soot.util.Chain;
 
 /**
@@ -80,9 +81,11 @@ public final class TrapTightener extends TrapTransformer {
     Chain<Trap> trapChain = body.getTraps();
     Chain<Unit> unitChain = body.getUnits();
     if (trapChain.size() > 0) {
-      ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body, throwAnalysis);
+      ExceptionalUnitGraph graph
+          = BodyAnalysisCache.v().getExceptionalUnitGraph(body, throwAnalysis, Options.v().omit_excepting_unit_edges());
       Set<Unit> unitsWithMonitor = getUnitsWithMonitor(graph);
 
+      boolean tightened = false;
       for (Iterator<Trap> trapIt = trapChain.iterator(); trapIt.hasNext();) {
         Trap trap = trapIt.next();
         boolean isCatchAll = trap.getException().getName().equals("java.lang.Throwable");
@@ -129,15 +132,22 @@ public final class TrapTightener extends TrapTransformer {
         } else {
           if (firstTrappedThrower != null && firstTrappedUnit != firstTrappedThrower) {
             trap.setBeginUnit(firstTrappedThrower);
+            tightened = true;
           }
           if (lastTrappedThrower == null) {
             lastTrappedThrower = firstTrappedUnit;
           }
           if (lastTrappedUnit != lastTrappedThrower) {
             trap.setEndUnit(unitChain.getSuccOf(lastTrappedThrower));
+            tightened = true;
           }
         }
       }
+
+      // moving the boundaries of a trap does not show in the modification count
+      if (tightened) {
+        BodyAnalysisCache.v().invalidate(body);
+      }
     }
   }
 
@@ -161,4 +171,9 @@ public final class TrapTightener extends TrapTransformer {
     }
     return false;
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
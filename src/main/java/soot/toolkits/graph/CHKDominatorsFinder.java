@@ -0,0 +1,300 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates dominators with the algorithm of Cooper, Harvey and Kennedy ("A Simple, Fast Dominance Algorithm", 2001),
+ * which iterates over the immediate dominators of the nodes in reverse postorder instead of over sets of dominators. This
+ * takes linear memory and, for the graphs of method bodies, close to linear time.
+ *
+ * <p>
+ * The result is kept in a few arrays indexed by node number: the immediate dominator of each node and the preorder
+ * interval of each node in the dominator tree, so that {@link #isDominatedBy(Object, Object)} takes constant time. The
+ * finder does not change after construction and can be shared, e.g. through
+ * {@link soot.toolkits.scalar.BodyAnalysisCache#getDominatorsFinder(UnitGraph)}, between all clients that need the
+ * dominators of the same graph.
+ * </p>
+ *
+ * <p>
+ * If the graph has several heads, they are treated as successors of a common virtual root, so a node that can be reached
+ * from more than one head along disjoint paths has no immediate dominator. Nodes that cannot be reached from any head are
+ * only dominated by themselves.
+ * </p>
+ */
+public class CHKDominatorsFinder<N> implements DominatorsFinder<N> {
+  protected final DirectedGraph<N> graph;
+
+  private final List<N> nodes;
+  private final Map<N, Integer> nodeToIndex;
+  /** The index of the immediate dominator of each node, -1 if there is none. */
+  private final int[] idom;
+  /** The preorder number of each node in the dominator tree. */
+  private final int[] treeEnter;
+  /** The largest preorder number in the subtree of each node in the dominator tree. */
+  private final int[] treeExit;
+
+  public CHKDominatorsFinder(DirectedGraph<N> graph) {
+    this.graph = graph;
+    this.nodes = new ArrayList<N>(graph.size());
+    this.nodeToIndex = new HashMap<N, Integer>(graph.size() * 2 + 1, 0.7f);
+    for (N node : graph) {
+      if (!nodeToIndex.containsKey(node)) {
+        nodeToIndex.put(node, nodes.size());
+        nodes.add(node);
+      }
+    }
+
+    final int size = nodes.size();
+    this.idom = new int[size];
+    this.treeEnter = new int[size];
+    this.treeExit = new int[size];
+    computeImmediateDominators();
+    numberTree();
+  }
+
+  private void computeImmediateDominators() {
+    final int size = nodes.size();
+    final int root = size;
+
+    // The successors of the virtual root are the heads of the graph
+    int[][] succs = new int[size + 1][];
+    boolean[] isHead = new boolean[size];
+    List<Integer> heads = new ArrayList<Integer>();
+    for (N head : graph.getHeads()) {
+      Integer h = nodeToIndex.get(head);
+      if (h != null && !isHead[h]) {
+        isHead[h] = true;
+        heads.add(h);
+      }
+    }
+    succs[root] = toArray(heads);
+
+    // Number the nodes in postorder of a depth-first search from the root
+    int[] postNumber = new int[size + 1];
+    int[] postOrder = new int[size + 1];
+    Arrays.fill(postNumber, -1);
+    boolean[] visited = new boolean[size + 1];
+    int[] stack = new int[size + 1];
+    int[] next = new int[size + 1];
+    int sp = 0;
+    int count = 0;
+    stack[sp++] = root;
+    visited[root] = true;
+    while (sp > 0) {
+      int v = stack[sp - 1];
+      if (succs[v] == null) {
+        succs[v] = indicesOf(graph.getSuccsOf(nodes.get(v)));
+      }
+      if (next[v] < succs[v].length) {
+        int w = succs[v][next[v]++];
+        if (!visited[w]) {
+          visited[w] = true;
+          stack[sp++] = w;
+        }
+      } else {
+        sp--;
+        postNumber[v] = count;
+        postOrder[count++] = v;
+      }
+    }
+
+    // The immediate dominators by postorder number, -1 while unknown
+    final int rootNumber = count - 1;
+    int[] doms = new int[count];
+    Arrays.fill(doms, -1);
+    doms[rootNumber] = rootNumber;
+    int[][] preds = new int[size][];
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int b = rootNumber - 1; b >= 0; b--) {
+        int v = postOrder[b];
+        if (preds[v] == null) {
+          preds[v] = indicesOf(graph.getPredsOf(nodes.get(v)));
+        }
+        int newIdom = isHead[v] ? rootNumber : -1;
+        for (int p : preds[v]) {
+          int q = postNumber[p];
+          if (q >= 0 && doms[q] >= 0) {
+            newIdom = newIdom < 0 ? q : intersect(doms, q, newIdom);
+          }
+        }
+        if (doms[b] != newIdom) {
+          doms[b] = newIdom;
+          changed = true;
+        }
+      }
+    }
+
+    Arrays.fill(idom, -1);
+    for (int b = 0; b < rootNumber; b++) {
+      if (doms[b] != rootNumber) {
+        idom[postOrder[b]] = postOrder[doms[b]];
+      }
+    }
+  }
+
+  /**
+   * Returns the postorder number of the nearest common dominator of the nodes with the given postorder numbers.
+   */
+  private static int intersect(int[] doms, int a, int b) {
+    while (a != b) {
+      while (a < b) {
+        a = doms[a];
+      }
+      while (b < a) {
+        b = doms[b];
+      }
+    }
+    return a;
+  }
+
+  /**
+   * Assigns each node an interval of preorder numbers in the dominator tree that contains the intervals of all nodes it
+   * dominates.
+   */
+  private void numberTree() {
+    final int size = nodes.size();
+
+    // The children of each node, stored consecutively in the order of their indices
+    int[] childStart = new int[size + 1];
+    for (int v = 0; v < size; v++) {
+      if (idom[v] >= 0) {
+        childStart[idom[v] + 1]++;
+      }
+    }
+    for (int v = 0; v < size; v++) {
+      childStart[v + 1] += childStart[v];
+    }
+    int[] children = new int[childStart[size]];
+    int[] fill = childStart.clone();
+    for (int v = 0; v < size; v++) {
+      if (idom[v] >= 0) {
+        children[fill[idom[v]]++] = v;
+      }
+    }
+
+    int[] stack = new int[size];
+    int[] next = childStart.clone();
+    int counter = 0;
+    for (int r = 0; r < size; r++) {
+      if (idom[r] >= 0) {
+        continue;
+      }
+      int sp = 0;
+      stack[sp++] = r;
+      treeEnter[r] = counter++;
+      while (sp > 0) {
+        int v = stack[sp - 1];
+        if (next[v] < childStart[v + 1]) {
+          int c = children[next[v]++];
+          treeEnter[c] = counter++;
+          stack[sp++] = c;
+        } else {
+          treeExit[v] = counter - 1;
+          sp--;
+        }
+      }
+    }
+  }
+
+  private int[] indicesOf(List<N> list) {
+    int[] r = new int[list.size()];
+    int n = 0;
+    for (N node : list) {
+      Integer i = nodeToIndex.get(node);
+      if (i != null) {
+        r[n++] = i;
+      }
+    }
+    return n == r.length ? r : Arrays.copyOf(r, n);
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] r = new int[list.size()];
+    for (int i = 0; i < r.length; i++) {
+      r[i] = list.get(i);
+    }
+    return r;
+  }
+
+  private int indexOf(N node) {
+    Integer i = nodeToIndex.get(node);
+    if (i == null) {
+      throw new RuntimeException("Node is not part of the graph: " + node);
+    }
+    return i;
+  }
+
+  @Override
+  public DirectedGraph<N> getGraph() {
+    return graph;
+  }
+
+  /**
+   * Returns the dominators of the given node, starting with the root of its dominator tree and ending with the node itself.
+   */
+  @Override
+  public List<N> getDominators(N node) {
+    List<N> result = new ArrayList<N>();
+    for (int i = indexOf(node); i >= 0; i = idom[i]) {
+      result.add(nodes.get(i));
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  @Override
+  public N getImmediateDominator(N node) {
+    int d = idom[indexOf(node)];
+    return d < 0 ? null : nodes.get(d);
+  }
+
+  @Override
+  public boolean isDominatedBy(N node, N dominator) {
+    int i = indexOf(node);
+    Integer d = nodeToIndex.get(dominator);
+    if (d == null) {
+      return false;
+    }
+    return treeEnter[d] <= treeEnter[i] && treeEnter[i] <= treeExit[d];
+  }
+
+  @Override
+  public boolean isDominatedByAll(N node, Collection<N> dominators) {
+    for (N dominator : dominators) {
+      if (!isDominatedBy(node, dominator)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
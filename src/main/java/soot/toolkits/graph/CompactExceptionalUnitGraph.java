@@ -0,0 +1,293 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import soot.Body;
+import soot.Scene;
+import soot.Timers;
+import soot.Unit;
+import soot.UnitBox;
+import soot.options.Options;
+import soot.toolkits.exceptions.ThrowAnalysis;
+import soot.util.IdentityIndex;
+import soot.util.IntRelation;
+
+/**
+ * <p>
+ * An {@link ExceptionalUnitGraph} which keeps its edges in compressed sparse row form. The units of the body are numbered
+ * by their position in the unit chain, and for each kind of edge (unexceptional, exceptional and combined) the successors
+ * or predecessors of unit <code>i</code> are the slice <code>[offsets[i], offsets[i + 1])</code> of one <code>int</code>
+ * array. This avoids the map entry and the {@link List} that <code>ExceptionalUnitGraph</code> allocates per unit, edge
+ * kind and direction, so large bodies produce much smaller graphs.
+ * </p>
+ *
+ * <p>
+ * The graph has the same heads, tails, edges and {@link ExceptionalUnitGraph.ExceptionDest ExceptionDest}s as an
+ * <code>ExceptionalUnitGraph</code> built with the same parameters, and lists the neighbours of each unit in the same
+ * order. The lists it returns are read-only views of the arrays.
+ * </p>
+ *
+ * @see ExceptionalUnitGraphFactory
+ */
+public class CompactExceptionalUnitGraph extends ExceptionalUnitGraph {
+  private Unit[] units;
+  private IdentityIndex index;
+
+  private IntRelation unexceptionalSuccs;
+  private IntRelation unexceptionalPreds;
+  private IntRelation exceptionalSuccs;
+  private IntRelation exceptionalPreds;
+  private IntRelation succs;
+  private IntRelation preds;
+
+  /**
+   * Constructs the graph for the given body, throw analysis and <code>omitExceptingUnitEdges</code> setting.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body, ThrowAnalysis, boolean)
+   */
+  public CompactExceptionalUnitGraph(Body body, ThrowAnalysis throwAnalysis, boolean omitExceptingUnitEdges) {
+    super(body, false);
+    initialize(throwAnalysis, omitExceptingUnitEdges);
+  }
+
+  /**
+   * Constructs the graph for the given body and throw analysis.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body, ThrowAnalysis)
+   */
+  public CompactExceptionalUnitGraph(Body body, ThrowAnalysis throwAnalysis) {
+    this(body, throwAnalysis, Options.v().omit_excepting_unit_edges());
+  }
+
+  /**
+   * Constructs the graph for the given body with the {@link Scene}'s default throw analysis.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body)
+   */
+  public CompactExceptionalUnitGraph(Body body) {
+    this(body, Scene.v().getDefaultThrowAnalysis(), Options.v().omit_excepting_unit_edges());
+  }
+
+  @Override
+  protected void initialize(ThrowAnalysis throwAnalysis, boolean omitExceptingUnitEdges) {
+    Set<Unit> trapUnitsThatAreHeads = Collections.emptySet();
+
+    if (Options.v().time()) {
+      Timers.v().graphTimer.start();
+    }
+
+    this.throwAnalysis = throwAnalysis;
+    units = unitChain.toArray(new Unit[unitChain.size()]);
+    index = new IdentityIndex(units);
+    unexceptionalSuccs = buildUnexceptionalSuccs();
+    unexceptionalPreds = unexceptionalSuccs.transpose(units.length);
+
+    if (body.getTraps().isEmpty()) {
+      unitToExceptionDests = Collections.emptyMap();
+      exceptionalSuccs = exceptionalPreds = new IntRelation.Builder(units.length, 0, true).build();
+      succs = unexceptionalSuccs;
+      preds = unexceptionalPreds;
+    } else {
+      unitToExceptionDests = buildExceptionDests(throwAnalysis);
+
+      // buildExceptionalEdges() reads back the exceptional edges it has
+      // added so far, so they are collected in the inherited maps first
+      // and only packed into arrays once they are complete.
+      unitToExceptionalSuccs = new LinkedHashMap<Unit, List<Unit>>(unitToExceptionDests.size() * 2 + 1, 0.7f);
+      unitToExceptionalPreds = new LinkedHashMap<Unit, List<Unit>>(body.getTraps().size() * 2 + 1, 0.7f);
+      trapUnitsThatAreHeads = buildExceptionalEdges(throwAnalysis, unitToExceptionDests, unitToExceptionalSuccs,
+          unitToExceptionalPreds, omitExceptingUnitEdges);
+      exceptionalSuccs = pack(unitToExceptionalSuccs);
+      exceptionalPreds = pack(unitToExceptionalPreds);
+      unitToExceptionalSuccs = null;
+      unitToExceptionalPreds = null;
+
+      succs = combine(unexceptionalSuccs, exceptionalSuccs);
+      preds = combine(unexceptionalPreds, exceptionalPreds);
+    }
+
+    buildHeadsAndTails(trapUnitsThatAreHeads);
+
+    if (Options.v().time()) {
+      Timers.v().graphTimer.end();
+    }
+
+    soot.util.PhaseDumper.v().dumpGraph(this);
+  }
+
+  /**
+   * Computes the unexceptional successors of every unit, in the order in which
+   * {@link UnitGraph#buildUnexceptionalEdges(Map, Map)} lists them.
+   */
+  private IntRelation buildUnexceptionalSuccs() {
+    final int n = units.length;
+    IntRelation.Builder builder = new IntRelation.Builder(n, n + (n >> 2), true);
+    for (int i = 0; i < n; i++) {
+      Unit u = units[i];
+      if (u.fallsThrough() && i + 1 < n) {
+        builder.add(i + 1);
+      }
+      if (u.branches()) {
+        for (UnitBox targetBox : u.getUnitBoxes()) {
+          builder.add(indexOfEdgeTarget(targetBox.getUnit()));
+        }
+      }
+      builder.endRow();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Packs edges collected in a map into arrays, keeping the order of each list.
+   */
+  private IntRelation pack(Map<Unit, List<Unit>> unitToTargets) {
+    final int n = units.length;
+    IntRelation.Builder builder = new IntRelation.Builder(n, unitToTargets.size() * 2, true);
+    for (int i = 0; i < n; i++) {
+      List<Unit> targets = unitToTargets.get(units[i]);
+      if (targets != null) {
+        for (Unit target : targets) {
+          builder.add(indexOfEdgeTarget(target));
+        }
+      }
+      builder.endRow();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Merges unexceptional and exceptional edges the way {@link UnitGraph#combineMapValues(Map, Map)} does: the longer of
+   * the two rows comes first, and the targets of the shorter one are appended unless already present.
+   */
+  private static IntRelation combine(IntRelation a, IntRelation b) {
+    final int n = a.rows();
+    IntRelation.Builder builder = new IntRelation.Builder(n, a.targets().length + b.targets().length, true);
+    for (int i = 0; i < n; i++) {
+      IntRelation first = a.size(i) >= b.size(i) ? a : b;
+      IntRelation second = first == a ? b : a;
+      for (int j = first.start(i); j < first.end(i); j++) {
+        builder.add(first.targets()[j]);
+      }
+      for (int j = second.start(i); j < second.end(i); j++) {
+        builder.add(second.targets()[j]);
+      }
+      builder.endRow();
+    }
+    return builder.build();
+  }
+
+  private int indexOfEdgeTarget(Unit u) {
+    int i = index.get(u);
+    if (i < 0) {
+      throw new IllegalStateException("Edge target " + u + " is not in the body of " + method.getSignature());
+    }
+    return i;
+  }
+
+  private List<Unit> getEdges(IntRelation edges, Unit u) {
+    int i = index.get(u);
+    if (i < 0) {
+      return Collections.emptyList();
+    }
+    int from = edges.start(i);
+    int to = edges.end(i);
+    if (from == to) {
+      return Collections.emptyList();
+    }
+    return new UnitList(edges.targets(), from, to);
+  }
+
+  @Override
+  public List<Unit> getPredsOf(Unit u) {
+    return getEdges(preds, u);
+  }
+
+  @Override
+  public List<Unit> getSuccsOf(Unit u) {
+    return getEdges(succs, u);
+  }
+
+  @Override
+  public List<Unit> getUnexceptionalPredsOf(Unit u) {
+    return getEdges(unexceptionalPreds, u);
+  }
+
+  @Override
+  public List<Unit> getUnexceptionalSuccsOf(Unit u) {
+    return getEdges(unexceptionalSuccs, u);
+  }
+
+  @Override
+  public List<Unit> getExceptionalPredsOf(Unit u) {
+    if (exceptionalPreds == null) {
+      // Still inside buildExceptionalEdges()
+      return super.getExceptionalPredsOf(u);
+    }
+    return getEdges(exceptionalPreds, u);
+  }
+
+  @Override
+  public List<Unit> getExceptionalSuccsOf(Unit u) {
+    if (exceptionalSuccs == null) {
+      // Still inside buildExceptionalEdges()
+      return super.getExceptionalSuccsOf(u);
+    }
+    return getEdges(exceptionalSuccs, u);
+  }
+
+  /**
+   * A read-only view of one row of the edges.
+   */
+  private final class UnitList extends AbstractList<Unit> implements RandomAccess {
+    private final int[] targets;
+    private final int from;
+    private final int to;
+
+    UnitList(int[] targets, int from, int to) {
+      this.targets = targets;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Unit get(int i) {
+      if (i < 0 || i >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + (to - from));
+      }
+      return units[targets[from + i]];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+}
@@ -22,7 +22,9 @@ package soot.toolkits.graph;
  * #L%
  */
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -74,21 +76,28 @@ public class CytronDominanceFrontier<N> implements DominanceFrontier<N> {
    * Make sure we visit children first. This is reverse topological order.
    **/
   protected void bottomUpDispatch(DominatorNode<N> node) {
-    // *** FIXME: It's annoying that this algorithm is so
-    // *** inefficient in that in traverses the tree from the head
-    // *** to the tail before it does anything.
-
     if (isFrontierKnown(node)) {
       return;
     }
 
-    for (DominatorNode<N> child : dt.getChildrenOf(node)) {
-      if (!isFrontierKnown(child)) {
-        bottomUpDispatch(child);
+    // Walk the tree with an explicit stack, the dominator trees of long methods can be very deep
+    Deque<DominatorNode<N>> stack = new ArrayDeque<DominatorNode<N>>();
+    Deque<Iterator<DominatorNode<N>>> childIts = new ArrayDeque<Iterator<DominatorNode<N>>>();
+    stack.push(node);
+    childIts.push(dt.getChildrenOf(node).iterator());
+    while (!stack.isEmpty()) {
+      Iterator<DominatorNode<N>> it = childIts.peek();
+      if (it.hasNext()) {
+        DominatorNode<N> child = it.next();
+        if (!isFrontierKnown(child)) {
+          stack.push(child);
+          childIts.push(dt.getChildrenOf(child).iterator());
+        }
+      } else {
+        childIts.pop();
+        processNode(stack.pop());
       }
     }
-
-    processNode(node);
   }
 
   /**
@@ -130,7 +139,7 @@ public class CytronDominanceFrontier<N> implements DominanceFrontier<N> {
     // up
     {
       for (DominatorNode<N> child : dt.getChildrenOf(node)) {
-        for (DominatorNode<N> childFront : getDominanceFrontierOf(child)) {
+        for (DominatorNode<N> childFront : nodeToFrontier.get(child)) {
           if (!dt.isImmediateDominatorOf(node, childFront)) {
             dominanceFrontier.add(childFront);
           }
@@ -631,7 +631,7 @@ public class ExceptionalUnitGraph extends UnitGraph implements ExceptionalGraph<
    * <code>additionalHeads</code>. It defines the graph's set of tails to include all <code>Unit</code>s which represent some
    * sort of return bytecode or an <code>athrow</code> bytecode which may escape the method.
    */
-  private void buildHeadsAndTails(Set<Unit> additionalHeads) {
+  protected void buildHeadsAndTails(Set<Unit> additionalHeads) {
     heads = new ArrayList<Unit>(additionalHeads.size() + 1);
     heads.addAll(additionalHeads);
 
@@ -0,0 +1,69 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import soot.Body;
+import soot.Scene;
+import soot.options.Options;
+import soot.toolkits.exceptions.ThrowAnalysis;
+
+/**
+ * Factory that creates the {@link ExceptionalUnitGraph} implementation selected by the <code>-compact-unit-graphs</code>
+ * option: a {@link CompactExceptionalUnitGraph} if it is set, a plain <code>ExceptionalUnitGraph</code> otherwise.
+ *
+ */
+public class ExceptionalUnitGraphFactory {
+
+  /**
+   * Creates a graph for the given body, using the {@link Scene}'s default throw analysis and the
+   * <code>-omit-excepting-unit-edges</code> setting.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body)
+   */
+  public static ExceptionalUnitGraph createExceptionalUnitGraph(Body body) {
+    return createExceptionalUnitGraph(body, Scene.v().getDefaultThrowAnalysis(),
+        Options.v().omit_excepting_unit_edges());
+  }
+
+  /**
+   * Creates a graph for the given body and throw analysis, using the <code>-omit-excepting-unit-edges</code> setting.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body, ThrowAnalysis)
+   */
+  public static ExceptionalUnitGraph createExceptionalUnitGraph(Body body, ThrowAnalysis throwAnalysis) {
+    return createExceptionalUnitGraph(body, throwAnalysis, Options.v().omit_excepting_unit_edges());
+  }
+
+  /**
+   * Creates a graph for the given body, throw analysis and <code>omitExceptingUnitEdges</code> setting.
+   *
+   * @see ExceptionalUnitGraph#ExceptionalUnitGraph(Body, ThrowAnalysis, boolean)
+   */
+  public static ExceptionalUnitGraph createExceptionalUnitGraph(Body body, ThrowAnalysis throwAnalysis,
+      boolean omitExceptingUnitEdges) {
+    if (Options.v().compact_unit_graphs()) {
+      return new CompactExceptionalUnitGraph(body, throwAnalysis, omitExceptingUnitEdges);
+    }
+    return new ExceptionalUnitGraph(body, throwAnalysis, omitExceptingUnitEdges);
+  }
+}
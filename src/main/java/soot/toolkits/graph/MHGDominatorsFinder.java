@@ -48,6 +48,10 @@ import java.util.Map;
  * 2007/07/03 - updated to use {@link BitSet}s instead of {@link HashSet}s, as the most expensive operation in this algorithm
  * used to be cloning of the fullSet, which is very cheap for {@link BitSet}s.
  *
+ * <p>
+ * The sets take memory quadratic in the size of the graph; {@link CHKDominatorsFinder} computes the same dominators for the
+ * nodes reachable from the heads in linear memory.
+ *
  * @author Navindra Umanee
  * @author Eric Bodden
  **/
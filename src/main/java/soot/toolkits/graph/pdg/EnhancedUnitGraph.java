@@ -33,9 +33,9 @@ import soot.Trap;
 import soot.Unit;
 import soot.jimple.ThrowStmt;
 import soot.jimple.internal.JNopStmt;
+import soot.toolkits.graph.CHKDominatorsFinder;
+import soot.toolkits.graph.CHKPostDominatorsFinder;
 import soot.toolkits.graph.DominatorNode;
-import soot.toolkits.graph.MHGDominatorsFinder;
-import soot.toolkits.graph.MHGPostDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 import soot.util.Chain;
 
@@ -171,8 +171,8 @@ public class EnhancedUnitGraph extends UnitGraph {
   }
 
   protected void handleExplicitThrowEdges() {
-    MHGDominatorTree<Unit> dom = new MHGDominatorTree<Unit>(new MHGDominatorsFinder<Unit>(this));
-    MHGDominatorTree<Unit> pdom = new MHGDominatorTree<Unit>(new MHGPostDominatorsFinder<Unit>(this));
+    MHGDominatorTree<Unit> dom = new MHGDominatorTree<Unit>(new CHKDominatorsFinder<Unit>(this));
+    MHGDominatorTree<Unit> pdom = new MHGDominatorTree<Unit>(new CHKPostDominatorsFinder<Unit>(this));
 
     // this keeps a map from the entry of a try-catch-block to a selected
     // merge point
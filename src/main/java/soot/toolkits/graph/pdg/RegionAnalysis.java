@@ -40,13 +40,13 @@ import soot.toolkits.graph.Block;
 import soot.toolkits.graph.BlockGraph;
 import soot.toolkits.graph.BriefBlockGraph;
 import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.CHKDominatorsFinder;
+import soot.toolkits.graph.CHKPostDominatorsFinder;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.DominatorNode;
 import soot.toolkits.graph.DominatorTree;
 import soot.toolkits.graph.ExceptionalBlockGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
-import soot.toolkits.graph.MHGDominatorsFinder;
-import soot.toolkits.graph.MHGPostDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -110,11 +110,11 @@ public class RegionAnalysis {
       throw new RuntimeException("Unsupported CFG passed into the RegionAnalyis constructor!");
     }
 
-    this.m_dom = new MHGDominatorTree<Block>(new MHGDominatorsFinder<Block>(this.m_blockCFG));
+    this.m_dom = new MHGDominatorTree<Block>(new CHKDominatorsFinder<Block>(this.m_blockCFG));
 
     try {
 
-      this.m_pdom = new MHGDominatorTree<Block>(new MHGPostDominatorsFinder<Block>(m_blockCFG));
+      this.m_pdom = new MHGDominatorTree<Block>(new CHKPostDominatorsFinder<Block>(m_blockCFG));
 
       if (Options.v().verbose()) {
         logger.debug("[RegionAnalysis] PostDominator tree: ");
@@ -0,0 +1,674 @@
+package soot.toolkits.scalar;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.nio.LongBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.scalar.FlowAnalysis.GraphView;
+import soot.toolkits.scalar.FlowAnalysis.Orderer;
+
+/**
+ * A solver for gen/kill problems over a finite universe of elements. Every node is described by a gen and a kill mask, and
+ * the flow function is {@code out = gen | (in & ~kill)}.
+ *
+ * <p>
+ * All masks and flow values live in one contiguous {@code long[]} matrix with a row each for the before, after, gen and
+ * kill value of every node. The solver iterates over the nodes reachable from the entries in reverse postorder and updates
+ * the matrix in place until nothing changes, so the fixed point iteration itself does not allocate. Compared to a
+ * {@link FlowAnalysis} over {@link FlowSet}s this avoids a flow set per node as well as the virtual {@code merge}/
+ * {@code copy} calls per edge.
+ * </p>
+ *
+ * <p>
+ * Subclasses describe the gen and kill sets of each node in {@link #computeGenKill(Object)} and call {@link #doAnalysis()}
+ * at the end of their constructor. Before and after always refer to the direction of the graph, i.e. for a backward
+ * analysis the flow function maps the after value of a node to its before value. Nodes that are not reachable from the
+ * entries are not part of the iteration and get the value of {@link #isInitialFull()}, just like {@link FlowAnalysis} hands
+ * out {@code newInitialFlow()} for them.
+ * </p>
+ *
+ * <p>
+ * The results can be read without copying them out of the matrix: {@link #getFlowSetsBefore(Supplier)} and
+ * {@link #getFlowSetsAfter(Supplier)} return maps of read-only {@link FlowSet} views of the rows, which analyses that extend
+ * {@link FlowAnalysis} can use as their flow maps.
+ * </p>
+ *
+ * @param <N>
+ *          node type of the directed graph
+ * @param <E>
+ *          element type of the universe
+ */
+public abstract class BitVectorFlowAnalysis<N, E> {
+  /** How the values of several predecessors are combined. */
+  public enum Meet {
+    /** may problems, the initial value is the empty set */
+    UNION,
+    /** must problems, the initial value is the full universe */
+    INTERSECTION
+  }
+
+  private static final int BEFORE = 0;
+  private static final int AFTER = 1;
+  private static final int GEN = 2;
+  private static final int KILL = 3;
+  private static final int SEEN = 4;
+
+  protected final DirectedGraph<N> graph;
+  protected final ObjectIntMapper<E> universe;
+  private final boolean isForward;
+  private final Meet meet;
+
+  private int rows;
+  private Map<N, Integer> nodeToIndex;
+  private N[] nodes;
+  // the elements of the universe by index, which no longer changes once all gen/kill sets are known
+  private E[] elements;
+  private int words;
+  private long[] matrix;
+  private boolean[] reached;
+  private boolean startFull;
+
+  // gen/kill bits recorded by computeGenKill as (node << 1 | isKill, bit) pairs
+  private int currentNode;
+  private int[] pending;
+  private int pendingSize;
+
+  // out-edges of the nodes reached by the depth-first search, only used while ordering the nodes
+  private int[] edges;
+  private int edgeCount;
+
+  /**
+   * @param graph
+   *          the graph to analyze
+   * @param universe
+   *          the elements the flow values range over; elements passed to {@link #gen(Object)} or {@link #kill(Object)}
+   *          that are not part of it are added on the fly
+   * @param isForward
+   *          whether values flow along or against the edges of the graph
+   * @param meet
+   *          how the values of several predecessors are combined
+   */
+  public BitVectorFlowAnalysis(DirectedGraph<N> graph, FlowUniverse<E> universe, boolean isForward, Meet meet) {
+    this.graph = graph;
+    this.universe = new ObjectIntMapper<E>(universe);
+    this.isForward = isForward;
+    this.meet = meet;
+  }
+
+  /**
+   * Describes the flow function of <code>node</code> by calling {@link #gen(Object)} and {@link #kill(Object)}. Gen wins
+   * over kill if an element is in both sets.
+   */
+  protected abstract void computeGenKill(N node);
+
+  /**
+   * Returns whether nodes that are not reachable from the entries carry the full universe. The default is
+   * <code>true</code> for {@link Meet#INTERSECTION} and <code>false</code> for {@link Meet#UNION}. Reachable nodes always
+   * start from the identity of the meet, otherwise a must analysis would not find its maximal fixed point.
+   */
+  protected boolean isInitialFull() {
+    return meet == Meet.INTERSECTION;
+  }
+
+  /**
+   * Returns whether the iteration of a {@link Meet#INTERSECTION} problem starts from the full universe and thus finds the
+   * maximal fixed point, which is the default. Otherwise it starts from the empty set, like a {@link FlowAnalysis} whose
+   * initial flow is empty, and finds the least fixed point.
+   */
+  protected boolean isMaximalFixedPoint() {
+    return true;
+  }
+
+  /**
+   * Returns whether kill sets are resolved on demand. If so, {@link #isKilled(Object, Object)} is asked once for every
+   * element that reaches a node, in addition to the kill set described by {@link #computeGenKill(Object)}. This pays off
+   * when deciding whether a node kills an element is expensive and only few elements reach each node.
+   */
+  protected boolean isKillOnDemand() {
+    return false;
+  }
+
+  /**
+   * Returns whether <code>node</code> kills <code>e</code>; only called if {@link #isKillOnDemand()} holds.
+   */
+  protected boolean isKilled(N node, E e) {
+    return false;
+  }
+
+  /**
+   * Returns whether the value at the entries of the graph is the full universe. The default is the empty set.
+   */
+  protected boolean isEntryInitialFull() {
+    return false;
+  }
+
+  /** Adds <code>e</code> to the gen set of the node currently passed to {@link #computeGenKill(Object)}. */
+  protected final void gen(E e) {
+    record(GEN, e);
+  }
+
+  /** Adds <code>e</code> to the kill set of the node currently passed to {@link #computeGenKill(Object)}. */
+  protected final void kill(E e) {
+    record(KILL, e);
+  }
+
+  private void record(int row, E e) {
+    if (pending == null) {
+      throw new IllegalStateException("gen/kill sets can only be described in computeGenKill()");
+    }
+    if (pendingSize + 2 > pending.length) {
+      pending = Arrays.copyOf(pending, pending.length * 2);
+    }
+    pending[pendingSize++] = currentNode << 1 | (row == KILL ? 1 : 0);
+    pending[pendingSize++] = universe.getInt(e);
+  }
+
+  /** Computes the gen/kill masks of all nodes and solves the equations. */
+  @SuppressWarnings("unchecked")
+  protected void doAnalysis() {
+    final int n = graph.size();
+    nodeToIndex = new IdentityHashMap<N, Integer>(n);
+    nodes = (N[]) new Object[n];
+    pending = new int[64];
+    pendingSize = 0;
+    for (N d : graph) {
+      currentNode = nodeToIndex.size();
+      nodeToIndex.put(d, currentNode);
+      nodes[currentNode] = d;
+      computeGenKill(d);
+    }
+
+    elements = (E[]) new Object[universe.size()];
+    for (int i = 0; i < elements.length; i++) {
+      elements[i] = universe.getObject(i);
+    }
+    words = (elements.length + Long.SIZE - 1) / Long.SIZE;
+    rows = isKillOnDemand() ? SEEN + 1 : KILL + 1;
+    matrix = new long[n * rows * words];
+    for (int i = 0; i < pendingSize; i += 2) {
+      int row = (pending[i] & 1) == 0 ? GEN : KILL;
+      int bit = pending[i + 1];
+      matrix[offset(pending[i] >>> 1, row) + (bit >>> 6)] |= 1L << bit;
+    }
+    pending = null;
+
+    startFull = meet == Meet.INTERSECTION && isMaximalFixedPoint();
+    if (startFull) {
+      for (int v = 0; v < n; v++) {
+        fill(offset(v, BEFORE), true);
+        fill(offset(v, AFTER), true);
+      }
+    }
+
+    solve();
+  }
+
+  private void solve() {
+    final GraphView gv = isForward ? GraphView.FORWARD : GraphView.BACKWARD;
+    final int n = nodeToIndex.size();
+    final boolean[] isEntry = new boolean[n];
+
+    // depth-first search from the entries, recording the out-edges of every reached node in a CSR layout
+    final int[] outStart = new int[n];
+    final int[] outEnd = new int[n];
+    final int[] postorder = new int[n];
+    int postCount = 0;
+    final int[] stack = new int[n];
+    final int[] stackPos = new int[n];
+    final boolean[] visited = new boolean[n];
+    edges = new int[n * 2 + 1];
+    edgeCount = 0;
+
+    for (N entry : Orderer.INSTANCE.getEntries(graph, gv, isForward)) {
+      final int root = indexOf(entry);
+      isEntry[root] = true;
+      if (visited[root]) {
+        continue;
+      }
+
+      visited[root] = true;
+      outStart[root] = stackPos[0] = edgeCount;
+      outEnd[root] = addOutEdges(gv, root);
+      stack[0] = root;
+      int depth = 0;
+
+      while (depth >= 0) {
+        final int v = stack[depth];
+        if (stackPos[depth] < outEnd[v]) {
+          final int w = edges[stackPos[depth]++];
+          if (!visited[w]) {
+            visited[w] = true;
+            depth++;
+            outStart[w] = stackPos[depth] = edgeCount;
+            outEnd[w] = addOutEdges(gv, w);
+            stack[depth] = w;
+          }
+        } else {
+          postorder[postCount++] = v;
+          depth--;
+        }
+      }
+    }
+
+    // flow predecessors of every reached node, again in a CSR layout
+    final int[] targets = edges;
+    edges = null;
+    final int[] predStart = new int[n + 1];
+    for (int i = 0; i < edgeCount; i++) {
+      predStart[targets[i] + 1]++;
+    }
+    for (int v = 0; v < n; v++) {
+      predStart[v + 1] += predStart[v];
+    }
+    final int[] preds = new int[edgeCount];
+    final int[] fillPos = Arrays.copyOf(predStart, n);
+    for (int k = 0; k < postCount; k++) {
+      int v = postorder[k];
+      for (int i = outStart[v]; i < outEnd[v]; i++) {
+        preds[fillPos[targets[i]]++] = v;
+      }
+    }
+
+    final int inRow = isForward ? BEFORE : AFTER;
+    final int outRow = isForward ? AFTER : BEFORE;
+    final boolean union = meet == Meet.UNION;
+    final boolean onDemand = isKillOnDemand();
+    final long[] m = matrix;
+
+    boolean changed;
+    do {
+      changed = false;
+      // reverse postorder
+      for (int k = postCount - 1; k >= 0; k--) {
+        final int v = postorder[k];
+        final int in = offset(v, inRow);
+
+        boolean first = true;
+        if (isEntry[v]) {
+          fill(in, isEntryInitialFull());
+          first = false;
+        }
+        for (int e = predStart[v]; e < predStart[v + 1]; e++) {
+          final int p = offset(preds[e], outRow);
+          if (first) {
+            System.arraycopy(m, p, m, in, words);
+            first = false;
+          } else if (union) {
+            for (int w = 0; w < words; w++) {
+              m[in + w] |= m[p + w];
+            }
+          } else {
+            for (int w = 0; w < words; w++) {
+              m[in + w] &= m[p + w];
+            }
+          }
+        }
+
+        final int out = offset(v, outRow);
+        final int gen = offset(v, GEN);
+        final int kill = offset(v, KILL);
+        if (onDemand) {
+          resolveKills(v, in, kill, offset(v, SEEN));
+        }
+        for (int w = 0; w < words; w++) {
+          final long x = m[gen + w] | (m[in + w] & ~m[kill + w]);
+          if (x != m[out + w]) {
+            m[out + w] = x;
+            changed = true;
+          }
+        }
+      }
+    } while (changed);
+
+    reached = visited;
+    final boolean initialFull = isInitialFull();
+    if (initialFull != startFull) {
+      for (int v = 0; v < n; v++) {
+        if (!visited[v]) {
+          fill(offset(v, BEFORE), initialFull);
+          fill(offset(v, AFTER), initialFull);
+        }
+      }
+    }
+  }
+
+  /** Asks {@link #isKilled(Object, Object)} about every element that reaches <code>v</code> for the first time. */
+  private void resolveKills(int v, int in, int kill, int seen) {
+    final long[] m = matrix;
+    for (int w = 0; w < words; w++) {
+      long fresh = m[in + w] & ~m[seen + w];
+      m[seen + w] |= fresh;
+      while (fresh != 0) {
+        final long lowest = fresh & -fresh;
+        fresh ^= lowest;
+        if (isKilled(nodes[v], elements[w * Long.SIZE + Long.numberOfTrailingZeros(lowest)])) {
+          m[kill + w] |= lowest;
+        }
+      }
+    }
+  }
+
+  private int indexOf(N d) {
+    Integer i = nodeToIndex.get(d);
+    if (i == null) {
+      throw new IllegalArgumentException("node is not part of the graph: " + d);
+    }
+    return i;
+  }
+
+  private int addOutEdges(GraphView gv, int v) {
+    for (N o : gv.getOut(graph, nodes[v])) {
+      if (edgeCount == edges.length) {
+        edges = Arrays.copyOf(edges, edges.length * 2);
+      }
+      edges[edgeCount++] = indexOf(o);
+    }
+    return edgeCount;
+  }
+
+  private int offset(int node, int row) {
+    return (node * rows + row) * words;
+  }
+
+  private void fill(int offset, boolean full) {
+    if (!full) {
+      Arrays.fill(matrix, offset, offset + words, 0L);
+      return;
+    }
+    Arrays.fill(matrix, offset, offset + words, -1L);
+    int rest = elements.length % Long.SIZE;
+    if (rest != 0) {
+      matrix[offset + words - 1] = (1L << rest) - 1;
+    }
+  }
+
+  /** Returns an unbacked, fixed-size list of the elements in the value before <code>s</code>. */
+  public List<E> getFlowBefore(N s) {
+    return toList(s, BEFORE);
+  }
+
+  /** Returns an unbacked, fixed-size list of the elements in the value after <code>s</code>. */
+  public List<E> getFlowAfter(N s) {
+    return toList(s, AFTER);
+  }
+
+  /** Returns the value before <code>s</code> as a new {@link ArrayPackedSet} over the universe of this analysis. */
+  public FlowSet<E> getFlowSetBefore(N s) {
+    return toFlowSet(s, BEFORE);
+  }
+
+  /** Returns the value after <code>s</code> as a new {@link ArrayPackedSet} over the universe of this analysis. */
+  public FlowSet<E> getFlowSetAfter(N s) {
+    return toFlowSet(s, AFTER);
+  }
+
+  /** Returns whether <code>e</code> is in the value before <code>s</code>. */
+  public boolean isInFlowBefore(N s, E e) {
+    return contains(s, BEFORE, e);
+  }
+
+  /** Returns whether <code>e</code> is in the value after <code>s</code>. */
+  public boolean isInFlowAfter(N s, E e) {
+    return contains(s, AFTER, e);
+  }
+
+  private boolean contains(N s, int row, E e) {
+    Integer v = nodeToIndex.get(s);
+    if (!universe.contains(e)) {
+      return false;
+    }
+    if (v == null) {
+      return isInitialFull();
+    }
+    int bit = universe.getInt(e);
+    return (matrix[offset(v, row) + (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  private BitSet toBitSet(N s, int row) {
+    Integer v = nodeToIndex.get(s);
+    if (v == null) {
+      BitSet bits = new BitSet(universe.size());
+      if (isInitialFull()) {
+        bits.set(0, universe.size());
+      }
+      return bits;
+    }
+    return BitSet.valueOf(LongBuffer.wrap(matrix, offset(v, row), words));
+  }
+
+  private List<E> toList(N s, int row) {
+    Integer v = nodeToIndex.get(s);
+    if (v == null) {
+      return isInitialFull() ? Arrays.asList(elements.clone()) : Collections.<E>emptyList();
+    }
+    return rowToList(offset(v, row));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<E> rowToList(int offset) {
+    E[] list = (E[]) new Object[cardinality(offset)];
+    int size = 0;
+    for (int w = 0; w < words; w++) {
+      long bits = matrix[offset + w];
+      while (bits != 0) {
+        final long lowest = bits & -bits;
+        bits ^= lowest;
+        list[size++] = elements[w * Long.SIZE + Long.numberOfTrailingZeros(lowest)];
+      }
+    }
+    return Arrays.asList(list);
+  }
+
+  private int cardinality(int offset) {
+    int size = 0;
+    for (int w = 0; w < words; w++) {
+      size += Long.bitCount(matrix[offset + w]);
+    }
+    return size;
+  }
+
+  private FlowSet<E> toFlowSet(N s, int row) {
+    return new ArrayPackedSet<E>(universe, toBitSet(s, row));
+  }
+
+  /**
+   * Returns a read-only map from every node of the graph to a read-only view of the value before it. Neither the map nor
+   * the views copy the matrix. Nodes that are not reachable from the entries map to a value of <code>unreached</code>, or
+   * to a view of their initial value if it is <code>null</code>.
+   */
+  public Map<N, FlowSet<E>> getFlowSetsBefore(Supplier<? extends FlowSet<E>> unreached) {
+    return new FlowSetMap(BEFORE, unreached);
+  }
+
+  /**
+   * Returns a read-only map from every node of the graph to a read-only view of the value after it, see
+   * {@link #getFlowSetsBefore(Supplier)}.
+   */
+  public Map<N, FlowSet<E>> getFlowSetsAfter(Supplier<? extends FlowSet<E>> unreached) {
+    return new FlowSetMap(AFTER, unreached);
+  }
+
+  /** The values of all nodes in one row of the matrix. */
+  private final class FlowSetMap extends AbstractMap<N, FlowSet<E>> {
+    private final int row;
+    private final Supplier<? extends FlowSet<E>> unreached;
+
+    FlowSetMap(int row, Supplier<? extends FlowSet<E>> unreached) {
+      this.row = row;
+      this.unreached = unreached;
+    }
+
+    @Override
+    public FlowSet<E> get(Object key) {
+      Integer v = nodeToIndex.get(key);
+      return v == null ? null : valueOf(v);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return nodeToIndex.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return nodes.length;
+    }
+
+    @Override
+    public Set<Entry<N, FlowSet<E>>> entrySet() {
+      return new AbstractSet<Entry<N, FlowSet<E>>>() {
+        @Override
+        public Iterator<Entry<N, FlowSet<E>>> iterator() {
+          return new Iterator<Entry<N, FlowSet<E>>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+              return next < nodes.length;
+            }
+
+            @Override
+            public Entry<N, FlowSet<E>> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int v = next++;
+              return new SimpleImmutableEntry<N, FlowSet<E>>(nodes[v], valueOf(v));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return nodes.length;
+        }
+      };
+    }
+
+    private FlowSet<E> valueOf(int v) {
+      if (!reached[v] && unreached != null) {
+        return unreached.get();
+      }
+      return new RowView(offset(v, row));
+    }
+  }
+
+  /** A read-only view of one value in the matrix. */
+  private final class RowView extends AbstractFlowSet<E> {
+    private final int offset;
+
+    RowView(int offset) {
+      this.offset = offset;
+    }
+
+    /** Returns a modifiable copy. */
+    @Override
+    public AbstractFlowSet<E> clone() {
+      return new ArrayPackedSet<E>(universe, BitSet.valueOf(LongBuffer.wrap(matrix, offset, words)));
+    }
+
+    @Override
+    public boolean isEmpty() {
+      for (int w = 0; w < words; w++) {
+        if (matrix[offset + w] != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int size() {
+      return cardinality(offset);
+    }
+
+    @Override
+    public void add(E obj) {
+      throw new UnsupportedOperationException("The flow values of a BitVectorFlowAnalysis are read-only");
+    }
+
+    @Override
+    public void remove(E obj) {
+      throw new UnsupportedOperationException("The flow values of a BitVectorFlowAnalysis are read-only");
+    }
+
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException("The flow values of a BitVectorFlowAnalysis are read-only");
+    }
+
+    @Override
+    public boolean contains(E obj) {
+      if (!universe.contains(obj)) {
+        return false;
+      }
+      int bit = universe.getInt(obj);
+      return (matrix[offset + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return new Iterator<E>() {
+        private int word = 0;
+        private long bits = words == 0 ? 0 : matrix[offset];
+
+        @Override
+        public boolean hasNext() {
+          while (bits == 0 && word + 1 < words) {
+            bits = matrix[offset + ++word];
+          }
+          return bits != 0;
+        }
+
+        @Override
+        public E next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          final long lowest = bits & -bits;
+          bits ^= lowest;
+          return elements[word * Long.SIZE + Long.numberOfTrailingZeros(lowest)];
+        }
+      };
+    }
+
+    @Override
+    public List<E> toList() {
+      return rowToList(offset);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package soot.toolkits.scalar;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Local;
+import soot.Timers;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.options.Options;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Implementation of the LiveLocals interface on a {@link BitVectorFlowAnalysis}. It finds the same live locals as
+ * {@link SimpleLiveLocals} with less time and memory, but lists them in the order of the locals chain of the body, so the
+ * lists may be ordered differently.
+ */
+public class BitVectorLiveLocals implements LiveLocals {
+  private static final Logger logger = LoggerFactory.getLogger(BitVectorLiveLocals.class);
+  final BitVectorFlowAnalysis<Unit, Local> analysis;
+
+  /**
+   * Computes the analysis given a UnitGraph computed from a method body. It is recommended that a ExceptionalUnitGraph (or
+   * similar) be provided for correct results in the case of exceptional control flow.
+   *
+   * @param graph
+   *          a graph on which to compute the analysis.
+   *
+   * @see ExceptionalUnitGraph
+   */
+  public BitVectorLiveLocals(UnitGraph graph) {
+    if (Options.v().time()) {
+      Timers.v().liveTimer.start();
+    }
+
+    if (Options.v().verbose()) {
+      logger.debug("[" + graph.getBody().getMethod().getName() + "]     Constructing BitVectorLiveLocals...");
+    }
+
+    analysis = new Analysis(graph);
+
+    if (Options.v().time()) {
+      Timers.v().liveAnalysisTimer.start();
+    }
+
+    analysis.doAnalysis();
+
+    if (Options.v().time()) {
+      Timers.v().liveAnalysisTimer.end();
+    }
+
+    if (Options.v().time()) {
+      Timers.v().liveTimer.end();
+    }
+  }
+
+  public List<Local> getLiveLocalsAfter(Unit s) {
+    // the solver returns a unbacked list of elements!
+    return analysis.getFlowAfter(s);
+  }
+
+  public List<Local> getLiveLocalsBefore(Unit s) {
+    // the solver returns a unbacked list of elements!
+    return analysis.getFlowBefore(s);
+  }
+
+  static class Analysis extends BitVectorFlowAnalysis<Unit, Local> {
+    Analysis(UnitGraph g) {
+      super(g, new ArrayFlowUniverse<Local>(g.getBody().getLocals().toArray(new Local[0])), false, Meet.UNION);
+    }
+
+    @Override
+    protected void computeGenKill(Unit unit) {
+      for (ValueBox box : unit.getDefBoxes()) {
+        Value v = box.getValue();
+        if (v instanceof Local) {
+          kill((Local) v);
+        }
+      }
+
+      for (ValueBox box : unit.getUseBoxes()) {
+        Value v = box.getValue();
+        if (v instanceof Local) {
+          gen((Local) v);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,297 @@
+package soot.toolkits.scalar;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import soot.Body;
+import soot.BodyTransformer;
+import soot.G;
+import soot.Scene;
+import soot.Singletons;
+import soot.Unit;
+import soot.options.Options;
+import soot.toolkits.exceptions.ThrowAnalysis;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.CHKDominatorsFinder;
+import soot.toolkits.graph.DominatorTree;
+import soot.toolkits.graph.DominatorsFinder;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraphFactory;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Caches the unit graphs and the standard intraprocedural analyses of method bodies, so that transformers which run one
+ * after another on an unchanged body share them instead of building them again.
+ *
+ * <p>
+ * Cached results are handed out as long as the {@link Body#getModificationCount() modification count} of their body stays
+ * the same. The modification count only covers the unit, local and trap chains, so code that changes a body in place, e.g.
+ * by setting the value of a {@link soot.ValueBox}, retargeting a branch or moving the boundaries of a trap, must call
+ * {@link #invalidate(Body)} afterwards. The entry of a body is dropped automatically after every {@link BodyTransformer}
+ * that does not declare to do so through {@link BodyTransformer#maintainsAnalysisCache()}.
+ * </p>
+ *
+ * <p>
+ * At most {@code -body-analysis-cache-size} bodies are cached at a time, the least recently used one is evicted first. The
+ * cache may be used by several threads at once, the analyses of any one body are built by one thread at a time.
+ * </p>
+ */
+public class BodyAnalysisCache {
+
+  private final Map<Body, Entry> entries = new LinkedHashMap<Body, Entry>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Body, BodyAnalysisCache.Entry> eldest) {
+      return size() > capacity();
+    }
+  };
+
+  public BodyAnalysisCache(Singletons.Global g) {
+  }
+
+  public static BodyAnalysisCache v() {
+    return G.v().soot_toolkits_scalar_BodyAnalysisCache();
+  }
+
+  /**
+   * Returns the {@link ExceptionalUnitGraph} of the given body, built with the default throw analysis and the
+   * {@code -omit-excepting-unit-edges} setting.
+   *
+   * @see ExceptionalUnitGraphFactory#createExceptionalUnitGraph(Body)
+   */
+  public ExceptionalUnitGraph getExceptionalUnitGraph(Body b) {
+    return getExceptionalUnitGraph(b, Scene.v().getDefaultThrowAnalysis(), Options.v().omit_excepting_unit_edges());
+  }
+
+  /**
+   * Returns the {@link ExceptionalUnitGraph} of the given body for the given throw analysis.
+   *
+   * @see ExceptionalUnitGraphFactory#createExceptionalUnitGraph(Body, ThrowAnalysis, boolean)
+   */
+  public ExceptionalUnitGraph getExceptionalUnitGraph(final Body b, final ThrowAnalysis throwAnalysis,
+      final boolean omitExceptingUnitEdges) {
+    return get(b, new Key(Kind.EXCEPTIONAL_GRAPH, throwAnalysis, omitExceptingUnitEdges),
+        () -> ExceptionalUnitGraphFactory.createExceptionalUnitGraph(b, throwAnalysis, omitExceptingUnitEdges));
+  }
+
+  /**
+   * Returns the {@link BriefUnitGraph} of the given body.
+   */
+  public BriefUnitGraph getBriefUnitGraph(final Body b) {
+    return get(b, new Key(Kind.BRIEF_GRAPH, null, false), () -> new BriefUnitGraph(b));
+  }
+
+  /**
+   * Returns the {@link LocalDefs} of the given body, computed on its default {@link ExceptionalUnitGraph}.
+   *
+   * @see LocalDefs.Factory#newLocalDefs(Body)
+   */
+  public LocalDefs getLocalDefs(Body b) {
+    return getLocalDefs(getExceptionalUnitGraph(b), false);
+  }
+
+  /**
+   * Returns the {@link LocalDefs} computed on the given graph.
+   *
+   * @see LocalDefs.Factory#newLocalDefs(UnitGraph, boolean)
+   */
+  public LocalDefs getLocalDefs(final UnitGraph graph, final boolean expectUndefined) {
+    return get(graph.getBody(), new Key(Kind.LOCAL_DEFS, graph, expectUndefined),
+        () -> LocalDefs.Factory.newLocalDefs(graph, expectUndefined));
+  }
+
+  /**
+   * Returns the {@link LocalUses} of the given body, based on {@link #getLocalDefs(Body)}.
+   */
+  public LocalUses getLocalUses(Body b) {
+    return getLocalUses(getExceptionalUnitGraph(b), false);
+  }
+
+  /**
+   * Returns the {@link LocalUses} based on the {@link LocalDefs} computed on the given graph.
+   *
+   * @see #getLocalDefs(UnitGraph, boolean)
+   */
+  public LocalUses getLocalUses(final UnitGraph graph, final boolean expectUndefined) {
+    return get(graph.getBody(), new Key(Kind.LOCAL_USES, graph, expectUndefined),
+        () -> LocalUses.Factory.newLocalUses(graph, getLocalDefs(graph, expectUndefined)));
+  }
+
+  /**
+   * Returns the {@link LiveLocals} computed on the given graph.
+   */
+  public LiveLocals getLiveLocals(final UnitGraph graph) {
+    return get(graph.getBody(), new Key(Kind.LIVE_LOCALS, graph, false), () -> LiveLocals.Factory.newLiveLocals(graph));
+  }
+
+  /**
+   * Returns the dominators of the units in the given graph.
+   */
+  public DominatorsFinder<Unit> getDominatorsFinder(final UnitGraph graph) {
+    return get(graph.getBody(), new Key(Kind.DOMINATORS, graph, false), () -> new CHKDominatorsFinder<Unit>(graph));
+  }
+
+  /**
+   * Returns the dominator tree of the given graph, based on {@link #getDominatorsFinder(UnitGraph)}.
+   */
+  public DominatorTree<Unit> getDominatorTree(final UnitGraph graph) {
+    return get(graph.getBody(), new Key(Kind.DOMINATOR_TREE, graph, false),
+        () -> new DominatorTree<Unit>(getDominatorsFinder(graph)));
+  }
+
+  /**
+   * Returns the result that was cached for the given body under the given key, or computes it with the given factory if
+   * there is none or the body has been modified since. Keys are compared with {@link Object#equals(Object)}; the result of
+   * the factory must not depend on anything but the body and the key.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(Body b, Object key, Supplier<? extends T> factory) {
+    if (capacity() == 0) {
+      return factory.get();
+    }
+
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(b);
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(b, entry);
+      }
+    }
+
+    synchronized (entry) {
+      long modCount = b.getModificationCount();
+      if (entry.modCount != modCount) {
+        entry.analyses.clear();
+        entry.modCount = modCount;
+      }
+      Object result = entry.analyses.get(key);
+      if (result == null) {
+        result = factory.get();
+        entry.analyses.put(key, result);
+      }
+      return (T) result;
+    }
+  }
+
+  /**
+   * Drops everything that was cached for the given body.
+   */
+  public void invalidate(Body b) {
+    synchronized (entries) {
+      entries.remove(b);
+    }
+  }
+
+  /**
+   * Drops what was cached for the given body under the given key.
+   */
+  public void invalidate(Body b, Object key) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(b);
+    }
+    if (entry != null) {
+      synchronized (entry) {
+        entry.analyses.remove(key);
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Drops what was cached under the given key for all bodies.
+   */
+  public void clear(Object key) {
+    List<Entry> all;
+    synchronized (entries) {
+      all = new ArrayList<Entry>(entries.values());
+    }
+    for (Entry entry : all) {
+      synchronized (entry) {
+        entry.analyses.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Returns whether results are cached at all, i.e. whether {@code -body-analysis-cache-size} is not 0.
+   */
+  public boolean isEnabled() {
+    return capacity() > 0;
+  }
+
+  private static int capacity() {
+    int size = Options.v().body_analysis_cache_size();
+    if (size >= 0) {
+      return size;
+    }
+    return 4 * Options.v().getNumThreads();
+  }
+
+  private static final class Entry {
+    long modCount = -1;
+    final Map<Object, Object> analyses = new LinkedHashMap<Object, Object>();
+  }
+
+  private enum Kind {
+    EXCEPTIONAL_GRAPH, BRIEF_GRAPH, LOCAL_DEFS, LOCAL_USES, LIVE_LOCALS, DOMINATORS, DOMINATOR_TREE
+  }
+
+  private static final class Key {
+    final Kind kind;
+    final Object subject;
+    final boolean flag;
+
+    Key(Kind kind, Object subject, boolean flag) {
+      this.kind = kind;
+      this.subject = subject;
+      this.flag = flag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return kind == k.kind && subject == k.subject && flag == k.flag;
+    }
+
+    @Override
+    public int hashCode() {
+      return (kind.hashCode() * 31 + System.identityHashCode(subject)) * 31 + (flag ? 1 : 0);
+    }
+  }
+}
@@ -108,7 +108,7 @@ public class ConstantInitializerToTagTransformer extends SceneTransformer {
     // tags are
     // removed
 
-    for (Iterator<Unit> itU = smInit.getActiveBody().getUnits().snapshotIterator(); itU.hasNext();) {
+    for (Iterator<Unit> itU = smInit.retrieveActiveBody().getUnits().snapshotIterator(); itU.hasNext();) {
       Unit u = itU.next();
       if (u instanceof AssignStmt) {
         AssignStmt assign = (AssignStmt) u;
@@ -59,7 +59,7 @@ public class FastColorer {
         = new ExceptionalUnitGraph(unitBody, PedanticThrowAnalysis.v(), Options.v().omit_excepting_unit_edges());
 
     LiveLocals liveLocals;
-    liveLocals = new SimpleLiveLocals(unitGraph);
+    liveLocals = new BitVectorLiveLocals(unitGraph);
 
     UnitInterferenceGraph intGraph = new UnitInterferenceGraph(unitBody, localToGroup, liveLocals, unitGraph);
 
@@ -173,7 +173,7 @@ public class FastColorer {
         = new ExceptionalUnitGraph(unitBody, PedanticThrowAnalysis.v(), Options.v().omit_excepting_unit_edges());
     LiveLocals liveLocals;
 
-    liveLocals = new SimpleLiveLocals(unitGraph);
+    liveLocals = new BitVectorLiveLocals(unitGraph);
 
     final UnitInterferenceGraph intGraph = new UnitInterferenceGraph(unitBody, localToGroup, liveLocals, unitGraph);
 
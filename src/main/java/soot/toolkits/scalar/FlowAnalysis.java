@@ -129,6 +129,62 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
       // out of universe node
       Entry<D, F> superEntry = new Entry<D, F>(null, null);
 
+      List<D> entries = getEntries(g, gv, isForward);
+
+      visitEntry(visited, superEntry, entries);
+      superEntry.inFlow = entryFlow;
+      superEntry.outFlow = entryFlow;
+
+      @SuppressWarnings("unchecked")
+      Entry<D, F>[] sv = new Entry[g.size()];
+      int[] si = new int[g.size()];
+      int index = 0;
+
+      int i = 0;
+      Entry<D, F> v = superEntry;
+
+      for (;;) {
+        if (i < v.out.length) {
+          Entry<D, F> w = v.out[i++];
+
+          // an unvisited child node
+          if (w.number == Integer.MIN_VALUE) {
+            w.number = s.size();
+            s.add(w);
+
+            visitEntry(visited, w, gv.getOut(g, w.data));
+
+            // save old
+            si[index] = i;
+            sv[index] = v;
+            index++;
+
+            i = 0;
+            v = w;
+          }
+        } else {
+          if (index == 0) {
+            assert universe.size() <= g.size();
+            Collections.reverse(universe);
+            return universe;
+          }
+
+          universe.add(v);
+          sccPop(s, v);
+
+          // restore old
+          index--;
+          v = sv[index];
+          i = si[index];
+        }
+      }
+    }
+
+    /**
+     * Returns the nodes the analysis starts from. A backward analysis on a method without any tail (e.g. an infinite loop)
+     * starts from the {@code goto} statements reachable from the single head.
+     */
+    <D> List<D> getEntries(DirectedGraph<D> g, GraphView gv, boolean isForward) {
       List<D> entries = null;
       List<D> actualEntries = gv.getEntries(g);
 
@@ -187,53 +243,7 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 
       }
 
-      visitEntry(visited, superEntry, entries);
-      superEntry.inFlow = entryFlow;
-      superEntry.outFlow = entryFlow;
-
-      @SuppressWarnings("unchecked")
-      Entry<D, F>[] sv = new Entry[g.size()];
-      int[] si = new int[g.size()];
-      int index = 0;
-
-      int i = 0;
-      Entry<D, F> v = superEntry;
-
-      for (;;) {
-        if (i < v.out.length) {
-          Entry<D, F> w = v.out[i++];
-
-          // an unvisited child node
-          if (w.number == Integer.MIN_VALUE) {
-            w.number = s.size();
-            s.add(w);
-
-            visitEntry(visited, w, gv.getOut(g, w.data));
-
-            // save old
-            si[index] = i;
-            sv[index] = v;
-            index++;
-
-            i = 0;
-            v = w;
-          }
-        } else {
-          if (index == 0) {
-            assert universe.size() <= g.size();
-            Collections.reverse(universe);
-            return universe;
-          }
-
-          universe.add(v);
-          sccPop(s, v);
-
-          // restore old
-          index--;
-          v = sv[index];
-          i = si[index];
-        }
-      }
+      return entries;
     }
 
     @SuppressWarnings("unchecked")
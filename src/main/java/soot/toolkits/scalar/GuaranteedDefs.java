@@ -24,7 +24,6 @@ package soot.toolkits.scalar;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -36,115 +35,84 @@ import soot.Unit;
 import soot.ValueBox;
 import soot.options.Options;
 import soot.toolkits.graph.DominatorsFinder;
-import soot.toolkits.graph.MHGDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 
 /**
  * Find all locals guaranteed to be defined at (just before) a given program point.
  *
+ * <p>
+ * The locals are computed by a {@link BitVectorFlowAnalysis}, and the list for a program point is only created when it is
+ * asked for. The lists are ordered like the locals chain of the body.
+ * </p>
+ *
  * @author Navindra Umanee
  **/
 public class GuaranteedDefs {
   private static final Logger logger = LoggerFactory.getLogger(GuaranteedDefs.class);
   protected Map<Unit, List> unitToGuaranteedDefs;
+  private final Map<Unit, FlowSet<Local>> unitToFlowBefore;
 
   public GuaranteedDefs(UnitGraph graph) {
     if (Options.v().verbose()) {
       logger.debug("[" + graph.getBody().getMethod().getName() + "]     Constructing GuaranteedDefs...");
     }
 
-    GuaranteedDefsAnalysis analysis = new GuaranteedDefsAnalysis(graph);
-
-    // build map
-    {
-      unitToGuaranteedDefs = new HashMap<Unit, List>(graph.size() * 2 + 1, 0.7f);
-      Iterator<Unit> unitIt = graph.iterator();
-
-      while (unitIt.hasNext()) {
-        Unit s = (Unit) unitIt.next();
-        FlowSet set = (FlowSet) analysis.getFlowBefore(s);
-        unitToGuaranteedDefs.put(s, Collections.unmodifiableList(set.toList()));
-      }
-    }
+    unitToFlowBefore = new GuaranteedDefsAnalysis(graph).getFlowSetsBefore(null);
+    unitToGuaranteedDefs = new HashMap<Unit, List>();
   }
 
   /**
    * Returns a list of locals guaranteed to be defined at (just before) program point <tt>s</tt>.
    **/
   public List getGuaranteedDefs(Unit s) {
-    return unitToGuaranteedDefs.get(s);
+    List defs = unitToGuaranteedDefs.get(s);
+    if (defs == null) {
+      FlowSet<Local> set = unitToFlowBefore.get(s);
+      if (set == null) {
+        return null;
+      }
+      defs = Collections.unmodifiableList(set.toList());
+      unitToGuaranteedDefs.put(s, defs);
+    }
+    return defs;
   }
 }
 
 /**
- * Flow analysis to determine all locals guaranteed to be defined at a given program point.
+ * Flow analysis to determine all locals guaranteed to be defined at a given program point. A unit generates the locals
+ * defined by its dominators, including itself, and there are no kills. Like the {@link ForwardFlowAnalysis} this replaces,
+ * the iteration starts from empty sets.
  **/
-class GuaranteedDefsAnalysis extends ForwardFlowAnalysis {
-  FlowSet emptySet = new ArraySparseSet();
-  Map<Unit, FlowSet> unitToGenerateSet;
+class GuaranteedDefsAnalysis extends BitVectorFlowAnalysis<Unit, Local> {
+  private final DominatorsFinder<Unit> df;
 
   GuaranteedDefsAnalysis(UnitGraph graph) {
-    super(graph);
-    DominatorsFinder df = new MHGDominatorsFinder(graph);
-    unitToGenerateSet = new HashMap<Unit, FlowSet>(graph.size() * 2 + 1, 0.7f);
-
-    // pre-compute generate sets
-    for (Iterator unitIt = graph.iterator(); unitIt.hasNext();) {
-      Unit s = (Unit) unitIt.next();
-      FlowSet genSet = emptySet.clone();
+    super(graph, new ArrayFlowUniverse<Local>(graph.getBody().getLocals().toArray(new Local[0])), true, Meet.INTERSECTION);
+    df = BodyAnalysisCache.v().getDominatorsFinder(graph);
+    doAnalysis();
+  }
 
-      for (Iterator domsIt = df.getDominators(s).iterator(); domsIt.hasNext();) {
-        Unit dom = (Unit) domsIt.next();
-        for (Iterator boxIt = dom.getDefBoxes().iterator(); boxIt.hasNext();) {
-          ValueBox box = (ValueBox) boxIt.next();
-          if (box.getValue() instanceof Local) {
-            genSet.add(box.getValue(), genSet);
-          }
+  @Override
+  protected void computeGenKill(Unit unit) {
+    for (Unit dom = unit; dom != null; dom = df.getImmediateDominator(dom)) {
+      for (ValueBox box : dom.getDefBoxes()) {
+        if (box.getValue() instanceof Local) {
+          gen((Local) box.getValue());
         }
       }
-
-      unitToGenerateSet.put(s, genSet);
     }
-
-    doAnalysis();
   }
 
   /**
    * All INs are initialized to the empty set.
    **/
-  protected Object newInitialFlow() {
-    return emptySet.clone();
-  }
-
-  /**
-   * IN(Start) is the empty set
-   **/
-  protected Object entryInitialFlow() {
-    return emptySet.clone();
-  }
-
-  /**
-   * OUT is the same as IN plus the genSet.
-   **/
-  protected void flowThrough(Object inValue, Object unit, Object outValue) {
-    FlowSet in = (FlowSet) inValue, out = (FlowSet) outValue;
-
-    // perform generation (kill set is empty)
-    in.union(unitToGenerateSet.get(unit), out);
+  @Override
+  protected boolean isInitialFull() {
+    return false;
   }
 
-  /**
-   * All paths == Intersection.
-   **/
-  protected void merge(Object in1, Object in2, Object out) {
-    FlowSet inSet1 = (FlowSet) in1, inSet2 = (FlowSet) in2, outSet = (FlowSet) out;
-
-    inSet1.intersection(inSet2, outSet);
-  }
-
-  protected void copy(Object source, Object dest) {
-    FlowSet sourceSet = (FlowSet) source, destSet = (FlowSet) dest;
-
-    sourceSet.copy(destSet);
+  @Override
+  protected boolean isMaximalFixedPoint() {
+    return false;
   }
 }
@@ -27,10 +27,12 @@ import soot.Local;
 import soot.Unit;
 import soot.Value;
 import soot.ValueBox;
+import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.UnitGraph;
 
 /**
- * An analysis to check whether or not local variables have been initialised.
+ * An analysis to check whether or not local variables have been initialised. The flow values are computed by a
+ * {@link BitVectorFlowAnalysis}; the flow maps hold read-only views of its results.
  * 
  * @author Ganesh Sittampalam
  * @author Eric Bodden
@@ -48,6 +50,14 @@ public class InitAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
     doAnalysis();
   }
 
+  @Override
+  protected void doAnalysis() {
+    Solver solver = new Solver(graph, allLocals);
+    // units that cannot be reached from the heads keep all locals, the initial flow
+    unitToBeforeFlow = solver.getFlowSetsBefore(null);
+    unitToAfterFlow = solver.getFlowSetsAfter(null);
+  }
+
   @Override
   protected FlowSet<Local> entryInitialFlow() {
     return new ArraySparseSet<Local>();
@@ -82,4 +92,20 @@ public class InitAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
     source.copy(dest);
   }
 
+  private static class Solver extends BitVectorFlowAnalysis<Unit, Local> {
+    Solver(DirectedGraph<Unit> g, FlowSet<Local> allLocals) {
+      super(g, new ArrayFlowUniverse<Local>(allLocals.toList().toArray(new Local[0])), true, Meet.INTERSECTION);
+      doAnalysis();
+    }
+
+    @Override
+    protected void computeGenKill(Unit unit) {
+      for (ValueBox defBox : unit.getDefBoxes()) {
+        Value lhs = defBox.getValue();
+        if (lhs instanceof Local) {
+          gen((Local) lhs);
+        }
+      }
+    }
+  }
 }
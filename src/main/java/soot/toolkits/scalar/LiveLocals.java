@@ -36,8 +36,11 @@ public interface LiveLocals {
     private Factory() {
     }
 
+    /**
+     * Returns the default liveness analysis, a {@link BitVectorLiveLocals}.
+     */
     public static LiveLocals newLiveLocals(UnitGraph graph) {
-      return new SimpleLiveLocals(graph);
+      return new BitVectorLiveLocals(graph);
     }
   }
 
@@ -27,7 +27,7 @@ import java.util.List;
 import soot.Body;
 import soot.Local;
 import soot.Unit;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraphFactory;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.SimpleLocalDefs.FlowAnalysisMode;
 
@@ -42,7 +42,7 @@ public interface LocalDefs {
     /**
      * Creates a new LocalDefs analysis based on a {@code ExceptionalUnitGraph}
      *
-     * @see soot.toolkits.graph.ExceptionalUnitGraph#ExceptionalUnitGraph(Body)
+     * @see soot.toolkits.graph.ExceptionalUnitGraphFactory#createExceptionalUnitGraph(Body)
      * @see soot.validation.UsesValidator
      * @param body
      * @return a new LocalDefs instance
@@ -55,14 +55,14 @@ public interface LocalDefs {
      * Creates a new LocalDefs analysis based on a {@code ExceptionalUnitGraph} If you don't trust the input you should set
      * <code>expectUndefined</code> to <code>true</code>
      *
-     * @see soot.toolkits.graph.ExceptionalUnitGraph#ExceptionalUnitGraph(Body)
+     * @see soot.toolkits.graph.ExceptionalUnitGraphFactory#createExceptionalUnitGraph(Body)
      * @param body
      * @param expectUndefinedUses
      *          if you expect uses of locals that are undefined
      * @return a new LocalDefs instance
      */
     public static LocalDefs newLocalDefs(Body body, boolean expectUndefined) {
-      return newLocalDefs(new ExceptionalUnitGraph(body), expectUndefined);
+      return newLocalDefs(ExceptionalUnitGraphFactory.createExceptionalUnitGraph(body), expectUndefined);
     }
 
     /**
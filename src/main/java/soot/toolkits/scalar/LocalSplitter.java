@@ -113,12 +113,13 @@ public class LocalSplitter extends BodyTransformer {
     localPacker.pack();
 
     // Go through the definitions, building the webs
-    ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body, throwAnalysis, omitExceptingUnitEdges);
+    final BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body, throwAnalysis, omitExceptingUnitEdges);
 
     // run in panic mode on first split (maybe change this depending on the input
     // source)
-    final LocalDefs defs = LocalDefs.Factory.newLocalDefs(graph, true);
-    final LocalUses uses = LocalUses.Factory.newLocalUses(graph, defs);
+    final LocalDefs defs = cache.getLocalDefs(graph, true);
+    final LocalUses uses = cache.getLocalUses(graph, true);
 
     if (Options.v().time()) {
       Timers.v().splitPhase1Timer.end();
@@ -226,4 +227,9 @@ public class LocalSplitter extends BodyTransformer {
       Timers.v().splitTimer.end();
     }
   }
+
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
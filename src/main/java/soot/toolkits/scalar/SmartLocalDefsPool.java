@@ -36,12 +36,21 @@ import soot.toolkits.graph.UnitGraph;
  * This class implements a pool for {@link SmartLocalDefs} instances. This is useful, as these analyses are expensive to
  * compute. A {@link SmartLocalDefs} instance requires a {@link UnitGraph} (usually a {@link ExceptionalUnitGraph}), and
  * creating these repeatedly, and applying the {@link SmartLocalDefs} analysis repeatedly costs time. Therefore in this class
- * we pool these instances in cases in which the respective body is still the same.
+ * we pool these instances in cases in which the respective body is still the same. The instances are kept in the
+ * {@link BodyAnalysisCache}, or in a pool of their own if that is disabled.
  *
  * @author Eric Bodden
  */
 public class SmartLocalDefsPool {
 
+  private static final Object KEY = SmartLocalDefs.class;
+
+  /**
+   * The pooled instances if the {@link BodyAnalysisCache} is disabled.
+   *
+   * @deprecated the instances are kept in the {@link BodyAnalysisCache} unless it is disabled
+   */
+  @Deprecated
   protected Map<Body, Pair<Long, SmartLocalDefs>> pool = Maps.newHashMap();
 
   /**
@@ -52,19 +61,26 @@ public class SmartLocalDefsPool {
    * @see Body#getModificationCount()
    */
   public SmartLocalDefs getSmartLocalDefsFor(Body b) {
-    Pair<Long, SmartLocalDefs> modCountAndSLD = pool.get(b);
-    if (modCountAndSLD != null && modCountAndSLD.o1.longValue() == b.getModificationCount()) {
-      return modCountAndSLD.o2;
-    } else {
-      ExceptionalUnitGraph g = new ExceptionalUnitGraph(b);
-      SmartLocalDefs newSLD = new SmartLocalDefs(g, new SimpleLiveLocals(g));
-      pool.put(b, new Pair<Long, SmartLocalDefs>(b.getModificationCount(), newSLD));
-      return newSLD;
+    final BodyAnalysisCache cache = BodyAnalysisCache.v();
+    if (!cache.isEnabled()) {
+      Pair<Long, SmartLocalDefs> modCountAndSLD = pool.get(b);
+      if (modCountAndSLD != null && modCountAndSLD.o1.longValue() == b.getModificationCount()) {
+        return modCountAndSLD.o2;
+      } else {
+        ExceptionalUnitGraph g = new ExceptionalUnitGraph(b);
+        // the local defs only ask whether a local is live, so the order of the live locals does not matter
+        SmartLocalDefs newSLD = new SmartLocalDefs(g, new BitVectorLiveLocals(g));
+        pool.put(b, new Pair<Long, SmartLocalDefs>(b.getModificationCount(), newSLD));
+        return newSLD;
+      }
     }
+    final ExceptionalUnitGraph g = cache.getExceptionalUnitGraph(b);
+    return cache.get(b, KEY, () -> new SmartLocalDefs(g, cache.getLiveLocals(g)));
   }
 
   public void clear() {
     pool.clear();
+    BodyAnalysisCache.v().clear(KEY);
   }
 
   public static SmartLocalDefsPool v() {
@@ -76,6 +92,7 @@ public class SmartLocalDefsPool {
 
   public void invalidate(Body b) {
     pool.remove(b);
+    BodyAnalysisCache.v().invalidate(b, KEY);
   }
 
 }
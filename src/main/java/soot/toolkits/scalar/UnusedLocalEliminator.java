@@ -106,4 +106,8 @@ public class UnusedLocalEliminator extends BodyTransformer {
     }
   }
 
+  @Override
+  protected boolean maintainsAnalysisCache() {
+    return true;
+  }
 }
@@ -50,6 +50,18 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
     lastNumber = elements.length;
   }
 
+  /**
+   * Creates a numberer that starts out with the same objects under the same numbers as the given one. Objects added later
+   * to either numberer are not seen by the other.
+   */
+  public ArrayNumberer(ArrayNumberer<E> other) {
+    synchronized (other) {
+      numberToObj = Arrays.copyOf(other.numberToObj, other.numberToObj.length);
+      lastNumber = other.lastNumber;
+      freeNumbers = other.freeNumbers == null ? null : (BitSet) other.freeNumbers.clone();
+    }
+  }
+
   private void resize(int n) {
     numberToObj = Arrays.copyOf(numberToObj, n);
   }
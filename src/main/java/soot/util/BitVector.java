@@ -134,6 +134,14 @@ public class BitVector {
     return (bits[indexOf(bit)] & mask(bit)) != 0L;
   }
 
+  /** Returns the 64 bits starting at bit <code>64 * index</code>, with the lowest bit first. */
+  public long getWord(int index) {
+    if (index >= bits.length) {
+      return 0L;
+    }
+    return bits[index];
+  }
+
   public int hashCode() {
     long ret = 0;
     for (long element : bits) {
@@ -0,0 +1,154 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import com.google.common.cache.AbstractLoadingCache;
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link com.google.common.cache.LoadingCache} with softly referenced values, like the caches built with
+ * <code>CacheBuilder.softValues()</code>, but without any locking when a value is found. Lookups only read a
+ * {@link ConcurrentHashMap}, so that many threads can query the cache at the same time. When several threads miss the same
+ * key at once, each of them loads the value, and all of them return the value that was stored first.
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class ConcurrentSoftLoadingCache<K, V> extends AbstractLoadingCache<K, V> {
+
+  private final ConcurrentHashMap<K, ValueReference<K, V>> map;
+  private final CacheLoader<? super K, V> loader;
+  private final ReferenceQueue<V> clearedValues = new ReferenceQueue<V>();
+
+  public ConcurrentSoftLoadingCache(CacheLoader<? super K, V> loader) {
+    this(loader, 16);
+  }
+
+  public ConcurrentSoftLoadingCache(CacheLoader<? super K, V> loader, int initialCapacity) {
+    this.loader = loader;
+    this.map = new ConcurrentHashMap<K, ValueReference<K, V>>(initialCapacity);
+  }
+
+  @Override
+  public V getIfPresent(Object key) {
+    ValueReference<K, V> ref = map.get(key);
+    return ref == null ? null : ref.get();
+  }
+
+  @Override
+  public V get(K key) throws ExecutionException {
+    V value = getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    try {
+      value = loader.load(key);
+    } catch (RuntimeException e) {
+      throw new UncheckedExecutionException(e);
+    } catch (Error e) {
+      throw new ExecutionError(e);
+    } catch (Exception e) {
+      throw new ExecutionException(e);
+    }
+    if (value == null) {
+      throw new CacheLoader.InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+    }
+    return putIfAbsent(key, value);
+  }
+
+  @Override
+  public void put(K key, V value) {
+    expungeClearedValues();
+    map.put(key, new ValueReference<K, V>(key, value, clearedValues));
+  }
+
+  /**
+   * Stores value for key unless there already is a value, and returns the value that is stored afterwards.
+   */
+  private V putIfAbsent(K key, V value) {
+    expungeClearedValues();
+    ValueReference<K, V> newRef = new ValueReference<K, V>(key, value, clearedValues);
+    while (true) {
+      ValueReference<K, V> ref = map.putIfAbsent(key, newRef);
+      if (ref == null) {
+        return value;
+      }
+      V existing = ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      if (map.replace(key, ref, newRef)) {
+        return value;
+      }
+    }
+  }
+
+  @Override
+  public void invalidate(Object key) {
+    map.remove(key);
+  }
+
+  @Override
+  public void invalidateAll() {
+    map.clear();
+  }
+
+  @Override
+  public long size() {
+    return map.size();
+  }
+
+  @Override
+  public void cleanUp() {
+    expungeClearedValues();
+  }
+
+  /**
+   * Removes the entries whose values have been collected.
+   */
+  @SuppressWarnings("unchecked")
+  private void expungeClearedValues() {
+    ValueReference<K, V> ref;
+    while ((ref = (ValueReference<K, V>) clearedValues.poll()) != null) {
+      map.remove(ref.key, ref);
+    }
+  }
+
+  private static final class ValueReference<K, V> extends SoftReference<V> {
+    final K key;
+
+    ValueReference(K key, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * An open addressing identity map from the elements of an array to their position in it. Lookups cost one probe in the
+ * usual case and do not allocate, which makes the index suitable for numbering the nodes of compact graphs, see
+ * {@link IntRelation}. The index does not change after it has been built.
+ */
+public final class IdentityIndex {
+  private final Object[] keys;
+  private final int[] values;
+  private final int mask;
+
+  /**
+   * Builds the index of the given elements, which must not be <code>null</code> and must be pairwise distinct.
+   */
+  public IdentityIndex(Object[] elements) {
+    int capacity = Integer.highestOneBit(Math.max(elements.length, 2) * 2 - 1) << 1;
+    keys = new Object[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < elements.length; i++) {
+      int slot = slot(elements[i]);
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = elements[i];
+      values[slot] = i;
+    }
+  }
+
+  private int slot(Object o) {
+    int h = System.identityHashCode(o) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * Returns the position of the given object, or <code>-1</code> if it is not in the index.
+   */
+  public int get(Object o) {
+    for (int slot = slot(o);; slot = (slot + 1) & mask) {
+      Object key = keys[slot];
+      if (key == o) {
+        return values[slot];
+      }
+      if (key == null) {
+        return -1;
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A relation from the numbers <code>0 .. rows() - 1</code> to numbers, kept in compressed sparse row form: the targets of
+ * row <code>i</code> are <code>targets()[start(i)] .. targets()[end(i) - 1]</code>. This takes two <code>int</code> arrays
+ * in total instead of a collection per row, so it is used for the edges of compact graphs whose nodes are numbered, e.g.
+ * with an {@link IdentityIndex}. Relations are built one row after the other with a {@link Builder} and do not change
+ * afterwards.
+ */
+public final class IntRelation {
+  private final int[] offsets;
+  private final int[] targets;
+
+  private IntRelation(int[] offsets, int[] targets) {
+    this.offsets = offsets;
+    this.targets = targets;
+  }
+
+  /** Returns the number of rows. */
+  public int rows() {
+    return offsets.length - 1;
+  }
+
+  /** Returns the position of the first target of the given row in {@link #targets()}. */
+  public int start(int row) {
+    return offsets[row];
+  }
+
+  /** Returns the position after the last target of the given row in {@link #targets()}. */
+  public int end(int row) {
+    return offsets[row + 1];
+  }
+
+  /** Returns the number of targets of the given row. */
+  public int size(int row) {
+    return offsets[row + 1] - offsets[row];
+  }
+
+  /**
+   * Returns the targets of all rows, one row after the other. The array is shared with the relation and must not be
+   * modified.
+   */
+  public int[] targets() {
+    return targets;
+  }
+
+  /**
+   * Returns the reversed relation, which has one row per target number. Since the sources are visited in ascending order,
+   * the targets of each reversed row come out in ascending order.
+   *
+   * @param rows
+   *          the number of rows of the reversed relation, which must be larger than every target
+   */
+  public IntRelation transpose(int rows) {
+    int[] reversedOffsets = new int[rows + 1];
+    for (int target : targets) {
+      reversedOffsets[target + 1]++;
+    }
+    for (int i = 0; i < rows; i++) {
+      reversedOffsets[i + 1] += reversedOffsets[i];
+    }
+    int[] fill = new int[rows];
+    int[] reversedTargets = new int[targets.length];
+    for (int i = 0; i < rows(); i++) {
+      for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+        int target = targets[j];
+        reversedTargets[reversedOffsets[target] + fill[target]++] = i;
+      }
+    }
+    return new IntRelation(reversedOffsets, reversedTargets);
+  }
+
+  /**
+   * Builds an {@link IntRelation} one row at a time.
+   */
+  public static final class Builder {
+    private final int[] offsets;
+    private final boolean distinct;
+    private int[] targets;
+    private int row;
+    private int size;
+
+    /**
+     * Creates a builder for the given number of rows.
+     *
+     * @param expectedTargets
+     *          the number of targets of all rows together that room is reserved for
+     * @param distinct
+     *          whether targets that are already in the current row are dropped
+     */
+    public Builder(int rows, int expectedTargets, boolean distinct) {
+      this.offsets = new int[rows + 1];
+      this.targets = new int[Math.max(expectedTargets, 4)];
+      this.distinct = distinct;
+    }
+
+    /** Adds a target to the current row. */
+    public void add(int target) {
+      if (distinct) {
+        for (int j = offsets[row]; j < size; j++) {
+          if (targets[j] == target) {
+            return;
+          }
+        }
+      }
+      if (size == targets.length) {
+        targets = Arrays.copyOf(targets, targets.length * 2);
+      }
+      targets[size++] = target;
+    }
+
+    /** Finishes the current row; the following targets go into the next one. */
+    public void endRow() {
+      offsets[++row] = size;
+    }
+
+    /** Returns the relation, in which the rows that have not been finished yet are empty. */
+    public IntRelation build() {
+      while (row < offsets.length - 1) {
+        endRow();
+      }
+      return new IntRelation(offsets, Arrays.copyOf(targets, size));
+    }
+  }
+}
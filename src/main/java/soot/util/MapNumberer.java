@@ -66,6 +66,15 @@ public class MapNumberer<T> implements Numberer<T> {
     al.add(null);
   }
 
+  /**
+   * Creates a numberer that starts out with the same objects under the same numbers as the given one.
+   */
+  public MapNumberer(MapNumberer<T> other) {
+    map.putAll(other.map);
+    al.addAll(other.al);
+    nextIndex = other.nextIndex;
+  }
+
   public boolean contains(Object o) {
     return map.containsKey(o);
   }
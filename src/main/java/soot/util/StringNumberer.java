@@ -37,6 +37,19 @@ import java.util.Map;
 public class StringNumberer extends ArrayNumberer<NumberedString> {
   private Map<String, NumberedString> stringToNumbered = new HashMap<String, NumberedString>(1024);
 
+  public StringNumberer() {
+  }
+
+  /**
+   * Creates a numberer that starts out with the same strings under the same numbers as the given one.
+   */
+  public StringNumberer(StringNumberer other) {
+    super(other);
+    synchronized (other) {
+      stringToNumbered.putAll(other.stringToNumbered);
+    }
+  }
+
   public synchronized NumberedString findOrAdd(String s) {
     NumberedString ret = stringToNumbered.get(s);
     if (ret == null) {
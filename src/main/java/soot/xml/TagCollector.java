@@ -182,6 +182,14 @@ public class TagCollector {
     }
   }
 
+  /**
+   * Appends all attributes and keys collected by <code>other</code> to this collector.
+   */
+  public synchronized void addAll(TagCollector other) {
+    attributes.addAll(other.attributes);
+    keys.addAll(other.keys);
+  }
+
   public void printTags(PrintWriter writerOut) {
 
     Iterator<Attribute> it = attributes.iterator();
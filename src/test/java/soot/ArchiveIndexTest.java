@@ -0,0 +1,176 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveIndexTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void readsStoredAndDeflatedEntries() throws IOException {
+    Map<String, byte[]> contents = sampleContents();
+    File archive = writeArchive(contents);
+
+    ArchiveIndex index = ArchiveIndex.build(archive);
+    assertEquals(Arrays.asList("a/Stored.class", "a/Deflated.class", "b/Empty.class"), index.getEntryNames());
+    assertFalse(index.contains("a/Missing.class"));
+    assertEntries(contents, index);
+  }
+
+  @Test
+  public void persistedIndexIsReused() throws IOException {
+    Map<String, byte[]> contents = sampleContents();
+    File archive = writeArchive(contents);
+    File indexFile = new File(folder.getRoot(), "index/test.idx");
+
+    ArchiveIndex.build(archive).write(indexFile);
+    ArchiveIndex index = ArchiveIndex.read(archive, indexFile);
+    assertNotNull(index);
+    assertEquals(Arrays.asList("a/Stored.class", "a/Deflated.class", "b/Empty.class"), index.getEntryNames());
+    assertEntries(contents, index);
+
+    // A modified archive must not be served from a stale index
+    assertTrue(archive.setLastModified(archive.lastModified() - 10000));
+    assertNull(ArchiveIndex.read(archive, indexFile));
+  }
+
+  @Test
+  public void readsArchiveWithMaximalEntryCount() throws IOException {
+    Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+    for (int i = 0; i < 0xffff; i++) {
+      contents.put("e" + i, new byte[0]);
+    }
+    File archive = writeArchive(contents);
+
+    // ZipOutputStream adds ZIP64 records from 65535 entries on, although the plain end record can hold that count
+    byte[] bytes = Files.readAllBytes(archive.toPath());
+    int zip64End = bytes.length - 22 - 20 - 56;
+    assertEquals(0x06064b50, ByteBuffer.wrap(bytes, zip64End, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+    byte[] plain = new byte[bytes.length - 76];
+    System.arraycopy(bytes, 0, plain, 0, zip64End);
+    System.arraycopy(bytes, bytes.length - 22, plain, zip64End, 22);
+    Files.write(archive.toPath(), plain);
+
+    ArchiveIndex index = ArchiveIndex.build(archive);
+    assertEquals(0xffff, index.getEntryNames().size());
+    assertEntries(Collections.singletonMap("e65534", new byte[0]), index);
+
+    Files.write(archive.toPath(), bytes);
+    try {
+      ArchiveIndex.build(archive);
+      fail("ZIP64 archive accepted");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("ZIP64"));
+    }
+  }
+
+  @Test
+  public void entryBeyondEndOfArchiveFails() throws IOException {
+    File archive = writeArchive(sampleContents());
+    byte[] bytes = Files.readAllBytes(archive.toPath());
+    ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    int directory = buf.getInt(bytes.length - 22 + 16);
+    // Let the first entry start close to the end of the archive
+    buf.putInt(directory + 42, bytes.length - 2);
+    Files.write(archive.toPath(), bytes);
+
+    ArchiveIndex index = ArchiveIndex.build(archive);
+    try {
+      index.getInputStream("a/Stored.class");
+      fail("entry beyond the end of the archive read");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("a/Stored.class"));
+    }
+  }
+
+  private static void assertEntries(Map<String, byte[]> contents, ArchiveIndex index) throws IOException {
+    for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+      assertTrue(index.contains(e.getKey()));
+      try (InputStream is = index.getInputStream(e.getKey())) {
+        assertArrayEquals(e.getValue(), IOUtils.toByteArray(is));
+      }
+    }
+  }
+
+  private static Map<String, byte[]> sampleContents() {
+    byte[] data = new byte[10000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i % 17);
+    }
+    Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+    contents.put("a/Stored.class", data);
+    contents.put("a/Deflated.class", Arrays.copyOf(data, 5000));
+    contents.put("b/Empty.class", new byte[0]);
+    return contents;
+  }
+
+  private File writeArchive(Map<String, byte[]> contents) throws IOException {
+    File archive = folder.newFile("test.jar");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+        ZipEntry entry = new ZipEntry(e.getKey());
+        if (e.getKey().contains("Stored")) {
+          CRC32 crc = new CRC32();
+          crc.update(e.getValue());
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(e.getValue().length);
+          entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(e.getValue());
+        out.closeEntry();
+      }
+    }
+    return archive;
+  }
+}
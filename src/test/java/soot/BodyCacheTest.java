@@ -0,0 +1,173 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+
+import soot.options.Options;
+import soot.tagkit.BytecodeOffsetTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.StringTag;
+
+public class BodyCacheTest {
+
+  private static final String TARGET_CLASS = "soot.targets.BodyCacheTarget";
+
+  @Rule
+  public TemporaryFolder cacheDir = new TemporaryFolder();
+
+  @Test
+  public void cachedBodiesMatchJimplifiedBodies() {
+    Map<String, String> reference = loadBodies(null);
+    Map<String, String> firstRun = loadBodies(cacheDir.getRoot());
+    File[] entries = cacheDir.getRoot().listFiles();
+    assertNotNull(entries);
+    assertTrue(entries.length > 0);
+
+    Map<String, String> secondRun = loadBodies(cacheDir.getRoot());
+
+    assertFalse(reference.isEmpty());
+    assertEquals(reference, firstRun);
+    assertEquals(reference, secondRun);
+  }
+
+  @Test
+  public void bodiesWithOtherTagsAreNotSerialized() {
+    loadBodies(null);
+    SootMethod m = Scene.v().getSootClass(TARGET_CLASS).getMethodByName("tryFinally");
+    Body b = m.retrieveActiveBody();
+    assertNotNull(BodyCache.v().toBytes(b));
+
+    b.getUnits().getFirst().addTag(new StringTag("lost"));
+    assertNull(BodyCache.v().toBytes(b));
+  }
+
+  @Test
+  public void classKeyDependsOnClassPath() throws Exception {
+    File dependency = cacheDir.newFile("dependency.jar");
+    Files.write(dependency.toPath(), new byte[] { 1 });
+
+    String key = computeClassKey(null);
+    assertEquals(key, computeClassKey(null));
+
+    String withDependency = computeClassKey(dependency);
+    assertNotEquals(key, withDependency);
+    assertEquals(withDependency, computeClassKey(dependency));
+
+    Files.write(dependency.toPath(), new byte[] { 1, 2 });
+    assertNotEquals(withDependency, computeClassKey(dependency));
+  }
+
+  @Test
+  public void serializedBodiesOfJarMatchJimplifiedBodies() throws Exception {
+    G.reset();
+    String jar = new File(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    Options.v().set_process_dir(Collections.singletonList(jar));
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_keep_line_number(true);
+    Options.v().set_keep_offset(true);
+    Scene.v().loadNecessaryClasses();
+
+    int methods = 0;
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : TestTargets.concreteMethods(sc)) {
+        Body b = m.retrieveActiveBody();
+        byte[] bytes = BodyCache.v().toBytes(b);
+        assertNotNull(m.getSignature(), bytes);
+        Body copy = BodyCache.v().fromBytes(m, bytes);
+        assertNotNull(m.getSignature(), copy);
+        assertEquals(describe(b), describe(copy));
+        methods++;
+      }
+    }
+    assertTrue(methods > 0);
+  }
+
+  /**
+   * Computes the key of a fixed class in a new run, with the given archive added to the class path if it is not
+   * <code>null</code>.
+   */
+  private static String computeClassKey(File dependency) {
+    TestTargets.reset();
+    if (dependency != null) {
+      Options.v().set_soot_classpath(Options.v().soot_classpath() + File.pathSeparator + dependency.getAbsolutePath());
+    }
+    return BodyCache.v().computeClassKey(new byte[] { 1, 2, 3 });
+  }
+
+  /**
+   * Loads the bodies of all methods in the target class and returns their textual representation, including the line
+   * numbers of all units.
+   */
+  private static Map<String, String> loadBodies(File cache) {
+    TestTargets.reset();
+    Options.v().set_keep_line_number(true);
+    if (cache != null) {
+      Options.v().set_body_cache_dir(cache.getAbsolutePath());
+    }
+    SootClass sc = TestTargets.load(TARGET_CLASS);
+
+    Map<String, String> bodies = new LinkedHashMap<String, String>();
+    for (SootMethod m : TestTargets.concreteMethods(sc)) {
+      bodies.put(m.getSignature(), describe(m.retrieveActiveBody()));
+    }
+    return bodies;
+  }
+
+  /**
+   * Returns the textual representation of the given body, followed by its locals in order, the line numbers and bytecode
+   * offsets of all units and the tags of their value boxes.
+   */
+  private static String describe(Body b) {
+    List<String> tags = new ArrayList<String>();
+    for (Unit u : b.getUnits()) {
+      LineNumberTag line = (LineNumberTag) u.getTag(LineNumberTag.IDENTIFIER);
+      BytecodeOffsetTag offset = (BytecodeOffsetTag) u.getTag("BytecodeOffsetTag");
+      tags.add((line == null ? "-" : line.getLineNumber()) + "@" + (offset == null ? "-" : offset.getBytecodeOffset()));
+      for (ValueBox vb : u.getUseAndDefBoxes()) {
+        tags.add(vb.getTags().toString());
+      }
+    }
+    return b.toString() + b.getLocals() + tags;
+  }
+}
@@ -0,0 +1,150 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.options.Options;
+
+public class BodyPackSchedulerTest {
+
+  private static final List<String> TARGET_CLASSES = Arrays.asList("soot.toolkits.exceptions.targets.MethodThrowableSetClass",
+      "soot.toolkits.exceptions.targets.MethodThrowableSetClass$target", "soot.toolkits.exceptions.targets.MyException",
+      "soot.FastHierarchyTest", "soot.BodyCacheTest");
+
+  @Rule
+  public TemporaryFolder outputDir = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void methodSchedulerProducesSameOutput() throws IOException {
+    Map<String, String> perClass = run(Options.body_pack_scheduler_class, outputDir.newFolder("class"));
+    Map<String, String> perMethod = run(Options.body_pack_scheduler_method, outputDir.newFolder("method"));
+    assertFalse(perClass.isEmpty());
+    assertEquals(perClass, perMethod);
+  }
+
+  @Test
+  public void addedTransformationsRunPerClass() {
+    Map<SootClass, Set<Thread>> threads = runRecordingThreads(false);
+    assertFalse(threads.isEmpty());
+    for (Map.Entry<SootClass, Set<Thread>> e : threads.entrySet()) {
+      assertEquals(e.getKey().getName(), 1, e.getValue().size());
+    }
+  }
+
+  @Test
+  public void addedTransformationsOnlyChangingBodiesRunPerMethod() {
+    Map<SootClass, Set<Thread>> threads = runRecordingThreads(true);
+    assertFalse(threads.isEmpty());
+    assertTrue(threads.values().stream().anyMatch(t -> t.size() > 1));
+  }
+
+  /**
+   * Runs the body packs with the method scheduler and a transformation added to jtp that records the threads it has been
+   * applied on, per class.
+   */
+  private static Map<SootClass, Set<Thread>> runRecordingThreads(final boolean transformsOnlyBody) {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_num_threads(4);
+    Options.v().set_body_pack_scheduler(Options.body_pack_scheduler_method);
+    Options.v().classes().addAll(TARGET_CLASSES);
+    final Map<SootClass, Set<Thread>> threads = new ConcurrentHashMap<SootClass, Set<Thread>>();
+    PackManager.v().getPack("jtp").add(new Transform("jtp.threads", new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        threads.computeIfAbsent(b.getMethod().getDeclaringClass(), c -> ConcurrentHashMap.newKeySet())
+            .add(Thread.currentThread());
+        // give the other threads the time to take the remaining methods of the class
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      protected boolean transformsOnlyBody() {
+        return transformsOnlyBody;
+      }
+    }));
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    return threads;
+  }
+
+  /**
+   * Runs the body packs with the given scheduler and returns the contents of all output files.
+   */
+  private static Map<String, String> run(int scheduler, File out) throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_dir(out.getAbsolutePath());
+    Options.v().set_output_format(Options.output_format_grimple);
+    Options.v().set_xml_attributes(true);
+    Options.v().setPhaseOption("jop", "enabled:true");
+    Options.v().set_num_threads(4);
+    Options.v().set_body_pack_scheduler(scheduler);
+    Options.v().classes().addAll(TARGET_CLASSES);
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    PackManager.v().writeOutput();
+
+    Map<String, String> files = new TreeMap<String, String>();
+    for (Path p : Files.walk(out.toPath()).filter(Files::isRegularFile).collect(Collectors.toList())) {
+      files.put(out.toPath().relativize(p).toString(), new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+    }
+    return files;
+  }
+}
@@ -0,0 +1,260 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.tagkit.StringTag;
+
+public class BodyResidencyManagerTest {
+
+  private static final String TARGET_CLASS = "soot.targets.CallChainTarget";
+
+  private List<SootMethod> methods;
+
+  @Before
+  public void setUp() {
+    TestTargets.reset();
+    methods = TestTargets.concreteMethods(TestTargets.load(TARGET_CLASS));
+    assertTrue(methods.size() > 2);
+
+    // Far less than a single body
+    BodyResidencyManager.v().setBudget(1);
+  }
+
+  @Test
+  public void evictedBodiesAreLoadedAgain() {
+    Map<SootMethod, String> bodies = new LinkedHashMap<SootMethod, String>();
+    for (SootMethod m : methods) {
+      bodies.put(m, m.retrieveActiveBody().toString());
+    }
+    loadAll();
+
+    assertTrue(BodyResidencyManager.v().getEvictionCount() > 0);
+    for (SootMethod m : methods) {
+      assertTrue(m.hasActiveBody());
+      assertEquals(bodies.get(m), m.getActiveBody().toString());
+    }
+  }
+
+  @Test
+  public void modifiedBodiesSurviveEviction() {
+    SootMethod m = methods.get(0);
+    Body b = m.retrieveActiveBody();
+    b.getUnits().insertBefore(Jimple.v().newNopStmt(), b.getUnits().getLast());
+    String modified = b.toString();
+
+    evict(m);
+    assertEquals(modified, m.retrieveActiveBody().toString());
+  }
+
+  @Test
+  public void transformedBodiesSurviveEviction() {
+    SootMethod m = methods.get(0);
+    Body b = m.retrieveActiveBody();
+    // Renaming a local does not change the modification count of the body
+    new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        b.getLocals().getFirst().setName("renamed");
+      }
+    }.transform(b);
+    String transformed = b.toString();
+
+    evict(m);
+    assertEquals(transformed, m.retrieveActiveBody().toString());
+    assertTrue(transformed.contains("renamed"));
+  }
+
+  @Test
+  public void pinnedBodiesStay() {
+    SootMethod m = methods.get(0);
+    BodyResidencyManager.v().pin(m);
+    Body b = m.retrieveActiveBody();
+    loadAll();
+    loadAll();
+    assertSame(b, m.activeBody);
+
+    BodyResidencyManager.v().unpin(m);
+    evict(m);
+    assertFalse(b == m.retrieveActiveBody());
+  }
+
+  @Test
+  public void bodiesStayWhileTransformed() {
+    final SootMethod m = methods.get(0);
+    Body b = m.retrieveActiveBody();
+    Pack pack = PackManager.v().getPack("jtp");
+    pack.add(new Transform("jtp.first", new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        b.getUnits().insertBefore(Jimple.v().newNopStmt(), b.getUnits().getLast());
+      }
+    }));
+    pack.add(new Transform("jtp.second", new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        Unit last = b.getUnits().getLast();
+        // Loading the other bodies puts the body under transformation under eviction pressure
+        for (int i = 0; i < 3; i++) {
+          for (SootMethod other : methods) {
+            if (other != m) {
+              other.retrieveActiveBody();
+            }
+          }
+        }
+        b.getUnits().insertBefore(Jimple.v().newNopStmt(), last);
+      }
+    }));
+    pack.apply(b);
+
+    assertTrue(BodyResidencyManager.v().getEvictionCount() > 0);
+    assertSame(b, m.activeBody);
+    String transformed = b.toString();
+    evict(m);
+    assertEquals(transformed, m.retrieveActiveBody().toString());
+  }
+
+  @Test
+  public void bodiesPinnedBeforeRetrievalStay() {
+    SootMethod m = methods.get(0);
+    m.retrieveActiveBody();
+    evict(m);
+    SootMethod pinned = BodyResidencyManager.v().pinWhileInUse(m);
+    Body b = m.retrieveActiveBody();
+    loadAll();
+    loadAll();
+    assertSame(b, m.activeBody);
+
+    BodyResidencyManager.v().unpin(pinned);
+    evict(m);
+  }
+
+  @Test
+  public void bodiesEvictedBeforeTransformAreReinstated() {
+    SootMethod m = methods.get(0);
+    Body b = m.retrieveActiveBody();
+    evict(m);
+    Pack pack = PackManager.v().getPack("jtp");
+    pack.add(new Transform("jtp.nop", new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        b.getUnits().insertBefore(Jimple.v().newNopStmt(), b.getUnits().getLast());
+      }
+    }));
+    pack.apply(b);
+
+    assertSame(b, m.activeBody);
+    String transformed = b.toString();
+    evict(m);
+    assertEquals(transformed, m.retrieveActiveBody().toString());
+  }
+
+  @Test
+  public void taggedBodiesStay() {
+    SootMethod m = methods.get(0);
+    Body b = m.retrieveActiveBody();
+    b.getUnits().getFirst().addTag(new StringTag("kept"));
+    loadAll();
+    loadAll();
+    assertTrue(BodyResidencyManager.v().getEvictionCount() > 0);
+    assertSame(b, m.activeBody);
+
+    b.getUnits().getFirst().removeTag("StringTag");
+    evict(m);
+  }
+
+  @Test
+  public void bodiesInCallGraphStay() {
+    SootClass sc = Scene.v().getSootClass(TARGET_CLASS);
+    SootMethod m = sc.getMethodByName("entry");
+    SootMethod callee = sc.getMethodByName("step");
+    Body b = m.retrieveActiveBody();
+    Stmt callSite = null;
+    for (Unit u : b.getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr() && s.getInvokeExpr().getMethod() == callee) {
+        callSite = s;
+      }
+    }
+    assertNotNull(callSite);
+    CallGraph cg = new CallGraph();
+    cg.addEdge(new Edge(m, callSite, callee, Kind.VIRTUAL));
+    Scene.v().setCallGraph(cg);
+    loadAll();
+    loadAll();
+    assertTrue(BodyResidencyManager.v().getEvictionCount() > 0);
+    assertSame(b, m.activeBody);
+
+    Scene.v().releaseCallGraph();
+    evict(m);
+  }
+
+  @Test
+  public void releasedBodiesAreForgotten() {
+    SootMethod m = methods.get(0);
+    m.retrieveActiveBody();
+    evict(m);
+    m.releaseActiveBody();
+    assertFalse(m.hasActiveBody());
+    assertNull(m.residency);
+  }
+
+  /**
+   * Loads the bodies of all other methods until the body of the given method has been evicted.
+   */
+  private void evict(SootMethod m) {
+    for (int i = 0; i < 3 && m.activeBody != null; i++) {
+      for (SootMethod other : methods) {
+        if (other != m) {
+          other.retrieveActiveBody();
+        }
+      }
+    }
+    assertNull(m.activeBody);
+    assertNotNull(m.residency);
+    assertTrue(m.hasActiveBody());
+  }
+
+  private void loadAll() {
+    for (SootMethod m : methods) {
+      m.retrieveActiveBody();
+    }
+  }
+}
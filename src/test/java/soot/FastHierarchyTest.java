@@ -24,7 +24,11 @@ package soot;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -176,6 +180,117 @@ public class FastHierarchyTest {
     assertThat(fh.getAllImplementersOfInterface(interfaceD), containsInAnyOrder(scA, scB, scC1, scD));
   }
 
+  @Test
+  public void testCanStoreClassThroughImplementers() throws Exception {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass interfaceA = generacteSceneClass("InterfaceA", Modifier.INTERFACE);
+    SootClass interfaceB = generacteSceneClass("InterfaceB", Modifier.INTERFACE);
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    SootClass scA1 = generacteSceneClass("ClassA1", 0);
+    SootClass scA2 = generacteSceneClass("ClassA2", 0);
+    SootClass scB = generacteSceneClass("ClassB", 0);
+    SootClass scZ = generacteSceneClass("ClassZ", 0);
+
+    interfaceB.addInterface(interfaceA);
+    scA.addInterface(interfaceA);
+    scA1.setSuperclass(scA);
+    // Implementer nested in the interval of another implementer
+    scA2.setSuperclass(scA1);
+    scA2.addInterface(interfaceA);
+    scB.addInterface(interfaceB);
+
+    final FastHierarchy fh = s.getOrMakeFastHierarchy();
+    final SootClass[] implementing = { scA, scA1, scA2, scB };
+    final SootClass[] notImplementing = { scZ, s.getObjectType().getSootClass() };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    ArrayList<Future<Boolean>> results = new ArrayList<>(10);
+    for (int i = 0; i < 10; i++) {
+      results.add(executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          boolean ok = true;
+          for (SootClass c : implementing) {
+            ok &= fh.canStoreClass(c, interfaceA);
+          }
+          for (SootClass c : notImplementing) {
+            ok &= !fh.canStoreClass(c, interfaceA);
+          }
+          return ok;
+        }
+      }));
+    }
+    for (Future<Boolean> future : results) {
+      assertTrue(future.get());
+    }
+    executor.shutdown();
+
+    assertTrue(fh.canStoreClass(scB, interfaceB));
+    assertFalse(fh.canStoreClass(scA, interfaceB));
+  }
+
+  @Test
+  public void testDispatchMemoInvalidatedByNewMethods() {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    SootClass scB = generacteSceneClass("ClassB", 0);
+    scB.setSuperclass(scA);
+
+    SootMethod mA = new SootMethod("m", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    scA.addMethod(mA);
+
+    FastHierarchy fh = s.getOrMakeFastHierarchy();
+    assertSame(mA, fh.resolveConcreteDispatch(scB, mA));
+    assertSame(mA, fh.resolveConcreteDispatch(scB, mA));
+    assertThat(fh.resolveAbstractDispatch(scA, mA), containsInAnyOrder(mA));
+
+    SootMethod mB = new SootMethod("m", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    scB.addMethod(mB);
+    assertSame(mB, fh.resolveConcreteDispatch(scB, mA));
+    assertThat(fh.resolveAbstractDispatch(scA, mA), containsInAnyOrder(mA, mB));
+
+    scB.removeMethod(mB);
+    SootMethod n = new SootMethod("n", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    assertNull(fh.resolveConcreteDispatch(scB, n));
+    scA.addMethod(n);
+    assertSame(n, fh.resolveConcreteDispatch(scB, n));
+    assertSame(mA, fh.resolveConcreteDispatch(scB, mA));
+  }
+
+  @Test
+  public void testDispatchMemoKeptWhenUnrelatedClassChanges() {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    SootClass scB = generacteSceneClass("ClassB", 0);
+    scB.setSuperclass(scA);
+    SootClass scC = generacteSceneClass("ClassC", 0);
+
+    SootMethod mA = new SootMethod("m", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    scA.addMethod(mA);
+
+    FastHierarchy fh = s.getOrMakeFastHierarchy();
+    Set<SootMethod> targets = fh.resolveAbstractDispatch(scA, mA);
+
+    scC.addMethod(new SootMethod("m", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC));
+    assertSame(targets, fh.resolveAbstractDispatch(scA, mA));
+
+    SootMethod mB = new SootMethod("m", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    scB.addMethod(mB);
+    assertThat(fh.resolveAbstractDispatch(scA, mA), containsInAnyOrder(mA, mB));
+  }
+
   private static class FastHierarchyForUnittest extends FastHierarchy {
 
     @Override
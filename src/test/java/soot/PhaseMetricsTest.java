@@ -0,0 +1,128 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class PhaseMetricsTest {
+
+  private static final String TARGET_CLASS = "soot.targets.CallChainTarget";
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void bodyPhasesAreRecorded() {
+    TestTargets.reset();
+    final List<PhaseMetric> metrics = Collections.synchronizedList(new ArrayList<PhaseMetric>());
+    PhaseMetrics.v().setSink(new PhaseMetricsSink() {
+      @Override
+      public void record(PhaseMetric metric) {
+        metrics.add(metric);
+      }
+    });
+    int concreteMethods = TestTargets.retrieveBodies(TestTargets.load(TARGET_CLASS)).size();
+
+    int aggregations = 0;
+    for (PhaseMetric metric : metrics) {
+      assertTrue(metric.isBodyPhase());
+      assertTrue(metric.getWallTime() >= 0);
+      assertTrue(metric.getUnitsBefore() > 0);
+      assertTrue(metric.getUnitsAfter() > 0);
+      if (metric.getPhaseName().equals("jb.a")) {
+        aggregations++;
+        assertTrue(metric.getUnitsAfter() <= metric.getUnitsBefore());
+      }
+    }
+    assertTrue(concreteMethods > 0);
+    assertEquals(concreteMethods, aggregations);
+  }
+
+  @Test
+  public void trackingIsOnlyEnabledWithSink() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean.isThreadCpuTimeSupported());
+    boolean wasEnabled = bean.isThreadCpuTimeEnabled();
+    try {
+      bean.setThreadCpuTimeEnabled(false);
+      PhaseMetrics metrics = PhaseMetrics.v();
+      assertFalse(bean.isThreadCpuTimeEnabled());
+
+      metrics.setSink(new PhaseMetricsSummary());
+      assertTrue(bean.isThreadCpuTimeEnabled());
+      metrics.setSink(null);
+      assertFalse(bean.isThreadCpuTimeEnabled());
+
+      // Tracking that was on before is left on
+      bean.setThreadCpuTimeEnabled(true);
+      metrics.setSink(new PhaseMetricsSummary());
+      metrics.setSink(null);
+      assertTrue(bean.isThreadCpuTimeEnabled());
+    } finally {
+      bean.setThreadCpuTimeEnabled(wasEnabled);
+    }
+  }
+
+  @Test
+  public void summaryIsExported() throws IOException {
+    PhaseMetricsSummary summary = new PhaseMetricsSummary();
+    SootMethod m = new SootMethod("foo", Collections.<Type>emptyList(), VoidType.v());
+    summary.record(new PhaseMetric("wjtp.a", null, 100, 80, 1000, -1, -1));
+    summary.record(new PhaseMetric("jop.cse", m, 10, 8, 100, 20, 18));
+    summary.record(new PhaseMetric("jop.cse", m, 30, 6, 200, 5, 5));
+    summary.record(new PhaseMetric("my,\"phase\"", m, 1, -1, 2, 3, 4));
+
+    StringWriter csv = new StringWriter();
+    summary.writeCsv(csv);
+    assertEquals("phase,applications,bodies,wallTimeNanos,cpuTimeNanos,allocatedBytes,unitsBefore,unitsAfter\n"
+        + "wjtp.a,1,0,100,80,1000,0,0\n" + "jop.cse,2,2,40,14,300,25,23\n" + "\"my,\"\"phase\"\"\",1,1,1,-1,2,3,4\n",
+        csv.toString());
+
+    StringWriter json = new StringWriter();
+    summary.writeJson(json);
+    assertEquals("[\n"
+        + "  {\"phase\": \"wjtp.a\", \"applications\": 1, \"bodies\": 0, \"wallTimeNanos\": 100, \"cpuTimeNanos\": 80,"
+        + " \"allocatedBytes\": 1000, \"unitsBefore\": 0, \"unitsAfter\": 0},\n"
+        + "  {\"phase\": \"jop.cse\", \"applications\": 2, \"bodies\": 2, \"wallTimeNanos\": 40, \"cpuTimeNanos\": 14,"
+        + " \"allocatedBytes\": 300, \"unitsBefore\": 25, \"unitsAfter\": 23},\n"
+        + "  {\"phase\": \"my,\\\"phase\\\"\", \"applications\": 1, \"bodies\": 1, \"wallTimeNanos\": 1, \"cpuTimeNanos\": -1,"
+        + " \"allocatedBytes\": 2, \"unitsBefore\": 3, \"unitsAfter\": 4}\n" + "]\n", json.toString());
+  }
+}
@@ -0,0 +1,244 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SceneSnapshotTest {
+
+  private static final String TARGET_CLASS = "soot.targets.ResolverTarget";
+  private static final String OTHER_TARGET_CLASS = "soot.targets.CallChainTarget";
+  private static final String MISSING_CLASS = "soot.targets.Missing";
+
+  private SceneSnapshot snapshot;
+
+  @Before
+  public void setUp() {
+    TestTargets.reset();
+    Scene.v().loadBasicClasses();
+    RefType.v(MISSING_CLASS);
+    snapshot = SceneSnapshot.capture();
+    G.setGlobalObjectGetter(snapshot.newForkPerThreadGetter());
+  }
+
+  @After
+  public void tearDown() {
+    G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+      private G instance = new G();
+
+      @Override
+      public G getG() {
+        return instance;
+      }
+
+      @Override
+      public void reset() {
+        instance = new G();
+      }
+    });
+  }
+
+  private static SootClass loadApplicationClass(String name) {
+    TestTargets.setOptions();
+    SootClass c = Scene.v().loadClassAndSupport(name);
+    c.setApplicationClass();
+    return c;
+  }
+
+  @Test
+  public void forkSharesSnapshotClassesAndTypes() {
+    Scene base = snapshot.getScene();
+    SootClass object = Scene.v().getSootClass("java.lang.Object");
+    assertNotSame(base, Scene.v());
+    assertSame(base.getSootClass("java.lang.Object"), object);
+    assertTrue(object.isLibraryClass());
+    assertSame(base.getRefType("java.lang.String"), RefType.v("java.lang.String"));
+    assertTrue(IntType.v().isShared());
+    assertEquals(base.getTypeNumberer().size(), Scene.v().getTypeNumberer().size());
+    assertSame(object, Scene.v().getClassNumberer().get(object.getNumber()));
+  }
+
+  @Test
+  public void forksAreIsolated() {
+    SootClass target = loadApplicationClass(TARGET_CLASS);
+    assertTrue(target.isApplicationClass());
+    assertTrue(Scene.v().getOrMakeFastHierarchy().canStoreType(target.getType(), RefType.v("java.lang.Object")));
+    assertFalse(snapshot.getScene().containsClass(TARGET_CLASS));
+
+    G.reset();
+    assertFalse(Scene.v().containsClass(TARGET_CLASS));
+    SootClass other = loadApplicationClass(OTHER_TARGET_CLASS);
+    assertTrue(other.isApplicationClass());
+    assertFalse(snapshot.getScene().containsClass(OTHER_TARGET_CLASS));
+  }
+
+  @Test
+  public void derivedTypesOfSharedTypesArePerFork() {
+    RefType thread = RefType.v("java.lang.Thread");
+    assertTrue(thread.isShared());
+    ArrayType first = ArrayType.v(thread, 4);
+    assertSame(first, ArrayType.v(thread, 4));
+    assertSame(first, Scene.v().getTypeNumberer().get(first.getNumber()));
+    AnySubType firstAny = AnySubType.v(thread);
+
+    G.reset();
+    ArrayType second = ArrayType.v(thread, 4);
+    assertNotSame(first, second);
+    assertNotSame(firstAny, AnySubType.v(thread));
+    assertSame(second, Scene.v().getTypeNumberer().get(second.getNumber()));
+  }
+
+  @Test
+  public void forksOnDifferentThreads() throws Exception {
+    final SootClass[] loaded = new SootClass[2];
+    final String[] names = { TARGET_CLASS, OTHER_TARGET_CLASS };
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      final int n = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          G.reset();
+          loaded[n] = loadApplicationClass(names[n]);
+          TestTargets.retrieveBodies(loaded[n]);
+          if (Scene.v().containsClass(names[1 - n]) && Scene.v().getSootClass(names[1 - n]).isApplicationClass()) {
+            loaded[n] = null;
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertTrue(loaded[0] != null && loaded[1] != null);
+    assertFalse(Scene.v().containsClass(TARGET_CLASS));
+  }
+
+  @Test
+  public void forksLoadLibraryBodiesOfTheirOwn() throws Exception {
+    final SootMethod toString = Scene.v().getMethod("<java.lang.Object: java.lang.String toString()>");
+    final Body[] bodies = new Body[2];
+    final CyclicBarrier barrier = new CyclicBarrier(bodies.length);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[bodies.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int n = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            G.reset();
+            TestTargets.setOptions();
+            barrier.await();
+            Body b = toString.retrieveActiveBody();
+            assertSame(b, toString.getActiveBody());
+            for (Local l : b.getLocals()) {
+              assertSame(l, Scene.v().getLocalNumberer().get(l.getNumber()));
+            }
+            bodies[n] = b;
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertNotSame(bodies[0], bodies[1]);
+    assertEquals(bodies[0].toString(), bodies[1].toString());
+    assertFalse(toString.hasActiveBody());
+
+    Body own = toString.retrieveActiveBody();
+    assertNotSame(bodies[0], own);
+    toString.releaseActiveBody();
+    assertFalse(toString.hasActiveBody());
+  }
+
+  @Test
+  public void threadsStartWithTheForkOfTheirCreator() throws Exception {
+    G fork = G.v();
+    final G[] seen = new G[1];
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        seen[0] = G.v();
+      }
+    };
+    t.start();
+    t.join();
+    assertSame(fork, seen[0]);
+  }
+
+  @Test
+  public void captureCreatesNoPhantomClasses() {
+    assertFalse(snapshot.getScene().containsClass(MISSING_CLASS));
+    RefType missing = RefType.v(MISSING_CLASS);
+    assertTrue(missing.isShared());
+    assertFalse(missing.hasSootClass());
+
+    SootClass c = missing.getSootClass();
+    assertSame(c, Scene.v().getSootClass(MISSING_CLASS));
+    G.reset();
+    assertFalse(missing.hasSootClass());
+    assertFalse(Scene.v().containsClass(MISSING_CLASS));
+  }
+
+  @Test
+  public void sharedClassesCannotBeModified() {
+    SootClass object = Scene.v().getSootClass("java.lang.Object");
+    assertTrue(object.isShared());
+    try {
+      Scene.v().removeClass(object);
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("shared"));
+    }
+    try {
+      object.addField(Scene.v().makeSootField("added", IntType.v()));
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("shared"));
+    }
+    assertTrue(Scene.v().containsClass("java.lang.Object"));
+    assertSame(object, RefType.v("java.lang.Object").getSootClass());
+    assertFalse(object.declaresFieldByName("added"));
+  }
+}
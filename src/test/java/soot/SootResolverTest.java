@@ -0,0 +1,76 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import soot.options.Options;
+
+public class SootResolverTest {
+
+  private static final String TARGET_CLASS = "soot.targets.ResolverTarget";
+
+  @Test
+  public void parallelResolverProducesSameScene() {
+    List<String> serial = resolveTarget(false);
+    List<String> parallel = resolveTarget(true);
+
+    assertFalse(serial.isEmpty());
+    assertEquals(serial, parallel);
+  }
+
+  /**
+   * Resolves the target class and all its dependencies, and returns a description of each class in the Scene in the order
+   * in which the classes were added to the Scene.
+   */
+  private static List<String> resolveTarget(boolean parallel) {
+    TestTargets.reset();
+    Options.v().set_full_resolver(true);
+    Options.v().set_parallel_resolver(parallel);
+    Options.v().set_num_threads(4);
+    Scene.v().loadClassAndSupport(TARGET_CLASS);
+
+    List<String> classes = new ArrayList<String>();
+    for (SootClass sc : Scene.v().getClasses()) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(sc.getName()).append(' ').append(sc.resolvingLevel()).append(' ').append(sc.isPhantom());
+      if (sc.resolvingLevel() >= SootClass.HIERARCHY && sc.hasSuperclass()) {
+        sb.append(" extends ").append(sc.getSuperclass().getName());
+      }
+      if (sc.resolvingLevel() >= SootClass.SIGNATURES) {
+        for (SootMethod m : sc.getMethods()) {
+          sb.append(' ').append(m.getSubSignature());
+        }
+      }
+      classes.add(sb.toString());
+    }
+    return classes;
+  }
+}
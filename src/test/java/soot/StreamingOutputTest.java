@@ -0,0 +1,175 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.options.Options;
+
+public class StreamingOutputTest {
+
+  private static final List<String> TARGET_CLASSES = Arrays.asList("soot.toolkits.exceptions.targets.MethodThrowableSetClass",
+      "soot.toolkits.exceptions.targets.MethodThrowableSetClass$target", "soot.toolkits.exceptions.targets.MyException",
+      "soot.FastHierarchyTest", "soot.BodyCacheTest");
+
+  @Rule
+  public TemporaryFolder outputDir = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void streamingJarMatchesRegularJar() throws IOException {
+    Map<String, String> regular = run(false, outputDir.newFolder("regular"), TARGET_CLASSES);
+    Map<String, String> streamed = run(true, outputDir.newFolder("streamed"), TARGET_CLASSES);
+    assertFalse(regular.isEmpty());
+    assertEquals(regular, streamed);
+  }
+
+  @Test
+  public void streamingDirectoryMatchesRegularDirectory() throws IOException {
+    Map<String, String> regular
+        = run(false, outputDir.newFolder("regular"), TARGET_CLASSES, Options.output_format_class, false, false);
+    Map<String, String> streamed
+        = run(true, outputDir.newFolder("streamed"), TARGET_CLASSES, Options.output_format_class, false, false);
+    assertFalse(regular.isEmpty());
+    assertEquals(regular, streamed);
+  }
+
+  @Test
+  public void streamingJimpleMatchesRegularJimple() throws IOException {
+    // with XML attributes, the printer numbers the lines of the Jimple output
+    Map<String, String> regular
+        = run(false, outputDir.newFolder("regular"), TARGET_CLASSES, Options.output_format_jimple, false, true);
+    Map<String, String> streamed
+        = run(true, outputDir.newFolder("streamed"), TARGET_CLASSES, Options.output_format_jimple, false, true);
+    assertFalse(regular.isEmpty());
+    assertEquals(regular, streamed);
+  }
+
+  @Test
+  public void streamingJarContainsLambdaClasses() throws IOException {
+    List<String> classes = Collections.singletonList(LambdaTarget.class.getName());
+    Map<String, String> regular = run(false, outputDir.newFolder("regular"), classes);
+    Map<String, String> streamed = run(true, outputDir.newFolder("streamed"), classes);
+    // the target and the class created for its lambda
+    assertEquals(2, regular.size());
+    assertEquals(regular, streamed);
+  }
+
+  public static class LambdaTarget {
+    public Runnable print(String s) {
+      return () -> System.out.println(s);
+    }
+  }
+
+  /**
+   * Writes the given classes into a jar and returns the contents of its entries.
+   */
+  private static Map<String, String> run(boolean streaming, File out, List<String> classes) throws IOException {
+    return run(streaming, out, classes, Options.output_format_class, true, false);
+  }
+
+  /**
+   * Writes the given classes in the given format into a jar or a directory, and returns the contents of the written files.
+   */
+  private static Map<String, String> run(boolean streaming, File out, List<String> classes, int format, boolean jar,
+      boolean xmlAttributes) throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_dir(out.getAbsolutePath());
+    Options.v().set_output_format(format);
+    Options.v().set_output_jar(jar);
+    Options.v().set_xml_attributes(xmlAttributes);
+    Options.v().set_num_threads(4);
+    Options.v().set_streaming_output(streaming);
+    Options.v().set_streaming_output_depth(1);
+    Options.v().classes().addAll(classes);
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    PackManager.v().writeOutput();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : c.getMethods()) {
+        assertFalse(m.getSignature(), m.hasActiveBody());
+      }
+    }
+
+    Map<String, String> entries = new TreeMap<String, String>();
+    if (!jar) {
+      for (Path p : Files.walk(out.toPath()).filter(Files::isRegularFile).collect(Collectors.toList())) {
+        String name = out.toPath().relativize(p).toString();
+        if (name.endsWith(".xml")) {
+          // some attributes are described by their identity hash codes
+          String xml = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+          entries.put(name, xml.replaceAll("@[0-9a-f]+\"", "\""));
+        } else {
+          entries.put(name, Base64.getEncoder().encodeToString(Files.readAllBytes(p)));
+        }
+      }
+      return entries;
+    }
+    try (JarFile jarFile = new JarFile(new File(out, "out.jar"))) {
+      for (Enumeration<JarEntry> e = jarFile.entries(); e.hasMoreElements();) {
+        JarEntry entry = e.nextElement();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        try (InputStream in = jarFile.getInputStream(entry)) {
+          while ((n = in.read(buf)) > 0) {
+            content.write(buf, 0, n);
+          }
+        }
+        entries.put(entry.getName(), Base64.getEncoder().encodeToString(content.toByteArray()));
+      }
+    }
+    return entries;
+  }
+}
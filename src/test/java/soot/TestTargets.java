@@ -0,0 +1,91 @@
+package soot;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import soot.options.Options;
+
+/**
+ * Loads the target classes that are compiled with the tests into a fresh Scene.
+ */
+public final class TestTargets {
+
+  private TestTargets() {
+  }
+
+  /**
+   * Resets Soot and loads classes from the compiled tests, with the JDK as library and phantom references for anything
+   * else. Options that a test needs on top of these are set after this call.
+   */
+  public static void reset() {
+    G.reset();
+    setOptions();
+  }
+
+  /**
+   * Sets the options of {@link #reset()} without resetting Soot.
+   */
+  public static void setOptions() {
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_allow_phantom_refs(true);
+  }
+
+  /**
+   * Loads the given class with its support and the necessary classes.
+   */
+  public static SootClass load(String className) {
+    SootClass sc = Scene.v().loadClassAndSupport(className);
+    Scene.v().loadNecessaryClasses();
+    return sc;
+  }
+
+  /**
+   * Returns the methods of the given class that have a body.
+   */
+  public static List<SootMethod> concreteMethods(SootClass sc) {
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (SootMethod m : sc.getMethods()) {
+      if (m.isConcrete()) {
+        methods.add(m);
+      }
+    }
+    return methods;
+  }
+
+  /**
+   * Retrieves the bodies of all methods of the given class that have one.
+   */
+  public static List<Body> retrieveBodies(SootClass sc) {
+    List<Body> bodies = new ArrayList<Body>();
+    for (SootMethod m : concreteMethods(sc)) {
+      bodies.add(m.retrieveActiveBody());
+    }
+    return bodies;
+  }
+}
@@ -0,0 +1,200 @@
+package soot.asm;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import soot.Body;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.TestTargets;
+import soot.Unit;
+import soot.options.Options;
+import soot.tagkit.LineNumberTag;
+
+public class AsmStreamingTest {
+
+  private static final String SUBROUTINE_CLASS = "SubroutineTarget";
+
+  @Rule
+  public TemporaryFolder classDir = new TemporaryFolder();
+
+  @Test
+  public void streamedBodiesMatchTreeBodies() throws Exception {
+    String jar = new File(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    List<String> processDir = Arrays.asList(jar, new File("target/test-classes").getAbsolutePath());
+
+    Map<String, String> tree = loadBodies(processDir, false, null);
+    Map<String, Class<?>> sources = new LinkedHashMap<String, Class<?>>();
+    Map<String, String> streamed = loadBodies(processDir, true, sources);
+
+    assertFalse(tree.isEmpty());
+    assertEquals(Collections.singleton(StreamMethodSource.class), new HashSet<Class<?>>(sources.values()));
+    assertEquals(tree.keySet(), streamed.keySet());
+    for (Map.Entry<String, String> e : tree.entrySet()) {
+      assertEquals(e.getKey(), e.getValue(), streamed.get(e.getKey()));
+    }
+  }
+
+  @Test
+  public void subroutinesAreInlinedWhenStreaming() throws Exception {
+    writeSubroutineClass();
+    List<String> processDir = Collections.singletonList(classDir.getRoot().getAbsolutePath());
+
+    Map<String, String> tree = loadBodies(processDir, false, null);
+    Map<String, Class<?>> sources = new LinkedHashMap<String, Class<?>>();
+    Map<String, String> streamed = loadBodies(processDir, true, sources);
+
+    assertEquals(2, tree.size());
+    assertEquals(tree, streamed);
+    assertEquals(StreamMethodSource.class, sources.get("<" + SUBROUTINE_CLASS + ": void <init>()>"));
+    assertEquals(AsmMethodSource.class, sources.get("<" + SUBROUTINE_CLASS + ": int tryFinally(int)>"));
+  }
+
+  @Test
+  public void streamedBodiesCanBeLoadedAgain() {
+    TestTargets.reset();
+    Options.v().set_asm_streaming(true);
+    Options.v().set_keep_line_number(true);
+    Options.v().set_drop_bodies_after_load(false);
+    SootClass sc = TestTargets.load("soot.targets.BodyCacheTarget");
+
+    for (SootMethod m : TestTargets.concreteMethods(sc)) {
+      String first = describe(m.retrieveActiveBody());
+      m.releaseActiveBody();
+      assertEquals(m.getSignature(), first, describe(m.retrieveActiveBody()));
+    }
+  }
+
+  /**
+   * Loads the bodies of all methods in the given directories and archives, and returns their textual representation,
+   * including the line numbers of all units. If <code>sources</code> is not <code>null</code>, the class of the method
+   * source of each method is put into it.
+   */
+  private static Map<String, String> loadBodies(List<String> processDir, boolean streaming,
+      Map<String, Class<?>> sources) {
+    G.reset();
+    Options.v().set_process_dir(processDir);
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_keep_line_number(true);
+    Options.v().set_asm_streaming(streaming);
+    Scene.v().loadNecessaryClasses();
+
+    Map<String, String> bodies = new LinkedHashMap<String, String>();
+    for (SootClass sc : new ArrayList<SootClass>(Scene.v().getApplicationClasses())) {
+      for (SootMethod m : TestTargets.concreteMethods(sc)) {
+        if (sources != null) {
+          sources.put(m.getSignature(), m.getSource().getClass());
+        }
+        bodies.put(m.getSignature(), describe(m.retrieveActiveBody()));
+      }
+    }
+    return bodies;
+  }
+
+  /**
+   * Returns the textual representation of the given body, followed by its locals in order and the line numbers of all
+   * units.
+   */
+  private static String describe(Body b) {
+    List<Object> lines = new ArrayList<Object>();
+    for (Unit u : b.getUnits()) {
+      LineNumberTag line = (LineNumberTag) u.getTag(LineNumberTag.IDENTIFIER);
+      lines.add(line == null ? "-" : line.getLineNumber());
+    }
+    return b.toString() + b.getLocals() + lines;
+  }
+
+  /**
+   * Writes a class file of an old version, in which a method calls a subroutine, once from the protected code of a
+   * try-finally block and once from its handler.
+   */
+  private void writeSubroutineClass() throws Exception {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(Opcodes.V1_1, Opcodes.ACC_PUBLIC, SUBROUTINE_CLASS, null, "java/lang/Object", null);
+
+    MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(1, 1);
+    init.visitEnd();
+
+    MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "tryFinally", "(I)I", null, null);
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    Label subroutine = new Label();
+    mv.visitCode();
+    mv.visitTryCatchBlock(start, end, handler, null);
+    mv.visitLabel(start);
+    mv.visitLineNumber(1, start);
+    mv.visitIincInsn(0, 1);
+    mv.visitJumpInsn(Opcodes.JSR, subroutine);
+    mv.visitLabel(end);
+    mv.visitVarInsn(Opcodes.ILOAD, 0);
+    mv.visitInsn(Opcodes.IRETURN);
+    mv.visitLabel(handler);
+    mv.visitLineNumber(2, handler);
+    mv.visitVarInsn(Opcodes.ASTORE, 1);
+    mv.visitJumpInsn(Opcodes.JSR, subroutine);
+    mv.visitVarInsn(Opcodes.ALOAD, 1);
+    mv.visitInsn(Opcodes.ATHROW);
+    mv.visitLabel(subroutine);
+    mv.visitLineNumber(3, subroutine);
+    mv.visitVarInsn(Opcodes.ASTORE, 2);
+    mv.visitIincInsn(0, 2);
+    mv.visitVarInsn(Opcodes.RET, 2);
+    mv.visitLocalVariable("x", "I", null, start, subroutine, 0);
+    mv.visitMaxs(1, 3);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    Files.write(new File(classDir.getRoot(), SUBROUTINE_CLASS + ".class").toPath(), cw.toByteArray());
+  }
+}
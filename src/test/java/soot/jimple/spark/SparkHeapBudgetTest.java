@@ -0,0 +1,229 @@
+package soot.jimple.spark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.spark.solver.HeapBudget;
+import soot.jimple.spark.solver.HeapBudgetExceededException;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+public class SparkHeapBudgetTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Scene.v().loadNecessaryClasses();
+  }
+
+  @Test
+  public void budgetIsCheckedAfterGarbageCollection() {
+    new HeapBudget(Long.MAX_VALUE).checkNow();
+    try {
+      new HeapBudget(1).checkNow();
+    } catch (HeapBudgetExceededException e) {
+      assertEquals(1, e.getBudget());
+      assertTrue(e.getUsed() > 1);
+      return;
+    }
+    throw new AssertionError("budget of one byte not exceeded");
+  }
+
+  @Test
+  public void restartedAnalysisMatchesRunWithoutBudget() {
+    new SparkTransformer(null).internalTransform("cg.spark", options("heap-budget:0"));
+    Result expected = new Result();
+
+    setUp();
+    AbortingTransformer spark = new AbortingTransformer(1);
+    spark.internalTransform("cg.spark", options("heap-budget:100000"));
+    Result restarted = new Result();
+
+    // Points-to sets kept off the heap are as precise as the ones on the heap
+    assertEquals(1, spark.aborted);
+    assertEquals(Collections.singletonList(SparkTransformer.Degradation.OFF_HEAP_SETS.description),
+        spark.getDegradations());
+    assertTrue(expected.callGraphSize > 0);
+    assertEquals(expected.callGraphSize, restarted.callGraphSize);
+    assertEquals(expected.reachableMethods, restarted.reachableMethods);
+    assertFalse(expected.pointsToSets.isEmpty());
+    assertEquals(expected.pointsToSets, restarted.pointsToSets);
+  }
+
+  @Test
+  public void keepsPrecisionWithinBudget() {
+    AbortingTransformer spark = new AbortingTransformer(0);
+    spark.internalTransform("cg.spark", options("heap-budget:100000"));
+
+    assertEquals(1, spark.attempts);
+    assertEquals(Collections.emptyList(), spark.getDegradations());
+    SparkOptions opts = ((PAG) Scene.v().getPointsToAnalysis()).getOpts();
+    assertFalse(opts.field_based());
+    assertFalse(opts.types_for_sites());
+  }
+
+  @Test
+  public void degradesStepByStep() {
+    AbortingTransformer spark = new AbortingTransformer(2);
+    spark.internalTransform("cg.spark", options("heap-budget:100000"));
+
+    assertEquals(3, spark.attempts);
+    assertEquals(2, spark.aborted);
+    assertEquals(Arrays.asList(SparkTransformer.Degradation.OFF_HEAP_SETS.description,
+        SparkTransformer.Degradation.FIELD_BASED.description), spark.getDegradations());
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    // The solver still propagates differences, with the large sets off the heap
+    assertEquals(SparkOptions.set_impl_double, pag.getOpts().set_impl());
+    assertEquals(SparkOptions.double_set_old_offheap, pag.getOpts().double_set_old());
+    assertTrue(pag.getOpts().field_based());
+    assertFalse(pag.getOpts().types_for_sites());
+    assertTrue(Scene.v().getReachableMethods().contains(Scene.v().getMainMethod()));
+  }
+
+  @Test
+  public void dropsBudgetWhenAllStepsAreTaken() {
+    AbortingTransformer spark = new AbortingTransformer(Integer.MAX_VALUE);
+    spark.internalTransform("cg.spark", options("heap-budget:100000"));
+
+    assertEquals(Arrays.asList(SparkTransformer.Degradation.OFF_HEAP_SETS.description,
+        SparkTransformer.Degradation.FIELD_BASED.description, SparkTransformer.Degradation.TYPES_FOR_SITES.description,
+        "no heap budget"), spark.getDegradations());
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    assertTrue(pag.getOpts().types_for_sites());
+    assertEquals(0, pag.getOpts().heap_budget());
+  }
+
+  private static Map<String, String> options(String option) {
+    Options.v().setPhaseOption("cg.spark", option);
+    return PhaseOptions.v().getPhaseOptions("cg.spark");
+  }
+
+  /**
+   * The call graph and the points-to sets of the locals of the application classes after a run of Spark.
+   */
+  private static class Result {
+    final int callGraphSize = Scene.v().getCallGraph().size();
+    final int reachableMethods = Scene.v().getReachableMethods().size();
+    final Map<String, List<String>> pointsToSets = new TreeMap<String, List<String>>();
+
+    Result() {
+      PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+      for (SootClass sc : Scene.v().getApplicationClasses()) {
+        for (SootMethod m : sc.getMethods()) {
+          if (!m.hasActiveBody()) {
+            continue;
+          }
+          for (Local l : m.getActiveBody().getLocals()) {
+            if (l.getType() instanceof RefLikeType) {
+              final List<String> objects = new ArrayList<String>();
+              ((PointsToSetInternal) pag.reachingObjects(l)).forall(new P2SetVisitor() {
+                @Override
+                public void visit(Node n) {
+                  AllocNode an = (AllocNode) n;
+                  objects.add(an.getNewExpr() + " in " + an.getMethod());
+                }
+              });
+              Collections.sort(objects);
+              pointsToSets.put(m.getSignature() + " " + l.getName(), objects);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Aborts the propagation of the given number of attempts as if the heap budget had been exceeded, as long as there is a
+   * budget.
+   */
+  private static class AbortingTransformer extends SparkTransformer {
+    private final int failures;
+    int attempts = 0;
+    int aborted = 0;
+
+    AbortingTransformer(int failures) {
+      super(null);
+      this.failures = failures;
+    }
+
+    @Override
+    protected void analyze(SparkOptions opts) {
+      attempts++;
+      super.analyze(opts);
+    }
+
+    @Override
+    protected void propagatePAG(SparkOptions opts, PAG pag) {
+      if (attempts <= failures && pag.getHeapBudget() != null) {
+        pag.setHeapBudget(new HeapBudget(Long.MAX_VALUE) {
+          private int calls = 0;
+
+          @Override
+          public void check() {
+            if (++calls == 20) {
+              aborted++;
+              throw new HeapBudgetExceededException(2L << 20, 1L << 20);
+            }
+          }
+        });
+      }
+      super.propagatePAG(opts, pag);
+    }
+  }
+}
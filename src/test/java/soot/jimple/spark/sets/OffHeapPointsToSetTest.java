@@ -0,0 +1,229 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+public class OffHeapPointsToSetTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void offHeapSetsMatchHybrid() throws Exception {
+    Map<String, List<String>> expected = computePointsTo("set-impl:hybrid");
+    Map<String, List<String>> offHeap = computePointsTo("set-impl:offheap");
+    Map<String, List<String>> doubleOffHeap
+        = computePointsTo("set-impl:double double-set-old:offheap double-set-new:offheap");
+    Map<String, List<String>> mapped
+        = computePointsTo("set-impl:offheap offheap-dir:" + folder.newFolder().getAbsolutePath());
+    assertTrue(((PAG) Scene.v().getPointsToAnalysis()).getOffHeapSetStore().isMapped());
+
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, offHeap);
+    assertEquals(expected, doubleOffHeap);
+    assertEquals(expected, mapped);
+  }
+
+  @Test
+  public void resetClosesStore() throws Exception {
+    File dir = folder.newFolder();
+    G.reset();
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Scene.v().loadNecessaryClasses();
+    Map<String, String> options = new HashMap<String, String>();
+    options.put("ignore-types", "true");
+    options.put("set-impl", "offheap");
+    options.put("offheap-dir", dir.getAbsolutePath());
+    PAG pag = new PAG(new SparkOptions(options));
+    PointsToSetInternal set = pag.getSetFactory().newSet(null, pag);
+    for (int i = 0; i < 100; i++) {
+      set.add(pag.makeAllocNode("site" + i, RefType.v("java.lang.Object"), null));
+    }
+    OffHeapSetStore store = pag.getOffHeapSetStore();
+    assertTrue(store.getReservedBytes() > 0);
+    assertEquals(1, dir.list().length);
+
+    G.reset();
+    assertEquals(0, store.getReservedBytes());
+    assertEquals(0, dir.list().length);
+  }
+
+  @Test
+  public void randomOperationsMatchHybrid() {
+    G.reset();
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Scene.v().loadNecessaryClasses();
+    Map<String, String> options = new HashMap<String, String>();
+    options.put("ignore-types", "true");
+    options.put("set-impl", "offheap");
+    PAG pag = new PAG(new SparkOptions(options));
+    AllocNode[] nodes = new AllocNode[5000];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = pag.makeAllocNode("site" + i, RefType.v("java.lang.Object"), null);
+    }
+
+    Random random = new Random(42);
+    PointsToSetInternal[] offHeap = new PointsToSetInternal[40];
+    PointsToSetInternal[] hybrid = new PointsToSetInternal[offHeap.length];
+    for (int i = 0; i < offHeap.length; i++) {
+      offHeap[i] = pag.getSetFactory().newSet(null, pag);
+      hybrid[i] = new HybridPointsToSet(null, pag);
+    }
+    for (int round = 0; round < 20000; round++) {
+      int i = random.nextInt(offHeap.length);
+      int j = random.nextInt(offHeap.length);
+      int k = random.nextInt(offHeap.length);
+      switch (random.nextInt(10)) {
+        case 0:
+          // Drop the set, so its block is eventually recycled
+          offHeap[i] = pag.getSetFactory().newSet(null, pag);
+          hybrid[i] = new HybridPointsToSet(null, pag);
+          break;
+        case 1:
+          assertEquals(hybrid[i].addAll(hybrid[j], hybrid[k]), offHeap[i].addAll(offHeap[j], offHeap[k]));
+          break;
+        case 2:
+          assertEquals(hybrid[i].addAll(hybrid[j], null), offHeap[i].addAll(hybrid[j], null));
+          break;
+        case 3:
+          assertEquals(hybrid[i].addAll(hybrid[j], null), offHeap[i].addAll(offHeap[j], null));
+          break;
+        default:
+          // Elements cluster around a few sites, so the bit vectors grow in both directions
+          int center = (i * 997) % nodes.length;
+          int n = Math.max(0, Math.min(nodes.length - 1, center + (int) (random.nextGaussian() * 200)));
+          assertEquals(hybrid[i].add(nodes[n]), offHeap[i].add(nodes[n]));
+          break;
+      }
+      if (round % 1000 == 0) {
+        System.gc();
+      }
+    }
+
+    boolean dense = false;
+    for (int i = 0; i < offHeap.length; i++) {
+      assertEquals(elements(hybrid[i]), elements(offHeap[i]));
+      assertEquals(hybrid[i].size(), offHeap[i].size());
+      assertEquals(hybrid[i].isEmpty(), offHeap[i].isEmpty());
+      dense |= offHeap[i].size() > 16;
+      for (int j = 0; j < offHeap.length; j++) {
+        assertEquals(hybrid[i].hasNonEmptyIntersection(hybrid[j]), offHeap[i].hasNonEmptyIntersection(offHeap[j]));
+      }
+      for (AllocNode node : nodes) {
+        assertEquals(hybrid[i].contains(node), offHeap[i].contains(node));
+      }
+    }
+    assertTrue(dense);
+    assertTrue(pag.getOffHeapSetStore().getUsedBytes() > 0);
+  }
+
+  private static List<Integer> elements(PointsToSetInternal set) {
+    final List<Integer> ret = new ArrayList<Integer>();
+    set.forall(new P2SetVisitor() {
+      @Override
+      public void visit(Node n) {
+        ret.add(n.getNumber());
+      }
+    });
+    Collections.sort(ret);
+    return ret;
+  }
+
+  /**
+   * Runs Spark with the given options and returns the points-to sets of all locals in reachable application methods.
+   */
+  private static Map<String, List<String>> computePointsTo(String sparkOptions) {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Options.v().setPhaseOption("cg.spark", "on");
+    for (String option : sparkOptions.split(" ")) {
+      Options.v().setPhaseOption("cg.spark", option);
+    }
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().getPack("cg").apply();
+
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m)) {
+          continue;
+        }
+        for (Local l : m.getActiveBody().getLocals()) {
+          final List<String> objects = new ArrayList<String>();
+          PointsToSetInternal pts = (PointsToSetInternal) pag.reachingObjects(l);
+          pts.forall(new P2SetVisitor() {
+            @Override
+            public void visit(Node n) {
+              AllocNode an = (AllocNode) n;
+              objects.add(an.getNewExpr() + " in " + an.getMethod());
+            }
+          });
+          assertEquals(objects.size(), pts.size());
+          Collections.sort(objects);
+          result.put(m.getSignature() + " " + l.getName(), objects);
+        }
+      }
+    }
+    return result;
+  }
+}
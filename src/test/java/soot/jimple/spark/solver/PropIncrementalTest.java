@@ -0,0 +1,326 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.NewInstanceNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+import soot.toolkits.scalar.Pair;
+
+public class PropIncrementalTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  @Test
+  public void updateMatchesFullRun() {
+    loadClasses();
+
+    PAG pag = runSpark(true);
+    Map<String, List<String>> before = computePointsTo();
+
+    // Objects no longer flow out of the list iterator
+    Body b = Scene.v().getSootClass("soot.toolkits.purity.ListItr").getMethodByName("<init>").retrieveActiveBody();
+    for (Iterator<Unit> it = b.getUnits().snapshotIterator(); it.hasNext();) {
+      Unit u = it.next();
+      if (u instanceof AssignStmt && ((AssignStmt) u).getLeftOp() instanceof InstanceFieldRef) {
+        b.getUnits().remove(u);
+      }
+    }
+    assertSame(pag, runSpark(true));
+
+    // A new object is added to the list
+    b = Scene.v().getMainMethod().retrieveActiveBody();
+    b.getUnits().insertBefore(makeListAdd(b), b.getUnits().getLast());
+    assertSame(pag, runSpark(true));
+
+    Map<String, List<String>> incremental = computePointsTo();
+    Map<String, List<String>> incrementalEdges = computeCallEdges();
+
+    G.v().resetSpark();
+    assertNotSame(pag, runSpark(false));
+    Map<String, List<String>> expected = computePointsTo();
+    Map<String, List<String>> expectedEdges = computeCallEdges();
+
+    assertFalse(expected.isEmpty());
+    assertFalse(expected.equals(before));
+    // Methods are never removed from the reachable methods by an update
+    assertTrue(incremental.keySet().containsAll(expected.keySet()));
+    incremental.keySet().retainAll(expected.keySet());
+    assertEquals(expected, incremental);
+    assertTrue(incrementalEdges.keySet().containsAll(expectedEdges.keySet()));
+    incrementalEdges.keySet().retainAll(expectedEdges.keySet());
+    assertEquals(expectedEdges, incrementalEdges);
+  }
+
+  @Test
+  public void callMapsMatchFreshBuild() {
+    loadClasses();
+    Body b = Scene.v().getMainMethod().retrieveActiveBody();
+    List<Unit> listAdd = makeListAdd(b);
+
+    Set<SootMethod> reachableBefore = new HashSet<SootMethod>();
+    Map<String, List<String>> expectedBefore = computeFreshCallMaps(reachableBefore);
+    b.getUnits().insertBefore(listAdd, b.getUnits().getLast());
+    Set<SootMethod> reachableAfter = new HashSet<SootMethod>();
+    Map<String, List<String>> expectedAfter = computeFreshCallMaps(reachableAfter);
+    assertFalse(expectedBefore.equals(expectedAfter));
+    for (Unit u : listAdd) {
+      b.getUnits().remove(u);
+    }
+
+    G.v().resetSpark();
+    PAG pag = runSpark(true);
+    b.getUnits().insertBefore(listAdd, b.getUnits().getLast());
+    assertSame(pag, runSpark(true));
+    assertEquals(expectedAfter, computeCallMaps(pag, reachableAfter));
+
+    for (Unit u : listAdd) {
+      b.getUnits().remove(u);
+    }
+    assertSame(pag, runSpark(true));
+    assertEquals(expectedBefore, computeCallMaps(pag, reachableBefore));
+
+    b.getUnits().insertBefore(listAdd, b.getUnits().getLast());
+    assertSame(pag, runSpark(true));
+    assertEquals(expectedAfter, computeCallMaps(pag, reachableAfter));
+  }
+
+  private static void loadClasses() {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Scene.v().loadNecessaryClasses();
+  }
+
+  /**
+   * Returns statements for the given body of the main method that add a new object to its list.
+   */
+  private static List<Unit> makeListAdd(Body b) {
+    SootClass listClass = Scene.v().getSootClass("soot.toolkits.purity.List");
+    Local list = null;
+    for (Local l : b.getLocals()) {
+      if (l.getType() == listClass.getType()) {
+        list = l;
+      }
+    }
+    Local object = Jimple.v().newLocal("object", RefType.v("java.lang.Object"));
+    b.getLocals().add(object);
+    List<Unit> units = new ArrayList<Unit>();
+    units.add(Jimple.v().newAssignStmt(object, Jimple.v().newNewExpr(RefType.v("java.lang.Object"))));
+    units.add(Jimple.v()
+        .newInvokeStmt(Jimple.v().newVirtualInvokeExpr(list, listClass.getMethodByName("add").makeRef(), object)));
+    return units;
+  }
+
+  /**
+   * Builds the points-to analysis from scratch and returns its call maps, see {@link #computeCallMaps(PAG, Set)}. Adds the
+   * reachable methods to the given set.
+   */
+  private static Map<String, List<String>> computeFreshCallMaps(Set<SootMethod> reachable) {
+    G.v().resetSpark();
+    PAG pag = runSpark(false);
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      reachable.add(it.next().method());
+    }
+    return computeCallMaps(pag, reachable);
+  }
+
+  /**
+   * Returns the entries of the call maps of the given PAG for calls in the given methods and for calls that are no longer in
+   * any body.
+   */
+  private static Map<String, List<String>> computeCallMaps(PAG pag, Set<SootMethod> methods) {
+    Map<InvokeExpr, String> calls = new IdentityHashMap<InvokeExpr, String>();
+    Set<InvokeExpr> included = Collections.newSetFromMap(new IdentityHashMap<InvokeExpr, Boolean>());
+    for (SootClass sc : Scene.v().getClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (!m.hasActiveBody()) {
+          continue;
+        }
+        int index = 0;
+        for (Unit u : m.getActiveBody().getUnits()) {
+          Stmt s = (Stmt) u;
+          if (s.containsInvokeExpr()) {
+            calls.put(s.getInvokeExpr(), m.getSignature() + " #" + index + " " + s.getInvokeExpr());
+            if (methods.contains(m)) {
+              included.add(s.getInvokeExpr());
+            }
+          }
+          index++;
+        }
+      }
+    }
+
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (InvokeExpr ie : pag.callAssigns.keySet()) {
+      for (Pair<Node, Node> pval : pag.callAssigns.get(ie)) {
+        addCallMapEntry(result, "callAssigns", ie, calls, included, describe(pval.getO1()) + " -> " + describe(pval.getO2()));
+      }
+    }
+    for (Map.Entry<InvokeExpr, SootMethod> e : pag.callToMethod.entrySet()) {
+      addCallMapEntry(result, "callToMethod", e.getKey(), calls, included, e.getValue().getSignature());
+    }
+    for (Map.Entry<InvokeExpr, Node> e : pag.virtualCallsToReceivers.entrySet()) {
+      addCallMapEntry(result, "virtualCallsToReceivers", e.getKey(), calls, included, describe(e.getValue()));
+    }
+    for (List<String> values : result.values()) {
+      Collections.sort(values);
+    }
+    return result;
+  }
+
+  private static void addCallMapEntry(Map<String, List<String>> result, String map, InvokeExpr ie,
+      Map<InvokeExpr, String> calls, Set<InvokeExpr> included, String value) {
+    String call = calls.get(ie);
+    if (call == null) {
+      call = "removed " + ie;
+    } else if (!included.contains(ie)) {
+      return;
+    }
+    String key = map + " " + call;
+    List<String> values = result.get(key);
+    if (values == null) {
+      result.put(key, values = new ArrayList<String>());
+    }
+    values.add(value);
+  }
+
+  /**
+   * Describes a node without its number, which differs between builds.
+   */
+  private static String describe(Node n) {
+    if (n instanceof LocalVarNode) {
+      return ((LocalVarNode) n).getMethod() + " " + ((LocalVarNode) n).getVariable();
+    } else if (n instanceof VarNode) {
+      Object variable = ((VarNode) n).getVariable();
+      return variable instanceof Node ? "global " + describe((Node) variable) : String.valueOf(variable);
+    } else if (n instanceof FieldRefNode) {
+      return describe(((FieldRefNode) n).getBase()) + "." + ((FieldRefNode) n).getField();
+    } else if (n instanceof AllocNode) {
+      return ((AllocNode) n).getNewExpr() + " in " + ((AllocNode) n).getMethod();
+    } else if (n instanceof NewInstanceNode) {
+      return "new instance of " + ((NewInstanceNode) n).getValue();
+    }
+    return n.getClass().getSimpleName();
+  }
+
+  private static PAG runSpark(boolean incremental) {
+    Options.v().setPhaseOption("cg.spark", "incremental:" + incremental);
+    PackManager.v().getPack("cg").apply();
+    return (PAG) Scene.v().getPointsToAnalysis();
+  }
+
+  /**
+   * Returns the call edges out of every method.
+   */
+  private static Map<String, List<String>> computeCallEdges() {
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (Edge e : Scene.v().getCallGraph()) {
+      List<String> edges = result.get(e.src().getSignature());
+      if (edges == null) {
+        result.put(e.src().getSignature(), edges = new ArrayList<String>());
+      }
+      edges.add(e.toString());
+    }
+    for (List<String> edges : result.values()) {
+      Collections.sort(edges);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the points-to sets of all locals in reachable application methods.
+   */
+  private static Map<String, List<String>> computePointsTo() {
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m)) {
+          continue;
+        }
+        for (Local l : m.getActiveBody().getLocals()) {
+          final List<String> objects = new ArrayList<String>();
+          ((PointsToSetInternal) pag.reachingObjects(l)).forall(new P2SetVisitor() {
+            @Override
+            public void visit(Node n) {
+              AllocNode an = (AllocNode) n;
+              objects.add(an.getNewExpr() + " in " + an.getMethod());
+            }
+          });
+          Collections.sort(objects);
+          result.put(m.getSignature() + " " + l.getName(), objects);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,255 @@
+package soot.jimple.spark.solver;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import soot.AnySubType;
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToAnalysis;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+public class PropParallelTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  /** Marks allocation nodes of {@link AnySubType} in the results. */
+  private static final String ANY_SUBTYPE = "any ";
+
+  @Test
+  public void parallelPropagationMatchesWorklist() {
+    Map<String, List<String>> expected = computePointsTo("worklist", "double");
+    // Simulated natives create allocation nodes of any subtype, so the masks have to be fixed for the parallel waves
+    assertTrue(((PAG) Scene.v().getPointsToAnalysis()).getTypeManager().masksDisagreeWithCasts());
+    Map<String, List<String>> parallel = computePointsTo("parallel", "double");
+    assertFalse(((PAG) Scene.v().getPointsToAnalysis()).getTypeManager().masksDisagreeWithCasts());
+    Map<String, List<String>> hybrid = computePointsTo("parallel", "hybrid");
+    Map<String, List<String>> pooled = computeOnPool("parallel", "double", false);
+
+    assertFalse(expected.isEmpty());
+    assertContainsWorklistResult(expected, parallel);
+    assertEquals(parallel, hybrid);
+    assertEquals(parallel, pooled);
+  }
+
+  @Test
+  public void anySubTypeNodesAreIndependentOfOrder() {
+    Map<String, List<String>> expected = computeAnySubTypePointsTo("worklist", "double");
+    assertTrue(((PAG) Scene.v().getPointsToAnalysis()).getTypeManager().masksDisagreeWithCasts());
+    Map<String, List<String>> parallel = computeAnySubTypePointsTo("parallel", "double");
+    assertFalse(((PAG) Scene.v().getPointsToAnalysis()).getTypeManager().masksDisagreeWithCasts());
+    Map<String, List<String>> hybrid = computeAnySubTypePointsTo("parallel", "hybrid");
+
+    assertFalse(expected.isEmpty());
+    assertContainsWorklistResult(expected, parallel);
+    assertEquals(parallel, hybrid);
+  }
+
+  @Test
+  public void workersDoNotReadGlobals() {
+    // Without types the result does not depend on the type masks, so it has to be the same as the one of the worklist
+    Map<String, List<String>> expected = computePointsTo("worklist", "double", true);
+    assertEquals(expected, computeOnPool("parallel", "double", true));
+  }
+
+  /**
+   * Checks that the parallel result contains the one of the worklist, and that it only differs in allocation nodes of
+   * {@link AnySubType}.
+   */
+  private static void assertContainsWorklistResult(Map<String, List<String>> worklist, Map<String, List<String>> parallel) {
+    assertEquals(worklist.keySet(), parallel.keySet());
+    for (Map.Entry<String, List<String>> e : worklist.entrySet()) {
+      List<String> extra = new ArrayList<String>(parallel.get(e.getKey()));
+      for (String object : e.getValue()) {
+        assertTrue(e.getKey() + " " + object, extra.remove(object));
+      }
+      for (String object : extra) {
+        assertTrue(e.getKey() + " " + object, object.startsWith(ANY_SUBTYPE));
+      }
+    }
+  }
+
+  /**
+   * Computes the points-to sets like {@link #computePointsTo(String, String, boolean)}, with every wave on the thread pool
+   * and with worker threads that do not see the {@link G} instance Spark runs in.
+   */
+  private static Map<String, List<String>> computeOnPool(String propagator, String setImpl, boolean ignoreTypes) {
+    int minParallelTargets = PropParallel.minParallelTargets;
+    PropParallel.minParallelTargets = 1;
+    // Every thread gets its own G, so the pool threads do not see the one Spark runs in
+    G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+      private final ThreadLocal<G> instance = new ThreadLocal<G>() {
+        @Override
+        protected G initialValue() {
+          return new G();
+        }
+      };
+
+      @Override
+      public G getG() {
+        return instance.get();
+      }
+
+      @Override
+      public void reset() {
+        instance.set(new G());
+      }
+    });
+    try {
+      return computePointsTo(propagator, setImpl, ignoreTypes);
+    } finally {
+      PropParallel.minParallelTargets = minParallelTargets;
+      G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+        private G instance = new G();
+
+        @Override
+        public G getG() {
+          return instance;
+        }
+
+        @Override
+        public void reset() {
+          instance = new G();
+        }
+      });
+    }
+  }
+
+  /**
+   * Runs Spark with the given propagator and returns the points-to sets of all locals in reachable application methods.
+   */
+  private static Map<String, List<String>> computePointsTo(String propagator, String setImpl) {
+    return computePointsTo(propagator, setImpl, false);
+  }
+
+  private static Map<String, List<String>> computePointsTo(String propagator, String setImpl, boolean ignoreTypes) {
+    runSpark(propagator, setImpl, false, ignoreTypes);
+
+    PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m)) {
+          continue;
+        }
+        for (Local l : m.getActiveBody().getLocals()) {
+          final List<String> objects = new ArrayList<String>();
+          ((PointsToSetInternal) pta.reachingObjects(l)).forall(new P2SetVisitor() {
+            @Override
+            public void visit(Node n) {
+              // Allocation nodes may be created in a different order, so do not compare their numbers
+              AllocNode an = (AllocNode) n;
+              objects.add((an.getType() instanceof AnySubType ? ANY_SUBTYPE : "") + an.getNewExpr() + " in " + an.getMethod());
+            }
+          });
+          Collections.sort(objects);
+          result.put(m.getSignature() + " " + l.getName(), objects);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs Spark in library mode with the given propagator and points-to sets, which creates allocation nodes of
+   * {@link AnySubType} for parameters before the type masks are made. Returns the allocation nodes of {@link AnySubType} in
+   * the points-to sets of all variable nodes.
+   */
+  private static Map<String, List<String>> computeAnySubTypePointsTo(String propagator, String setImpl) {
+    runSpark(propagator, setImpl, true, false);
+
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (VarNode vn : pag.getVarNodeNumberer()) {
+      final List<String> objects = new ArrayList<String>();
+      vn.getP2Set().forall(new P2SetVisitor() {
+        @Override
+        public void visit(Node n) {
+          AllocNode an = (AllocNode) n;
+          if (an.getType() instanceof AnySubType) {
+            objects.add(ANY_SUBTYPE + an.getType() + " in " + an.getMethod());
+          }
+        }
+      });
+      if (objects.isEmpty()) {
+        continue;
+      }
+      // Library mode uses fresh objects as variables, which differ between runs
+      Object variable = vn.getVariable().getClass() == Object.class ? "object" : vn.getVariable();
+      String key = vn instanceof LocalVarNode ? ((LocalVarNode) vn).getMethod() + " " + variable : String.valueOf(variable);
+      List<String> previous = result.put(key, objects);
+      if (previous != null) {
+        objects.addAll(previous);
+      }
+      Collections.sort(objects);
+    }
+    return result;
+  }
+
+  private static void runSpark(String propagator, String setImpl, boolean library, boolean ignoreTypes) {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_num_threads(4);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Options.v().setPhaseOption("cg.spark", "propagator:" + propagator);
+    Options.v().setPhaseOption("cg.spark", "set-impl:" + setImpl);
+    if (ignoreTypes) {
+      Options.v().setPhaseOption("cg.spark", "ignore-types:true");
+    }
+    if (library) {
+      Options.v().setPhaseOption("cg", "library:any-subtype");
+    }
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().getPack("cg").apply();
+  }
+}
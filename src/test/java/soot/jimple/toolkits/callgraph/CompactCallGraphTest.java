@@ -0,0 +1,190 @@
+package soot.jimple.toolkits.callgraph;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Kind;
+import soot.Modifier;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.util.queue.QueueReader;
+
+public class CompactCallGraphTest {
+
+  private final List<SootMethod> methods = new ArrayList<SootMethod>();
+  private final List<Stmt> units = new ArrayList<Stmt>();
+  private Edge removed;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    SootClass sc = new SootClass("Test", Modifier.PUBLIC);
+    Scene.v().addClass(sc);
+    for (int i = 0; i < 5; i++) {
+      SootMethod m = new SootMethod("m" + i, Collections.emptyList(), VoidType.v(), Modifier.PUBLIC | Modifier.STATIC);
+      sc.addMethod(m);
+      methods.add(m);
+      units.add(Jimple.v().newNopStmt());
+    }
+  }
+
+  private CallGraph buildCallGraph() {
+    CallGraph cg = new CallGraph();
+    cg.addEdge(new Edge(methods.get(0), units.get(0), methods.get(1), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(0), units.get(0), methods.get(2), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(0), units.get(0), methods.get(3), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(0), units.get(1), methods.get(3), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(1), units.get(2), methods.get(3), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(3), units.get(3), methods.get(1), Kind.STATIC));
+    cg.addEdge(new Edge(methods.get(2), null, methods.get(4), Kind.CLINIT));
+    removed = new Edge(methods.get(2), units.get(4), methods.get(0), Kind.STATIC);
+    cg.addEdge(removed);
+    cg.removeEdge(removed);
+    return cg;
+  }
+
+  @Test
+  public void answersQueriesLikeOriginal() {
+    CallGraph cg = buildCallGraph();
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    assertTrue(compact.isFrozen());
+    assertSameQueries(cg, compact);
+    assertEquals(cg.findEdge(units.get(0), methods.get(2)), compact.findEdge(units.get(0), methods.get(2)));
+    assertNull(compact.findEdge(units.get(4), methods.get(0)));
+  }
+
+  @Test
+  public void thawsOnModification() {
+    CallGraph cg = buildCallGraph();
+    CompactCallGraph compact = new CompactCallGraph(cg);
+
+    Edge e = new Edge(methods.get(4), units.get(4), methods.get(2), Kind.STATIC);
+    assertTrue(compact.addEdge(e));
+    assertFalse(compact.isFrozen());
+    cg.addEdge(new Edge(methods.get(4), units.get(4), methods.get(2), Kind.STATIC));
+    assertSameQueries(cg, compact);
+
+    for (Edge out : Lists.newArrayList(cg.edgesOutOf(units.get(0)))) {
+      cg.removeEdge(out);
+    }
+    assertTrue(compact.removeAllEdgesOutOf(units.get(0)));
+    assertSameQueries(cg, compact);
+
+    // Edges returned while the graph was frozen can be removed after thawing
+    CompactCallGraph other = new CompactCallGraph(buildCallGraph());
+    Edge out = other.edgesOutOf(methods.get(3)).next();
+    assertTrue(other.removeEdge(out));
+    assertFalse(other.isFrozen());
+    assertFalse(other.edgesOutOf(methods.get(3)).hasNext());
+    assertFalse(other.removeEdge(out));
+  }
+
+  @Test
+  public void listenerContinuesAfterThawing() {
+    CompactCallGraph compact = new CompactCallGraph(buildCallGraph());
+    QueueReader<Edge> listener = compact.listener();
+    QueueReader<Edge> newListener = compact.newListener();
+    listener.next();
+    Edge e = new Edge(methods.get(4), units.get(4), methods.get(2), Kind.STATIC);
+    compact.addEdge(e);
+
+    List<Edge> rest = Lists.newArrayList(listener);
+    assertEquals(compact.size() - 1, rest.size());
+    assertEquals(e, rest.get(rest.size() - 1));
+    assertEquals(Collections.singletonList(e), Lists.newArrayList(newListener));
+  }
+
+  @Test
+  public void footprintShrinks() {
+    // Many small methods with few call sites each, as in a typical call graph
+    final int callSites = 100000;
+    List<Stmt> sites = new ArrayList<Stmt>(callSites);
+    for (int i = 0; i < callSites; i++) {
+      sites.add(Jimple.v().newNopStmt());
+    }
+    long base = usedMemory();
+
+    CallGraph cg = new CallGraph();
+    for (int i = 0; i < callSites; i++) {
+      SootMethod src = methods.get(i % methods.size());
+      cg.addEdge(new Edge(src, sites.get(i), methods.get((i + 1) % methods.size()), Kind.STATIC));
+      cg.addEdge(new Edge(src, sites.get(i), methods.get((i + 2) % methods.size()), Kind.VIRTUAL));
+    }
+    long regular = usedMemory() - base;
+
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    cg = null;
+    long compacted = usedMemory() - base;
+
+    assertEquals(2 * callSites, compact.size());
+    assertTrue("compact graph uses " + compacted + " bytes, regular graph " + regular, compacted * 3 < regular);
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  private void assertSameQueries(CallGraph expected, CallGraph actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(Lists.newArrayList(expected.iterator()), Lists.newArrayList(actual.iterator()));
+    // The compact graph does not keep the edges that had been removed before it was built
+    List<Edge> listened = Lists.newArrayList(expected.listener());
+    listened.remove(removed);
+    assertEquals(listened, Lists.newArrayList(actual.listener()));
+    assertEquals(Lists.<MethodOrMethodContext>newArrayList(expected.sourceMethods()),
+        Lists.<MethodOrMethodContext>newArrayList(actual.sourceMethods()));
+    for (Unit u : units) {
+      assertEquals(Lists.newArrayList(expected.edgesOutOf(u)), Lists.newArrayList(actual.edgesOutOf(u)));
+    }
+    for (SootMethod m : methods) {
+      assertEquals(Lists.newArrayList(expected.edgesOutOf(m)), Lists.newArrayList(actual.edgesOutOf(m)));
+      assertEquals(Lists.newArrayList(expected.edgesInto(m)), Lists.newArrayList(actual.edgesInto(m)));
+      assertEquals(expected.isEntryMethod(m), actual.isEntryMethod(m));
+    }
+  }
+}
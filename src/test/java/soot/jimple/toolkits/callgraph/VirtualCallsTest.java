@@ -0,0 +1,141 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.VoidType;
+import soot.util.NumberedString;
+
+public class VirtualCallsTest {
+
+  private SootClass a;
+  private SootClass b;
+  private SootClass c;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Scene.v().loadNecessaryClasses();
+    a = generateSceneClass("A", Scene.v().getObjectType().getSootClass());
+    b = generateSceneClass("B", a);
+    c = generateSceneClass("C", b);
+  }
+
+  @Test
+  public void resolvesInheritedAndOverriddenMethods() {
+    SootMethod aFoo = addMethod(a, "foo", 0);
+    SootMethod aBar = addMethod(a, "bar", 0);
+    SootMethod cFoo = addMethod(c, "foo", 0);
+    NumberedString foo = aFoo.getNumberedSubSignature();
+    NumberedString bar = aBar.getNumberedSubSignature();
+
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(a.getType(), foo));
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(b.getType(), foo));
+    assertSame(cFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+    assertSame(aBar, VirtualCalls.v().resolveNonSpecial(c.getType(), bar));
+
+    SootMethod hashCode = Scene.v().getObjectType().getSootClass().getMethodUnsafe("int hashCode()");
+    assertSame(hashCode, VirtualCalls.v().resolveNonSpecial(c.getType(), hashCode.getNumberedSubSignature()));
+
+    NumberedString unknown = Scene.v().getSubSigNumberer().findOrAdd("void unknown()");
+    assertNull(VirtualCalls.v().resolveNonSpecial(c.getType(), unknown));
+  }
+
+  @Test
+  public void abstractDeclarationHidesInheritedMethod() {
+    SootMethod aFoo = addMethod(a, "foo", 0);
+    addMethod(b, "foo", Modifier.ABSTRACT);
+    NumberedString foo = aFoo.getNumberedSubSignature();
+
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(a.getType(), foo));
+    assertNull(VirtualCalls.v().resolveNonSpecial(b.getType(), foo));
+    assertNull(VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+  }
+
+  @Test
+  public void tablesFollowChangesOfMethodsAndSuperclasses() {
+    SootMethod aFoo = addMethod(a, "foo", 0);
+    NumberedString foo = aFoo.getNumberedSubSignature();
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+
+    SootMethod bFoo = addMethod(b, "foo", 0);
+    assertSame(bFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+
+    b.removeMethod(bFoo);
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+
+    c.setSuperclass(Scene.v().getObjectType().getSootClass());
+    assertNull(VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+  }
+
+  @Test
+  public void tablesFollowChangesAfterUnrelatedClassesChanged() {
+    SootMethod aFoo = addMethod(a, "foo", 0);
+    NumberedString foo = aFoo.getNumberedSubSignature();
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+
+    SootClass d = generateSceneClass("D", Scene.v().getObjectType().getSootClass());
+    addMethod(d, "foo", 0);
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+
+    SootMethod bFoo = addMethod(b, "foo", 0);
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(a.getType(), foo));
+    assertSame(bFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo));
+  }
+
+  @Test
+  public void appOnlyIgnoresLibraryReceivers() {
+    SootMethod aFoo = addMethod(a, "foo", 0);
+    NumberedString foo = aFoo.getNumberedSubSignature();
+    c.setApplicationClass();
+
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(b.getType(), foo));
+    assertNull(VirtualCalls.v().resolveNonSpecial(b.getType(), foo, true));
+    assertSame(aFoo, VirtualCalls.v().resolveNonSpecial(c.getType(), foo, true));
+  }
+
+  private static SootClass generateSceneClass(String name, SootClass superClass) {
+    SootClass sootClass = new SootClass(name, Modifier.PUBLIC);
+    Scene.v().addClass(sootClass);
+    sootClass.setSuperclass(superClass);
+    return sootClass;
+  }
+
+  private static SootMethod addMethod(SootClass cls, String name, int modifiers) {
+    SootMethod m = new SootMethod(name, Collections.emptyList(), VoidType.v(), Modifier.PUBLIC | modifiers);
+    cls.addMethod(m);
+    return m;
+  }
+}
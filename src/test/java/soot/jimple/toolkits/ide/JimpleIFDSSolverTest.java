@@ -0,0 +1,136 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import heros.IFDSTabulationProblem;
+import heros.InterproceduralCFG;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSPossibleTypes;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.CompiledInterproceduralCFG;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.options.Options;
+
+public class JimpleIFDSSolverTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  @BeforeClass
+  public static void setUp() {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().getPack("cg").apply();
+  }
+
+  @Test
+  public void parallelReachingDefinitionsMatchSequential() {
+    Map<String, List<String>> sequential = solve(new IFDSReachingDefinitions(new JimpleBasedInterproceduralCFG()), 1);
+    Map<String, List<String>> parallel = solve(new IFDSReachingDefinitions(new JimpleBasedInterproceduralCFG()), 8);
+
+    assertTrue(hasFacts(sequential));
+    assertEquals(sequential, parallel);
+  }
+
+  @Test
+  public void parallelPossibleTypesMatchSequential() {
+    Map<String, List<String>> sequential = solve(new IFDSPossibleTypes(new JimpleBasedInterproceduralCFG()), 1);
+    Map<String, List<String>> parallel = solve(new IFDSPossibleTypes(new JimpleBasedInterproceduralCFG()), 8);
+
+    assertTrue(hasFacts(sequential));
+    assertEquals(sequential, parallel);
+  }
+
+  @Test
+  public void compiledICFGMatchesJimpleICFG() {
+    Map<String, List<String>> expected = solve(new IFDSReachingDefinitions(new JimpleBasedInterproceduralCFG()), 1);
+    Map<String, List<String>> compiled = solve(new IFDSReachingDefinitions(new CompiledInterproceduralCFG()), 4);
+
+    assertTrue(hasFacts(expected));
+    assertEquals(expected, compiled);
+  }
+
+  private static boolean hasFacts(Map<String, List<String>> result) {
+    for (List<String> facts : result.values()) {
+      if (!facts.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Solves the problem with the given number of threads and returns the facts at each unit of the application classes.
+   */
+  private static <D> Map<String, List<String>> solve(
+      IFDSTabulationProblem<Unit, D, SootMethod, InterproceduralCFG<Unit, SootMethod>> problem, int numThreads) {
+    JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>> solver
+        = new JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>>(problem, false, numThreads);
+    assertEquals(numThreads, solver.getNumThreads());
+    solver.solve();
+
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (SootClass sc : Scene.v().getApplicationClasses()) {
+      for (SootMethod m : sc.getMethods()) {
+        if (!m.hasActiveBody()) {
+          continue;
+        }
+        int i = 0;
+        for (Unit u : m.getActiveBody().getUnits()) {
+          List<String> facts = new ArrayList<String>();
+          for (D fact : solver.ifdsResultsAt(u)) {
+            facts.add(String.valueOf(fact));
+          }
+          Collections.sort(facts);
+          result.put(m.getSignature() + " " + i++, facts);
+        }
+      }
+    }
+    return result;
+  }
+}
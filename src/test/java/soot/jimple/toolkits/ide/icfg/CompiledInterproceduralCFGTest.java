@@ -0,0 +1,141 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Jimple;
+import soot.options.Options;
+
+public class CompiledInterproceduralCFGTest {
+
+  private static final String MAIN_CLASS = "soot.toolkits.purity.PurityTest";
+
+  private static JimpleBasedInterproceduralCFG expected;
+  private static CompiledInterproceduralCFG compiled;
+
+  @BeforeClass
+  public static void setUp() {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_main_class(MAIN_CLASS);
+    Options.v().classes().add(MAIN_CLASS);
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().getPack("cg").apply();
+
+    expected = new JimpleBasedInterproceduralCFG();
+    compiled = new CompiledInterproceduralCFG(expected);
+  }
+
+  @Test
+  public void methodQueriesMatch() {
+    List<SootMethod> methods = reachableMethods();
+    assertFalse(methods.isEmpty());
+    for (SootMethod m : methods) {
+      assertEquals(new ArrayList<Unit>(expected.getCallersOf(m)), new ArrayList<Unit>(compiled.getCallersOf(m)));
+      if (m.hasActiveBody()) {
+        assertEquals(expected.getCallsFromWithin(m), compiled.getCallsFromWithin(m));
+        assertEquals(new ArrayList<Unit>(expected.getCallsFromWithin(m)),
+            new ArrayList<Unit>(compiled.getCallsFromWithin(m)));
+        assertEquals(new ArrayList<Unit>(expected.getStartPointsOf(m)), new ArrayList<Unit>(compiled.getStartPointsOf(m)));
+        assertEquals(new ArrayList<Unit>(expected.getEndPointsOf(m)), new ArrayList<Unit>(compiled.getEndPointsOf(m)));
+        assertEquals(expected.getParameterRefs(m), compiled.getParameterRefs(m));
+      }
+    }
+  }
+
+  @Test
+  public void unitQueriesMatch() {
+    int calls = 0;
+    for (SootMethod m : reachableMethods()) {
+      if (!m.hasActiveBody()) {
+        continue;
+      }
+      for (Unit u : m.getActiveBody().getUnits()) {
+        assertTrue(compiled.isReachable(u));
+        assertEquals(m, compiled.getMethodOf(u));
+        assertEquals(expected.getSuccsOf(u), compiled.getSuccsOf(u));
+        assertEquals(expected.getPredsOf(u), compiled.getPredsOf(u));
+        assertEquals(expected.isCallStmt(u), compiled.isCallStmt(u));
+        assertEquals(expected.isStartPoint(u), compiled.isStartPoint(u));
+        assertEquals(expected.isExitStmt(u), compiled.isExitStmt(u));
+        assertEquals(expected.isReturnSite(u), compiled.isReturnSite(u));
+        assertEquals(new ArrayList<Unit>(expected.getReturnSitesOfCallAt(u)),
+            new ArrayList<Unit>(compiled.getReturnSitesOfCallAt(u)));
+        assertEquals(new ArrayList<SootMethod>(expected.getCalleesOfCallAt(u)),
+            new ArrayList<SootMethod>(compiled.getCalleesOfCallAt(u)));
+        for (Unit succ : expected.getSuccsOf(u)) {
+          assertEquals(expected.isFallThroughSuccessor(u, succ), compiled.isFallThroughSuccessor(u, succ));
+          assertEquals(expected.isBranchTarget(u, succ), compiled.isBranchTarget(u, succ));
+        }
+        if (compiled.isCallStmt(u)) {
+          calls++;
+        }
+      }
+    }
+    assertTrue(calls > 0);
+    assertEquals(expected.allNonCallStartNodes(), compiled.allNonCallStartNodes());
+    assertEquals(expected.allNonCallEndNodes(), compiled.allNonCallEndNodes());
+  }
+
+  @Test
+  public void unknownUnit() {
+    Unit u = Jimple.v().newNopStmt();
+    assertFalse(compiled.isReachable(u));
+    assertNull(compiled.getMethodOf(u));
+    assertTrue(compiled.getSuccsOf(u).isEmpty());
+    assertTrue(compiled.getCalleesOfCallAt(u).isEmpty());
+    assertFalse(compiled.isCallStmt(u));
+  }
+
+  private static List<SootMethod> reachableMethods() {
+    Set<SootMethod> methods = new LinkedHashSet<SootMethod>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      methods.add(it.next().method());
+    }
+    return new ArrayList<SootMethod>(methods);
+  }
+}
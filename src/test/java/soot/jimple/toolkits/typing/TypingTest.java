@@ -0,0 +1,126 @@
+package soot.jimple.toolkits.typing;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.RefType;
+import soot.Scene;
+import soot.Type;
+import soot.jimple.internal.JimpleLocal;
+import soot.jimple.toolkits.typing.fast.BottomType;
+import soot.jimple.toolkits.typing.fast.BytecodeHierarchy;
+import soot.jimple.toolkits.typing.fast.Typing;
+
+public class TypingTest {
+
+  private List<Local> locals;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Scene.v().loadNecessaryClasses();
+    locals = new ArrayList<Local>();
+    for (int i = 0; i < 100; i++) {
+      locals.add(new JimpleLocal("l" + i, null));
+    }
+  }
+
+  @Test
+  public void copiesAreIndependent() {
+    Typing original = new Typing(locals);
+    Typing copy = new Typing(original);
+    for (Local v : locals) {
+      assertSame(BottomType.v(), copy.get(v));
+    }
+
+    copy.set(locals.get(3), IntType.v());
+    assertSame(BottomType.v(), original.get(locals.get(3)));
+    assertSame(IntType.v(), copy.get(locals.get(3)));
+
+    original.set(locals.get(70), RefType.v("java.lang.String"));
+    assertSame(BottomType.v(), copy.get(locals.get(70)));
+
+    Typing copyOfCopy = new Typing(copy);
+    copy.set(locals.get(3), BottomType.v());
+    assertSame(IntType.v(), copyOfCopy.get(locals.get(3)));
+    assertSame(BottomType.v(), copy.get(locals.get(3)));
+  }
+
+  @Test
+  public void localsCanBeAddedToAnyTyping() {
+    Typing original = new Typing(locals);
+    Typing copy = new Typing(original);
+    Local added = new JimpleLocal("added", null);
+    Local unnumbered = new JimpleLocal("unnumbered", null);
+    unnumbered.setNumber(locals.get(0).getNumber());
+
+    assertNull(original.get(added));
+    assertNull(copy.set(added, IntType.v()));
+    copy.set(unnumbered, RefType.v("java.lang.Object"));
+
+    assertSame(IntType.v(), copy.get(added));
+    assertSame(RefType.v("java.lang.Object"), copy.get(unnumbered));
+    assertSame(BottomType.v(), copy.get(locals.get(0)));
+    assertNull(original.get(added));
+    assertNull(original.get(unnumbered));
+  }
+
+  @Test
+  public void compareUsesAllLocals() {
+    BytecodeHierarchy h = new BytecodeHierarchy();
+    Typing a = new Typing(locals);
+    Typing b = new Typing(a);
+    assertEquals(0, Typing.compare(a, b, h));
+
+    a.set(locals.get(50), RefType.v("java.lang.Object"));
+    b.set(locals.get(50), RefType.v("java.lang.String"));
+    assertEquals(1, Typing.compare(a, b, h));
+    assertEquals(-1, Typing.compare(b, a, h));
+
+    b.set(locals.get(99), RefType.v("java.lang.Object"));
+    a.set(locals.get(99), RefType.v("java.lang.String"));
+    assertEquals(2, Typing.compare(a, b, h));
+  }
+
+  @Test
+  public void leastCommonAncestorsAreMemoized() {
+    BytecodeHierarchy h = new BytecodeHierarchy();
+    Type string = RefType.v("java.lang.String");
+    Type integer = RefType.v("java.lang.Integer");
+
+    assertEquals(new ArrayList<Type>(BytecodeHierarchy.lcas_(string, integer)), new ArrayList<Type>(h.lcas(string, integer)));
+    assertSame(h.lcas(string, integer), h.lcas(string, integer));
+  }
+}
@@ -0,0 +1,116 @@
+package soot.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * Contains the statements, constants and types whose representation in a cached body has to match the body that is
+ * produced from bytecode.
+ */
+public class BodyCacheTarget {
+
+  static final String ESCAPED = "tab\there\nquote\" backslash\\ unicode\u00e9\u2603";
+
+  private static long counter;
+  private int[][] grid = new int[3][4];
+  private Object lock = new Object();
+
+  public String constants() {
+    long l = Long.MIN_VALUE + counter;
+    float f = Float.NaN;
+    double d = -0.0;
+    double inf = Double.NEGATIVE_INFINITY;
+    char c = '\'';
+    return ESCAPED + l + f + d + inf + c + Float.MAX_VALUE + Double.MIN_VALUE + Integer.MIN_VALUE + 'x';
+  }
+
+  public int tableSwitch(int i) {
+    switch (i) {
+      case 0:
+        return 10;
+      case 1:
+        return 20;
+      case 2:
+        return 30;
+      default:
+        return -1;
+    }
+  }
+
+  public int lookupSwitch(int i) {
+    switch (i) {
+      case -1000:
+        return 1;
+      case 7:
+        return 2;
+      case 100000:
+        return 3;
+      default:
+        return 0;
+    }
+  }
+
+  public Object types(Object o) {
+    if (o instanceof String[]) {
+      return ((String[]) o)[0];
+    }
+    if (o instanceof List) {
+      return ((List<?>) o).size();
+    }
+    return String.class;
+  }
+
+  public int arrays(int n) {
+    int[][][] cube = new int[n][n][];
+    cube[0][0] = new int[] { 1, 2, 3 };
+    grid[1][2] = cube[0][0].length;
+    return grid[1][2] + cube.length;
+  }
+
+  public void guarded() {
+    synchronized (lock) {
+      counter++;
+    }
+  }
+
+  public int tryFinally(String s) {
+    int r = 0;
+    try {
+      r = Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      r = -1;
+    } finally {
+      counter += r;
+    }
+    return r;
+  }
+
+  public long arithmetic(long a, int b, double c) {
+    a <<= b;
+    a >>>= 2;
+    b = ~b ^ (b & 0xff) | (b % 3);
+    return (long) (a / c) + b + (a > 0 ? 1 : a == 0 ? 0 : -1);
+  }
+}
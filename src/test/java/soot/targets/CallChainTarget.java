@@ -0,0 +1,58 @@
+package soot.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Methods of different sizes that call each other, with temporaries that the aggregator folds away.
+ */
+public class CallChainTarget {
+
+  private int total;
+
+  public int entry(int[] values) {
+    int sum = 0;
+    for (int v : values) {
+      sum += step(v);
+    }
+    total += sum;
+    return scaled(sum);
+  }
+
+  public int step(int v) {
+    int twice = v * 2;
+    int shifted = twice + 1;
+    return shifted > 10 ? clamp(shifted) : shifted;
+  }
+
+  public int clamp(int v) {
+    int limit = total + 10;
+    return Math.min(v, limit);
+  }
+
+  public int scaled(int v) {
+    int factor = total % 7 + 1;
+    int product = v * factor;
+    return clamp(product);
+  }
+}
@@ -0,0 +1,121 @@
+package soot.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Depends on other classes in every way the resolver follows: superclass and interfaces, nested, inner and anonymous
+ * classes, field and signature types, thrown exceptions and classes only referenced from method bodies.
+ */
+public class ResolverTarget extends ResolverTargetBase implements Comparable<ResolverTarget>, Runnable {
+
+  /**
+   * Tree node that is only referenced from field and method signatures.
+   */
+  public static class Node {
+    Node left;
+    Node right;
+    String name;
+  }
+
+  /**
+   * Checked exception that is only referenced from a throws clause and a method body.
+   */
+  public static class MissingNodeException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * Inner class that refers back to its outer instance.
+   */
+  public class Cursor implements Iterator<String> {
+    private int index;
+
+    @Override
+    public boolean hasNext() {
+      return index < names.size();
+    }
+
+    @Override
+    public String next() {
+      return names.get(index++);
+    }
+
+    @Override
+    public void remove() {
+      names.remove(--index);
+    }
+  }
+
+  private Node root;
+  private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Cursor();
+  }
+
+  @Override
+  protected void visit(Node node) {
+    if (node != null) {
+      visit(node.left);
+      names.add(node.name);
+      nodes.put(node.name, node);
+      visit(node.right);
+    }
+  }
+
+  @Override
+  public void run() {
+    visit(root);
+  }
+
+  @Override
+  public int compareTo(ResolverTarget o) {
+    return names.size() - o.names.size();
+  }
+
+  public Callable<String> describeLater() {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return describe().toString();
+      }
+    };
+  }
+
+  public void check(String name) throws MissingNodeException, IOException {
+    if (!nodes.containsKey(name)) {
+      throw new MissingNodeException();
+    }
+    if (name.isEmpty()) {
+      throw new IOException(new StringBuilder("empty ").append(root).toString());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package soot.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Superclass of {@link ResolverTarget}, which brings further classes into the Scene only through its own members.
+ */
+public abstract class ResolverTargetBase implements Iterable<String> {
+
+  protected final List<String> names = new ArrayList<String>();
+
+  protected abstract void visit(ResolverTarget.Node node);
+
+  protected StringBuilder describe() {
+    StringBuilder sb = new StringBuilder();
+    for (String name : names) {
+      sb.append(name).append(',');
+    }
+    return sb;
+  }
+}
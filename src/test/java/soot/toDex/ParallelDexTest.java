@@ -0,0 +1,93 @@
+package soot.toDex;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.options.Options;
+
+public class ParallelDexTest {
+
+  private static final List<String> TARGET_CLASSES = Arrays.asList("soot.toolkits.exceptions.targets.MethodThrowableSetClass",
+      "soot.toolkits.exceptions.targets.MethodThrowableSetClass$target", "soot.toolkits.exceptions.targets.MyException",
+      "soot.FastHierarchyTest", "soot.BodyCacheTest", "soot.StreamingOutputTest");
+
+  @Rule
+  public TemporaryFolder outputDir = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void parallelDexMatchesSequentialDex() throws IOException {
+    Map<String, String> sequential = run(false, outputDir.newFolder("sequential"));
+    Map<String, String> parallel = run(true, outputDir.newFolder("parallel"));
+    assertFalse(sequential.isEmpty());
+    assertEquals(sequential, parallel);
+  }
+
+  /**
+   * Writes the target classes into dex files and returns their contents.
+   */
+  private static Map<String, String> run(boolean parallel, File out) throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("target/test-classes").getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_dir(out.getAbsolutePath());
+    Options.v().set_output_format(Options.output_format_dex);
+    Options.v().set_android_api_version(21);
+    Options.v().set_num_threads(4);
+    Options.v().set_parallel_dex(parallel);
+    Options.v().classes().addAll(TARGET_CLASSES);
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    PackManager.v().writeOutput();
+
+    Map<String, String> files = new TreeMap<String, String>();
+    for (File f : out.listFiles()) {
+      files.put(f.getName(), Base64.getEncoder().encodeToString(Files.readAllBytes(f.toPath())));
+    }
+    return files;
+  }
+}
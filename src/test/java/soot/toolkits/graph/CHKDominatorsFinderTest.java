@@ -0,0 +1,233 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CHKDominatorsFinderTest {
+
+  @Test
+  public void matchesIterativeDominatorsOnRandomGraphs() {
+    Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      Node[] nodes = randomGraph(random, 2 + random.nextInt(40));
+      Graph g = new Graph(nodes[0]);
+      assertSameDominators(new MHGDominatorsFinder<Node>(g), new CHKDominatorsFinder<Node>(g), reachable(nodes[0]));
+    }
+  }
+
+  @Test
+  public void computesImmediateDominatorsOfLoops() {
+    Node n1 = new Node(1);
+    Node n2 = new Node(2);
+    Node n3 = new Node(3);
+    Node n4 = new Node(4);
+    Node n5 = new Node(5);
+    n1.addkid(n2);
+    n2.addkid(n3).addkid(n5);
+    n3.addkid(n4);
+    n4.addkid(n2).addkid(n3);
+    CHKDominatorsFinder<Node> finder = new CHKDominatorsFinder<Node>(new Graph(n1));
+
+    assertNull(finder.getImmediateDominator(n1));
+    assertSame(n1, finder.getImmediateDominator(n2));
+    assertSame(n2, finder.getImmediateDominator(n3));
+    assertSame(n3, finder.getImmediateDominator(n4));
+    assertSame(n2, finder.getImmediateDominator(n5));
+    assertEquals(Arrays.asList(n1, n2, n3, n4), finder.getDominators(n4));
+    assertTrue(finder.isDominatedBy(n4, n2));
+    assertTrue(finder.isDominatedBy(n4, n4));
+    assertFalse(finder.isDominatedBy(n5, n3));
+    assertTrue(finder.isDominatedByAll(n4, Arrays.asList(n1, n3)));
+  }
+
+  @Test
+  public void computesPostDominatorsOfGraphsWithSeveralTails() {
+    Node n1 = new Node(1);
+    Node n2 = new Node(2);
+    Node n3 = new Node(3);
+    Node n4 = new Node(4);
+    Node n5 = new Node(5);
+    Node n6 = new Node(6);
+    n1.addkid(n2).addkid(n3);
+    n3.addkid(n4).addkid(n5);
+    n4.addkid(n6);
+    n5.addkid(n6);
+    Graph g = new Graph(n1);
+
+    assertSameDominators(new MHGPostDominatorsFinder<Node>(g), new CHKPostDominatorsFinder<Node>(g),
+        Arrays.asList(n1, n2, n3, n4, n5, n6));
+    CHKPostDominatorsFinder<Node> finder = new CHKPostDominatorsFinder<Node>(g);
+    assertNull(finder.getImmediateDominator(n1));
+    assertSame(n6, finder.getImmediateDominator(n3));
+  }
+
+  private static void assertSameDominators(DominatorsFinder<Node> expected, DominatorsFinder<Node> actual,
+      List<Node> nodes) {
+    for (Node n : nodes) {
+      assertSame(expected.getImmediateDominator(n), actual.getImmediateDominator(n));
+      assertEquals(new HashSet<Node>(expected.getDominators(n)), new HashSet<Node>(actual.getDominators(n)));
+      for (Node d : nodes) {
+        assertEquals(expected.isDominatedBy(n, d), actual.isDominatedBy(n, d));
+      }
+    }
+  }
+
+  private static Node[] randomGraph(Random random, int size) {
+    Node[] nodes = new Node[size];
+    for (int i = 0; i < size; i++) {
+      nodes[i] = new Node(i);
+    }
+    for (int i = 0; i < size; i++) {
+      for (int e = random.nextInt(3); e >= 0; e--) {
+        // Prefer forward edges, so that most nodes are reachable
+        int target = random.nextInt(4) == 0 ? random.nextInt(size) : Math.min(size - 1, i + 1 + random.nextInt(3));
+        if (!nodes[i].succs.contains(nodes[target])) {
+          nodes[i].addkid(nodes[target]);
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private static List<Node> reachable(Node root) {
+    List<Node> result = new ArrayList<Node>();
+    Set<Node> seen = new HashSet<Node>();
+    List<Node> worklist = new ArrayList<Node>();
+    worklist.add(root);
+    seen.add(root);
+    while (!worklist.isEmpty()) {
+      Node n = worklist.remove(worklist.size() - 1);
+      result.add(n);
+      for (Node s : n.succs) {
+        if (seen.add(s)) {
+          worklist.add(s);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A node of a {@link Graph}.
+   */
+  private static final class Node {
+    final int id;
+    final List<Node> preds = new ArrayList<Node>();
+    final List<Node> succs = new ArrayList<Node>();
+
+    Node(int id) {
+      this.id = id;
+    }
+
+    Node addkid(Node kid) {
+      kid.preds.add(this);
+      succs.add(kid);
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return "n" + id;
+    }
+  }
+
+  /**
+   * The graph of all nodes connected to a root node, whose tails are the nodes without successors.
+   */
+  private static final class Graph implements DirectedGraph<Node> {
+    private final Node root;
+    private final List<Node> nodes = new ArrayList<Node>();
+    private final List<Node> tails = new ArrayList<Node>();
+
+    Graph(Node root) {
+      this.root = root;
+      Set<Node> seen = new HashSet<Node>();
+      List<Node> worklist = new ArrayList<Node>();
+      worklist.add(root);
+      seen.add(root);
+      while (!worklist.isEmpty()) {
+        Node n = worklist.remove(worklist.size() - 1);
+        nodes.add(n);
+        if (n.succs.isEmpty()) {
+          tails.add(n);
+        }
+        for (Node m : n.succs) {
+          if (seen.add(m)) {
+            worklist.add(m);
+          }
+        }
+        for (Node m : n.preds) {
+          if (seen.add(m)) {
+            worklist.add(m);
+          }
+        }
+      }
+    }
+
+    @Override
+    public List<Node> getHeads() {
+      return Collections.singletonList(root);
+    }
+
+    @Override
+    public List<Node> getTails() {
+      return tails;
+    }
+
+    @Override
+    public List<Node> getPredsOf(Node s) {
+      return s.preds;
+    }
+
+    @Override
+    public List<Node> getSuccsOf(Node s) {
+      return s.succs;
+    }
+
+    @Override
+    public int size() {
+      return nodes.size();
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+      return nodes.iterator();
+    }
+  }
+}
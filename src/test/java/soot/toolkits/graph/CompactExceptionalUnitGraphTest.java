@@ -0,0 +1,98 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.TestTargets;
+import soot.Unit;
+import soot.options.Options;
+import soot.toolkits.exceptions.PedanticThrowAnalysis;
+import soot.toolkits.exceptions.ThrowAnalysis;
+import soot.toolkits.exceptions.UnitThrowAnalysis;
+
+public class CompactExceptionalUnitGraphTest {
+
+  private static final String TARGET_CLASS = "soot.toolkits.graph.targets.ExceptionalFlowTarget";
+
+  private List<Body> bodies;
+
+  @Before
+  public void setUp() {
+    TestTargets.reset();
+    bodies = TestTargets.retrieveBodies(TestTargets.load(TARGET_CLASS));
+  }
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void sameGraphAsExceptionalUnitGraph() {
+    boolean sawTraps = false;
+    for (Body b : bodies) {
+      sawTraps |= !b.getTraps().isEmpty();
+      for (ThrowAnalysis ta : new ThrowAnalysis[] { PedanticThrowAnalysis.v(), UnitThrowAnalysis.v() }) {
+        for (boolean omit : new boolean[] { false, true }) {
+          assertSameGraph(new ExceptionalUnitGraph(b, ta, omit), new CompactExceptionalUnitGraph(b, ta, omit));
+        }
+      }
+    }
+    assertTrue(sawTraps);
+  }
+
+  @Test
+  public void factoryFollowsOption() {
+    Body b = bodies.get(0);
+    assertFalse(ExceptionalUnitGraphFactory.createExceptionalUnitGraph(b) instanceof CompactExceptionalUnitGraph);
+    Options.v().set_compact_unit_graphs(true);
+    assertTrue(ExceptionalUnitGraphFactory.createExceptionalUnitGraph(b) instanceof CompactExceptionalUnitGraph);
+  }
+
+  private static void assertSameGraph(ExceptionalUnitGraph expected, ExceptionalUnitGraph actual) {
+    String m = expected.getBody().getMethod().getSignature();
+    assertEquals(m, expected.getHeads(), actual.getHeads());
+    assertEquals(m, expected.getTails(), actual.getTails());
+    for (Unit u : expected) {
+      assertEquals(m, expected.getSuccsOf(u), actual.getSuccsOf(u));
+      assertEquals(m, expected.getPredsOf(u), actual.getPredsOf(u));
+      assertEquals(m, expected.getUnexceptionalSuccsOf(u), actual.getUnexceptionalSuccsOf(u));
+      assertEquals(m, expected.getUnexceptionalPredsOf(u), actual.getUnexceptionalPredsOf(u));
+      assertEquals(m, expected.getExceptionalSuccsOf(u), actual.getExceptionalSuccsOf(u));
+      assertEquals(m, expected.getExceptionalPredsOf(u), actual.getExceptionalPredsOf(u));
+      assertEquals(m, expected.getExceptionDests(u).toString(), actual.getExceptionDests(u).toString());
+    }
+    assertEquals(m, expected.toString(), actual.toString());
+  }
+}
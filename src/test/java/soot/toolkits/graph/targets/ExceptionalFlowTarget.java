@@ -0,0 +1,108 @@
+package soot.toolkits.graph.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Traps in every arrangement that the exceptional unit graphs distinguish: nested and sequential handlers, handlers
+ * that throw, finally blocks, monitors, explicit throws and exceptions raised inside loops.
+ */
+public class ExceptionalFlowTarget {
+
+  private final Object lock = new Object();
+  private int[] values = new int[8];
+
+  public int nested(int a, int b) {
+    try {
+      try {
+        return values[a] / b;
+      } catch (ArithmeticException e) {
+        return values[a + 1];
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return -1;
+    }
+  }
+
+  public int sequential(String s, int i) {
+    int r = 0;
+    try {
+      r = Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      r = -1;
+    }
+    try {
+      r += values[i];
+    } catch (RuntimeException e) {
+      r = -2;
+    }
+    return r;
+  }
+
+  public void rethrow(Object o) throws IOException {
+    try {
+      o.hashCode();
+    } catch (NullPointerException e) {
+      throw new IOException(e);
+    }
+  }
+
+  public int withFinally(int n) {
+    int sum = 0;
+    try {
+      for (int i = 0; i < n; i++) {
+        sum += values[i];
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      sum = -1;
+    } finally {
+      values = new int[8];
+    }
+    return sum;
+  }
+
+  public void monitor(int i) {
+    synchronized (lock) {
+      values[i]++;
+    }
+  }
+
+  public int loopThrows(int[] divisors) {
+    int r = 100;
+    for (int d : divisors) {
+      try {
+        if (d < 0) {
+          throw new IllegalArgumentException();
+        }
+        r /= d;
+      } catch (ArithmeticException e) {
+        continue;
+      } catch (IllegalArgumentException e) {
+        break;
+      }
+    }
+    return r;
+  }
+}
@@ -0,0 +1,460 @@
+package soot.toolkits.scalar;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.PatchingChain;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.ValueBox;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.NaiveSideEffectTester;
+import soot.jimple.toolkits.scalar.FastAvailableExpressions;
+import soot.options.Options;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.HashMutableDirectedGraph;
+import soot.toolkits.graph.MHGDominatorsFinder;
+import soot.toolkits.graph.UnitGraph;
+
+public class BitVectorFlowAnalysisTest {
+
+  private HashMutableDirectedGraph<String> graph;
+  private Map<String, List<String>> gen;
+  private Map<String, List<String>> kill;
+
+  /**
+   * a -> b -> c -> d with a back edge c -> b, and a cycle x <-> y that cannot be reached from the head a.
+   */
+  @Before
+  public void init() {
+    graph = new HashMutableDirectedGraph<String>();
+    for (String n : new String[] { "a", "b", "c", "d", "x", "y" }) {
+      graph.addNode(n);
+    }
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "c");
+    graph.addEdge("c", "b");
+    graph.addEdge("c", "d");
+    graph.addEdge("x", "y");
+    graph.addEdge("y", "x");
+
+    gen = new HashMap<String, List<String>>();
+    kill = new HashMap<String, List<String>>();
+  }
+
+  @Test
+  public void testForwardIntersection() {
+    gen.put("a", Arrays.asList("p"));
+    gen.put("b", Arrays.asList("q"));
+    gen.put("c", Arrays.asList("r"));
+    kill.put("c", Arrays.asList("q"));
+
+    Analysis analysis = new Analysis(graph, true, BitVectorFlowAnalysis.Meet.INTERSECTION);
+    assertSet(analysis.getFlowBefore("a"));
+    assertSet(analysis.getFlowAfter("a"), "p");
+    assertSet(analysis.getFlowBefore("b"), "p");
+    assertSet(analysis.getFlowAfter("b"), "p", "q");
+    assertSet(analysis.getFlowAfter("c"), "p", "r");
+    assertSet(analysis.getFlowBefore("d"), "p", "r");
+
+    // not reachable from the head
+    assertSet(analysis.getFlowBefore("x"), "p", "q", "r", "s", "u", "v");
+    assertTrue(analysis.isInFlowBefore("y", "s"));
+
+    FlowSet<String> set = analysis.getFlowSetAfter("c");
+    assertTrue(set.contains("p"));
+    assertFalse(set.contains("q"));
+    assertEquals(2, set.size());
+  }
+
+  @Test
+  public void testUnreachableInitialValue() {
+    gen.put("a", Arrays.asList("p"));
+
+    Analysis analysis = new Analysis(graph, true, BitVectorFlowAnalysis.Meet.INTERSECTION) {
+      @Override
+      protected boolean isInitialFull() {
+        return false;
+      }
+    };
+    assertSet(analysis.getFlowBefore("d"), "p");
+    assertSet(analysis.getFlowBefore("x"));
+    assertSet(analysis.getFlowAfter("y"));
+  }
+
+  @Test
+  public void testBackwardUnion() {
+    gen.put("b", Arrays.asList("u"));
+    gen.put("d", Arrays.asList("v"));
+    kill.put("a", Arrays.asList("u"));
+
+    Analysis analysis = new Analysis(graph, false, BitVectorFlowAnalysis.Meet.UNION);
+    assertSet(analysis.getFlowAfter("d"));
+    assertSet(analysis.getFlowBefore("d"), "v");
+    assertSet(analysis.getFlowAfter("c"), "u", "v");
+    assertSet(analysis.getFlowBefore("b"), "u", "v");
+    assertSet(analysis.getFlowAfter("a"), "u", "v");
+    assertSet(analysis.getFlowBefore("a"), "v");
+    assertSet(analysis.getFlowBefore("x"));
+  }
+
+  @Test
+  public void testKillOnDemand() {
+    gen.put("a", Arrays.asList("p", "q"));
+    final List<String> asked = new ArrayList<String>();
+
+    Analysis analysis = new Analysis(graph, true, BitVectorFlowAnalysis.Meet.INTERSECTION) {
+      @Override
+      protected boolean isKillOnDemand() {
+        return true;
+      }
+
+      @Override
+      protected boolean isKilled(String node, String e) {
+        asked.add(node + e);
+        return node.equals("c") && e.equals("q");
+      }
+    };
+    assertSet(analysis.getFlowBefore("b"), "p");
+    assertSet(analysis.getFlowAfter("c"), "p");
+    assertSet(analysis.getFlowBefore("d"), "p");
+
+    // every element is only decided once per node, and only if it reaches the node
+    assertEquals(asked.size(), new HashSet<String>(asked).size());
+    assertFalse(asked.contains("ar"));
+  }
+
+  @Test
+  public void testLiveLocalsMatchSimpleLiveLocals() {
+    Body b = diamond();
+    UnitGraph g = new BriefUnitGraph(b);
+    LiveLocals simple = new SimpleLiveLocals(g);
+    LiveLocals bitVector = new BitVectorLiveLocals(g);
+    for (Unit u : b.getUnits()) {
+      assertEquals(new HashSet<Local>(simple.getLiveLocalsBefore(u)), new HashSet<Local>(bitVector.getLiveLocalsBefore(u)));
+      assertEquals(new HashSet<Local>(simple.getLiveLocalsAfter(u)), new HashSet<Local>(bitVector.getLiveLocalsAfter(u)));
+    }
+  }
+
+  @Test
+  public void testFlowSetViews() {
+    gen.put("a", Arrays.asList("p"));
+    gen.put("b", Arrays.asList("q"));
+
+    Analysis analysis = new Analysis(graph, true, BitVectorFlowAnalysis.Meet.UNION);
+    Map<String, FlowSet<String>> after = analysis.getFlowSetsAfter(null);
+    assertEquals(6, after.size());
+    assertEquals(graph.getNodes().size(), after.entrySet().size());
+    assertEquals(Arrays.asList("p", "q"), after.get("c").toList());
+    assertTrue(after.get("c").contains("q"));
+    assertFalse(after.get("c").contains("r"));
+    assertFalse(after.get("c").contains("unknown"));
+    assertTrue(after.get("x").isEmpty());
+    assertEquals(null, after.get("unknown"));
+
+    FlowSet<String> copy = after.get("c").clone();
+    copy.add("r");
+    assertEquals(2, after.get("c").size());
+    try {
+      after.get("c").add("r");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    FlowSet<String> top = new ArraySparseSet<String>();
+    top.add("top");
+    Map<String, FlowSet<String>> before = analysis.getFlowSetsBefore(() -> top);
+    assertEquals(top, before.get("y"));
+    assertTrue(before.get("a").isEmpty());
+    // q flows back from c
+    assertEquals(Arrays.asList("p", "q"), before.get("b").toList());
+  }
+
+  @Test
+  public void testInitAnalysisMatchesFlowAnalysis() {
+    Body b = diamond();
+    UnitGraph g = new BriefUnitGraph(b);
+    InitAnalysis analysis = new InitAnalysis(g);
+    ReferenceInitAnalysis reference = new ReferenceInitAnalysis(g);
+    for (Unit u : b.getUnits()) {
+      assertEquals(reference.getFlowBefore(u), analysis.getFlowBefore(u));
+      assertEquals(reference.getFlowAfter(u), analysis.getFlowAfter(u));
+    }
+  }
+
+  @Test
+  public void testGuaranteedDefsMatchFlowAnalysis() {
+    Body b = diamond();
+    UnitGraph g = new BriefUnitGraph(b);
+    GuaranteedDefs defs = new GuaranteedDefs(g);
+    ReferenceGuaranteedDefsAnalysis reference = new ReferenceGuaranteedDefsAnalysis(g);
+    for (Unit u : b.getUnits()) {
+      assertEquals(new HashSet<Object>(reference.getFlowBefore(u).toList()),
+          new HashSet<Object>(defs.getGuaranteedDefs(u)));
+    }
+    assertEquals(null, defs.getGuaranteedDefs(Jimple.v().newNopStmt()));
+  }
+
+  @Test
+  public void testAvailableExpressionsInUnitOrder() {
+    loadBasicClasses();
+    JimpleBody b = newBody();
+    Jimple j = Jimple.v();
+    Local p = b.getParameterLocal(0);
+    Local x = j.newLocal("x", IntType.v());
+    Local y = j.newLocal("y", IntType.v());
+    b.getLocals().add(x);
+    b.getLocals().add(y);
+
+    // p + 1 becomes available first, but the expressions are listed in the order of the unit chain
+    Unit times = j.newAssignStmt(x, j.newMulExpr(p, IntConstant.v(2)));
+    Unit plus = j.newAssignStmt(y, j.newAddExpr(p, IntConstant.v(1)));
+    Unit ret = j.newReturnVoidStmt();
+    PatchingChain<Unit> units = b.getUnits();
+    units.add(j.newGotoStmt(plus));
+    units.add(times);
+    units.add(ret);
+    units.add(plus);
+    units.add(j.newGotoStmt(times));
+
+    FastAvailableExpressions available = new FastAvailableExpressions(b, new NaiveSideEffectTester());
+    List<Unit> containing = new ArrayList<Unit>();
+    for (UnitValueBoxPair pair : available.getAvailablePairsBefore(ret)) {
+      containing.add(pair.getUnit());
+    }
+    assertEquals(Arrays.asList(times, plus), containing);
+  }
+
+  @Test
+  public void testAvailableExpressionsRejectUnreachableUnits() {
+    loadBasicClasses();
+    JimpleBody b = newBody();
+    Jimple j = Jimple.v();
+    Local p = b.getParameterLocal(0);
+    Local x = j.newLocal("x", IntType.v());
+    b.getLocals().add(x);
+
+    PatchingChain<Unit> units = b.getUnits();
+    units.add(j.newReturnVoidStmt());
+    units.add(j.newAssignStmt(x, j.newAddExpr(p, IntConstant.v(1))));
+    units.add(j.newReturnVoidStmt());
+
+    try {
+      new FastAvailableExpressions(b, new NaiveSideEffectTester());
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().startsWith("top!"));
+    }
+  }
+
+  /**
+   * <pre>
+   * p := @parameter0; if p == 0 goto l1; x = 1; goto l2; l1: x = 2; l2: p = x; if p == 0 goto l2; return
+   * </pre>
+   */
+  private static Body diamond() {
+    G.reset();
+    JimpleBody b = newBody();
+    Jimple j = Jimple.v();
+    Local p = b.getParameterLocal(0);
+    Local x = j.newLocal("x", IntType.v());
+    b.getLocals().add(x);
+
+    Unit join = j.newAssignStmt(p, x);
+    Unit other = j.newAssignStmt(x, IntConstant.v(2));
+    PatchingChain<Unit> units = b.getUnits();
+    units.add(j.newIfStmt(j.newEqExpr(p, IntConstant.v(0)), other));
+    units.add(j.newAssignStmt(x, IntConstant.v(1)));
+    units.add(j.newGotoStmt(join));
+    units.add(other);
+    units.add(join);
+    units.add(j.newIfStmt(j.newEqExpr(p, IntConstant.v(0)), join));
+    units.add(j.newReturnVoidStmt());
+    return b;
+  }
+
+  /**
+   * Loads the classes the {@link soot.toolkits.graph.ExceptionalUnitGraph} needs for the exceptions units may throw.
+   */
+  private static void loadBasicClasses() {
+    G.reset();
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Scene.v().loadBasicClasses();
+  }
+
+  /**
+   * Returns the body of a new static method <code>m(int)</code> that only holds the identity statement of parameter
+   * <code>p</code>.
+   */
+  private static JimpleBody newBody() {
+    SootMethod m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), VoidType.v(), Modifier.STATIC);
+    JimpleBody b = Jimple.v().newBody(m);
+    m.setActiveBody(b);
+    Local p = Jimple.v().newLocal("p", IntType.v());
+    b.getLocals().add(p);
+    b.getUnits().add(Jimple.v().newIdentityStmt(p, Jimple.v().newParameterRef(IntType.v(), 0)));
+    return b;
+  }
+
+  private static void assertSet(List<String> actual, String... expected) {
+    assertEquals(new HashSet<String>(Arrays.asList(expected)), new HashSet<String>(actual));
+  }
+
+  /**
+   * The flow functions of {@link InitAnalysis} solved by {@link ForwardFlowAnalysis} itself.
+   */
+  private static class ReferenceInitAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    private final FlowSet<Local> allLocals = new ArraySparseSet<Local>();
+
+    ReferenceInitAnalysis(UnitGraph g) {
+      super(g);
+      for (Local l : g.getBody().getLocals()) {
+        allLocals.add(l);
+      }
+      doAnalysis();
+    }
+
+    @Override
+    protected FlowSet<Local> entryInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      FlowSet<Local> ret = new ArraySparseSet<Local>();
+      allLocals.copy(ret);
+      return ret;
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+      in.copy(out);
+      for (ValueBox box : unit.getDefBoxes()) {
+        if (box.getValue() instanceof Local) {
+          out.add((Local) box.getValue());
+        }
+      }
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.intersection(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+
+  /**
+   * The previous implementation of {@link GuaranteedDefs}: a unit generates the locals defined by its dominators, and the
+   * iteration starts from empty sets.
+   */
+  private static class ReferenceGuaranteedDefsAnalysis extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    private final Map<Unit, FlowSet<Local>> unitToGenerateSet = new HashMap<Unit, FlowSet<Local>>();
+
+    ReferenceGuaranteedDefsAnalysis(UnitGraph g) {
+      super(g);
+      MHGDominatorsFinder<Unit> df = new MHGDominatorsFinder<Unit>(g);
+      for (Unit s : g) {
+        FlowSet<Local> genSet = new ArraySparseSet<Local>();
+        for (Unit dom : df.getDominators(s)) {
+          for (ValueBox box : dom.getDefBoxes()) {
+            if (box.getValue() instanceof Local) {
+              genSet.add((Local) box.getValue());
+            }
+          }
+        }
+        unitToGenerateSet.put(s, genSet);
+      }
+      doAnalysis();
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+      in.union(unitToGenerateSet.get(unit), out);
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.intersection(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+
+  private class Analysis extends BitVectorFlowAnalysis<String, String> {
+    Analysis(DirectedGraph<String> graph, boolean isForward, Meet meet) {
+      super(graph, new ArrayFlowUniverse<String>(new String[] { "p", "q", "r", "s", "u", "v" }), isForward, meet);
+      doAnalysis();
+    }
+
+    @Override
+    protected void computeGenKill(String node) {
+      for (String e : gen.containsKey(node) ? gen.get(node) : Collections.<String>emptyList()) {
+        gen(e);
+      }
+      for (String e : kill.containsKey(node) ? kill.get(node) : Collections.<String>emptyList()) {
+        kill(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package soot.toolkits.scalar;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.BodyTransformer;
+import soot.G;
+import soot.TestTargets;
+import soot.jimple.Jimple;
+import soot.jimple.toolkits.scalar.NopEliminator;
+import soot.options.Options;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+public class BodyAnalysisCacheTest {
+
+  private static final String TARGET_CLASS = "soot.toolkits.scalar.targets.LocalDefsTarget";
+
+  private Body body;
+
+  @Before
+  public void setUp() {
+    TestTargets.reset();
+    body = TestTargets.load(TARGET_CLASS).getMethodByName("reaching").retrieveActiveBody();
+  }
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void unmodifiedBodyReusesAnalyses() {
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body);
+    LocalDefs defs = cache.getLocalDefs(body);
+    LocalUses uses = cache.getLocalUses(body);
+
+    assertSame(graph, cache.getExceptionalUnitGraph(body));
+    assertSame(defs, cache.getLocalDefs(graph, false));
+    assertSame(uses, cache.getLocalUses(body));
+    assertNotSame(defs, cache.getLocalDefs(graph, true));
+
+    // does not change the body and keeps the cache consistent
+    NopEliminator.v().transform(body);
+    assertSame(graph, cache.getExceptionalUnitGraph(body));
+  }
+
+  @Test
+  public void modifiedBodyIsAnalyzedAgain() {
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body);
+    LocalDefs defs = cache.getLocalDefs(body);
+
+    body.getUnits().addFirst(Jimple.v().newNopStmt());
+    ExceptionalUnitGraph newGraph = cache.getExceptionalUnitGraph(body);
+    assertNotSame(graph, newGraph);
+    assertNotSame(defs, cache.getLocalDefs(body));
+
+    cache.invalidate(body);
+    assertNotSame(newGraph, cache.getExceptionalUnitGraph(body));
+  }
+
+  @Test
+  public void unknownTransformerInvalidates() {
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body);
+
+    new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+      }
+    }.transform(body);
+    assertNotSame(graph, cache.getExceptionalUnitGraph(body));
+  }
+
+  @Test
+  public void smartLocalDefsPoolClearsOnlyItsEntries() {
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph(body);
+    SmartLocalDefs defs = SmartLocalDefsPool.v().getSmartLocalDefsFor(body);
+    assertSame(defs, SmartLocalDefsPool.v().getSmartLocalDefsFor(body));
+
+    SmartLocalDefsPool.v().clear();
+    assertNotSame(defs, SmartLocalDefsPool.v().getSmartLocalDefsFor(body));
+    assertSame(graph, cache.getExceptionalUnitGraph(body));
+
+    defs = SmartLocalDefsPool.v().getSmartLocalDefsFor(body);
+    SmartLocalDefsPool.v().invalidate(body);
+    assertNotSame(defs, SmartLocalDefsPool.v().getSmartLocalDefsFor(body));
+    assertSame(graph, cache.getExceptionalUnitGraph(body));
+  }
+
+  @Test
+  public void smartLocalDefsPoolWithDisabledCache() {
+    Options.v().set_body_analysis_cache_size(0);
+    SmartLocalDefs defs = SmartLocalDefsPool.v().getSmartLocalDefsFor(body);
+    assertSame(defs, SmartLocalDefsPool.v().getSmartLocalDefsFor(body));
+
+    body.getUnits().addFirst(Jimple.v().newNopStmt());
+    assertNotSame(defs, SmartLocalDefsPool.v().getSmartLocalDefsFor(body));
+  }
+
+  @Test
+  public void disabledCacheComputesAgain() {
+    Options.v().set_body_analysis_cache_size(0);
+    BodyAnalysisCache cache = BodyAnalysisCache.v();
+    assertNotSame(cache.getExceptionalUnitGraph(body), cache.getExceptionalUnitGraph(body));
+  }
+}
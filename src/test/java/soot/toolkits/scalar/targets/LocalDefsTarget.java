@@ -0,0 +1,66 @@
+package soot.toolkits.scalar.targets;
+
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Locals that are defined on several paths, redefined in loops and used after handlers, so that definitions and uses
+ * reach across branches.
+ */
+public class LocalDefsTarget {
+
+  public int reaching(int[] values, int threshold) {
+    int max = Integer.MIN_VALUE;
+    int count = 0;
+    int last = -1;
+    for (int i = 0; i < values.length; i++) {
+      int v = values[i];
+      if (v > max) {
+        max = v;
+        last = i;
+      } else if (v == max) {
+        count++;
+      } else {
+        v = -v;
+      }
+      if (v > threshold) {
+        count += v;
+      }
+    }
+    int result;
+    try {
+      result = max / count;
+    } catch (ArithmeticException e) {
+      result = last;
+    }
+    while (result > threshold) {
+      result = result / 2 + last;
+      last--;
+    }
+    return result + count;
+  }
+
+  public int simple(int a) {
+    return a + 1;
+  }
+}